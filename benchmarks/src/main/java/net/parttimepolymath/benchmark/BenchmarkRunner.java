@@ -0,0 +1,47 @@
+package net.parttimepolymath.benchmark;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * entry point for the benchmark JAR. This accepts the usual JMH command line, but unless told otherwise writes the results
+ * as JSON to a timestamped file so that runs can be kept and compared.
+ * 
+ * @author robert
+ */
+public final class BenchmarkRunner {
+    /**
+     * hidden constructor.
+     */
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * main entry point.
+     * 
+     * @param args the JMH command line arguments.
+     * @throws Exception if the benchmarks cannot be run.
+     */
+    public static void main(final String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers() || cmd.shouldListResultFormats()
+                || cmd.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+        if (!cmd.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmd.getResult().hasValue()) {
+            builder.result("jmh-result-" + DateTimeFormat.forPattern("yyyyMMdd-HHmmss").print(DateTime.now()) + ".json");
+        }
+        new Runner(builder.build()).run();
+    }
+}
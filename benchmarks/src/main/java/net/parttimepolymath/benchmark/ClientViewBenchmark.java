@@ -0,0 +1,126 @@
+package net.parttimepolymath.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.api.ObjectMapperProvider;
+import net.parttimepolymath.model.ClientDetail;
+import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.DataStoreFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * measure the two representations behind GET /client, each read from the store and serialised to JSON as the service
+ * would: the complete Client, which carries the history of every account and is copied into a ClientDetail to be written,
+ * and the ClientSummary, which carries only the most recent transactions of each account. Run with -prof gc to see the allocation
+ * per operation alongside the time.
+ * 
+ * @author robert
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ClientViewBenchmark {
+    /**
+     * number of recent transactions included for each account in the summary, matching the service default.
+     */
+    private static final int RECENT = 5;
+
+    /**
+     * a seeded store with a chosen number of accounts per client and length of history.
+     */
+    @State(Scope.Benchmark)
+    public static class ClientState {
+        /**
+         * which DataStore implementation to measure.
+         */
+        @Param({ "jpa", "memory" })
+        public String store;
+
+        /**
+         * number of accounts each client owns.
+         */
+        @Param({ "4", "32" })
+        public int accounts;
+
+        /**
+         * number of transactions each account starts with.
+         */
+        @Param({ "4", "64" })
+        public int history;
+
+        /**
+         * number of clients to seed.
+         */
+        @Param({ "20" })
+        public int clients;
+
+        /**
+         * the DataStore under test.
+         */
+        private DataStore dataStore;
+
+        /**
+         * the mapper used to write the responses, shared as the service shares it.
+         */
+        private final ObjectMapper mapper = ObjectMapperProvider.MAPPER;
+
+        /**
+         * create and seed the DataStore.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            String script = Fixtures.createScript(clients, accounts, history);
+            if ("memory".equals(store)) {
+                dataStore = DataStoreFactory.makeMemoryDataStore(script);
+            } else {
+                dataStore = DataStoreFactory.makeDataStore(script);
+            }
+        }
+
+        /**
+         * discard the database.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            DataStoreFactory.shutdownDatabase();
+        }
+
+        /**
+         * @return a random seeded client id.
+         */
+        String anyClient() {
+            return Fixtures.clientId(ThreadLocalRandom.current().nextInt(clients));
+        }
+    }
+
+    @Benchmark
+    public byte[] fullClient(final ClientState state) throws JsonProcessingException {
+        return state.mapper.writeValueAsBytes(ClientDetail.of(state.dataStore.getClient(state.anyClient())));
+    }
+
+    @Benchmark
+    public byte[] clientSummary(final ClientState state) throws JsonProcessingException {
+        return state.mapper.writeValueAsBytes(state.dataStore.getClientSummary(state.anyClient(), RECENT));
+    }
+}
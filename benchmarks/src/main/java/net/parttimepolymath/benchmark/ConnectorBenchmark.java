@@ -0,0 +1,170 @@
+package net.parttimepolymath.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.JettyServer;
+import net.parttimepolymath.ServerConfig;
+import net.parttimepolymath.controller.ControllerHolder;
+import net.parttimepolymath.controller.ControllerImpl;
+import net.parttimepolymath.model.DataStoreFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * load the whole server over HTTP with 256 concurrent clients fetching whole clients with their transaction history, the
+ * largest response the API makes. Over HTTP/1.1 every client in flight needs a connection of its own, while over cleartext
+ * HTTP/2 the requests are multiplexed over a few connections. The gzip variant asks for, and gets, compressed responses,
+ * trading the time to compress them for fewer bytes on the wire; the size of a response each way is printed when its trial
+ * starts. Run across machines to see the effect of the smaller responses on a real network.
+ *
+ * @author robert
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConnectorBenchmark {
+    /**
+     * number of clients with a request in flight, all of which an HTTP/2 connection must allow.
+     */
+    private static final int THREADS = 256;
+
+    /**
+     * a running server and a client to drive it.
+     */
+    @State(Scope.Benchmark)
+    public static class ServerState {
+        /**
+         * the protocol the client speaks: http1 or h2c.
+         */
+        @Param({ "http1", "h2c" })
+        public String protocol;
+
+        /**
+         * how responses are encoded: identity or gzip.
+         */
+        @Param({ "identity", "gzip" })
+        public String encoding;
+
+        /**
+         * number of clients to seed.
+         */
+        @Param({ "250" })
+        public int clients;
+
+        /**
+         * number of transactions each account starts with.
+         */
+        @Param({ "20" })
+        public int history;
+
+        /**
+         * the server under test.
+         */
+        private JettyServer server;
+        /**
+         * the shared HTTP client.
+         */
+        private HttpClient client;
+        /**
+         * the base URI of the transfer API.
+         */
+        private String base;
+
+        /**
+         * seed the store and start the server on a free port.
+         *
+         * @throws Exception if the server will not start.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            boolean h2c = "h2c".equals(protocol);
+            boolean gzip = "gzip".equals(encoding);
+            ControllerHolder.reset();
+            ControllerHolder.setController(new ControllerImpl(DataStoreFactory.makeDataStore(Fixtures.createScript(clients,
+                    Fixtures.ACCOUNTS_PER_CLIENT, history))));
+            ControllerHolder.getController().activate();
+
+            int port = freePort();
+            server = new JettyServer(port, false, new ServerConfig(ServerConfig.JETTY_DEFAULT, ServerConfig.JETTY_DEFAULT,
+                    ServerConfig.DEFAULT_IDLE_TIMEOUT, ServerConfig.DEFAULT_HEADER_SIZE, ServerConfig.DEFAULT_THREADS_MIN,
+                    ServerConfig.DEFAULT_THREADS_MAX, h2c, THREADS, gzip, ServerConfig.DEFAULT_GZIP_MIN_SIZE));
+            server.start();
+            client = HttpClient.newBuilder().version(h2c ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1).build();
+            base = "http://localhost:" + port + "/transfer/1.0/";
+            HttpResponse<byte[]> response = client.send(request(), HttpResponse.BodyHandlers.ofByteArray());
+            System.out.println(protocol + " " + encoding + " response: " + response.version() + ", " + response.body().length
+                    + " bytes");
+        }
+
+        /**
+         * stop the server and discard the database.
+         *
+         * @throws Exception if the server does not stop cleanly.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            server.stop();
+            DataStoreFactory.shutdownDatabase();
+        }
+
+        /**
+         * @return a request for a random client with its transaction history.
+         */
+        HttpRequest request() {
+            String clientId = Fixtures.clientId(ThreadLocalRandom.current().nextInt(clients));
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(base + "client/" + clientId + "?expand=transactions"));
+            if ("gzip".equals(encoding)) {
+                builder.header("Accept-Encoding", "gzip");
+            }
+            return builder.GET().build();
+        }
+
+        /**
+         * send a request and wait for the response.
+         *
+         * @return the response status code.
+         * @throws Exception if the request fails.
+         */
+        int send() throws Exception {
+            return client.send(request(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        }
+
+        /**
+         * @return a port nobody is listening on.
+         * @throws IOException if no port can be found.
+         */
+        private static int freePort() throws IOException {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                return socket.getLocalPort();
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public int getClient(final ServerState state) throws Exception {
+        return state.send();
+    }
+}
@@ -0,0 +1,127 @@
+package net.parttimepolymath.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.controller.TransferProcessor;
+import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.DataStoreFactory;
+import net.parttimepolymath.model.DatabaseConfig;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measure the transfer path through TransferProcessor.execute against the in-memory database and a database kept on disk,
+ * the latter both syncing its log on every commit and leaving it to be synced every half second. The gap between the two
+ * disk-backed variants is the cost of the sync, and the parallel variant shows how much of it is shared between threads
+ * committing at the same time. See RecoveryBenchmark for the time taken to open the database again.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DurableStoreBenchmark {
+    /**
+     * amount to move on each transfer. This is small enough that no seeded account runs dry.
+     */
+    private static final long AMOUNT = 1;
+
+    /**
+     * where the database is kept: memory, file (synced on every commit) or delayed (synced every half second).
+     */
+    @Param({ "memory", "file", "delayed" })
+    public String database;
+
+    /**
+     * number of clients to seed.
+     */
+    @Param({ "250" })
+    public int clients;
+
+    /**
+     * the database in use.
+     */
+    private DatabaseConfig config;
+    /**
+     * the directory holding a disk-backed database, or null.
+     */
+    private File directory;
+    /**
+     * the DataStore under test.
+     */
+    private DataStore dataStore;
+
+    /**
+     * create and seed the database.
+     * 
+     * @throws IOException if the directory for the database cannot be made.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("memory".equals(database)) {
+            config = DatabaseConfig.IN_MEMORY;
+        } else {
+            directory = Files.createTempDirectory("transfer-db").toFile();
+            config = new DatabaseConfig(DatabaseConfig.FILE_PREFIX + new File(directory, "transfer").getPath(), "SA", "",
+                    DatabaseConfig.DEFAULT_POOL_MIN, DatabaseConfig.DEFAULT_POOL_MAX, "file".equals(database));
+        }
+        dataStore = DataStoreFactory.makeDataStore(Fixtures.createScript(clients), config);
+    }
+
+    /**
+     * discard the database.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataStoreFactory.shutdownDatabase(config);
+        FileUtils.deleteQuietly(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransferResult transfer() {
+        return anyTransfer();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TransferResult transferParallel() {
+        return anyTransfer();
+    }
+
+    /**
+     * transfer between two distinct accounts picked from the whole seeded set.
+     * 
+     * @return the transfer result.
+     */
+    private TransferResult anyTransfer() {
+        int accounts = clients * Fixtures.ACCOUNTS_PER_CLIENT;
+        int from = ThreadLocalRandom.current().nextInt(accounts);
+        int to = (from + 1 + ThreadLocalRandom.current().nextInt(accounts - 1)) % accounts;
+        return new TransferProcessor(new TransferRequest(Fixtures.accountId(from), Fixtures.accountId(to), AMOUNT), dataStore)
+                .execute();
+    }
+}
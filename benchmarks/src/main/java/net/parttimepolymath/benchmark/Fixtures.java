@@ -0,0 +1,92 @@
+package net.parttimepolymath.benchmark;
+
+/**
+ * helper for building seed data for the benchmarks. The generated script has the same schema as the one shipped with the
+ * server, but with as many clients and accounts as we ask for, each account holding a generous balance.
+ * 
+ * @author robert
+ */
+public final class Fixtures {
+    /**
+     * number of accounts each client owns.
+     */
+    public static final int ACCOUNTS_PER_CLIENT = 4;
+    /**
+     * number of historical transactions each account starts with.
+     */
+    public static final int TRANSACTIONS_PER_ACCOUNT = 4;
+
+    /**
+     * hidden constructor.
+     */
+    private Fixtures() {
+    }
+
+    /**
+     * make a 36 character client id.
+     * 
+     * @param index the client number.
+     * @return the id.
+     */
+    public static String clientId(final int index) {
+        return String.format("%08d-0000-0000-0000-000000000000", index);
+    }
+
+    /**
+     * make a 36 character account id.
+     * 
+     * @param index the account number.
+     * @return the id.
+     */
+    public static String accountId(final int index) {
+        return String.format("%08d-1111-1111-1111-111111111111", index);
+    }
+
+    /**
+     * build a creation script.
+     * 
+     * @param clients the number of clients to create.
+     * @return the script.
+     */
+    public static String createScript(final int clients) {
+        return createScript(clients, ACCOUNTS_PER_CLIENT, TRANSACTIONS_PER_ACCOUNT);
+    }
+
+    /**
+     * build a creation script with a given number of accounts per client and transactions per account. Account ids are
+     * numbered across all clients, so {@link #accountId(int)} only matches {@link #createScript(int)} when the default
+     * number of accounts per client is used.
+     * 
+     * @param clients the number of clients to create.
+     * @param accountsPerClient the number of accounts each client owns.
+     * @param history the number of transactions each account starts with.
+     * @return the script.
+     */
+    public static String createScript(final int clients, final int accountsPerClient, final int history) {
+        int accounts = clients * accountsPerClient;
+        StringBuilder sb = new StringBuilder();
+        sb.append("CREATE TABLE client (client_id VARCHAR(36) NOT NULL, name VARCHAR(64) NOT NULL, PRIMARY KEY (client_id));\n");
+        sb.append("CREATE TABLE account (account_id VARCHAR(36) NOT NULL, client_id VARCHAR(36) NOT NULL, currency VARCHAR(3) NOT NULL,");
+        sb.append(" balance DECIMAL(10,3) NOT NULL, open TINYINT NOT NULL, PRIMARY KEY (account_id),");
+        sb.append(" FOREIGN KEY (client_id) REFERENCES client (client_id));\n");
+        sb.append("CREATE TABLE transaction (tx_id VARCHAR(36) NOT NULL, account_id VARCHAR(36) NOT NULL, amount DECIMAL(10,3) NOT NULL,");
+        sb.append(" date TIMESTAMP NOT NULL, reference VARCHAR(36) NULL, PRIMARY KEY (tx_id, account_id),");
+        sb.append(" FOREIGN KEY (account_id) REFERENCES account (account_id));\n");
+        sb.append("CREATE INDEX transaction_account_date ON transaction (account_id, date, tx_id);\n");
+        sb.append("CREATE TABLE transfer_key (idem_key VARCHAR(64) NOT NULL, tx_id VARCHAR(36) NOT NULL, created TIMESTAMP NOT NULL,");
+        sb.append(" PRIMARY KEY (idem_key));\n");
+
+        for (int i = 0; i < clients; i++) {
+            sb.append(String.format("INSERT INTO client VALUES ('%s', 'CLIENT %d');%n", clientId(i), i));
+        }
+        for (int i = 0; i < accounts; i++) {
+            sb.append(String.format("INSERT INTO account VALUES ('%s', '%s', 'USD', 1000000.0, 1);%n", accountId(i),
+                    clientId(i / accountsPerClient)));
+            for (int j = 0; j < history; j++) {
+                sb.append(String.format("INSERT INTO transaction VALUES ('%08d-2222-2222-2222-%012d', '%s', 10.0,", i, j, accountId(i)));
+                sb.append(" '2015-08-08 17:23:00', '');\n");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package net.parttimepolymath.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.controller.TransferProcessor;
+import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.DataStoreFactory;
+import net.parttimepolymath.model.DatabaseConfig;
+import net.parttimepolymath.model.TransferJournal;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measure the transfer path through TransferProcessor.execute against an in-memory store, with and without a journal making
+ * each transfer durable, and with a range of sync windows. With a single thread every transfer pays for its own sync plus the
+ * window; with several, transfers arriving within the window share a sync. Compare with DurableStoreBenchmark for the cost
+ * of a disk-backed database.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+    /**
+     * amount to move on each transfer. This is small enough that no seeded account runs dry.
+     */
+    private static final long AMOUNT = 1;
+
+    /**
+     * which DataStore implementation to measure.
+     */
+    @Param({ "jpa", "memory" })
+    public String store;
+
+    /**
+     * the sync window in milliseconds, or none for no journal.
+     */
+    @Param({ "none", "0", "1", "5" })
+    public String window;
+
+    /**
+     * number of clients to seed.
+     */
+    @Param({ "250" })
+    public int clients;
+
+    /**
+     * the directory holding the journal, or null.
+     */
+    private File directory;
+    /**
+     * the journal, or null.
+     */
+    private TransferJournal journal;
+    /**
+     * the DataStore under test.
+     */
+    private DataStore dataStore;
+
+    /**
+     * create and seed the DataStore, and open an empty journal.
+     * 
+     * @throws IOException if the journal cannot be opened.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String script = Fixtures.createScript(clients);
+        boolean memory = "memory".equals(store);
+        if ("none".equals(window)) {
+            dataStore = memory ? DataStoreFactory.makeMemoryDataStore(script) : DataStoreFactory.makeDataStore(script);
+        } else {
+            directory = Files.createTempDirectory("transfer-journal").toFile();
+            journal = new TransferJournal(new File(directory, "transfer.journal"), Long.parseLong(window), TimeUnit.MILLISECONDS);
+            dataStore = memory ? DataStoreFactory.makeMemoryDataStore(script, DatabaseConfig.IN_MEMORY, journal)
+                    : DataStoreFactory.makeDataStore(script, DatabaseConfig.IN_MEMORY, journal);
+        }
+    }
+
+    /**
+     * discard the database and the journal.
+     *
+     * @throws IOException if the journal could not be closed, which fails the trial rather than hiding a lost sync.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        DataStoreFactory.shutdownDatabase();
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransferResult transfer() {
+        return anyTransfer();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TransferResult transferParallel() {
+        return anyTransfer();
+    }
+
+    /**
+     * transfer between two distinct accounts picked from the whole seeded set.
+     * 
+     * @return the transfer result.
+     */
+    private TransferResult anyTransfer() {
+        int accounts = clients * Fixtures.ACCOUNTS_PER_CLIENT;
+        int from = ThreadLocalRandom.current().nextInt(accounts);
+        int to = (from + 1 + ThreadLocalRandom.current().nextInt(accounts - 1)) % accounts;
+        return new TransferProcessor(new TransferRequest(Fixtures.accountId(from), Fixtures.accountId(to), AMOUNT), dataStore)
+                .execute();
+    }
+}
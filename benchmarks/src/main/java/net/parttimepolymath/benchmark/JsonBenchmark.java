@@ -0,0 +1,149 @@
+package net.parttimepolymath.benchmark;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.AccountDetail;
+import net.parttimepolymath.model.Client;
+import net.parttimepolymath.model.Transaction;
+import net.parttimepolymath.model.TransactionPK;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaMapper;
+
+/**
+ * measure JSON serialisation and deserialisation of the objects that cross the REST API. The contended variants share a
+ * single ObjectMapper between several threads, as the Jersey provider does.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+    /**
+     * which object to (de)serialise.
+     */
+    @Param({ "request", "result", "account" })
+    public String payload;
+
+    /**
+     * the shared mapper.
+     */
+    private ObjectMapper mapper;
+    /**
+     * the object to serialise.
+     */
+    private Object value;
+    /**
+     * the serialised form of the object, to deserialise.
+     */
+    private byte[] json;
+    /**
+     * the type to deserialise to.
+     */
+    private Class<?> type;
+
+    /**
+     * build the payload.
+     * 
+     * @throws IOException if the payload cannot be serialised.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = new JodaMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        switch (payload) {
+        case "request":
+            value = new TransferRequest(Fixtures.accountId(0), Fixtures.accountId(1), 10000);
+            break;
+        case "result":
+            value = new TransferResult(200, "OK", UUID.randomUUID().toString());
+            break;
+        default:
+            value = AccountDetail.of(makeAccount());
+            break;
+        }
+        type = value.getClass();
+        json = mapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] serialise() throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public byte[] serialiseContended() throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object deserialise() throws IOException {
+        return mapper.readValue(json, type);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object deserialiseContended() throws IOException {
+        return mapper.readValue(json, type);
+    }
+
+    /**
+     * build an account to make a GET /account response from.
+     * 
+     * @return the account.
+     */
+    private static Account makeAccount() {
+        Client client = new Client();
+        client.setClientId(Fixtures.clientId(0));
+        client.setName("CLIENT 0");
+
+        Account account = new Account();
+        account.setAccountId(Fixtures.accountId(0));
+        account.setBalance(new BigDecimal("1000000.000"));
+        account.setCurrency("USD");
+        account.setOpen(true);
+        client.addAccount(account);
+
+        for (int i = 0; i < Fixtures.TRANSACTIONS_PER_ACCOUNT; i++) {
+            Transaction transaction = new Transaction();
+            TransactionPK key = new TransactionPK();
+            key.setAccountId(account.getAccountId());
+            key.setTxId(UUID.randomUUID().toString());
+            transaction.setId(key);
+            transaction.setAmount(new BigDecimal("10.000"));
+            transaction.setDate(DateTime.now(DateTimeZone.UTC));
+            transaction.setReference("");
+            account.addTransaction(transaction);
+        }
+        return account;
+    }
+}
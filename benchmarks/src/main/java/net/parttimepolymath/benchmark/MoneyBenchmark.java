@@ -0,0 +1,95 @@
+package net.parttimepolymath.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.model.Money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * measure the money arithmetic of a single transfer: converting the requested amount, checking it against the balance of the
+ * source account, making the two transaction amounts and working out both new balances. The decimal variant is the way
+ * TransferProcessor and the lean JPA update did this with BigDecimal; the fixed point variant is the way they do it now, in
+ * thousandths held in a long. The boundary variant adds the conversion of the three statement parameters to BigDecimal that
+ * the JPA store still makes, to show what is left. Run with {@code -prof gc} to see the allocation per transfer as well as
+ * the time.
+ *
+ * @author robert
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+    /**
+     * the source balance as read from the database.
+     */
+    private BigDecimal fromBalance = new BigDecimal("10000.000");
+    /**
+     * the destination balance as read from the database.
+     */
+    private BigDecimal toBalance = new BigDecimal("2500.500");
+    /**
+     * the source balance in thousandths.
+     */
+    private long fromUnits = Money.toUnits(fromBalance);
+    /**
+     * the destination balance in thousandths.
+     */
+    private long toUnits = Money.toUnits(toBalance);
+    /**
+     * the currency of the source account.
+     */
+    private String currency = "USD";
+    /**
+     * the requested amount in the minor unit, varied between calls so that nothing can be folded away.
+     */
+    private long requested;
+
+    @Benchmark
+    public void decimal(final Blackhole hole) {
+        requested = (requested + 1) & 0xFFFF;
+        BigDecimal amount = BigDecimal.valueOf(requested, 2);
+        hole.consume(fromBalance.compareTo(amount) >= 0);
+        BigDecimal debit = amount.negate();
+        hole.consume(fromBalance.add(debit));
+        hole.consume(toBalance.add(amount));
+        hole.consume(debit);
+    }
+
+    @Benchmark
+    public void fixedPoint(final Blackhole hole) {
+        requested = (requested + 1) & 0xFFFF;
+        long amount = Money.fromMinorUnits(requested, currency);
+        hole.consume(fromUnits >= amount);
+        long debit = -amount;
+        hole.consume(fromUnits + debit);
+        hole.consume(toUnits + amount);
+        hole.consume(debit);
+    }
+
+    @Benchmark
+    public void fixedPointBoundary(final Blackhole hole) {
+        requested = (requested + 1) & 0xFFFF;
+        long amount = Money.fromMinorUnits(requested, currency);
+        hole.consume(fromUnits >= amount);
+        long debit = -amount;
+        hole.consume(fromUnits + debit);
+        hole.consume(toUnits + amount);
+        hole.consume(Money.toDecimal(debit));
+        hole.consume(Money.toDecimal(amount));
+        hole.consume(Money.toDecimal(amount));
+    }
+}
@@ -0,0 +1,136 @@
+package net.parttimepolymath.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.AccountDAO;
+import net.parttimepolymath.model.DataStoreFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measure the cost of a single lookup in the JPA layer, comparing a Criteria query built for each call, as the DAO used to
+ * do, against the DAO's own lookups: entityManager.find for a primary key, and a registered named query otherwise. Each
+ * operation opens and closes its own EntityManager, as the DAO does, and reports the average time per lookup.
+ *
+ * @author robert
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class QueryBenchmark {
+
+    /**
+     * a seeded database and the JPA layer over it.
+     */
+    @State(Scope.Benchmark)
+    public static class JpaState {
+        /**
+         * number of clients to seed.
+         */
+        @Param({ "250" })
+        public int clients;
+
+        /**
+         * the JPA layer under test.
+         */
+        private EntityManagerFactory emf;
+
+        /**
+         * create and seed the database.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            emf = DataStoreFactory.makeEntityManagerFactory(Fixtures.createScript(clients));
+        }
+
+        /**
+         * discard the database.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            emf.close();
+            DataStoreFactory.shutdownDatabase();
+        }
+
+        /**
+         * @return a random seeded account id.
+         */
+        String anyAccount() {
+            return Fixtures.accountId(ThreadLocalRandom.current().nextInt(clients * Fixtures.ACCOUNTS_PER_CLIENT));
+        }
+
+        /**
+         * @return a random seeded client id.
+         */
+        String anyClient() {
+            return Fixtures.clientId(ThreadLocalRandom.current().nextInt(clients));
+        }
+    }
+
+    @Benchmark
+    public Account accountByCriteria(final JpaState state) {
+        EntityManager em = state.emf.createEntityManager();
+        try {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<Account> cq = cb.createQuery(Account.class);
+            Root<Account> root = cq.from(Account.class);
+            cq.where(cb.equal(root.get("accountId"), cb.parameter(String.class, "account_id")));
+            return em.createQuery(cq).setParameter("account_id", state.anyAccount()).setMaxResults(1).getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public Account accountByFind(final JpaState state) throws Exception {
+        try (AccountDAO dao = new AccountDAO(state.emf)) {
+            return dao.getAccount(state.anyAccount());
+        }
+    }
+
+    @Benchmark
+    public List<Account> clientAccountsByCriteria(final JpaState state) {
+        EntityManager em = state.emf.createEntityManager();
+        try {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<Account> cq = cb.createQuery(Account.class);
+            Root<Account> root = cq.from(Account.class);
+            cq.where(cb.equal(root.get("client").get("clientId"), cb.parameter(String.class, "client_id")));
+            return em.createQuery(cq).setParameter("client_id", state.anyClient()).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public List<Account> clientAccountsByNamedQuery(final JpaState state) throws Exception {
+        try (AccountDAO dao = new AccountDAO(state.emf)) {
+            return dao.getAccounts(state.anyClient());
+        }
+    }
+}
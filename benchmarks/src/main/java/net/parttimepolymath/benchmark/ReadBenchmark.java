@@ -0,0 +1,53 @@
+package net.parttimepolymath.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.Client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measure the DataStore lookups behind GET /account and GET /client. The contended variants have several threads all
+ * reading the same few rows.
+ * 
+ * @author robert
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+    @Benchmark
+    @Threads(1)
+    public Account getAccount(final StoreState state) {
+        return state.dataStore.getAccount(state.anyAccount());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Account getAccountContended(final StoreState state) {
+        return state.dataStore.getAccount(state.hotAccount());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Client getClient(final StoreState state) {
+        return state.dataStore.getClient(state.anyClient());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Client getClientContended(final StoreState state) {
+        return state.dataStore.getClient(Fixtures.clientId(0));
+    }
+}
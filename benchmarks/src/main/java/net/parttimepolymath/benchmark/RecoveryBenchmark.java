@@ -0,0 +1,186 @@
+package net.parttimepolymath.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.controller.TransferProcessor;
+import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.DataStoreFactory;
+import net.parttimepolymath.model.DatabaseConfig;
+import net.parttimepolymath.model.JPADataStore;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measure how long the server takes to get its data back on a restart, up to serving the first account. The in-memory
+ * database starts again from the creation script, losing every transfer made since. The disk-backed database is opened from
+ * a copy of one that was stopped without a checkpoint after a run of transfers, as if the process had been killed, so the
+ * time includes replaying its log.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RecoveryBenchmark {
+    /**
+     * amount to move on each transfer.
+     */
+    private static final long AMOUNT = 1;
+
+    /**
+     * where the database is kept: memory or file.
+     */
+    @Param({ "memory", "file" })
+    public String database;
+
+    /**
+     * number of clients to seed.
+     */
+    @Param({ "2500" })
+    public int clients;
+
+    /**
+     * number of transfers made before the disk-backed database is stopped.
+     */
+    @Param({ "5000" })
+    public int transfers;
+
+    /**
+     * the creation script.
+     */
+    private String script;
+    /**
+     * the directory holding the stopped database, which each invocation copies.
+     */
+    private File template;
+    /**
+     * the directory holding the copy opened by the current invocation.
+     */
+    private File directory;
+    /**
+     * the database opened by the current invocation.
+     */
+    private DatabaseConfig config;
+    /**
+     * the JPA layer opened by the current invocation.
+     */
+    private EntityManagerFactory emf;
+
+    /**
+     * build the creation script, and for the disk-backed database, make the stopped database.
+     * 
+     * @throws Exception if the database cannot be made.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        script = Fixtures.createScript(clients);
+        if ("file".equals(database)) {
+            template = Files.createTempDirectory("transfer-db").toFile();
+            // commits are synced every half second here, as only the state the database is left in matters.
+            DatabaseConfig seed = new DatabaseConfig(fileUrl(template), "SA", "", DatabaseConfig.DEFAULT_POOL_MIN,
+                    DatabaseConfig.DEFAULT_POOL_MAX, false);
+            EntityManagerFactory seeded = DataStoreFactory.makeEntityManagerFactory(script, seed);
+            DataStore dataStore = new JPADataStore(seeded);
+            int accounts = clients * Fixtures.ACCOUNTS_PER_CLIENT;
+            for (int i = 0; i < transfers; i++) {
+                int from = ThreadLocalRandom.current().nextInt(accounts);
+                int to = (from + 1 + ThreadLocalRandom.current().nextInt(accounts - 1)) % accounts;
+                new TransferProcessor(new TransferRequest(Fixtures.accountId(from), Fixtures.accountId(to), AMOUNT), dataStore)
+                        .execute();
+            }
+            seeded.close();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(1));
+            execute(seed, "SHUTDOWN IMMEDIATELY");
+        }
+    }
+
+    /**
+     * discard the stopped database.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(template);
+    }
+
+    /**
+     * make a fresh copy of the stopped database for the next invocation.
+     * 
+     * @throws IOException if the copy cannot be made.
+     */
+    @Setup(Level.Invocation)
+    public void copy() throws IOException {
+        if (template == null) {
+            config = DatabaseConfig.IN_MEMORY;
+        } else {
+            directory = Files.createTempDirectory("transfer-db").toFile();
+            FileUtils.copyDirectory(template, directory);
+            config = new DatabaseConfig(fileUrl(directory));
+        }
+    }
+
+    /**
+     * close the database opened by the invocation.
+     */
+    @TearDown(Level.Invocation)
+    public void close() {
+        emf.close();
+        DataStoreFactory.shutdownDatabase(config);
+        FileUtils.deleteQuietly(directory);
+    }
+
+    @Benchmark
+    public Account recover() {
+        emf = DataStoreFactory.makeEntityManagerFactory(script, config);
+        return new JPADataStore(emf).getAccount(Fixtures.accountId(0));
+    }
+
+    /**
+     * @param parent the directory to hold the database.
+     * @return the URL of a disk-backed database in the directory.
+     */
+    private static String fileUrl(final File parent) {
+        return DatabaseConfig.FILE_PREFIX + new File(parent, "transfer").getPath();
+    }
+
+    /**
+     * run a single statement against a database.
+     * 
+     * @param target the database.
+     * @param sql the statement.
+     * @throws SQLException if the statement fails.
+     */
+    private static void execute(final DatabaseConfig target, final String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(target.getUrl(), target.getUser(), target.getPassword());
+                Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
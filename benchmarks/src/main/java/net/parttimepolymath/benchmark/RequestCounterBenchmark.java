@@ -0,0 +1,102 @@
+package net.parttimepolymath.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.parttimepolymath.controller.Status;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measure counting a request as every call into the controller does, comparing the single AtomicLong the status used to
+ * hold with the striped RequestCounter behind it now, at 1, 8 and 32 threads all counting into the same status. The
+ * adder variants count into a bare LongAdder, to separate what the striping saves from what the RequestCounter adds on top
+ * of it, which is a count by endpoint and a reading of the clock for the rate samples. Contention only shows with as many
+ * cores as threads; on fewer, the contended variants mostly measure the threads taking turns.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestCounterBenchmark {
+    /**
+     * the shared counter as it was.
+     */
+    private final AtomicLong atomic = new AtomicLong();
+    /**
+     * a bare striped counter.
+     */
+    private final LongAdder adder = new LongAdder();
+    /**
+     * the shared status, counting with a RequestCounter.
+     */
+    private final Status status = new Status("active", 0L);
+
+    @Benchmark
+    @Threads(1)
+    public long atomic() {
+        return atomic.incrementAndGet();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long atomicContended() {
+        return atomic.incrementAndGet();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public long atomicHeavilyContended() {
+        return atomic.incrementAndGet();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void adder() {
+        adder.increment();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void adderContended() {
+        adder.increment();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void adderHeavilyContended() {
+        adder.increment();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void striped() {
+        status.updateCount("doTransfer");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void stripedContended() {
+        status.updateCount("doTransfer");
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void stripedHeavilyContended() {
+        status.updateCount("doTransfer");
+    }
+}
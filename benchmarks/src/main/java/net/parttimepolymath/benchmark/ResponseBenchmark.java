@@ -0,0 +1,211 @@
+package net.parttimepolymath.benchmark;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.api.ObjectMapperProvider;
+import net.parttimepolymath.controller.TimeOrderedIdGenerator;
+import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.AccountDetail;
+import net.parttimepolymath.model.Client;
+import net.parttimepolymath.model.Transaction;
+import net.parttimepolymath.model.TransactionPK;
+import net.parttimepolymath.util.IsoTimestamp;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * measure writing the GET /account response. The identity variant writes the Account entity the way the service used to,
+ * with a mapper of its own, every entity tracked by object id, the client and its other accounts written inside the account,
+ * and dates printed by a Joda formatter; mix-ins put back the annotations the entities have since lost. The flat variant
+ * copies the account into an AccountDetail and writes that with a plain mapper, and the afterburner variant does the same with
+ * the shared mapper the service now uses. The timestamp benchmarks compare printing a date with the Joda formatter and with
+ * IsoTimestamp. Run with {@code -prof gc} to see the allocation per response as well as the time.
+ *
+ * @author robert
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+    /**
+     * the formatter dates used to be printed with.
+     */
+    private static final DateTimeFormatter FORMATTER = ISODateTimeFormat.dateTime();
+
+    /**
+     * an account, with its client and the client's other accounts, and the mapper to write it with.
+     */
+    @State(Scope.Benchmark)
+    public static class Response {
+        /**
+         * how the response is written: identity, flat or afterburner.
+         */
+        @Param({ "identity", "flat", "afterburner" })
+        public String encoding;
+
+        /**
+         * number of transactions on each account.
+         */
+        @Param({ "0", "20" })
+        public int history;
+
+        /**
+         * the account to write.
+         */
+        private Account account;
+        /**
+         * the mapper to write it with.
+         */
+        private ObjectMapper mapper;
+
+        /**
+         * build the account and the mapper.
+         *
+         * @throws IOException if the response cannot be written.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Client client = new Client();
+            client.setClientId(Fixtures.clientId(0));
+            client.setName("CLIENT 0");
+            TimeOrderedIdGenerator ids = new TimeOrderedIdGenerator(1);
+            for (int a = 0; a < Fixtures.ACCOUNTS_PER_CLIENT; a++) {
+                Account next = new Account();
+                next.setAccountId(Fixtures.accountId(a));
+                next.setBalance(new BigDecimal("1000000.000"));
+                next.setCurrency("USD");
+                next.setOpen(true);
+                client.addAccount(next);
+                for (int t = 0; t < history; t++) {
+                    Transaction transaction = new Transaction();
+                    TransactionPK key = new TransactionPK();
+                    key.setAccountId(next.getAccountId());
+                    key.setTxId(ids.nextId());
+                    transaction.setId(key);
+                    transaction.setAmount(new BigDecimal("-10.250"));
+                    transaction.setDate(new DateTime(2015, 6, 8, 9, 14, DateTimeZone.UTC).plusMinutes(t));
+                    transaction.setReference("reference " + t);
+                    next.addTransaction(transaction);
+                }
+            }
+            account = client.getAccounts().get(0);
+            if ("identity".equals(encoding)) {
+                mapper = new ObjectMapper();
+                mapper.addMixIn(Account.class, IdentityAccount.class);
+                mapper.addMixIn(Client.class, Identity.class);
+                mapper.addMixIn(Transaction.class, IdentityTransaction.class);
+            } else if ("flat".equals(encoding)) {
+                mapper = new ObjectMapper();
+            } else {
+                mapper = ObjectMapperProvider.MAPPER;
+            }
+            System.out.println(encoding + " response: " + write().length + " bytes");
+        }
+
+        /**
+         * @return the response.
+         * @throws IOException if the response cannot be written.
+         */
+        byte[] write() throws IOException {
+            return mapper.writeValueAsBytes("identity".equals(encoding) ? account : AccountDetail.of(account));
+        }
+    }
+
+    /**
+     * puts back the object ids the entities used to carry.
+     */
+    @JsonIdentityInfo(generator = ObjectIdGenerators.IntSequenceGenerator.class, property = "@id")
+    abstract static class Identity {
+    }
+
+    /**
+     * puts back the object ids, and the client written inside the account.
+     */
+    abstract static class IdentityAccount extends Identity {
+        @JsonIgnore(false)
+        public abstract Client getClient();
+    }
+
+    /**
+     * puts back the object ids, the account written inside the transaction, and the Joda date formatter.
+     */
+    abstract static class IdentityTransaction extends Identity {
+        @JsonIgnore(false)
+        public abstract Account getAccount();
+
+        @JsonSerialize(using = JodaDateSerializer.class)
+        public abstract DateTime getDate();
+    }
+
+    /**
+     * prints dates with the Joda formatter, as the service used to.
+     */
+    static final class JodaDateSerializer extends JsonSerializer<DateTime> {
+        @Override
+        public void serialize(final DateTime value, final JsonGenerator gen, final SerializerProvider provider) throws IOException {
+            gen.writeString(FORMATTER.print(value));
+        }
+    }
+
+    /**
+     * a date that changes between calls so that nothing can be folded away.
+     */
+    @State(Scope.Thread)
+    public static class Dates {
+        /**
+         * the date to print.
+         */
+        private DateTime date = new DateTime(2015, 6, 8, 9, 14, DateTimeZone.UTC);
+
+        /**
+         * @return the next date.
+         */
+        DateTime next() {
+            date = date.plusMillis(1);
+            return date;
+        }
+    }
+
+    @Benchmark
+    public byte[] account(final Response response) throws IOException {
+        return response.write();
+    }
+
+    @Benchmark
+    public String jodaTimestamp(final Dates dates) {
+        return FORMATTER.print(dates.next());
+    }
+
+    @Benchmark
+    public String isoTimestamp(final Dates dates) {
+        return IsoTimestamp.print(dates.next());
+    }
+}
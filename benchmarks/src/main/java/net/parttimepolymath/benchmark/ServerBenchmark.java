@@ -0,0 +1,171 @@
+package net.parttimepolymath.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.JettyServer;
+import net.parttimepolymath.controller.ControllerHolder;
+import net.parttimepolymath.controller.ControllerImpl;
+import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.DataStoreFactory;
+import net.parttimepolymath.util.VirtualThreads;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * load the whole server over HTTP at high concurrency, comparing Jetty's platform thread pool with virtual threads. Each
+ * benchmark thread is one client with a blocking request in flight, so the thread count is the number of concurrent requests.
+ * The virtual variant needs Java 21 or later, and fails its setup on an older runtime.
+ *
+ * @author robert
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ServerBenchmark {
+    /**
+     * amount to move on each transfer. This is small enough that no seeded account runs dry.
+     */
+    private static final long AMOUNT = 1;
+
+    /**
+     * a running server and a client to drive it.
+     */
+    @State(Scope.Benchmark)
+    public static class ServerState {
+        /**
+         * how requests are handled: "platform" or "virtual".
+         */
+        @Param({ "platform", "virtual" })
+        public String threads;
+
+        /**
+         * which DataStore implementation to serve from.
+         */
+        @Param({ "jpa" })
+        public String store;
+
+        /**
+         * number of clients to seed.
+         */
+        @Param({ "250" })
+        public int clients;
+
+        /**
+         * the server under test.
+         */
+        private JettyServer server;
+        /**
+         * the shared HTTP client.
+         */
+        private HttpClient client;
+        /**
+         * the base URI of the transfer API.
+         */
+        private String base;
+
+        /**
+         * seed the store and start the server on a free port.
+         *
+         * @throws Exception if the server will not start.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            boolean virtual = "virtual".equals(threads);
+            String script = Fixtures.createScript(clients);
+            DataStore dataStore = "memory".equals(store) ? DataStoreFactory.makeMemoryDataStore(script)
+                    : DataStoreFactory.makeDataStore(script);
+            ControllerHolder.reset();
+            ControllerHolder.setController(virtual ? new ControllerImpl(dataStore, ControllerImpl.DEFAULT_TRANSFER_THREADS,
+                    ControllerImpl.DEFAULT_QUEUE_DEPTH, VirtualThreads.factory("transfer-"), null, null) : new ControllerImpl(dataStore));
+            ControllerHolder.getController().activate();
+
+            int port = freePort();
+            server = new JettyServer(port, virtual);
+            server.start();
+            client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            base = "http://localhost:" + port + "/transfer/1.0/";
+        }
+
+        /**
+         * stop the server and discard the database.
+         *
+         * @throws Exception if the server does not stop cleanly.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            server.stop();
+            DataStoreFactory.shutdownDatabase();
+        }
+
+        /**
+         * pick a random account from the whole seeded set.
+         *
+         * @return an account id.
+         */
+        String anyAccount() {
+            return Fixtures.accountId(ThreadLocalRandom.current().nextInt(clients * Fixtures.ACCOUNTS_PER_CLIENT));
+        }
+
+        /**
+         * send a request and wait for the response.
+         *
+         * @param request the request to send.
+         * @return the response status code.
+         * @throws Exception if the request fails.
+         */
+        int send(final HttpRequest request) throws Exception {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        }
+
+        /**
+         * @return a port nobody is listening on.
+         * @throws IOException if no port can be found.
+         */
+        private static int freePort() throws IOException {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                return socket.getLocalPort();
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int getAccount(final ServerState state) throws Exception {
+        return state.send(HttpRequest.newBuilder(URI.create(state.base + "account/" + state.anyAccount())).GET().build());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int transfer(final ServerState state) throws Exception {
+        String from = state.anyAccount();
+        String to = state.anyAccount();
+        while (to.equals(from)) {
+            to = state.anyAccount();
+        }
+        String body = "{\"fromAccount\":\"" + from + "\",\"toAccount\":\"" + to + "\",\"amount\":" + AMOUNT + "}";
+        return state.send(HttpRequest.newBuilder(URI.create(state.base + "transfer")).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build());
+    }
+}
@@ -0,0 +1,119 @@
+package net.parttimepolymath.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.DataStoreFactory;
+import net.parttimepolymath.model.DatabaseConfig;
+import net.parttimepolymath.model.JPADataStore;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measure how long the server takes to start on a large dataset, up to serving the first account, when the in-memory
+ * database is built by running the creation script and when it is loaded from a snapshot of the same data. The default of
+ * 250000 clients gives a million accounts, each with one transaction.
+ *
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class StartupBenchmark {
+    /**
+     * where the data comes from: script or snapshot.
+     */
+    @Param({ "script", "snapshot" })
+    public String source;
+
+    /**
+     * number of clients to seed, each with the default number of accounts.
+     */
+    @Param({ "250000" })
+    public int clients;
+
+    /**
+     * number of transactions each account starts with.
+     */
+    @Param({ "1" })
+    public int history;
+
+    /**
+     * the creation script, or an empty script when loading from the snapshot.
+     */
+    private String script;
+    /**
+     * the directory holding the snapshot.
+     */
+    private File directory;
+    /**
+     * the snapshot, or null when running the script.
+     */
+    private File snapshot;
+    /**
+     * the JPA layer opened by the current invocation.
+     */
+    private EntityManagerFactory emf;
+
+    /**
+     * build the creation script, and for the snapshot, run it once and write the snapshot.
+     *
+     * @throws Exception if the snapshot cannot be made.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        script = Fixtures.createScript(clients, Fixtures.ACCOUNTS_PER_CLIENT, history);
+        if ("snapshot".equals(source)) {
+            directory = Files.createTempDirectory("transfer-snapshot").toFile();
+            snapshot = new File(directory, "transfer.snap");
+            EntityManagerFactory seeded = DataStoreFactory.makeEntityManagerFactory(script, DatabaseConfig.IN_MEMORY);
+            new JPADataStore(seeded).writeSnapshot(snapshot);
+            seeded.close();
+            DataStoreFactory.shutdownDatabase();
+            script = "";
+        }
+    }
+
+    /**
+     * discard the snapshot.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    /**
+     * discard the database built by the invocation.
+     */
+    @TearDown(Level.Invocation)
+    public void close() {
+        emf.close();
+        DataStoreFactory.shutdownDatabase();
+    }
+
+    @Benchmark
+    public Account start() {
+        emf = DataStoreFactory.makeEntityManagerFactory(script, DatabaseConfig.IN_MEMORY, snapshot);
+        return new JPADataStore(emf).getAccount(Fixtures.accountId(0));
+    }
+}
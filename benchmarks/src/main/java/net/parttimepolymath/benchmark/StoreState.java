@@ -0,0 +1,91 @@
+package net.parttimepolymath.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.DataStoreFactory;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * shared benchmark state holding a seeded DataStore. Each trial runs in its own forked JVM, so each gets a fresh database.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+public class StoreState {
+    /**
+     * number of accounts used by the contended benchmarks. Keeping this small forces threads onto the same rows.
+     */
+    public static final int HOT_ACCOUNTS = 4;
+
+    /**
+     * which DataStore implementation to measure.
+     */
+    @Param({ "jpa", "memory" })
+    public String store;
+
+    /**
+     * number of clients to seed.
+     */
+    @Param({ "250" })
+    public int clients;
+
+    /**
+     * the DataStore under test.
+     */
+    public DataStore dataStore;
+
+    /**
+     * create and seed the DataStore.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        String script = Fixtures.createScript(clients);
+        if ("memory".equals(store)) {
+            dataStore = DataStoreFactory.makeMemoryDataStore(script);
+        } else {
+            dataStore = DataStoreFactory.makeDataStore(script);
+        }
+    }
+
+    /**
+     * discard the database.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataStoreFactory.shutdownDatabase();
+    }
+
+    /**
+     * pick a random account from the whole seeded set.
+     * 
+     * @return an account id.
+     */
+    public String anyAccount() {
+        return Fixtures.accountId(ThreadLocalRandom.current().nextInt(clients * Fixtures.ACCOUNTS_PER_CLIENT));
+    }
+
+    /**
+     * pick a random account from the small hot set.
+     * 
+     * @return an account id.
+     */
+    public String hotAccount() {
+        return Fixtures.accountId(ThreadLocalRandom.current().nextInt(HOT_ACCOUNTS));
+    }
+
+    /**
+     * pick a random client from the whole seeded set.
+     * 
+     * @return a client id.
+     */
+    public String anyClient() {
+        return Fixtures.clientId(ThreadLocalRandom.current().nextInt(clients));
+    }
+}
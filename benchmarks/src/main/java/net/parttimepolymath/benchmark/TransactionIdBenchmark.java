@@ -0,0 +1,186 @@
+package net.parttimepolymath.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.controller.AccountLocks;
+import net.parttimepolymath.controller.RandomIdGenerator;
+import net.parttimepolymath.controller.TimeOrderedIdGenerator;
+import net.parttimepolymath.controller.TransactionIdGenerator;
+import net.parttimepolymath.controller.TransferProcessor;
+import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.DataStoreFactory;
+import net.parttimepolymath.model.DatabaseConfig;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measure making transaction ids, comparing random UUIDs, which every transfer used to make two of, with the time-ordered ids
+ * made now, at 1 and 8 threads sharing one generator. The transfer variants make transfers through TransferProcessor with
+ * each kind of id, against the in-memory database and one kept on disk, to show what the order of the keys does to the rate at
+ * which the transaction table takes inserts. Its primary key leads with the transaction id, so random ids land anywhere in the
+ * index while ordered ones append to its end.
+ *
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionIdBenchmark {
+    /**
+     * amount to move on each transfer. This is small enough that no seeded account runs dry.
+     */
+    private static final long AMOUNT = 1;
+
+    /**
+     * shared random id generator.
+     */
+    private final TransactionIdGenerator random = new RandomIdGenerator();
+    /**
+     * shared time-ordered id generator.
+     */
+    private final TransactionIdGenerator ordered = new TimeOrderedIdGenerator(1);
+
+    /**
+     * a store to make transfers against, with the kind of id the transfers use.
+     */
+    @State(Scope.Benchmark)
+    public static class Ledger {
+        /**
+         * the kind of transaction id: random or ordered.
+         */
+        @Param({ "random", "ordered" })
+        public String ids;
+
+        /**
+         * where the database is kept: memory, or file, synced every half second.
+         */
+        @Param({ "memory", "file" })
+        public String database;
+
+        /**
+         * number of clients to seed.
+         */
+        @Param({ "250" })
+        public int clients;
+
+        /**
+         * the database in use.
+         */
+        private DatabaseConfig config;
+        /**
+         * the directory holding a disk-backed database, or null.
+         */
+        private File directory;
+        /**
+         * the DataStore under test.
+         */
+        private DataStore dataStore;
+        /**
+         * the id generator the transfers use.
+         */
+        private TransactionIdGenerator generator;
+        /**
+         * the locks serialising transfers.
+         */
+        private final AccountLocks locks = new AccountLocks();
+
+        /**
+         * create and seed the database.
+         *
+         * @throws IOException if the directory for the database cannot be made.
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            if ("memory".equals(database)) {
+                config = DatabaseConfig.IN_MEMORY;
+            } else {
+                directory = Files.createTempDirectory("transfer-db").toFile();
+                config = new DatabaseConfig(DatabaseConfig.FILE_PREFIX + new File(directory, "transfer").getPath(), "SA", "",
+                        DatabaseConfig.DEFAULT_POOL_MIN, DatabaseConfig.DEFAULT_POOL_MAX, false);
+            }
+            dataStore = DataStoreFactory.makeDataStore(Fixtures.createScript(clients), config);
+            generator = "random".equals(ids) ? new RandomIdGenerator() : new TimeOrderedIdGenerator(1);
+        }
+
+        /**
+         * discard the database.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            DataStoreFactory.shutdownDatabase(config);
+            FileUtils.deleteQuietly(directory);
+        }
+
+        /**
+         * transfer between two distinct accounts picked from the whole seeded set.
+         *
+         * @return the transfer result.
+         */
+        TransferResult anyTransfer() {
+            int accounts = clients * Fixtures.ACCOUNTS_PER_CLIENT;
+            int from = ThreadLocalRandom.current().nextInt(accounts);
+            int to = (from + 1 + ThreadLocalRandom.current().nextInt(accounts - 1)) % accounts;
+            return new TransferProcessor(new TransferRequest(Fixtures.accountId(from), Fixtures.accountId(to), AMOUNT), dataStore,
+                    locks, null, generator).execute();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String random() {
+        return random.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String randomContended() {
+        return random.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String ordered() {
+        return ordered.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String orderedContended() {
+        return ordered.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransferResult transfer(final Ledger ledger) {
+        return ledger.anyTransfer();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TransferResult transferParallel(final Ledger ledger) {
+        return ledger.anyTransfer();
+    }
+}
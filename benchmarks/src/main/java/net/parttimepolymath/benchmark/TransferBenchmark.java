@@ -0,0 +1,72 @@
+package net.parttimepolymath.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.controller.TransferProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measure the full transfer path through TransferProcessor.execute. The uncontended variant spreads transfers over every
+ * seeded account from a single thread, and the parallel variant does the same from several threads, so comparing the two shows
+ * how well transfers on unrelated accounts scale. The contended variant runs several threads over a handful of accounts.
+ * 
+ * @author robert
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+    /**
+     * amount to move on each transfer. This is small enough that no seeded account runs dry.
+     */
+    private static final long AMOUNT = 1;
+
+    @Benchmark
+    @Threads(1)
+    public TransferResult transfer(final StoreState state) {
+        return anyTransfer(state);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TransferResult transferParallel(final StoreState state) {
+        return anyTransfer(state);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TransferResult transferContended(final StoreState state) {
+        int from = ThreadLocalRandom.current().nextInt(StoreState.HOT_ACCOUNTS);
+        int to = (from + 1 + ThreadLocalRandom.current().nextInt(StoreState.HOT_ACCOUNTS - 1)) % StoreState.HOT_ACCOUNTS;
+        return new TransferProcessor(new TransferRequest(Fixtures.accountId(from), Fixtures.accountId(to), AMOUNT), state.dataStore)
+                .execute();
+    }
+
+    /**
+     * transfer between two distinct accounts picked from the whole seeded set.
+     * 
+     * @param state the benchmark state.
+     * @return the transfer result.
+     */
+    private static TransferResult anyTransfer(final StoreState state) {
+        String from = state.anyAccount();
+        String to = state.anyAccount();
+        while (to.equals(from)) {
+            to = state.anyAccount();
+        }
+        return new TransferProcessor(new TransferRequest(from, to, AMOUNT), state.dataStore).execute();
+    }
+}
@@ -0,0 +1,143 @@
+package net.parttimepolymath.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.api.TransferCodec;
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.controller.TimeOrderedIdGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaMapper;
+
+/**
+ * measure encoding and decoding the bodies of a transfer in each media type the transfer end points take: JSON through a
+ * shared ObjectMapper, as the Jersey provider does it, and the binary format through TransferCodec. The payloads are a single
+ * request, a single result and a batch of 100 results as {@code POST /transfers} returns them. The size of each encoded
+ * payload is printed when the trial starts, to compare the bytes on the wire; run with {@code -prof gc} to see the allocation.
+ *
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+    /**
+     * number of results in the batch payload.
+     */
+    private static final int BATCH = 100;
+
+    /**
+     * which payload to encode and decode.
+     */
+    @Param({ "request", "result", "batch" })
+    public String payload;
+
+    /**
+     * the media type: json or protobuf.
+     */
+    @Param({ "json", "protobuf" })
+    public String format;
+
+    /**
+     * the shared mapper.
+     */
+    private ObjectMapper mapper;
+    /**
+     * the object to encode.
+     */
+    private Object value;
+    /**
+     * the type to decode to with the mapper.
+     */
+    private JavaType type;
+    /**
+     * the encoded form of the object, to decode.
+     */
+    private byte[] encoded;
+
+    /**
+     * build the payload and print its size.
+     *
+     * @throws IOException if the payload cannot be serialised.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = new JodaMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        TimeOrderedIdGenerator ids = new TimeOrderedIdGenerator(1);
+        switch (payload) {
+        case "request":
+            value = new TransferRequest(Fixtures.accountId(0), Fixtures.accountId(1), 10000);
+            type = mapper.getTypeFactory().constructType(TransferRequest.class);
+            break;
+        case "result":
+            value = new TransferResult(200, "OK", ids.nextId());
+            type = mapper.getTypeFactory().constructType(TransferResult.class);
+            break;
+        default:
+            List<TransferResult> results = new ArrayList<TransferResult>();
+            for (int i = 0; i < BATCH; i++) {
+                results.add(i % 4 == 0 ? new TransferResult(520, "Insufficient funds", "") : new TransferResult(200, "OK", ids
+                        .nextId()));
+            }
+            value = results;
+            type = mapper.getTypeFactory().constructCollectionType(List.class, TransferResult.class);
+            break;
+        }
+        encoded = encode();
+        System.out.println(payload + " as " + format + ": " + encoded.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        if ("json".equals(format)) {
+            return mapper.writeValueAsBytes(value);
+        }
+        switch (payload) {
+        case "request":
+            return TransferCodec.encode((TransferRequest) value);
+        case "result":
+            return TransferCodec.encode((TransferResult) value);
+        default:
+            @SuppressWarnings("unchecked")
+            List<TransferResult> results = (List<TransferResult>) value;
+            return TransferCodec.encodeResults(results);
+        }
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        if ("json".equals(format)) {
+            return mapper.readValue(encoded, type);
+        }
+        switch (payload) {
+        case "request":
+            return TransferCodec.decodeRequest(encoded);
+        case "result":
+            return TransferCodec.decodeResult(encoded);
+        default:
+            return TransferCodec.decodeResults(encoded);
+        }
+    }
+}
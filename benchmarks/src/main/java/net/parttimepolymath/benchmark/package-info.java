@@ -0,0 +1,7 @@
+/**
+ * JMH benchmarks for the transfer pipeline, the data stores and the JSON representations.
+ * 
+ * @author robert
+ */
+package net.parttimepolymath.benchmark;
+
@@ -4,17 +4,32 @@ import java.net.URI;
 
 import javax.ws.rs.core.UriBuilder;
 
+import net.parttimepolymath.api.EndpointTimer;
+import net.parttimepolymath.api.ObjectMapperProvider;
+import net.parttimepolymath.api.ProtobufProvider;
 import net.parttimepolymath.api.StatusService;
 import net.parttimepolymath.api.TransferService;
 
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.glassfish.jersey.jackson.JacksonFeature;
-import org.glassfish.jersey.jetty.JettyHttpContainerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.servlet.ServletContainer;
 
 /**
  * this is the wrapper on the Jetty server. This is broken out of the main app so that we can use the
  * app to run a server and as a test harness.
+ * <p>
+ * Jersey runs as a servlet rather than in its own Jetty container, which does not work with the version of Jetty that
+ * supports HTTP/2 and has its gzip handler in the server.
  * 
  * @author robert
  */
@@ -23,12 +38,24 @@ public final class JettyServer {
      * the port we will run on
      */
     private final int port;
+    /**
+     * true if requests should be handled on virtual threads rather than a pool of platform threads.
+     */
+    private final boolean virtualThreads;
+    /**
+     * how connections are accepted and requests handled.
+     */
+    private final ServerConfig config;
+    /**
+     * the running server, or null if not started.
+     */
+    private Server jettyServer;
 
     /**
      * default constructor.
      */
     public JettyServer() {
-        port = 8080;
+        this(8080);
     }
 
     /**
@@ -37,23 +64,105 @@ public final class JettyServer {
      * @param port the port to specify, assumed but not required to be a useful number.
      */
     public JettyServer(final int port) {
+        this(port, false);
+    }
+
+    /**
+     * construct to use a specified port and choice of request threads.
+     * 
+     * @param port the port to specify, assumed but not required to be a useful number.
+     * @param virtualThreads true if requests should be handled on virtual threads, which needs Java 21 or later.
+     */
+    public JettyServer(final int port, final boolean virtualThreads) {
+        this(port, virtualThreads, ServerConfig.DEFAULT);
+    }
+
+    /**
+     * primary constructor.
+     * 
+     * @param port the port to specify, assumed but not required to be a useful number.
+     * @param virtualThreads true if requests should be handled on virtual threads, which needs Java 21 or later.
+     * @param config how connections are accepted and requests handled, assumed non-null.
+     */
+    public JettyServer(final int port, final boolean virtualThreads, final ServerConfig config) {
         this.port = port;
+        this.virtualThreads = virtualThreads;
+        this.config = config;
     }
 
     /**
-     * start an embedded Jetty. This could use considerable more work - it would be very nice to ensure that we cleanly shut down.
+     * start an embedded Jetty. This returns once the server is accepting requests.
      * 
-     * @throws Exception if starting up or stopping the server fails.
+     * @throws Exception if starting up the server fails.
      */
-    public void start() throws Exception {
+    public synchronized void start() throws Exception {
         URI baseUri = UriBuilder.fromUri("http://localhost/").port(port).build();
-        ResourceConfig config = new ResourceConfig(StatusService.class, TransferService.class).register(JacksonFeature.class);
-        Server jettyServer = JettyHttpContainerFactory.createServer(baseUri, config);
-        try {
-            jettyServer.join();
-            jettyServer.start();
-        } finally {
-            jettyServer.destroy();
+        ResourceConfig resources = new ResourceConfig(StatusService.class, TransferService.class).register(JacksonFeature.class)
+                .register(ObjectMapperProvider.class).register(ProtobufProvider.class).register(EndpointTimer.class);
+
+        Server server = new Server(virtualThreads ? new VirtualThreadPool() : new QueuedThreadPool(config.getThreadsMax(),
+                config.getThreadsMin()));
+        HttpConfiguration http = new HttpConfiguration();
+        http.setRequestHeaderSize(config.getHeaderSize());
+        ConnectionFactory[] factories;
+        if (config.isH2c()) {
+            // HTTP/1.1 comes first, so that it is what a connection speaks unless it upgrades or opens with the HTTP/2 preface
+            HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(http);
+            h2c.setMaxConcurrentStreams(config.getH2cStreams());
+            factories = new ConnectionFactory[] { new HttpConnectionFactory(http), h2c };
+        } else {
+            factories = new ConnectionFactory[] { new HttpConnectionFactory(http) };
+        }
+        ServerConnector connector = new ServerConnector(server, config.getAcceptors(), config.getSelectors(), factories);
+        connector.setPort(baseUri.getPort());
+        connector.setIdleTimeout(config.getIdleTimeout());
+        server.addConnector(connector);
+
+        ServletHolder holder = new ServletHolder(new ServletContainer(resources));
+        holder.setAsyncSupported(true);
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        context.addServlet(holder, "/*");
+        if (config.isGzip()) {
+            GzipHandler gzip = new GzipHandler();
+            gzip.setMinGzipSize(config.getGzipMinSize());
+            gzip.setHandler(context);
+            server.setHandler(gzip);
+        } else {
+            server.setHandler(context);
+        }
+        server.start();
+        jettyServer = server;
+    }
+
+    /**
+     * block until the server is stopped. This could use considerable more work - it would be very nice to ensure that we cleanly
+     * shut down.
+     * 
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void join() throws InterruptedException {
+        Server server;
+        synchronized (this) {
+            server = jettyServer;
+        }
+        if (server != null) {
+            server.join();
+        }
+    }
+
+    /**
+     * stop the server if it is running.
+     * 
+     * @throws Exception if stopping the server fails.
+     */
+    public synchronized void stop() throws Exception {
+        if (jettyServer != null) {
+            try {
+                jettyServer.stop();
+            } finally {
+                jettyServer.destroy();
+                jettyServer = null;
+            }
         }
     }
 }
@@ -0,0 +1,422 @@
+package net.parttimepolymath;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import net.parttimepolymath.api.ProtobufProvider;
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.metrics.LatencyHistogram;
+import net.parttimepolymath.metrics.LatencySummary;
+import net.parttimepolymath.util.IndexSelector;
+
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.jackson.JacksonFeature;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.jaxrs.json.JacksonJaxbJsonProvider;
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+
+/**
+ * load generator exercising a running server with a mix of transfers, account and client lookups and status requests, and
+ * reporting the throughput and latency percentiles it saw. Like the {@link Tester}, this assumes the service is on the same
+ * localhost.
+ * <p>
+ * The accounts are read from the creation script the server was seeded with, so every request names an account or client
+ * that exists. Each transfer moves one unit between two accounts of the same currency. Accounts are chosen uniformly or with
+ * a zipfian skew, from random numbers seeded by the profile, so a run can be repeated.
+ * <p>
+ * Each request is timed twice: from when it was due to be sent, which is what a caller of the server would see, and from
+ * when it was actually sent, which is the time the server took. The two differ only when the load is open-loop and the
+ * generator fell behind its schedule.
+ *
+ * @author robert
+ */
+public class LoadGenerator {
+    /**
+     * matches a row of the account table in the creation script: account id, client id, currency, balance and open flag.
+     */
+    private static final Pattern ACCOUNT_ROW = Pattern
+            .compile("\\(\\s*'([^']+)'\\s*,\\s*'([^']+)'\\s*,\\s*'([A-Z]{3})'\\s*,\\s*-?[0-9.]+\\s*,\\s*[01]\\s*\\)");
+    /**
+     * the number of times to look for a transfer source whose currency has another account, before giving up.
+     */
+    private static final int SOURCE_ATTEMPTS = 100;
+    /**
+     * the number of microseconds in a millisecond, for printing.
+     */
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    /**
+     * the shape of the load.
+     */
+    private final LoadProfile profile;
+    /**
+     * the id of each account.
+     */
+    private final String[] accounts;
+    /**
+     * the client of each account, by account index.
+     */
+    private final String[] clients;
+    /**
+     * the indexes of the accounts sharing each account's currency, by account index.
+     */
+    private final int[][] peers;
+    /**
+     * chooses the accounts.
+     */
+    private final IndexSelector selector;
+    /**
+     * the Jersey client being used.
+     */
+    private final Client client;
+    /**
+     * the base reference for all end points.
+     */
+    private final WebTarget baseTarget;
+    /**
+     * the media type transfers are sent and answered in.
+     */
+    private final String transferType;
+    /**
+     * latency of each operation from when it was due, by operation index.
+     */
+    private final LatencyHistogram[] responseTimes = new LatencyHistogram[LoadProfile.OPERATIONS];
+    /**
+     * latency of every operation from when it was due.
+     */
+    private final LatencyHistogram responseTime = new LatencyHistogram();
+    /**
+     * latency of every operation from when it was sent.
+     */
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    /**
+     * count of results of each operation by code: the HTTP status, or for a transfer the result code of the transfer.
+     */
+    private final List<ConcurrentMap<Integer, LongAdder>> results = new ArrayList<ConcurrentMap<Integer, LongAdder>>();
+    /**
+     * count of requests that failed without a response.
+     */
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * constructor sending transfers as JSON.
+     *
+     * @param port the port we hope to find the service on.
+     * @param profile the shape of the load.
+     * @param script the creation script the server was seeded with.
+     * @throws IllegalArgumentException if the script holds no accounts.
+     */
+    public LoadGenerator(final int port, final LoadProfile profile, final String script) {
+        this(port, profile, script, MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * primary constructor.
+     *
+     * @param port the port we hope to find the service on.
+     * @param profile the shape of the load.
+     * @param script the creation script the server was seeded with.
+     * @param transferType the media type to send transfers and ask for their results in: JSON or
+     *            {@link net.parttimepolymath.api.TransferService#APPLICATION_PROTOBUF}.
+     * @throws IllegalArgumentException if the script holds no accounts.
+     */
+    public LoadGenerator(final int port, final LoadProfile profile, final String script, final String transferType) {
+        this.profile = profile;
+        this.transferType = transferType;
+        List<String[]> rows = readAccounts(script);
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("the creation script holds no accounts");
+        }
+        accounts = new String[rows.size()];
+        clients = new String[rows.size()];
+        Map<String, List<Integer>> byCurrency = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = rows.get(i)[0];
+            clients[i] = rows.get(i)[1];
+            List<Integer> group = byCurrency.get(rows.get(i)[2]);
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                byCurrency.put(rows.get(i)[2], group);
+            }
+            group.add(i);
+        }
+        peers = new int[accounts.length][];
+        for (List<Integer> group : byCurrency.values()) {
+            int[] indexes = new int[group.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = group.get(i);
+            }
+            for (int index : indexes) {
+                peers[index] = indexes;
+            }
+        }
+        selector = new IndexSelector(accounts.length, profile.isZipfian() ? IndexSelector.ZIPFIAN_THETA : 0.0, profile.getSeed());
+        for (int i = 0; i < LoadProfile.OPERATIONS; i++) {
+            responseTimes[i] = new LatencyHistogram();
+            results.add(new ConcurrentHashMap<Integer, LongAdder>());
+        }
+
+        // the JDK keeps only five idle connections to a host by default, which would have most connections reopened.
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", Integer.toString(profile.getConcurrency()));
+        }
+        final JacksonJsonProvider jacksonJsonProvider = new JacksonJaxbJsonProvider().configure(
+                DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        ClientConfig cc = new ClientConfig(jacksonJsonProvider).register(JacksonFeature.class).register(ProtobufProvider.class)
+                .property(ClientProperties.CONNECT_TIMEOUT, Integer.toString(5000))
+                .property(ClientProperties.READ_TIMEOUT, Integer.toString(30000));
+        client = ClientBuilder.newClient(cc);
+        baseTarget = client.target("http://localhost:" + port);
+    }
+
+    /**
+     * find the accounts in a creation script.
+     *
+     * @param script the creation script.
+     * @return the account id, client id and currency of each account, in the order of the script.
+     */
+    static List<String[]> readAccounts(final String script) {
+        List<String[]> rows = new ArrayList<String[]>();
+        Matcher matcher = ACCOUNT_ROW.matcher(script);
+        while (matcher.find()) {
+            rows.add(new String[] { matcher.group(1), matcher.group(2), matcher.group(3) });
+        }
+        return rows;
+    }
+
+    /**
+     * run the load for the duration of the profile, and print what was seen.
+     *
+     * @throws InterruptedException if interrupted while waiting for the load to finish.
+     */
+    public void execute() throws InterruptedException {
+        System.out.println("load: " + profile.getDuration() + "s, " + profile.getConcurrency() + " connections, "
+                + (profile.getRate() > 0 ? profile.getRate() + " requests/s" : "closed loop") + ", mix " + mixText() + ", "
+                + accounts.length + " accounts chosen " + (selector.isZipfian() ? "zipfian" : "uniformly") + ", seed "
+                + profile.getSeed() + ", transfers as " + transferType);
+
+        final long interval = profile.getRate() > 0 ? TimeUnit.SECONDS.toNanos(1) / profile.getRate() : 0L;
+        final long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        final long end = start + TimeUnit.SECONDS.toNanos(profile.getDuration());
+        final AtomicLong tickets = new AtomicLong();
+        ExecutorService workers = Executors.newFixedThreadPool(profile.getConcurrency());
+        for (int i = 0; i < profile.getConcurrency(); i++) {
+            final Random random = new Random(profile.getSeed() + i);
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    work(random, interval, start, end, tickets);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(profile.getDuration() + 60L, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        client.close();
+        report(elapsed, interval > 0 ? Math.max(0L, (end - start + interval - 1) / interval - tickets.get()) : 0L);
+    }
+
+    /**
+     * send requests until the end of the run. With an interval each request takes the next slot of the shared schedule,
+     * waits for it, and is timed from it. Slots left unclaimed when the run ends are reported as unsent.
+     *
+     * @param random this worker's source of random numbers.
+     * @param interval nanoseconds between scheduled requests, or 0 for a closed loop.
+     * @param start the start of the run.
+     * @param end the end of the run.
+     * @param tickets the number of slots claimed so far.
+     */
+    private void work(final Random random, final long interval, final long start, final long end, final AtomicLong tickets) {
+        int totalWeight = profile.getTotalWeight();
+        while (true) {
+            long due;
+            if (interval > 0) {
+                if (System.nanoTime() >= end) {
+                    return;
+                }
+                due = start + tickets.getAndIncrement() * interval;
+                if (due >= end) {
+                    return;
+                }
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                due = Math.max(start, System.nanoTime());
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (due >= end) {
+                    return;
+                }
+            }
+            int operation = profile.chooseOperation(random.nextInt(totalWeight));
+            long sent = System.nanoTime();
+            Integer code = call(operation, random);
+            long done = System.nanoTime();
+            if (code == null) {
+                failures.increment();
+            } else {
+                count(operation, code);
+                responseTimes[operation].record(done - due);
+                responseTime.record(done - due);
+                serviceTime.record(done - sent);
+            }
+        }
+    }
+
+    /**
+     * make one request.
+     *
+     * @param operation the operation index.
+     * @param random this worker's source of random numbers.
+     * @return the HTTP status, or for a transfer that was answered the result code of the transfer, or null if the request
+     *         failed without a response.
+     */
+    private Integer call(final int operation, final Random random) {
+        try {
+            int account = selector.next(random);
+            switch (operation) {
+            case LoadProfile.TRANSFER:
+                for (int i = 0; i < SOURCE_ATTEMPTS && peers[account].length < 2; i++) {
+                    account = selector.next(random);
+                }
+                int[] group = peers[account];
+                int to = group[random.nextInt(group.length)];
+                while (to == account && group.length > 1) {
+                    to = group[random.nextInt(group.length)];
+                }
+                Response transfer = baseTarget.path("/transfer/1.0/transfer").request(transferType)
+                        .post(Entity.entity(new TransferRequest(accounts[account], accounts[to], 1L), transferType));
+                try {
+                    return transfer.getStatus() == 200 ? transfer.readEntity(TransferResult.class).getResultCode() : transfer
+                            .getStatus();
+                } finally {
+                    transfer.close();
+                }
+            case LoadProfile.ACCOUNT:
+                return get(baseTarget.path("/transfer/1.0/account/").path(accounts[account]));
+            case LoadProfile.CLIENT:
+                return get(baseTarget.path("/transfer/1.0/client/").path(clients[account]));
+            default:
+                return get(baseTarget.path("/status"));
+            }
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * make a GET request, reading the whole response so the connection can be reused.
+     *
+     * @param target the target of the call.
+     * @return the HTTP status.
+     */
+    private int get(final WebTarget target) {
+        Response response = target.request(MediaType.APPLICATION_JSON).get();
+        try {
+            response.readEntity(String.class);
+            return response.getStatus();
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * count a result.
+     *
+     * @param operation the operation index.
+     * @param code the result code.
+     */
+    private void count(final int operation, final int code) {
+        ConcurrentMap<Integer, LongAdder> counts = results.get(operation);
+        LongAdder adder = counts.get(code);
+        if (adder == null) {
+            LongAdder created = new LongAdder();
+            adder = counts.putIfAbsent(code, created);
+            if (adder == null) {
+                adder = created;
+            }
+        }
+        adder.increment();
+    }
+
+    /**
+     * @return the mix as name=weight pairs.
+     */
+    private String mixText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LoadProfile.OPERATIONS; i++) {
+            text.append(i == 0 ? "" : " ").append(LoadProfile.operationName(i)).append('=').append(profile.getWeight(i));
+        }
+        return text.toString();
+    }
+
+    /**
+     * print the throughput and latency percentiles of the run.
+     *
+     * @param elapsed the length of the run in nanoseconds.
+     * @param unsent the number of scheduled requests never sent because the run ended first.
+     */
+    private void report(final long elapsed, final long unsent) {
+        long completed = responseTime.getCount();
+        double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+        System.out.println(String.format("completed %d requests in %.1fs: %.1f requests/s, %d failed, %d unsent", completed, seconds,
+                completed / seconds, failures.sum(), unsent));
+        System.out.println(String.format("%-10s %10s %10s %10s %10s %10s %10s", "latency ms", "count", "p50", "p90", "p99", "p99.9",
+                "max"));
+        for (int i = 0; i < LoadProfile.OPERATIONS; i++) {
+            if (profile.getWeight(i) > 0) {
+                print(LoadProfile.operationName(i), responseTimes[i].summarise());
+            }
+        }
+        print("all", responseTime.summarise());
+        print("service", serviceTime.summarise());
+        for (int i = 0; i < LoadProfile.OPERATIONS; i++) {
+            if (profile.getWeight(i) > 0) {
+                SortedMap<Integer, Long> codes = new TreeMap<Integer, Long>();
+                for (Map.Entry<Integer, LongAdder> entry : results.get(i).entrySet()) {
+                    codes.put(entry.getKey(), entry.getValue().sum());
+                }
+                System.out.println(LoadProfile.operationName(i) + " results: " + codes);
+            }
+        }
+    }
+
+    /**
+     * print one line of latency percentiles.
+     *
+     * @param name the name of the line.
+     * @param summary the latencies.
+     */
+    private static void print(final String name, final LatencySummary summary) {
+        System.out.println(String.format("%-10s %10d %10.3f %10.3f %10.3f %10.3f %10.3f", name, summary.getCount(), summary.getP50()
+                / MICROS_PER_MILLI, summary.getP90() / MICROS_PER_MILLI, summary.getP99() / MICROS_PER_MILLI, summary.getP999()
+                / MICROS_PER_MILLI, summary.getMax() / MICROS_PER_MILLI));
+    }
+}
@@ -0,0 +1,238 @@
+package net.parttimepolymath;
+
+import java.util.Arrays;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.commons.lang3.math.NumberUtils;
+
+/**
+ * the shape of the load made by the {@link LoadGenerator}: how many requests may be in flight, for how long, at what rate,
+ * in what mix of operations, and how accounts are chosen.
+ * <p>
+ * With a target rate the load is open-loop: requests are scheduled at fixed intervals whether or not earlier ones have
+ * finished, and each is timed from when it was due to be sent rather than from when a connection was free to send it. A
+ * server that stalls is then charged for the requests that queued behind the stall, rather than the stall holding back the
+ * requests that would have measured it. Without a target rate each connection sends its next request as soon as the last
+ * one is answered.
+ *
+ * @author robert
+ */
+@Immutable
+public final class LoadProfile {
+    /**
+     * index of transfers in the mix.
+     */
+    public static final int TRANSFER = 0;
+    /**
+     * index of account lookups in the mix.
+     */
+    public static final int ACCOUNT = 1;
+    /**
+     * index of client lookups in the mix.
+     */
+    public static final int CLIENT = 2;
+    /**
+     * index of status requests in the mix.
+     */
+    public static final int STATUS = 3;
+    /**
+     * the number of operations in the mix.
+     */
+    public static final int OPERATIONS = 4;
+    /**
+     * the name of each operation, by index.
+     */
+    private static final String[] NAMES = { "transfer", "account", "client", "status" };
+
+    /**
+     * default number of requests in flight.
+     */
+    public static final int DEFAULT_CONCURRENCY = 8;
+    /**
+     * default number of seconds to run for.
+     */
+    public static final int DEFAULT_DURATION = 30;
+    /**
+     * default mix of transfers, account lookups, client lookups and status requests.
+     */
+    public static final String DEFAULT_MIX = "70,20,5,5";
+    /**
+     * default seed of the random choices.
+     */
+    public static final long DEFAULT_SEED = 42L;
+
+    /**
+     * the number of requests in flight.
+     */
+    private final int concurrency;
+    /**
+     * the number of seconds to run for.
+     */
+    private final int duration;
+    /**
+     * the target number of requests a second, or 0 to send as fast as answers come back.
+     */
+    private final int rate;
+    /**
+     * the weight of each operation in the mix, by index.
+     */
+    private final int[] mix;
+    /**
+     * true if accounts are chosen with a zipfian rather than uniform distribution.
+     */
+    private final boolean zipfian;
+    /**
+     * the seed of the random choices.
+     */
+    private final long seed;
+
+    /**
+     * primary constructor.
+     *
+     * @param concurrency the number of requests in flight, at least 1.
+     * @param duration the number of seconds to run for, at least 1.
+     * @param rate the target number of requests a second, or 0 to send as fast as answers come back.
+     * @param mix the weight of each operation in the mix, by index, none negative and at least one positive.
+     * @param zipfian true if accounts are chosen with a zipfian rather than uniform distribution.
+     * @param seed the seed of the random choices.
+     * @throws IllegalArgumentException if a value is out of range.
+     */
+    public LoadProfile(final int concurrency, final int duration, final int rate, final int[] mix, final boolean zipfian,
+            final long seed) {
+        if (concurrency < 1 || duration < 1 || rate < 0) {
+            throw new IllegalArgumentException("concurrency and duration must be at least 1, and rate must not be negative");
+        }
+        if (mix.length != OPERATIONS) {
+            throw new IllegalArgumentException("the mix must have a weight for each of " + StringUtils.join(NAMES, ", "));
+        }
+        int total = 0;
+        for (int weight : mix) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("the weights of the mix must not be negative");
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("at least one weight of the mix must be positive");
+        }
+        this.concurrency = concurrency;
+        this.duration = duration;
+        this.rate = rate;
+        this.mix = Arrays.copyOf(mix, mix.length);
+        this.zipfian = zipfian;
+        this.seed = seed;
+    }
+
+    /**
+     * parse a mix given as comma separated weights of transfers, account lookups, client lookups and status requests.
+     *
+     * @param text the weights, for instance "70,20,5,5".
+     * @return the weights, by index.
+     * @throws IllegalArgumentException if there are not four weights, or one is not a whole number.
+     */
+    public static int[] parseMix(final String text) {
+        String[] parts = StringUtils.split(StringUtils.defaultString(text), ',');
+        if (parts.length != OPERATIONS) {
+            throw new IllegalArgumentException("the mix must have a weight for each of " + StringUtils.join(NAMES, ", "));
+        }
+        int[] weights = new int[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            String part = StringUtils.strip(parts[i]);
+            if (!NumberUtils.isDigits(part)) {
+                throw new IllegalArgumentException("not a weight: " + parts[i]);
+            }
+            weights[i] = Integer.parseInt(part);
+        }
+        return weights;
+    }
+
+    /**
+     * @param operation an operation index.
+     * @return the name of the operation.
+     */
+    public static String operationName(final int operation) {
+        return NAMES[operation];
+    }
+
+    /**
+     * @return the number of requests in flight.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return the number of seconds to run for.
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the target number of requests a second, or 0 to send as fast as answers come back.
+     */
+    public int getRate() {
+        return rate;
+    }
+
+    /**
+     * @param operation an operation index.
+     * @return the weight of the operation in the mix.
+     */
+    public int getWeight(final int operation) {
+        return mix[operation];
+    }
+
+    /**
+     * @return true if accounts are chosen with a zipfian rather than uniform distribution.
+     */
+    public boolean isZipfian() {
+        return zipfian;
+    }
+
+    /**
+     * @return the seed of the random choices.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * choose an operation according to the mix.
+     *
+     * @param draw a number from 0 inclusive to the sum of the weights exclusive.
+     * @return the operation index.
+     */
+    public int chooseOperation(final int draw) {
+        int remaining = draw;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (remaining < mix[i]) {
+                return i;
+            }
+            remaining -= mix[i];
+        }
+        throw new IllegalArgumentException("draw is beyond the sum of the weights: " + draw);
+    }
+
+    /**
+     * @return the sum of the weights of the mix.
+     */
+    public int getTotalWeight() {
+        int total = 0;
+        for (int weight : mix) {
+            total += weight;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("concurrency", concurrency)
+                .append("duration", duration).append("rate", rate).append("mix", mix).append("zipfian", zipfian)
+                .append("seed", seed).toString();
+    }
+}
@@ -0,0 +1,223 @@
+package net.parttimepolymath;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * how the {@link JettyServer} accepts connections and handles requests. The defaults are Jetty's own: the numbers of
+ * acceptor and selector threads are worked out from the number of cores, and requests run on a pool of between 8 and 200
+ * threads. The pool sizes are ignored when requests run on virtual threads.
+ * <p>
+ * With cleartext HTTP/2 enabled the connector speaks HTTP/2 to clients that either upgrade to it from HTTP/1.1 or open with
+ * it, which lets a client multiplex up to the stream limit of requests over one connection, and carries on speaking HTTP/1.1
+ * to the rest.
+ * With gzip enabled, responses of at least the minimum size are compressed for clients that accept it; smaller responses are
+ * not worth the time it takes to compress them.
+ *
+ * @author robert
+ */
+@Immutable
+public final class ServerConfig {
+    /**
+     * the number of acceptor or selector threads that lets Jetty choose from the number of cores.
+     */
+    public static final int JETTY_DEFAULT = -1;
+    /**
+     * default number of milliseconds a connection may be idle before it is closed.
+     */
+    public static final int DEFAULT_IDLE_TIMEOUT = 30000;
+    /**
+     * default size in bytes of the buffer for a request line and its headers.
+     */
+    public static final int DEFAULT_HEADER_SIZE = 8192;
+    /**
+     * default number of request threads kept.
+     */
+    public static final int DEFAULT_THREADS_MIN = 8;
+    /**
+     * default largest number of request threads.
+     */
+    public static final int DEFAULT_THREADS_MAX = 200;
+    /**
+     * default largest number of requests a client may have in flight on one HTTP/2 connection.
+     */
+    public static final int DEFAULT_H2C_STREAMS = 128;
+    /**
+     * default size in bytes of the smallest response that is compressed.
+     */
+    public static final int DEFAULT_GZIP_MIN_SIZE = 2048;
+    /**
+     * Jetty's defaults, HTTP/1.1 only and no compression.
+     */
+    public static final ServerConfig DEFAULT = new ServerConfig(JETTY_DEFAULT, JETTY_DEFAULT, DEFAULT_IDLE_TIMEOUT,
+            DEFAULT_HEADER_SIZE, DEFAULT_THREADS_MIN, DEFAULT_THREADS_MAX, false, DEFAULT_H2C_STREAMS, false, DEFAULT_GZIP_MIN_SIZE);
+
+    /**
+     * the number of threads accepting connections, or {@link #JETTY_DEFAULT}.
+     */
+    private final int acceptors;
+    /**
+     * the number of threads selecting connections ready for reading or writing, or {@link #JETTY_DEFAULT}.
+     */
+    private final int selectors;
+    /**
+     * the number of milliseconds a connection may be idle before it is closed.
+     */
+    private final int idleTimeout;
+    /**
+     * the size in bytes of the buffer for a request line and its headers.
+     */
+    private final int headerSize;
+    /**
+     * the number of request threads kept.
+     */
+    private final int threadsMin;
+    /**
+     * the largest number of request threads.
+     */
+    private final int threadsMax;
+    /**
+     * true if cleartext HTTP/2 is spoken as well as HTTP/1.1.
+     */
+    private final boolean h2c;
+    /**
+     * the largest number of requests a client may have in flight on one HTTP/2 connection.
+     */
+    private final int h2cStreams;
+    /**
+     * true if large responses are compressed.
+     */
+    private final boolean gzip;
+    /**
+     * the size in bytes of the smallest response that is compressed.
+     */
+    private final int gzipMinSize;
+
+    /**
+     * primary constructor.
+     *
+     * @param acceptors the number of threads accepting connections, at least 1, or {@link #JETTY_DEFAULT}.
+     * @param selectors the number of threads selecting connections, at least 1, or {@link #JETTY_DEFAULT}.
+     * @param idleTimeout the number of milliseconds a connection may be idle before it is closed, at least 1.
+     * @param headerSize the size in bytes of the buffer for a request line and its headers, at least 1024.
+     * @param threadsMin the number of request threads kept, at least 1.
+     * @param threadsMax the largest number of request threads, at least threadsMin. Jetty refuses to start if this leaves no
+     *            threads for requests once the acceptors and selectors have theirs.
+     * @param h2c true if cleartext HTTP/2 should be spoken as well as HTTP/1.1.
+     * @param h2cStreams the largest number of requests a client may have in flight on one HTTP/2 connection, at least 1.
+     * @param gzip true if large responses should be compressed for clients that accept it.
+     * @param gzipMinSize the size in bytes of the smallest response that is compressed, not negative.
+     * @throws IllegalArgumentException if any of the numbers are out of range.
+     */
+    public ServerConfig(final int acceptors, final int selectors, final int idleTimeout, final int headerSize, final int threadsMin,
+            final int threadsMax, final boolean h2c, final int h2cStreams, final boolean gzip, final int gzipMinSize) {
+        if (acceptors < 1 && acceptors != JETTY_DEFAULT || selectors < 1 && selectors != JETTY_DEFAULT) {
+            throw new IllegalArgumentException("acceptors and selectors must be at least 1, or left to jetty");
+        }
+        if (idleTimeout < 1) {
+            throw new IllegalArgumentException("idle timeout must be at least 1ms");
+        }
+        if (headerSize < 1024) {
+            throw new IllegalArgumentException("header buffer must be at least 1024 bytes");
+        }
+        if (threadsMin < 1 || threadsMax < threadsMin) {
+            throw new IllegalArgumentException("thread pool must have at least 1 thread and no more than its maximum");
+        }
+        if (h2cStreams < 1) {
+            throw new IllegalArgumentException("HTTP/2 connections must allow at least 1 stream");
+        }
+        if (gzipMinSize < 0) {
+            throw new IllegalArgumentException("gzip minimum size must not be negative");
+        }
+        this.acceptors = acceptors;
+        this.selectors = selectors;
+        this.idleTimeout = idleTimeout;
+        this.headerSize = headerSize;
+        this.threadsMin = threadsMin;
+        this.threadsMax = threadsMax;
+        this.h2c = h2c;
+        this.h2cStreams = h2cStreams;
+        this.gzip = gzip;
+        this.gzipMinSize = gzipMinSize;
+    }
+
+    /**
+     * @return the number of threads accepting connections, or {@link #JETTY_DEFAULT}.
+     */
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    /**
+     * @return the number of threads selecting connections, or {@link #JETTY_DEFAULT}.
+     */
+    public int getSelectors() {
+        return selectors;
+    }
+
+    /**
+     * @return the number of milliseconds a connection may be idle before it is closed.
+     */
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @return the size in bytes of the buffer for a request line and its headers.
+     */
+    public int getHeaderSize() {
+        return headerSize;
+    }
+
+    /**
+     * @return the number of request threads kept.
+     */
+    public int getThreadsMin() {
+        return threadsMin;
+    }
+
+    /**
+     * @return the largest number of request threads.
+     */
+    public int getThreadsMax() {
+        return threadsMax;
+    }
+
+    /**
+     * @return true if cleartext HTTP/2 is spoken as well as HTTP/1.1.
+     */
+    public boolean isH2c() {
+        return h2c;
+    }
+
+    /**
+     * @return the largest number of requests a client may have in flight on one HTTP/2 connection.
+     */
+    public int getH2cStreams() {
+        return h2cStreams;
+    }
+
+    /**
+     * @return true if large responses are compressed.
+     */
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /**
+     * @return the size in bytes of the smallest response that is compressed.
+     */
+    public int getGzipMinSize() {
+        return gzipMinSize;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("acceptors", acceptors).append("selectors", selectors)
+                .append("idleTimeout", idleTimeout).append("headerSize", headerSize).append("threadsMin", threadsMin)
+                .append("threadsMax", threadsMax).append("h2c", h2c).append("h2cStreams", h2cStreams).append("gzip", gzip)
+                .append("gzipMinSize", gzipMinSize).toString();
+    }
+}
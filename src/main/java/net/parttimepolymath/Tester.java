@@ -10,8 +10,10 @@ import javax.ws.rs.core.Response;
 import net.parttimepolymath.api.TransferRequest;
 import net.parttimepolymath.api.TransferResult;
 import net.parttimepolymath.controller.Status;
-import net.parttimepolymath.model.Account;
-import net.parttimepolymath.model.Transaction;
+import net.parttimepolymath.model.AccountDetail;
+import net.parttimepolymath.model.ClientDetail;
+import net.parttimepolymath.model.ClientSummary;
+import net.parttimepolymath.model.TransactionSummary;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -143,35 +145,34 @@ public class Tester {
     }
 
     private void checkGetAccount() {
-        Account account = fetchObjectFromTarget("checkGetAccount", Account.class,
+        AccountDetail account = fetchObjectFromTarget("checkGetAccount", AccountDetail.class,
                 baseTarget.path("/transfer/1.0/account/87a4dd04-385a-11e5-a151-feff819cdc9f"));
         Validate.notNull(account);
 
-        account = fetchObjectFromTarget("checkGetAccount", Account.class, baseTarget.path("/transfer/1.0/account/EXPECTTOFAIL"));
+        account = fetchObjectFromTarget("checkGetAccount", AccountDetail.class, baseTarget.path("/transfer/1.0/account/EXPECTTOFAIL"));
         Validate.isTrue(account == null);
     }
 
     private void checkGetClient() {
-        net.parttimepolymath.model.Client client = fetchObjectFromTarget("checkGetClient", net.parttimepolymath.model.Client.class,
+        ClientSummary client = fetchObjectFromTarget("checkGetClient", ClientSummary.class,
                 baseTarget.path("/transfer/1.0/client/146b6c7f-0b8a-43b9-b35d-6489e6daee92"));
         Validate.notNull(client);
 
-        client = fetchObjectFromTarget("checkGetClient", net.parttimepolymath.model.Client.class,
-                baseTarget.path("/transfer/1.0/client/EXPECTTOFAIL"));
+        client = fetchObjectFromTarget("checkGetClient", ClientSummary.class, baseTarget.path("/transfer/1.0/client/EXPECTTOFAIL"));
         Validate.isTrue(client == null);
     }
 
     private void checkDetails() {
-        dump(fetchObjectFromTarget("checkDetails", net.parttimepolymath.model.Client.class,
-                baseTarget.path("/transfer/1.0/client/146b6c7f-0b8a-43b9-b35d-6489e6daee92")));
-        dump(fetchObjectFromTarget("checkDetails", net.parttimepolymath.model.Client.class,
-                baseTarget.path("/transfer/1.0/client/046b6c7f-0b8a-43b9-b35d-6489e6daee91")));
+        dump(fetchObjectFromTarget("checkDetails", ClientDetail.class,
+                baseTarget.path("/transfer/1.0/client/146b6c7f-0b8a-43b9-b35d-6489e6daee92").queryParam("expand", "transactions")));
+        dump(fetchObjectFromTarget("checkDetails", ClientDetail.class,
+                baseTarget.path("/transfer/1.0/client/046b6c7f-0b8a-43b9-b35d-6489e6daee91").queryParam("expand", "transactions")));
     }
 
     private void checkTransfer() {
-        Account fromAccount = fetchObjectFromTarget("checkGetAccount", Account.class,
+        AccountDetail fromAccount = fetchObjectFromTarget("checkGetAccount", AccountDetail.class,
                 baseTarget.path("/transfer/1.0/account/87a4dd04-385a-11e5-a151-feff819cdc9f"));
-        Account toAccount = fetchObjectFromTarget("checkGetAccount", Account.class,
+        AccountDetail toAccount = fetchObjectFromTarget("checkGetAccount", AccountDetail.class,
                 baseTarget.path("/transfer/1.0/account/46fd58da-385a-11e5-a151-feff819cdc9f"));
         System.out.println("-- Starting from balance = " + fromAccount.getBalance().toString());
         System.out.println("-- Starting to   balance = " + toAccount.getBalance().toString());
@@ -189,24 +190,24 @@ public class Tester {
 
         System.out.println(result.toString());
 
-        fromAccount = fetchObjectFromTarget("checkGetAccount", Account.class,
+        fromAccount = fetchObjectFromTarget("checkGetAccount", AccountDetail.class,
                 baseTarget.path("/transfer/1.0/account/87a4dd04-385a-11e5-a151-feff819cdc9f"));
-        toAccount = fetchObjectFromTarget("checkGetAccount", Account.class,
+        toAccount = fetchObjectFromTarget("checkGetAccount", AccountDetail.class,
                 baseTarget.path("/transfer/1.0/account/46fd58da-385a-11e5-a151-feff819cdc9f"));
         System.out.println("-- Final from balance = " + fromAccount.getBalance().toString());
         System.out.println("-- Final to   balance = " + toAccount.getBalance().toString());
     }
 
-    private void dump(final net.parttimepolymath.model.Client client) {
+    private void dump(final ClientDetail client) {
         System.out.println("------------- Client Dump ----------------");
         System.out.println(String.format("Client ID   = %s", client.getClientId()));
         System.out.println(String.format("Client Name = %s", client.getName()));
-        for (Account account : client.getAccounts()) {
+        for (AccountDetail account : client.getAccounts()) {
             System.out.println(String.format("  Account ID = %s", account.getAccountId()));
             System.out.println(String.format("  Balance    = %.3f", account.getBalance().floatValue()));
             System.out.println(String.format("  Currency   = %s", account.getCurrency()));
-            for (Transaction transaction : account.getTransactions()) {
-                System.out.println(String.format("    Transaction ID = %s", transaction.getId().getTxId()));
+            for (TransactionSummary transaction : account.getTransactions()) {
+                System.out.println(String.format("    Transaction ID = %s", transaction.getTxId()));
                 System.out.println(String.format("    Reference      = %s", transaction.getReference()));
                 System.out.println(String.format("    Date           = %s", formatter.print(transaction.getDate())));
                 System.out.println(String.format("    Amount         = %.3f", transaction.getAmount()));
@@ -1,14 +1,26 @@
 package net.parttimepolymath;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
+import javax.ws.rs.core.MediaType;
+
+import net.parttimepolymath.api.TransferService;
 import net.parttimepolymath.controller.Controller;
 import net.parttimepolymath.controller.ControllerHolder;
 import net.parttimepolymath.controller.ControllerImpl;
+import net.parttimepolymath.controller.RandomIdGenerator;
+import net.parttimepolymath.controller.TimeOrderedIdGenerator;
+import net.parttimepolymath.controller.TransactionIdGenerator;
+import net.parttimepolymath.model.CachingDataStore;
 import net.parttimepolymath.model.DataStore;
 import net.parttimepolymath.model.DataStoreFactory;
+import net.parttimepolymath.model.DatabaseConfig;
+import net.parttimepolymath.model.TransferJournal;
+import net.parttimepolymath.util.VirtualThreads;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -16,6 +28,7 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
@@ -28,6 +41,18 @@ public class Transfer {
      * application properties loaded from the classpath.
      */
     private static final Properties PROPERTIES = loadProperties();
+    /**
+     * default number of accounts held in the account cache.
+     */
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    /**
+     * default number of seconds an account may be held in the account cache.
+     */
+    private static final int DEFAULT_CACHE_EXPIRY = 30;
+    /**
+     * default number of milliseconds the journal waits for more transfers before syncing.
+     */
+    private static final int DEFAULT_JOURNAL_WINDOW = 0;
 
     /**
      * main entry point.
@@ -40,6 +65,63 @@ public class Transfer {
         options.addOption("v", "version", false, "print version");
         options.addOption("p", "port", true, "specify the port to run on (defaults to 8080)");
         options.addOption("x", "test", false, "executes in test mode against a running instance");
+        options.addOption("m", "memory", false, "run the server against the in-memory ledger rather than the database");
+        options.addOption("t", "threads", true, "number of threads performing asynchronous transfers (defaults to "
+                + ControllerImpl.DEFAULT_TRANSFER_THREADS + ")");
+        options.addOption("q", "queue", true, "number of asynchronous transfers that may wait for a thread (defaults to "
+                + ControllerImpl.DEFAULT_QUEUE_DEPTH + ")");
+        options.addOption("c", "cache", true, "number of accounts to cache, 0 to disable the cache (defaults to "
+                + DEFAULT_CACHE_SIZE + ")");
+        options.addOption("e", "cache-expiry", true, "seconds an account may be cached for (defaults to " + DEFAULT_CACHE_EXPIRY + ")");
+        options.addOption("d", "database", true, "JDBC URL of the database, for instance " + DatabaseConfig.FILE_PREFIX
+                + "data/transfer to keep it on disk (defaults to an in-memory database)");
+        options.addOption("j", "journal", true, "journal file making transfers durable against an in-memory database or ledger");
+        options.addOption("w", "journal-window", true, "milliseconds the journal waits for more transfers before syncing (defaults to "
+                + DEFAULT_JOURNAL_WINDOW + ")");
+        options.addOption("s", "snapshot", true, "snapshot file loaded in place of the creation script into an empty database, "
+                + "and written on shutdown or a POST to /status/snapshot");
+        options.addOption(null, "pool-min", true, "database connections kept idle (defaults to " + DatabaseConfig.DEFAULT_POOL_MIN + ")");
+        options.addOption(null, "pool-max", true, "largest number of database connections (defaults to " + DatabaseConfig.DEFAULT_POOL_MAX
+                + ")");
+        options.addOption(null, "pool-timeout", true, "milliseconds to wait for a database connection (defaults to "
+                + DatabaseConfig.DEFAULT_ACQUIRE_TIMEOUT + ")");
+        options.addOption(null, "statement-cache", true, "prepared statements cached for each database connection, 0 to disable "
+                + "(defaults to " + DatabaseConfig.DEFAULT_STATEMENT_CACHE + ")");
+        options.addOption(null, "tx-ids", true, "how transaction ids are made: ordered, for time-ordered ids, or random, for random UUIDs "
+                + "(defaults to ordered)");
+        options.addOption(null, "node-id", true, "node number carried by time-ordered transaction ids, from 0 to "
+                + TimeOrderedIdGenerator.MAX_NODE + " (defaults to a random number)");
+        options.addOption("L", "load", false, "with -x, generate load against the running instance rather than running the checks");
+        options.addOption(null, "concurrency", true, "requests in flight under load (defaults to " + LoadProfile.DEFAULT_CONCURRENCY + ")");
+        options.addOption(null, "duration", true, "seconds to generate load for (defaults to " + LoadProfile.DEFAULT_DURATION + ")");
+        options.addOption(null, "rate", true, "requests a second to schedule under load, 0 to send each as soon as the last is answered "
+                + "(defaults to 0)");
+        options.addOption(null, "mix", true, "weights of transfers, account lookups, client lookups and status requests under load "
+                + "(defaults to " + LoadProfile.DEFAULT_MIX + ")");
+        options.addOption(null, "zipfian", false, "choose accounts under load with a zipfian rather than uniform distribution");
+        options.addOption(null, "seed", true, "seed of the random choices under load (defaults to " + LoadProfile.DEFAULT_SEED + ")");
+        options.addOption(null, "protobuf", false, "send transfers under load as " + TransferService.APPLICATION_PROTOBUF
+                + " rather than JSON");
+        options.addOption(null, "dataset", true, "creation script the running instance was seeded with, from which accounts are chosen "
+                + "under load (defaults to the built-in script)");
+        options.addOption("V", "virtual-threads", false, "handle requests and transfers on virtual threads (needs Java 21 or later)");
+        options.addOption(null, "acceptors", true, "threads accepting connections (defaults to a number chosen from the cores)");
+        options.addOption(null, "selectors", true, "threads selecting connections ready for reading or writing (defaults to a number "
+                + "chosen from the cores)");
+        options.addOption(null, "idle-timeout", true, "milliseconds a connection may be idle before it is closed (defaults to "
+                + ServerConfig.DEFAULT_IDLE_TIMEOUT + ")");
+        options.addOption(null, "header-size", true, "bytes buffered for a request line and its headers (defaults to "
+                + ServerConfig.DEFAULT_HEADER_SIZE + ")");
+        options.addOption(null, "http-threads-min", true, "request threads kept, ignored with virtual threads (defaults to "
+                + ServerConfig.DEFAULT_THREADS_MIN + ")");
+        options.addOption(null, "http-threads-max", true, "largest number of request threads, ignored with virtual threads (defaults to "
+                + ServerConfig.DEFAULT_THREADS_MAX + ")");
+        options.addOption(null, "h2c", false, "speak cleartext HTTP/2 as well as HTTP/1.1");
+        options.addOption(null, "h2c-streams", true, "requests a client may have in flight on one HTTP/2 connection (defaults to "
+                + ServerConfig.DEFAULT_H2C_STREAMS + ")");
+        options.addOption(null, "gzip", false, "compress large responses for clients that accept gzip");
+        options.addOption(null, "gzip-min-size", true, "bytes in the smallest response compressed with --gzip (defaults to "
+                + ServerConfig.DEFAULT_GZIP_MIN_SIZE + ")");
 
         CommandLineParser parser = new PosixParser();
         CommandLine cmd;
@@ -57,20 +139,139 @@ public class Transfer {
                     port = 8080;
                 }
 
-                if (cmd.hasOption('x')) {
+                if (cmd.hasOption('x') && cmd.hasOption('L')) {
+                    executeLoad(port, loadProfile(cmd), cmd.getOptionValue("dataset"), cmd.hasOption("protobuf"));
+                } else if (cmd.hasOption('x')) {
                     executeTest(port);
                 } else {
-                    executeServer(port);
+                    int threads = Math.max(1, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue('t')),
+                            ControllerImpl.DEFAULT_TRANSFER_THREADS));
+                    int queue = Math.max(1, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue('q')),
+                            ControllerImpl.DEFAULT_QUEUE_DEPTH));
+                    int cacheSize = Math.max(0, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue('c')), DEFAULT_CACHE_SIZE));
+                    int cacheExpiry = Math.max(1, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue('e')), DEFAULT_CACHE_EXPIRY));
+                    DatabaseConfig database = databaseConfig(cmd);
+                    File journal = cmd.hasOption('j') ? new File(StringUtils.strip(cmd.getOptionValue('j'))) : null;
+                    int window = Math.max(0, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue('w')), DEFAULT_JOURNAL_WINDOW));
+                    File snapshot = cmd.hasOption('s') ? new File(StringUtils.strip(cmd.getOptionValue('s'))) : null;
+                    executeServer(port, cmd.hasOption('m'), database, journal, window, snapshot, threads, queue, cmd.hasOption('V'),
+                            cacheSize, cacheExpiry, transactionIds(cmd), serverConfig(cmd));
                 }
             }
         } catch (ParseException ex) {
             doHelp(options);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            doHelp(options);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
 
     }
 
+    /**
+     * build the database configuration from the command line, bringing out of range pool settings into range.
+     * 
+     * @param cmd the parsed command line.
+     * @return the database configuration.
+     */
+    private static DatabaseConfig databaseConfig(final CommandLine cmd) {
+        String url = cmd.hasOption('d') ? StringUtils.strip(cmd.getOptionValue('d')) : DataStoreFactory.DB_URL;
+        int poolMin = Math.max(1, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("pool-min")), DatabaseConfig.DEFAULT_POOL_MIN));
+        int poolMax = Math.max(poolMin, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("pool-max")),
+                DatabaseConfig.DEFAULT_POOL_MAX));
+        int timeout = Math.max(1, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("pool-timeout")),
+                DatabaseConfig.DEFAULT_ACQUIRE_TIMEOUT));
+        int statementCache = Math.max(0, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("statement-cache")),
+                DatabaseConfig.DEFAULT_STATEMENT_CACHE));
+        return new DatabaseConfig(url, "SA", "", poolMin, poolMax, timeout, statementCache, true);
+    }
+
+    /**
+     * build the server configuration from the command line, bringing out of range values into range.
+     * 
+     * @param cmd the parsed command line.
+     * @return the server configuration.
+     */
+    private static ServerConfig serverConfig(final CommandLine cmd) {
+        int acceptors = NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("acceptors")), ServerConfig.JETTY_DEFAULT);
+        int selectors = NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("selectors")), ServerConfig.JETTY_DEFAULT);
+        int idleTimeout = Math.max(1, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("idle-timeout")),
+                ServerConfig.DEFAULT_IDLE_TIMEOUT));
+        int headerSize = Math.max(1024, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("header-size")),
+                ServerConfig.DEFAULT_HEADER_SIZE));
+        int threadsMin = Math.max(1, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("http-threads-min")),
+                ServerConfig.DEFAULT_THREADS_MIN));
+        int threadsMax = Math.max(threadsMin, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("http-threads-max")),
+                ServerConfig.DEFAULT_THREADS_MAX));
+        int h2cStreams = Math.max(1, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("h2c-streams")),
+                ServerConfig.DEFAULT_H2C_STREAMS));
+        int gzipMinSize = Math.max(0, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("gzip-min-size")),
+                ServerConfig.DEFAULT_GZIP_MIN_SIZE));
+        return new ServerConfig(acceptors < 1 ? ServerConfig.JETTY_DEFAULT : acceptors, selectors < 1 ? ServerConfig.JETTY_DEFAULT
+                : selectors, idleTimeout, headerSize, threadsMin, threadsMax, cmd.hasOption("h2c"), h2cStreams, cmd.hasOption("gzip"),
+                gzipMinSize);
+    }
+
+    /**
+     * build the transaction id generator from the command line.
+     * 
+     * @param cmd the parsed command line.
+     * @return the transaction id generator.
+     * @throws IllegalArgumentException if the kind of id or the node number is not recognised.
+     */
+    private static TransactionIdGenerator transactionIds(final CommandLine cmd) {
+        String kind = StringUtils.strip(cmd.getOptionValue("tx-ids", "ordered"));
+        if ("random".equals(kind)) {
+            return new RandomIdGenerator();
+        }
+        if (!"ordered".equals(kind)) {
+            throw new IllegalArgumentException("transaction ids must be ordered or random, not " + kind);
+        }
+        if (!cmd.hasOption("node-id")) {
+            return new TimeOrderedIdGenerator();
+        }
+        String node = StringUtils.strip(cmd.getOptionValue("node-id"));
+        if (!NumberUtils.isDigits(node)) {
+            throw new IllegalArgumentException("not a node number: " + node);
+        }
+        return new TimeOrderedIdGenerator(NumberUtils.toInt(node, -1));
+    }
+
+    /**
+     * build the load profile from the command line, bringing out of range values into range.
+     * 
+     * @param cmd the parsed command line.
+     * @return the load profile.
+     * @throws IllegalArgumentException if the mix cannot be parsed.
+     */
+    private static LoadProfile loadProfile(final CommandLine cmd) {
+        int concurrency = Math.max(1, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("concurrency")),
+                LoadProfile.DEFAULT_CONCURRENCY));
+        int duration = Math.max(1, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("duration")), LoadProfile.DEFAULT_DURATION));
+        int rate = Math.max(0, NumberUtils.toInt(StringUtils.strip(cmd.getOptionValue("rate")), 0));
+        int[] mix = LoadProfile.parseMix(cmd.hasOption("mix") ? cmd.getOptionValue("mix") : LoadProfile.DEFAULT_MIX);
+        long seed = NumberUtils.toLong(StringUtils.strip(cmd.getOptionValue("seed")), LoadProfile.DEFAULT_SEED);
+        return new LoadProfile(concurrency, duration, rate, mix, cmd.hasOption("zipfian"), seed);
+    }
+
+    /**
+     * generate load against a running server.
+     * 
+     * @param port the port the server runs on.
+     * @param profile the shape of the load.
+     * @param dataset the creation script the server was seeded with, or null for the built-in script.
+     * @param protobuf true to send transfers in the binary format rather than JSON.
+     * @throws IOException if the script cannot be read.
+     * @throws InterruptedException if interrupted while the load runs.
+     */
+    private static void executeLoad(final int port, final LoadProfile profile, final String dataset, final boolean protobuf)
+            throws IOException, InterruptedException {
+        String script = dataset == null ? IOUtils.toString(Transfer.class.getResourceAsStream("/createDB.sql"), "UTF-8")
+                : FileUtils.readFileToString(new File(StringUtils.strip(dataset)), "UTF-8");
+        new LoadGenerator(port, profile, script, protobuf ? TransferService.APPLICATION_PROTOBUF : MediaType.APPLICATION_JSON).execute();
+    }
+
     /**
      * run the tests against a running server.
      */
@@ -83,18 +284,81 @@ public class Transfer {
      * run the server instance. Note that this is a blocking call - we disappear into the jetty server until
      * the JVM is halted.
      * 
+     * @param port the port to run on.
+     * @param memory true if the in-memory ledger should be used rather than the database.
+     * @param database the database to use, or to load the in-memory ledger from.
+     * @param journal the journal file, or null for none.
+     * @param window the number of milliseconds the journal waits for more transfers before syncing.
+     * @param snapshot the snapshot file, or null for none.
+     * @param threads the number of threads performing asynchronous transfers.
+     * @param queue the number of asynchronous transfers that may wait for a thread.
+     * @param virtual true if requests and transfers should run on virtual threads.
+     * @param cacheSize the number of accounts to cache, or 0 for no cache.
+     * @param cacheExpiry the number of seconds an account may be cached for.
+     * @param transactionIds the source of the ids of the transactions written by transfers.
+     * @param serverConfig how the server accepts connections and handles requests.
      * @throws IOException if we cannot read resources
      */
-    private static void executeServer(final int port) throws IOException {
+    private static void executeServer(final int port, final boolean memory, final DatabaseConfig database, final File journal,
+            final int window, final File snapshot, final int threads, final int queue, final boolean virtual, final int cacheSize,
+            final int cacheExpiry, final TransactionIdGenerator transactionIds, final ServerConfig serverConfig) throws IOException {
+        if (virtual && !VirtualThreads.isAvailable()) {
+            System.err.println("Virtual threads need Java 21 or later, running on " + System.getProperty("java.version"));
+            return;
+        }
+        if (journal != null && snapshot != null && database.isFileBacked()) {
+            System.err.println("A disk-backed database is only loaded from a snapshot once, so it cannot be combined with a journal");
+            return;
+        }
         String createScript = IOUtils.toString(Transfer.class.getResourceAsStream("/createDB.sql"), "UTF-8");
-        DataStore dataStore = DataStoreFactory.makeDataStore(createScript);
-        Controller controller = new ControllerImpl(dataStore);
+        DataStore dataStore;
+        final TransferJournal transfers = journal == null ? null : new TransferJournal(journal, window, TimeUnit.MILLISECONDS);
+        if (transfers == null) {
+            dataStore = memory ? DataStoreFactory.makeMemoryDataStore(createScript, database, snapshot)
+                    : DataStoreFactory.makeDataStore(createScript, database, snapshot);
+        } else {
+            dataStore = memory ? DataStoreFactory.makeMemoryDataStore(createScript, database, snapshot, transfers)
+                    : DataStoreFactory.makeDataStore(createScript, database, snapshot, transfers);
+        }
+        if (cacheSize > 0) {
+            dataStore = new CachingDataStore(dataStore, cacheSize, cacheExpiry, TimeUnit.SECONDS);
+        }
+        final Controller controller = new ControllerImpl(dataStore, threads, queue, virtual ? VirtualThreads.factory("transfer-")
+                : null, snapshot, transactionIds);
+        controller.getMetrics().setConnectionPool(DataStoreFactory.getPoolMetrics(database));
         ControllerHolder.setController(controller);
+        if (snapshot != null || transfers != null || database.isFileBacked()) {
+            // the snapshot rolls the journal and must be taken before either is closed, so all are done by the one hook. A clean
+            // shutdown checkpoints the database, so the next start need not replay its log.
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    if (snapshot != null) {
+                        try {
+                            System.out.println("Snapshot written: " + controller.writeSnapshot() + " rows");
+                        } catch (IOException ex) {
+                            ex.printStackTrace();
+                        }
+                    }
+                    if (transfers != null) {
+                        try {
+                            transfers.close();
+                        } catch (IOException ex) {
+                            System.err.println("Journal could not be closed: " + ex.getMessage());
+                        }
+                    }
+                    if (database.isFileBacked()) {
+                        DataStoreFactory.shutdownDatabase(database);
+                    }
+                }
+            });
+        }
 
-        JettyServer instance = new JettyServer(port);
+        JettyServer instance = new JettyServer(port, virtual, serverConfig);
         try {
             ControllerHolder.getController().activate();
             instance.start();
+            instance.join();
         } catch (Exception ex) {
             ex.printStackTrace();
         }
@@ -0,0 +1,119 @@
+package net.parttimepolymath;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.util.VirtualThreads;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Jetty thread pool that runs every task on a new virtual thread. Virtual threads are cheap enough that there is no point in
+ * pooling them, so this never runs short of threads and the only thing it tracks is how many tasks are in flight. Stopping
+ * waits up to the stop timeout for those tasks to finish.
+ *
+ * @author robert
+ */
+@ThreadSafe
+final class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+    /**
+     * factory for the threads.
+     */
+    private final ThreadFactory factory;
+    /**
+     * the number of tasks currently running.
+     */
+    private final AtomicInteger running = new AtomicInteger();
+    /**
+     * monitor used to wait for the pool to stop.
+     */
+    private final Object stopped = new Object();
+    /**
+     * monitor used to wait for the tasks in flight to finish.
+     */
+    private final Object drained = new Object();
+
+    /**
+     * construct a pool running tasks on virtual threads.
+     *
+     * @throws UnsupportedOperationException if this runtime does not support virtual threads.
+     */
+    VirtualThreadPool() {
+        this(VirtualThreads.factory("jetty-"));
+    }
+
+    /**
+     * construct a pool running tasks on threads from the given factory.
+     *
+     * @param threadFactory the factory for the threads, one per task.
+     */
+    VirtualThreadPool(final ThreadFactory threadFactory) {
+        factory = threadFactory;
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        running.incrementAndGet();
+        factory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        synchronized (drained) {
+                            drained.notifyAll();
+                        }
+                    }
+                }
+            }
+        }).start();
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        synchronized (stopped) {
+            while (isRunning()) {
+                stopped.wait();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Waits up to the stop timeout for the tasks in flight to finish. Tasks still running after that are left to finish on
+     * their own.
+     */
+    @Override
+    protected void doStop() throws Exception {
+        long deadline = System.currentTimeMillis() + getStopTimeout();
+        synchronized (drained) {
+            long remaining = getStopTimeout();
+            while (running.get() > 0 && remaining > 0) {
+                drained.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+        synchronized (stopped) {
+            stopped.notifyAll();
+        }
+    }
+
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
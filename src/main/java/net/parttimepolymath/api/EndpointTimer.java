@@ -0,0 +1,121 @@
+package net.parttimepolymath.api;
+
+import java.io.IOException;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.controller.Controller;
+import net.parttimepolymath.controller.ControllerHolder;
+import net.parttimepolymath.metrics.LatencyHistogram;
+import net.parttimepolymath.metrics.Metrics;
+
+/**
+ * Jersey feature timing every resource method into the metrics of the current controller, with one histogram per method
+ * named after its class and method, for instance TransferService.doTransfer. The time runs from when the request has been
+ * matched to a method until the response is ready to be written, so a streamed body and the network are not included, and a
+ * suspended request is timed until it is resumed.
+ * <p>
+ * Each method's histogram is looked up when the filter is bound to it, and again only if the controller is replaced, so
+ * recording does not search the metrics. The start time is kept in a request property, which boxes it: that is the one
+ * allocation timing makes per request, and a request property is the only place that follows a suspended request to the
+ * thread that resumes it.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class EndpointTimer implements DynamicFeature {
+    /**
+     * name of the request property holding the System.nanoTime() at which the request was matched.
+     */
+    private static final String START_PROPERTY = EndpointTimer.class.getName() + ".start";
+
+    @Override
+    public void configure(final ResourceInfo resourceInfo, final FeatureContext context) {
+        String name = resourceInfo.getResourceClass().getSimpleName() + "." + resourceInfo.getResourceMethod().getName();
+        context.register(new TimingFilter(name));
+    }
+
+    /**
+     * filter timing a single resource method.
+     */
+    @ThreadSafe
+    private static final class TimingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+        /**
+         * the name of the histogram to record into.
+         */
+        private final String name;
+        /**
+         * the histogram in the metrics of the current controller, or null if there was no controller when it was last looked up.
+         */
+        private volatile Binding binding;
+
+        /**
+         * primary constructor, which looks up the histogram if there is a controller.
+         *
+         * @param name the name of the histogram to record into.
+         */
+        TimingFilter(final String name) {
+            this.name = name;
+            Controller controller = ControllerHolder.getController();
+            if (controller != null) {
+                binding = new Binding(controller.getMetrics(), name);
+            }
+        }
+
+        @Override
+        public void filter(final ContainerRequestContext requestContext) throws IOException {
+            requestContext.setProperty(START_PROPERTY, System.nanoTime());
+        }
+
+        @Override
+        public void filter(final ContainerRequestContext requestContext, final ContainerResponseContext responseContext)
+                throws IOException {
+            Object start = requestContext.getProperty(START_PROPERTY);
+            Controller controller = ControllerHolder.getController();
+            if (!(start instanceof Long) || controller == null) {
+                return;
+            }
+            Metrics metrics = controller.getMetrics();
+            Binding current = binding;
+            if (current == null || current.metrics != metrics) {
+                current = new Binding(metrics, name);
+                binding = current;
+            }
+            current.histogram.recordSince((Long) start);
+        }
+    }
+
+    /**
+     * a histogram, with the metrics it was looked up in.
+     */
+    @Immutable
+    private static final class Binding {
+        /**
+         * the metrics the histogram belongs to.
+         */
+        private final Metrics metrics;
+        /**
+         * the histogram.
+         */
+        private final LatencyHistogram histogram;
+
+        /**
+         * primary constructor, which looks up the histogram.
+         *
+         * @param metrics the metrics to look in.
+         * @param name the name of the histogram.
+         */
+        Binding(final Metrics metrics, final String name) {
+            this.metrics = metrics;
+            histogram = metrics.endpoint(name);
+        }
+    }
+}
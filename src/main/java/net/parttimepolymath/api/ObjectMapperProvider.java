@@ -0,0 +1,34 @@
+package net.parttimepolymath.api;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+/**
+ * supplies the single ObjectMapper that the Jackson provider uses for every JSON request and response, in place of the one it
+ * would otherwise build for itself. The mapper has the Afterburner module, which replaces the reflective calls Jackson makes to
+ * get and set properties with accessors generated as bytecode the first time a class is seen. A mapper is thread safe once
+ * configured, so it is built once and shared, which also means the serialisers it builds for each class are built once.
+ *
+ * @author robert
+ */
+@ThreadSafe
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public final class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
+    /**
+     * the shared mapper.
+     */
+    public static final ObjectMapper MAPPER = new ObjectMapper().registerModule(new AfterburnerModule());
+
+    @Override
+    public ObjectMapper getContext(final Class<?> type) {
+        return MAPPER;
+    }
+}
@@ -0,0 +1,118 @@
+package net.parttimepolymath.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * reads and writes transfer requests and results, singly or as lists, in the {@link TransferService#APPLICATION_PROTOBUF}
+ * media type using {@link TransferCodec}. It is registered with both the server and the load generator's client.
+ *
+ * @author robert
+ */
+@ThreadSafe
+@Provider
+@Consumes(TransferService.APPLICATION_PROTOBUF)
+@Produces(TransferService.APPLICATION_PROTOBUF)
+public final class ProtobufProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+    @Override
+    public boolean isReadable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType) {
+        return isSupported(type, genericType);
+    }
+
+    @Override
+    public Object readFrom(final Class<Object> type, final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType, final MultivaluedMap<String, String> httpHeaders, final InputStream entityStream)
+            throws IOException {
+        byte[] data = IOUtils.toByteArray(entityStream);
+        try {
+            if (TransferRequest.class.equals(type)) {
+                return TransferCodec.decodeRequest(data);
+            }
+            if (TransferResult.class.equals(type)) {
+                return TransferCodec.decodeResult(data);
+            }
+            return elementType(genericType) == TransferRequest.class ? TransferCodec.decodeRequests(data) : TransferCodec
+                    .decodeResults(data);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType) {
+        return isSupported(type, genericType);
+    }
+
+    @Override
+    public long getSize(final Object value, final Class<?> type, final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeTo(final Object value, final Class<?> type, final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders, final OutputStream entityStream)
+            throws IOException {
+        byte[] data;
+        if (value instanceof TransferRequest) {
+            data = TransferCodec.encode((TransferRequest) value);
+        } else if (value instanceof TransferResult) {
+            data = TransferCodec.encode((TransferResult) value);
+        } else if (elementType(genericType) == TransferRequest.class) {
+            data = TransferCodec.encodeRequests((List<TransferRequest>) value);
+        } else {
+            data = TransferCodec.encodeResults((List<TransferResult>) value);
+        }
+        entityStream.write(data);
+    }
+
+    /**
+     * @param type the class of the entity.
+     * @param genericType the declared type of the entity.
+     * @return true if the entity is a request, a result, or a list of either.
+     */
+    private static boolean isSupported(final Class<?> type, final Type genericType) {
+        if (type == TransferRequest.class || type == TransferResult.class) {
+            return true;
+        }
+        if (!List.class.isAssignableFrom(type)) {
+            return false;
+        }
+        Type element = elementType(genericType);
+        return element == TransferRequest.class || element == TransferResult.class;
+    }
+
+    /**
+     * @param genericType the declared type of a list entity.
+     * @return the type of its elements, or null if it is not a parameterised type.
+     */
+    private static Type elementType(final Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            return arguments.length == 1 ? arguments[0] : null;
+        }
+        return null;
+    }
+}
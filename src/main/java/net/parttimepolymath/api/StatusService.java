@@ -1,12 +1,18 @@
 package net.parttimepolymath.api;
 
+import java.io.IOException;
+import java.util.Collections;
+
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import net.parttimepolymath.controller.ControllerHolder;
 import net.parttimepolymath.controller.Status;
+import net.parttimepolymath.metrics.MetricsReport;
 
 /**
  * small service to report the service status.
@@ -15,6 +21,11 @@ import net.parttimepolymath.controller.Status;
  */
 @Path("/status")
 public class StatusService {
+    /**
+     * media type of the Prometheus text exposition format. It is given a lower quality than JSON, so JSON is returned unless
+     * the client prefers text, as Prometheus does.
+     */
+    public static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; qs=0.5";
 
     /**
      * retrieve the current status.
@@ -27,4 +38,51 @@ public class StatusService {
         return ControllerHolder.getController().getStatus();
     }
 
+    /**
+     * retrieve the latency percentiles of each endpoint and data store operation, and the count of each transfer result.
+     * 
+     * @return a report of the current metrics.
+     */
+    @GET
+    @Path("metrics")
+    @Produces(MediaType.APPLICATION_JSON)
+    public MetricsReport getMetrics() {
+        return ControllerHolder.getController().getMetrics().report();
+    }
+
+    /**
+     * retrieve the same metrics as {@link #getMetrics()} for scraping by Prometheus.
+     * 
+     * @return the current metrics in the Prometheus text format.
+     */
+    @GET
+    @Path("metrics")
+    @Produces(PROMETHEUS_TEXT)
+    public String getPrometheusMetrics() {
+        return ControllerHolder.getController().getMetrics().report().toPrometheus();
+    }
+
+    /**
+     * write a snapshot of the data to the server's snapshot file, to be loaded in place of the creation script on the next
+     * start. Transfers wait while the snapshot is written.
+     * 
+     * @return 200 with the number of rows written, 404 if the server has no snapshot file, 409 if the data store cannot be
+     *         snapshotted, or 500 if the snapshot could not be written.
+     */
+    @POST
+    @Path("snapshot")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response writeSnapshot() {
+        try {
+            long rows = ControllerHolder.getController().writeSnapshot();
+            if (rows < 0) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return Response.ok(Collections.singletonMap("rows", rows)).build();
+        } catch (UnsupportedOperationException ex) {
+            return Response.status(Response.Status.CONFLICT).build();
+        } catch (IOException ex) {
+            return Response.serverError().entity(Collections.singletonMap("error", ex.getMessage())).build();
+        }
+    }
 }
@@ -0,0 +1,119 @@
+package net.parttimepolymath.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import net.jcip.annotations.NotThreadSafe;
+import net.parttimepolymath.controller.Controller;
+import net.parttimepolymath.model.Transaction;
+import net.parttimepolymath.model.TransactionHandler;
+import net.parttimepolymath.model.TransactionKey;
+import net.parttimepolymath.util.IsoTimestamp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * writes one page of the history of an account as JSON, directly onto the response as each transaction is read from the
+ * store. The page looks like
+ *
+ * <pre>
+ * {"accountId":"...","transactions":[{"txId":"...","amount":-10.000,"date":"...","reference":"..."}],"next":"..."}
+ * </pre>
+ *
+ * where next is the token to pass as the after parameter to get the following page, or null if this is the last page.
+ * One transaction more than the page size is asked for, and only used to tell whether there is a following page.
+ * <p>
+ * A writer is built for a single response and should not be shared.
+ *
+ * @author robert
+ */
+@NotThreadSafe
+final class TransactionPageWriter implements StreamingOutput, TransactionHandler {
+    /**
+     * factory for the generators. Factories are thread safe once configured, so this can be shared.
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    /**
+     * the controller to read the page from.
+     */
+    private final Controller controller;
+    /**
+     * the account of interest.
+     */
+    private final String accountId;
+    /**
+     * the key of the last transaction on the previous page, or null for the first page.
+     */
+    private final TransactionKey after;
+    /**
+     * the number of transactions to write.
+     */
+    private final int limit;
+    /**
+     * the generator for the response currently being written.
+     */
+    private JsonGenerator generator;
+    /**
+     * the number of transactions written so far.
+     */
+    private int written;
+    /**
+     * the key of the last transaction written.
+     */
+    private TransactionKey last;
+
+    /**
+     * primary constructor.
+     *
+     * @param controller the controller to read the page from.
+     * @param accountId the account of interest.
+     * @param after the key of the last transaction on the previous page, or null for the first page.
+     * @param limit the number of transactions to write, must be positive.
+     */
+    TransactionPageWriter(final Controller controller, final String accountId, final TransactionKey after, final int limit) {
+        this.controller = controller;
+        this.accountId = accountId;
+        this.after = after;
+        this.limit = limit;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(output)) {
+            generator = gen;
+            gen.writeStartObject();
+            gen.writeStringField("accountId", accountId);
+            gen.writeArrayFieldStart("transactions");
+            int read = controller.visitTransactions(accountId, after, limit + 1, this);
+            gen.writeEndArray();
+            if (read > limit) {
+                gen.writeStringField("next", last.toToken());
+            } else {
+                gen.writeNullField("next");
+            }
+            gen.writeEndObject();
+        } finally {
+            generator = null;
+        }
+    }
+
+    @Override
+    public void handle(final Transaction transaction) throws IOException {
+        if (written == limit) {
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringField("txId", transaction.getId().getTxId());
+        generator.writeNumberField("amount", transaction.getAmount());
+        generator.writeFieldName("date");
+        IsoTimestamp.writeUtc(generator, transaction.getDate());
+        generator.writeStringField("reference", transaction.getReference());
+        generator.writeEndObject();
+        last = TransactionKey.of(transaction);
+        written++;
+    }
+}
@@ -0,0 +1,530 @@
+package net.parttimepolymath.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * hand-written codec between transfer requests and results and the protocol buffers wire format, for the
+ * {@link TransferService#APPLICATION_PROTOBUF} media type. The messages are
+ *
+ * <pre>
+ * message TransferRequest  { string fromAccount = 1; string toAccount = 2; int64 amount = 3; }
+ * message TransferResult   { int32 resultCode = 1; string resultMessage = 2; string transactionId = 3; }
+ * message TransferRequests { repeated TransferRequest requests = 1; }
+ * message TransferResults  { repeated TransferResult results = 1; }
+ * </pre>
+ *
+ * so a client can generate its own code from that schema. Nothing here uses reflection: each message is sized exactly, then
+ * written field by field into a single array, and read back the same way. A string field that is null is left out, and a
+ * string field that is missing reads back as null, matching the JSON form. Fields that are not recognised are skipped, so
+ * fields can be added to the schema without breaking older readers.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class TransferCodec {
+    /**
+     * wire type of a varint field.
+     */
+    private static final int VARINT = 0;
+    /**
+     * wire type of an eight byte field.
+     */
+    private static final int FIXED64 = 1;
+    /**
+     * wire type of a length-delimited field.
+     */
+    private static final int LENGTH_DELIMITED = 2;
+    /**
+     * wire type of a four byte field.
+     */
+    private static final int FIXED32 = 5;
+    /**
+     * number of bits of the tag holding the wire type.
+     */
+    private static final int TYPE_BITS = 3;
+    /**
+     * the longest a varint can be.
+     */
+    private static final int MAX_VARINT = 10;
+
+    /**
+     * tag of TransferRequest.fromAccount.
+     */
+    private static final int FROM_ACCOUNT = 1 << TYPE_BITS | LENGTH_DELIMITED;
+    /**
+     * tag of TransferRequest.toAccount.
+     */
+    private static final int TO_ACCOUNT = 2 << TYPE_BITS | LENGTH_DELIMITED;
+    /**
+     * tag of TransferRequest.amount.
+     */
+    private static final int AMOUNT = 3 << TYPE_BITS | VARINT;
+    /**
+     * tag of TransferResult.resultCode.
+     */
+    private static final int RESULT_CODE = 1 << TYPE_BITS | VARINT;
+    /**
+     * tag of TransferResult.resultMessage.
+     */
+    private static final int RESULT_MESSAGE = 2 << TYPE_BITS | LENGTH_DELIMITED;
+    /**
+     * tag of TransferResult.transactionId.
+     */
+    private static final int TRANSACTION_ID = 3 << TYPE_BITS | LENGTH_DELIMITED;
+    /**
+     * tag of the entries of TransferRequests and TransferResults.
+     */
+    private static final int ENTRY = 1 << TYPE_BITS | LENGTH_DELIMITED;
+
+    /**
+     * no instances.
+     */
+    private TransferCodec() {
+    }
+
+    /**
+     * @param request the request to encode, assumed non-null.
+     * @return the encoded request.
+     */
+    public static byte[] encode(final TransferRequest request) {
+        byte[] out = new byte[requestSize(request)];
+        writeRequest(out, 0, request);
+        return out;
+    }
+
+    /**
+     * @param result the result to encode, assumed non-null.
+     * @return the encoded result.
+     */
+    public static byte[] encode(final TransferResult result) {
+        byte[] out = new byte[resultSize(result)];
+        writeResult(out, 0, result);
+        return out;
+    }
+
+    /**
+     * @param requests the requests to encode, none of them null.
+     * @return the encoded list.
+     */
+    public static byte[] encodeRequests(final List<TransferRequest> requests) {
+        int[] sizes = new int[requests.size()];
+        int total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = requestSize(requests.get(i));
+            total += 1 + varintSize(sizes[i]) + sizes[i];
+        }
+        byte[] out = new byte[total];
+        int pos = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            out[pos++] = (byte) ENTRY;
+            pos = writeVarint(out, pos, sizes[i]);
+            pos = writeRequest(out, pos, requests.get(i));
+        }
+        return out;
+    }
+
+    /**
+     * @param results the results to encode, none of them null.
+     * @return the encoded list.
+     */
+    public static byte[] encodeResults(final List<TransferResult> results) {
+        int[] sizes = new int[results.size()];
+        int total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = resultSize(results.get(i));
+            total += 1 + varintSize(sizes[i]) + sizes[i];
+        }
+        byte[] out = new byte[total];
+        int pos = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            out[pos++] = (byte) ENTRY;
+            pos = writeVarint(out, pos, sizes[i]);
+            pos = writeResult(out, pos, results.get(i));
+        }
+        return out;
+    }
+
+    /**
+     * @param data an encoded request.
+     * @return the request.
+     * @throws IllegalArgumentException if the data is not a well-formed message.
+     */
+    public static TransferRequest decodeRequest(final byte[] data) {
+        return new Reader(data, 0, data.length).readRequest();
+    }
+
+    /**
+     * @param data an encoded result.
+     * @return the result.
+     * @throws IllegalArgumentException if the data is not a well-formed message.
+     */
+    public static TransferResult decodeResult(final byte[] data) {
+        return new Reader(data, 0, data.length).readResult();
+    }
+
+    /**
+     * @param data an encoded list of requests.
+     * @return a new list of the requests.
+     * @throws IllegalArgumentException if the data is not a well-formed message.
+     */
+    public static List<TransferRequest> decodeRequests(final byte[] data) {
+        Reader reader = new Reader(data, 0, data.length);
+        List<TransferRequest> requests = new ArrayList<>();
+        while (reader.hasMore()) {
+            int tag = reader.readTag();
+            if (tag == ENTRY) {
+                requests.add(reader.entry().readRequest());
+            } else {
+                reader.skip(tag);
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * @param data an encoded list of results.
+     * @return a new list of the results.
+     * @throws IllegalArgumentException if the data is not a well-formed message.
+     */
+    public static List<TransferResult> decodeResults(final byte[] data) {
+        Reader reader = new Reader(data, 0, data.length);
+        List<TransferResult> results = new ArrayList<>();
+        while (reader.hasMore()) {
+            int tag = reader.readTag();
+            if (tag == ENTRY) {
+                results.add(reader.entry().readResult());
+            } else {
+                reader.skip(tag);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param request a request.
+     * @return the size of the encoded request.
+     */
+    private static int requestSize(final TransferRequest request) {
+        return stringSize(request.getFromAccount()) + stringSize(request.getToAccount()) + 1 + varintSize(request.getAmount());
+    }
+
+    /**
+     * @param result a result.
+     * @return the size of the encoded result.
+     */
+    private static int resultSize(final TransferResult result) {
+        return 1 + varintSize(result.getResultCode()) + stringSize(result.getResultMessage()) + stringSize(result.getTransactionId());
+    }
+
+    /**
+     * write a request.
+     *
+     * @param out where to write.
+     * @param start the position to write at.
+     * @param request the request.
+     * @return the position after the request.
+     */
+    private static int writeRequest(final byte[] out, final int start, final TransferRequest request) {
+        int pos = writeString(out, start, FROM_ACCOUNT, request.getFromAccount());
+        pos = writeString(out, pos, TO_ACCOUNT, request.getToAccount());
+        out[pos++] = (byte) AMOUNT;
+        return writeVarint(out, pos, request.getAmount());
+    }
+
+    /**
+     * write a result.
+     *
+     * @param out where to write.
+     * @param start the position to write at.
+     * @param result the result.
+     * @return the position after the result.
+     */
+    private static int writeResult(final byte[] out, final int start, final TransferResult result) {
+        int pos = start;
+        out[pos++] = (byte) RESULT_CODE;
+        pos = writeVarint(out, pos, result.getResultCode());
+        pos = writeString(out, pos, RESULT_MESSAGE, result.getResultMessage());
+        return writeString(out, pos, TRANSACTION_ID, result.getTransactionId());
+    }
+
+    /**
+     * @param value a possibly null string.
+     * @return the size of the string field, with its tag and length, or 0 if it is null.
+     */
+    private static int stringSize(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = utf8Length(value);
+        return 1 + varintSize(length) + length;
+    }
+
+    /**
+     * @param value a string.
+     * @return the number of bytes it takes in UTF-8.
+     */
+    private static int utf8Length(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return value.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return value.length();
+    }
+
+    /**
+     * write a string field. Account and transaction ids are ASCII, which is copied straight across; anything else is encoded
+     * by the JDK.
+     *
+     * @param out where to write.
+     * @param start the position to write at.
+     * @param tag the tag of the field.
+     * @param value the string, or null to write nothing.
+     * @return the position after the field.
+     */
+    private static int writeString(final byte[] out, final int start, final int tag, final String value) {
+        if (value == null) {
+            return start;
+        }
+        int pos = start;
+        out[pos++] = (byte) tag;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                pos = writeVarint(out, pos, bytes.length);
+                System.arraycopy(bytes, 0, out, pos, bytes.length);
+                return pos + bytes.length;
+            }
+        }
+        pos = writeVarint(out, pos, length);
+        for (int i = 0; i < length; i++) {
+            out[pos++] = (byte) value.charAt(i);
+        }
+        return pos;
+    }
+
+    /**
+     * @param value a value. Negative values take the full ten bytes, as they do for an int32 or int64 field.
+     * @return the size of the value as a varint.
+     */
+    private static int varintSize(final long value) {
+        int size = 1;
+        long rest = value >>> 7;
+        while (rest != 0) {
+            size++;
+            rest >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * write a varint.
+     *
+     * @param out where to write.
+     * @param start the position to write at.
+     * @param value the value.
+     * @return the position after the varint.
+     */
+    private static int writeVarint(final byte[] out, final int start, final long value) {
+        int pos = start;
+        long rest = value;
+        while ((rest & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        out[pos++] = (byte) rest;
+        return pos;
+    }
+
+    /**
+     * reads fields from part of an array. A reader is made for a single message and should not be shared.
+     */
+    @NotThreadSafe
+    private static final class Reader {
+        /**
+         * the data being read.
+         */
+        private final byte[] data;
+        /**
+         * the position of the next byte to read.
+         */
+        private int pos;
+        /**
+         * the position after the last byte of the message.
+         */
+        private final int limit;
+
+        /**
+         * primary constructor.
+         *
+         * @param data the data being read.
+         * @param start the position of the first byte of the message.
+         * @param limit the position after the last byte of the message.
+         */
+        Reader(final byte[] data, final int start, final int limit) {
+            this.data = data;
+            this.pos = start;
+            this.limit = limit;
+        }
+
+        /**
+         * @return true if there are fields left to read.
+         */
+        boolean hasMore() {
+            return pos < limit;
+        }
+
+        /**
+         * @return the next tag.
+         * @throws IllegalArgumentException if the tag is malformed.
+         */
+        int readTag() {
+            long tag = readVarint();
+            if (tag < 1 << TYPE_BITS || tag > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("malformed message: bad tag");
+            }
+            return (int) tag;
+        }
+
+        /**
+         * @return the next varint.
+         * @throws IllegalArgumentException if the varint is malformed or runs past the end of the message.
+         */
+        long readVarint() {
+            long value = 0;
+            for (int i = 0; i < MAX_VARINT; i++) {
+                if (pos >= limit) {
+                    throw new IllegalArgumentException("malformed message: truncated");
+                }
+                byte b = data[pos++];
+                value |= (long) (b & 0x7F) << (7 * i);
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("malformed message: varint too long");
+        }
+
+        /**
+         * @return the length of the next length-delimited field, which is known to be within the message.
+         * @throws IllegalArgumentException if the length runs past the end of the message.
+         */
+        int readLength() {
+            long length = readVarint();
+            if (length < 0 || length > limit - pos) {
+                throw new IllegalArgumentException("malformed message: truncated");
+            }
+            return (int) length;
+        }
+
+        /**
+         * @return the next length-delimited field as a string.
+         */
+        String readString() {
+            int length = readLength();
+            String value = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        /**
+         * @return a reader for the embedded message in the next length-delimited field, which this reader moves past.
+         */
+        Reader entry() {
+            int length = readLength();
+            Reader entry = new Reader(data, pos, pos + length);
+            pos += length;
+            return entry;
+        }
+
+        /**
+         * move past the value of a field that is not recognised.
+         *
+         * @param tag the tag of the field.
+         * @throws IllegalArgumentException if the field has a wire type that is not supported, or runs past the end.
+         */
+        void skip(final int tag) {
+            int skip;
+            switch (tag & ((1 << TYPE_BITS) - 1)) {
+            case VARINT:
+                readVarint();
+                return;
+            case FIXED64:
+                skip = 8;
+                break;
+            case LENGTH_DELIMITED:
+                skip = readLength();
+                break;
+            case FIXED32:
+                skip = 4;
+                break;
+            default:
+                throw new IllegalArgumentException("malformed message: unsupported wire type");
+            }
+            if (skip > limit - pos) {
+                throw new IllegalArgumentException("malformed message: truncated");
+            }
+            pos += skip;
+        }
+
+        /**
+         * @return the request making up the rest of the message.
+         */
+        TransferRequest readRequest() {
+            String from = null;
+            String to = null;
+            long amount = 0;
+            while (hasMore()) {
+                int tag = readTag();
+                switch (tag) {
+                case FROM_ACCOUNT:
+                    from = readString();
+                    break;
+                case TO_ACCOUNT:
+                    to = readString();
+                    break;
+                case AMOUNT:
+                    amount = readVarint();
+                    break;
+                default:
+                    skip(tag);
+                    break;
+                }
+            }
+            return new TransferRequest(from, to, amount);
+        }
+
+        /**
+         * @return the result making up the rest of the message.
+         */
+        TransferResult readResult() {
+            int code = 0;
+            String message = null;
+            String txId = null;
+            while (hasMore()) {
+                int tag = readTag();
+                switch (tag) {
+                case RESULT_CODE:
+                    code = (int) readVarint();
+                    break;
+                case RESULT_MESSAGE:
+                    message = readString();
+                    break;
+                case TRANSACTION_ID:
+                    txId = readString();
+                    break;
+                default:
+                    skip(tag);
+                    break;
+                }
+            }
+            return new TransferResult(code, message, txId);
+        }
+    }
+}
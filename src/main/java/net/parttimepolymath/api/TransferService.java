@@ -1,43 +1,291 @@
 package net.parttimepolymath.api;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
+import net.parttimepolymath.controller.Controller;
 import net.parttimepolymath.controller.ControllerHolder;
-import net.parttimepolymath.model.Account;
-import net.parttimepolymath.model.Client;
+import net.parttimepolymath.controller.TransferCallback;
+import net.parttimepolymath.model.AccountDetail;
+import net.parttimepolymath.model.ClientDetail;
+import net.parttimepolymath.model.ClientSummary;
+import net.parttimepolymath.model.TransactionKey;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
- * Small Jersey service to report the status of the server.
+ * Jersey service exposing clients, accounts and their histories, and taking single and batched transfers between accounts.
  * 
  * @author robert
  */
 @Path("/transfer/1.0")
 public final class TransferService {
+    /**
+     * media type for a stream of newline-delimited JSON objects.
+     */
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    /**
+     * media type for transfer requests and results in the protocol buffers wire format, as read and written by
+     * {@link TransferCodec}.
+     */
+    public static final String APPLICATION_PROTOBUF = "application/x-protobuf";
+    /**
+     * the largest page of transactions that can be asked for.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+    /**
+     * the largest number of recent transactions per account that can be asked for in a client summary.
+     */
+    public static final int MAX_RECENT = 100;
+    /**
+     * value of the expand parameter asking for a client with the complete history of every account.
+     */
+    public static final String EXPAND_TRANSACTIONS = "transactions";
+    /**
+     * header carrying the client's idempotency key for a transfer.
+     */
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    /**
+     * the longest idempotency key accepted, matching the transfer_key table.
+     */
+    public static final int MAX_IDEMPOTENCY_KEY = 64;
+    /**
+     * the largest number of transfers accepted in one batch.
+     */
+    public static final int MAX_BATCH_SIZE = 10000;
+
+    /**
+     * reader used to parse newline-delimited requests, from the shared mapper. Readers are immutable, so this can be shared.
+     */
+    private static final ObjectReader NDJSON_READER = ObjectMapperProvider.MAPPER.reader(TransferRequest.class);
+
+    /**
+     * retrieve an account, with whichever of its transactions the store read with it, as a flat {@link AccountDetail}.
+     * 
+     * @param accountId the account of interest.
+     * @return the account, or null if it is not found.
+     */
     @GET
     @Path("account/{accountId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Account getAccount(@PathParam("accountId") String accountId) {
-        return ControllerHolder.getController().getAccount(accountId);
+    public AccountDetail getAccount(@PathParam("accountId") String accountId) {
+        return AccountDetail.of(ControllerHolder.getController().getAccount(accountId));
     }
 
+    /**
+     * stream one page of the history of an account, ordered by date then transaction id. Pages are found by key rather than
+     * by offset, so each costs the same however deep into the history it is, and the page is written as it is read so the
+     * memory used does not depend on the page size.
+     * 
+     * @param accountId the account of interest.
+     * @param after the next token from the previous page, or null for the first page.
+     * @param limit the number of transactions to return, from 1 to {@link #MAX_PAGE_SIZE}.
+     * @return the streamed page.
+     * @throws BadRequestException if the page key or size are not valid.
+     * @throws NotFoundException if the account does not exist.
+     */
+    @GET
+    @Path("account/{accountId}/transactions")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getTransactions(@PathParam("accountId") final String accountId, @QueryParam("after") final String after,
+            @QueryParam("limit") @DefaultValue("100") final int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        TransactionKey key = null;
+        if (after != null) {
+            try {
+                key = TransactionKey.parse(after);
+            } catch (IllegalArgumentException ex) {
+                throw new BadRequestException("malformed page key", ex);
+            }
+        }
+
+        Controller controller = ControllerHolder.getController();
+        if (controller.getAccount(accountId) == null) {
+            throw new NotFoundException();
+        }
+        return Response.ok(new TransactionPageWriter(controller, accountId, key, limit)).build();
+    }
+
+    /**
+     * retrieve a client. By default this is a {@link ClientSummary}, holding the balance and the most recent transactions of
+     * each account, which costs the same however long the histories are. With expand=transactions a {@link ClientDetail} is
+     * returned instead, with the full history of every account.
+     * 
+     * @param clientId the client of interest.
+     * @param expand null for the summary, or "transactions" for the complete client.
+     * @param recent the number of recent transactions to include for each account in the summary, from 0 to {@link #MAX_RECENT}.
+     * @return 200 with the summary or the client, or 204 if the client is not found.
+     * @throws BadRequestException if expand or recent are not valid.
+     */
     @GET
     @Path("client/{clientId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Client getClient(@PathParam("clientId") String clientId) {
-        return ControllerHolder.getController().getClient(clientId);
+    public Response getClient(@PathParam("clientId") final String clientId, @QueryParam("expand") final String expand,
+            @QueryParam("recent") @DefaultValue("5") final int recent) {
+        if (EXPAND_TRANSACTIONS.equals(expand)) {
+            return found(ClientDetail.of(ControllerHolder.getController().getClient(clientId)));
+        }
+        if (expand != null) {
+            throw new BadRequestException("expand may only be " + EXPAND_TRANSACTIONS);
+        }
+        if (recent < 0 || recent > MAX_RECENT) {
+            throw new BadRequestException("recent must be between 0 and " + MAX_RECENT);
+        }
+        return found(ControllerHolder.getController().getClientSummary(clientId, recent));
     }
 
+    /**
+     * perform a transfer. A client that may retry the request should give it an idempotency key, so that however many times
+     * it is sent the transfer is made at most once, and every attempt gets the result of the one that was made.
+     * 
+     * @param request the request to act on.
+     * @param idempotencyKey the value of the Idempotency-Key header, or null if there was none.
+     * @return the result of the transfer.
+     * @throws BadRequestException if the key is longer than {@link #MAX_IDEMPOTENCY_KEY}.
+     */
     @POST
     @Path("transfer")
-    @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
-    public TransferResult doTransfer(final TransferRequest request) {
-        return ControllerHolder.getController().doTransfer(request);
+    @Consumes({ MediaType.APPLICATION_JSON, APPLICATION_PROTOBUF })
+    @Produces({ MediaType.APPLICATION_JSON, APPLICATION_PROTOBUF })
+    public TransferResult doTransfer(final TransferRequest request, @HeaderParam(IDEMPOTENCY_KEY) final String idempotencyKey) {
+        if (StringUtils.isBlank(idempotencyKey)) {
+            return ControllerHolder.getController().doTransfer(request);
+        }
+        checkIdempotencyKey(idempotencyKey);
+        return ControllerHolder.getController().doTransfer(request, idempotencyKey);
+    }
+
+    /**
+     * perform a transfer without holding a container thread while it happens. The transfer is queued for the controller's
+     * transfer executor, and the response is resumed when it is done. If the queue is full the caller gets a 503 straight away.
+     * An idempotency key is honoured as for {@link #doTransfer(TransferRequest, String)}, so a client that times out waiting
+     * for the response can safely retry, on either endpoint.
+     * 
+     * @param request the request to act on.
+     * @param idempotencyKey the value of the Idempotency-Key header, or null if there was none.
+     * @param response the suspended response.
+     * @throws BadRequestException if the key is longer than {@link #MAX_IDEMPOTENCY_KEY}.
+     */
+    @POST
+    @Path("async/transfer")
+    @Consumes({ MediaType.APPLICATION_JSON, APPLICATION_PROTOBUF })
+    @Produces({ MediaType.APPLICATION_JSON, APPLICATION_PROTOBUF })
+    public void doTransferAsync(final TransferRequest request, @HeaderParam(IDEMPOTENCY_KEY) final String idempotencyKey,
+            @Suspended final AsyncResponse response) {
+        String key = StringUtils.isBlank(idempotencyKey) ? null : idempotencyKey;
+        if (key != null) {
+            checkIdempotencyKey(key);
+        }
+        boolean queued = ControllerHolder.getController().queueTransfer(request, key, new TransferCallback() {
+            @Override
+            public void completed(final TransferResult result) {
+                response.resume(result);
+            }
+        });
+        if (!queued) {
+            response.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", "1").entity(Controller.BUSY)
+                    .build());
+        }
+    }
+
+    /**
+     * perform a batch of transfers, each of which succeeds or fails on its own.
+     * 
+     * @param requests the requests to act on, at most {@link #MAX_BATCH_SIZE} of them.
+     * @return a result for each request, in the same order as the requests.
+     * @throws WebApplicationException with status 413 if there are more than {@link #MAX_BATCH_SIZE} requests.
+     */
+    @POST
+    @Path("transfers")
+    @Consumes({ MediaType.APPLICATION_JSON, APPLICATION_PROTOBUF })
+    @Produces({ MediaType.APPLICATION_JSON, APPLICATION_PROTOBUF })
+    public List<TransferResult> doTransfers(final List<TransferRequest> requests) {
+        if (requests != null && requests.size() > MAX_BATCH_SIZE) {
+            throw tooLarge();
+        }
+        return ControllerHolder.getController().doTransfers(requests);
+    }
+
+    /**
+     * perform a batch of transfers sent as newline-delimited JSON, each of which succeeds or fails on its own. Reading stops as
+     * soon as the batch is found to be too large, so an oversized body is never held in memory.
+     * 
+     * @param body the request body, one transfer request per line, at most {@link #MAX_BATCH_SIZE} of them.
+     * @return a result for each request, in the same order as the requests.
+     * @throws BadRequestException if the body is not a stream of transfer requests.
+     * @throws WebApplicationException with status 413 if there are more than {@link #MAX_BATCH_SIZE} requests.
+     */
+    @POST
+    @Path("transfers")
+    @Consumes(APPLICATION_NDJSON)
+    @Produces({ MediaType.APPLICATION_JSON, APPLICATION_PROTOBUF })
+    public List<TransferResult> doTransfers(final InputStream body) {
+        List<TransferRequest> requests = new ArrayList<>();
+        try (MappingIterator<TransferRequest> iterator = NDJSON_READER.readValues(body)) {
+            while (iterator.hasNextValue()) {
+                if (requests.size() == MAX_BATCH_SIZE) {
+                    throw tooLarge();
+                }
+                requests.add(iterator.nextValue());
+            }
+        } catch (IOException | RuntimeException ex) {
+            if (ex instanceof WebApplicationException) {
+                throw (WebApplicationException) ex;
+            }
+            throw new BadRequestException("malformed transfer stream", ex);
+        }
+        return doTransfers(requests);
+    }
+
+    /**
+     * @param entity the entity found, or null.
+     * @return 200 with the entity, or 204 if there is none, as for a resource method returning the entity directly.
+     */
+    private static Response found(final Object entity) {
+        return entity == null ? Response.noContent().build() : Response.ok(entity).build();
+    }
+
+    /**
+     * refuse an idempotency key that is too long to be recorded.
+     * 
+     * @param idempotencyKey the key, assumed non-null.
+     * @throws BadRequestException if the key is longer than {@link #MAX_IDEMPOTENCY_KEY}.
+     */
+    private static void checkIdempotencyKey(final String idempotencyKey) {
+        if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY) {
+            throw new BadRequestException(IDEMPOTENCY_KEY + " may be at most " + MAX_IDEMPOTENCY_KEY + " characters");
+        }
+    }
+
+    /**
+     * @return the exception refusing a batch of more than {@link #MAX_BATCH_SIZE} transfers.
+     */
+    private static WebApplicationException tooLarge() {
+        return new WebApplicationException("at most " + MAX_BATCH_SIZE + " transfers may be made in one batch",
+                Response.Status.REQUEST_ENTITY_TOO_LARGE);
     }
 }
@@ -0,0 +1,199 @@
+package net.parttimepolymath.controller;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * striped lock manager keyed by account id. Each account id maps onto one of a fixed set of locks, so transfers touching
+ * unrelated accounts almost never wait on each other, while two transfers touching the same account are serialised. The two
+ * stripes for a transfer are always taken in stripe order, so two transfers between the same accounts in opposite directions
+ * cannot deadlock.
+ * <p>
+ * This only serialises transfers made through the same instance. The data layer still re-checks the balance as it writes, so
+ * correctness does not depend on every caller sharing one manager.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class AccountLocks {
+    /**
+     * the smallest number of stripes we will use by default.
+     */
+    private static final int MIN_STRIPES = 64;
+
+    /**
+     * the locks, indexed by stripe.
+     */
+    private final ReentrantLock[] stripes;
+    /**
+     * mask used to map a hash onto a stripe.
+     */
+    private final int stripeMask;
+    /**
+     * count of lock acquisitions, counting a pair of stripes as one.
+     */
+    private final LongAdder acquisitions = new LongAdder();
+    /**
+     * count of acquisitions that had to wait for another thread.
+     */
+    private final LongAdder contentions = new LongAdder();
+
+    /**
+     * construct with a number of stripes scaled to the number of processors.
+     */
+    public AccountLocks() {
+        this(Math.max(MIN_STRIPES, Runtime.getRuntime().availableProcessors() * 16));
+    }
+
+    /**
+     * construct with at least the given number of stripes. The count is rounded up to a power of two.
+     *
+     * @param stripeCount the minimum number of stripes, must be positive.
+     */
+    public AccountLocks(final int stripeCount) {
+        int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        stripeMask = size - 1;
+    }
+
+    /**
+     * lock the stripes for two accounts, blocking until both are held. Every call must be matched by a call to
+     * {@link #unlock(String, String)} with the same account ids, in a finally block.
+     *
+     * @param first one account id, assumed non-null.
+     * @param second the other account id, assumed non-null.
+     */
+    public void lock(final String first, final String second) {
+        int a = stripe(first);
+        int b = stripe(second);
+        acquisitions.increment();
+        boolean waited = acquire(stripes[Math.min(a, b)]);
+        if (a != b) {
+            waited |= acquire(stripes[Math.max(a, b)]);
+        }
+        if (waited) {
+            contentions.increment();
+        }
+    }
+
+    /**
+     * release the stripes taken by {@link #lock(String, String)}.
+     *
+     * @param first one account id, assumed non-null.
+     * @param second the other account id, assumed non-null.
+     */
+    public void unlock(final String first, final String second) {
+        int a = stripe(first);
+        int b = stripe(second);
+        if (a != b) {
+            stripes[Math.max(a, b)].unlock();
+        }
+        stripes[Math.min(a, b)].unlock();
+    }
+
+    /**
+     * lock the stripes for any number of accounts, blocking until all are held. The stripes are taken in stripe order, as for a
+     * pair, so this cannot deadlock against pairs or other sets. Every call must be matched by a call to
+     * {@link #unlockAll(Collection)} with the same account ids, in a finally block.
+     *
+     * @param accountIds the account ids, assumed non-null, none of them null.
+     */
+    public void lockAll(final Collection<String> accountIds) {
+        BitSet held = stripes(accountIds);
+        acquisitions.increment();
+        boolean waited = false;
+        for (int i = held.nextSetBit(0); i >= 0; i = held.nextSetBit(i + 1)) {
+            waited |= acquire(stripes[i]);
+        }
+        if (waited) {
+            contentions.increment();
+        }
+    }
+
+    /**
+     * release the stripes taken by {@link #lockAll(Collection)}.
+     *
+     * @param accountIds the account ids, assumed non-null, none of them null.
+     */
+    public void unlockAll(final Collection<String> accountIds) {
+        BitSet held = stripes(accountIds);
+        for (int i = held.previousSetBit(stripes.length - 1); i >= 0; i = held.previousSetBit(i - 1)) {
+            stripes[i].unlock();
+        }
+    }
+
+    /**
+     * @param accountId an account id, assumed non-null.
+     * @return true if the current thread holds the stripe for the account.
+     */
+    boolean isHeldByCurrentThread(final String accountId) {
+        return stripes[stripe(accountId)].isHeldByCurrentThread();
+    }
+
+    /**
+     * @return the number of stripes.
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * @return the number of times a pair of accounts has been locked.
+     */
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    /**
+     * @return the number of times locking a pair of accounts had to wait for another thread.
+     */
+    public long getContentions() {
+        return contentions.sum();
+    }
+
+    /**
+     * take a lock, trying first without waiting.
+     *
+     * @param lock the lock to take.
+     * @return true if we had to wait for the lock.
+     */
+    private static boolean acquire(final ReentrantLock lock) {
+        if (lock.tryLock()) {
+            return false;
+        }
+        lock.lock();
+        return true;
+    }
+
+    /**
+     * map a set of account ids onto the stripes they need.
+     *
+     * @param accountIds the account ids.
+     * @return the stripe indexes.
+     */
+    private BitSet stripes(final Collection<String> accountIds) {
+        BitSet result = new BitSet(stripes.length);
+        for (String accountId : accountIds) {
+            result.set(stripe(accountId));
+        }
+        return result;
+    }
+
+    /**
+     * map an account id onto a stripe.
+     *
+     * @param accountId the account id.
+     * @return the stripe index.
+     */
+    private int stripe(final String accountId) {
+        int hash = accountId.hashCode();
+        return (hash ^ (hash >>> 16)) & stripeMask;
+    }
+}
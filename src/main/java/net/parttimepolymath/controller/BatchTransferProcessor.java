@@ -0,0 +1,144 @@
+package net.parttimepolymath.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.TransactionPair;
+
+/**
+ * processor class for a batch of transfers. Each request is checked exactly as a single transfer would be, and those that
+ * pass are handed to the data layer in chunks, so that each chunk can be written in a single unit of work. A transfer that
+ * fails does not prevent the rest of the batch being made.
+ * <p>
+ * The account locks of every account in a chunk are held while the chunk is checked and written, so a single transfer through
+ * the same locks cannot spend a balance between the two, and transfers reach the data layer in the order they were made.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+public class BatchTransferProcessor {
+    /**
+     * the largest number of transfers handed to the data layer in one go.
+     */
+    public static final int CHUNK_SIZE = 500;
+
+    /**
+     * the requests being processed by this instance.
+     */
+    private final List<TransferRequest> requests;
+    /**
+     * the injected datastore.
+     */
+    private final DataStore dataStore;
+    /**
+     * the locks serialising transfers on the same accounts.
+     */
+    private final AccountLocks locks;
+    /**
+     * the source of the ids of the transactions written.
+     */
+    private final TransactionIdGenerator ids;
+
+    /**
+     * construct using the account locks and transaction id generator shared by processors that are not given their own.
+     * 
+     * @param rqsts the requests to process, which may be null.
+     * @param store the datastore to read and write to.
+     */
+    public BatchTransferProcessor(final List<TransferRequest> rqsts, final DataStore store) {
+        this(rqsts, store, TransferProcessor.SHARED_LOCKS, TransferProcessor.SHARED_IDS);
+    }
+
+    /**
+     * primary constructor.
+     * 
+     * @param rqsts the requests to process, which may be null.
+     * @param store the datastore to read and write to.
+     * @param accountLocks the locks serialising transfers on the same accounts.
+     * @param transactionIds the source of the ids of the transactions written.
+     */
+    public BatchTransferProcessor(final List<TransferRequest> rqsts, final DataStore store, final AccountLocks accountLocks,
+            final TransactionIdGenerator transactionIds) {
+        requests = rqsts == null ? Collections.<TransferRequest> emptyList() : rqsts;
+        dataStore = store;
+        locks = accountLocks;
+        ids = transactionIds;
+    }
+
+    /**
+     * perform the processing.
+     * 
+     * @return a non-null list of results, one for each request in the same order as the requests.
+     */
+    public List<TransferResult> execute() {
+        List<TransferResult> results = new ArrayList<>(Collections.nCopies(requests.size(), (TransferResult) null));
+
+        for (int start = 0; start < requests.size(); start += CHUNK_SIZE) {
+            int end = Math.min(requests.size(), start + CHUNK_SIZE);
+            List<TransferProcessor> processors = new ArrayList<>(end - start);
+            Set<String> accounts = new HashSet<>();
+
+            for (int i = start; i < end; i++) {
+                TransferProcessor processor = new TransferProcessor(requests.get(i), dataStore, locks, null, ids);
+                if (processor.invalidRequest()) {
+                    results.set(i, TransferProcessor.BAD_RESULT);
+                    processor = null;
+                } else {
+                    accounts.add(requests.get(i).getFromAccount());
+                    accounts.add(requests.get(i).getToAccount());
+                }
+                processors.add(processor);
+            }
+
+            locks.lockAll(accounts);
+            try {
+                processChunk(start, processors, results);
+            } finally {
+                locks.unlockAll(accounts);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * check and write one chunk of the batch. The caller must hold the locks of every account in the chunk.
+     * 
+     * @param start the position in the batch of the first request of the chunk.
+     * @param processors a processor for each request of the chunk, or null for a request that has already been refused.
+     * @param results the results of the whole batch, to be filled in for the chunk.
+     */
+    private void processChunk(final int start, final List<TransferProcessor> processors, final List<TransferResult> results) {
+        List<TransactionPair> pairs = new ArrayList<>(processors.size());
+        List<Integer> positions = new ArrayList<>(processors.size());
+
+        for (int i = 0; i < processors.size(); i++) {
+            TransferProcessor processor = processors.get(i);
+            if (processor == null) {
+                continue;
+            }
+            TransferProcessor.Checked checked = processor.check();
+            if (checked.getRejection() == null) {
+                pairs.add(processor.makeTransactions(checked.getAmount()));
+                positions.add(start + i);
+            } else {
+                results.set(start + i, checked.getRejection());
+            }
+        }
+
+        if (!pairs.isEmpty()) {
+            List<Exception> failures = dataStore.addTransactions(pairs);
+            for (int j = 0; j < pairs.size(); j++) {
+                Exception failure = failures.get(j);
+                results.set(positions.get(j), failure == null ? TransferProcessor.succeeded(pairs.get(j))
+                        : TransferProcessor.failed(failure));
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package net.parttimepolymath.controller;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * simple bean reporting the counters of a cache in the service status.
+ *
+ * @author robert
+ */
+@Immutable
+public final class CacheCounts {
+    /**
+     * number of lookups answered from the cache.
+     */
+    @JsonProperty("hits")
+    private final long hits;
+    /**
+     * number of lookups passed on to the underlying store.
+     */
+    @JsonProperty("misses")
+    private final long misses;
+    /**
+     * number of entries dropped because they expired or the cache was full.
+     */
+    @JsonProperty("evictions")
+    private final long evictions;
+
+    /**
+     * primary constructor.
+     *
+     * @param hits number of lookups answered from the cache.
+     * @param misses number of lookups passed on to the underlying store.
+     * @param evictions number of entries dropped because they expired or the cache was full.
+     */
+    @JsonCreator
+    public CacheCounts(@JsonProperty("hits") final long hits, @JsonProperty("misses") final long misses,
+            @JsonProperty("evictions") final long evictions) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups passed on to the underlying store.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of entries dropped because they expired or the cache was full.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("hits", hits).append("misses", misses)
+                .append("evictions", evictions).toString();
+    }
+}
@@ -1,15 +1,30 @@
 package net.parttimepolymath.controller;
 
+import java.io.IOException;
+import java.util.List;
+
 import net.parttimepolymath.api.TransferRequest;
 import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.metrics.Metrics;
 import net.parttimepolymath.model.Account;
 import net.parttimepolymath.model.Client;
+import net.parttimepolymath.model.ClientSummary;
+import net.parttimepolymath.model.TransactionHandler;
+import net.parttimepolymath.model.TransactionKey;
 
 public interface Controller {
     /**
      * result to return when the service is not active.
      */
     TransferResult UNAVAILABLE = new TransferResult(503, "Service is unavailable", "");
+    /**
+     * result to return when there is no room to queue an asynchronous transfer.
+     */
+    TransferResult BUSY = new TransferResult(503, "Service is busy", "");
+    /**
+     * result to return when a transfer with the same idempotency key is still being performed.
+     */
+    TransferResult IN_PROGRESS = new TransferResult(409, "Transfer with this key is in progress", "");
 
     /**
      * report the status of the service.
@@ -18,6 +33,13 @@ public interface Controller {
      */
     Status getStatus();
 
+    /**
+     * get the latency histograms and result counters of the service.
+     * 
+     * @return the metrics, which are updated as requests are served.
+     */
+    Metrics getMetrics();
+
     /**
      * set the service to be active.
      */
@@ -31,6 +53,19 @@ public interface Controller {
      */
     Account getAccount(String accountId);
 
+    /**
+     * pass one page of the history of an account to a handler, ordered by date then transaction id. This is not counted as
+     * a request, as it is expected to follow a call to {@link #getAccount(String)} that checks the account exists.
+     * 
+     * @param accountId the account of interest.
+     * @param after the key of the last transaction on the previous page, or null to start with the first transaction.
+     * @param limit the largest number of transactions to pass on.
+     * @param handler receives each transaction as it is read.
+     * @return the number of transactions passed on, which is zero if the service is not active.
+     * @throws IOException if the handler fails.
+     */
+    int visitTransactions(String accountId, TransactionKey after, int limit, TransactionHandler handler) throws IOException;
+
     /**
      * retrieve a specified client.
      * 
@@ -39,6 +74,15 @@ public interface Controller {
      */
     Client getClient(String clientId);
 
+    /**
+     * retrieve a summary of a specified client, with the balances and recent transactions of its accounts.
+     * 
+     * @param clientId the client id of interest.
+     * @param recent the number of recent transactions to include for each account.
+     * @return the summary, or null if the client is not found or the service is not active.
+     */
+    ClientSummary getClientSummary(String clientId, int recent);
+
     /**
      * perform a transfer and return the result.
      * 
@@ -46,4 +90,52 @@ public interface Controller {
      * @return the result to return.
      */
     TransferResult doTransfer(TransferRequest request);
+
+    /**
+     * perform a transfer at most once for a given idempotency key. If a transfer has already been made with the key, its
+     * result is returned and nothing is written. If one is being made, {@link #IN_PROGRESS} is returned.
+     * 
+     * @param request the request to act on.
+     * @param idempotencyKey the key the client gave the transfer, or null to behave as {@link #doTransfer(TransferRequest)}.
+     * @return the result to return.
+     */
+    TransferResult doTransfer(TransferRequest request, String idempotencyKey);
+
+    /**
+     * perform a batch of transfers and return the result of each.
+     * 
+     * @param requests the requests to act on.
+     * @return the results, one for each request and in the same order.
+     */
+    List<TransferResult> doTransfers(List<TransferRequest> requests);
+
+    /**
+     * queue a transfer to be performed on the transfer executor rather than the calling thread.
+     * 
+     * @param request the request to act on.
+     * @param callback receives the result once the transfer has been performed.
+     * @return true if the transfer was queued, false if the queue is full and the callback will never be called.
+     */
+    boolean queueTransfer(TransferRequest request, TransferCallback callback);
+
+    /**
+     * queue a transfer made with an idempotency key, as {@link #doTransfer(TransferRequest, String)}, to be performed on the
+     * transfer executor rather than the calling thread.
+     * 
+     * @param request the request to act on.
+     * @param idempotencyKey the key the client gave the request, or null or empty if it gave none.
+     * @param callback receives the result once the transfer has been performed.
+     * @return true if the transfer was queued, false if the queue is full and the callback will never be called.
+     */
+    boolean queueTransfer(TransferRequest request, String idempotencyKey, TransferCallback callback);
+
+    /**
+     * write a snapshot of the data store to the snapshot file the controller was given, which can be loaded in place of the
+     * creation script on the next start.
+     * 
+     * @return the number of rows written, or -1 if the controller was given no snapshot file.
+     * @throws IOException if the snapshot cannot be written.
+     * @throws UnsupportedOperationException if the data store cannot be snapshotted.
+     */
+    long writeSnapshot() throws IOException;
 }
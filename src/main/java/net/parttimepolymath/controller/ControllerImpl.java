@@ -1,38 +1,132 @@
 package net.parttimepolymath.controller;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.parttimepolymath.api.TransferRequest;
 import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.metrics.Metrics;
 import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.CachingDataStore;
 import net.parttimepolymath.model.Client;
+import net.parttimepolymath.model.ClientSummary;
 import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.TimedDataStore;
+import net.parttimepolymath.model.TransactionHandler;
+import net.parttimepolymath.model.TransactionKey;
 
 import org.apache.commons.lang3.StringUtils;
 
 public class ControllerImpl implements Controller {
     /**
-     * the system status.
+     * default number of threads performing queued transfers.
+     */
+    public static final int DEFAULT_TRANSFER_THREADS = 8;
+    /**
+     * default number of transfers that may wait for a thread.
+     */
+    public static final int DEFAULT_QUEUE_DEPTH = 1024;
+    /**
+     * number of idempotency keys whose results are remembered.
+     */
+    private static final int IDEMPOTENCY_KEYS = 100000;
+    /**
+     * hours for which the result of a transfer made with an idempotency key is remembered.
+     */
+    private static final int IDEMPOTENCY_HOURS = 24;
+
+    /**
+     * latencies and result counts of the service.
+     */
+    private final Metrics metrics = new Metrics();
+    /**
+     * the system status, counting requests into the metrics.
      */
-    private final Status status = new Status("inactive");
+    private final Status status = new Status("inactive", metrics.getRequests());
     /**
-     * injected DataStore.
+     * injected DataStore, timed into the metrics.
      */
     private final DataStore dataStore;
+    /**
+     * the injected DataStore if it is an account cache, so its counters can be reported, or null.
+     */
+    private final CachingDataStore accountCache;
+    /**
+     * executor for queued transfers. This has a bounded queue and rejects work when the queue is full.
+     */
+    private final ThreadPoolExecutor transferExecutor;
+    /**
+     * locks serialising transfers made through this controller on the same accounts.
+     */
+    private final AccountLocks accountLocks = new AccountLocks();
+    /**
+     * results of recent transfers made with an idempotency key.
+     */
+    private final IdempotencyCache idempotencyCache = new IdempotencyCache(IDEMPOTENCY_KEYS, IDEMPOTENCY_HOURS, TimeUnit.HOURS);
+    /**
+     * the file snapshots are written to, or null if none was given.
+     */
+    private final File snapshotFile;
+    /**
+     * the source of the ids of the transactions written by transfers.
+     */
+    private final TransactionIdGenerator transactionIds;
 
     /**
-     * primary constructor.
+     * construct with the default transfer executor settings, no snapshots and time ordered transaction ids.
      * 
      * @param store a DataStore to inject.
      */
     public ControllerImpl(final DataStore store) {
-        dataStore = store;
+        this(store, DEFAULT_TRANSFER_THREADS, DEFAULT_QUEUE_DEPTH, null, null, null);
+    }
+
+    /**
+     * primary constructor.
+     * 
+     * @param store a DataStore to inject.
+     * @param transferThreads the number of threads performing queued transfers, must be positive.
+     * @param queueDepth the number of queued transfers that may wait for a thread, must be positive.
+     * @param threadFactory the factory for transfer threads, for instance to run queued transfers on virtual threads, or null
+     *            for the default daemon threads. The number of threads still bounds how many queued transfers run at once.
+     * @param snapshotFile the file snapshots are written to, or null if snapshots are not wanted.
+     * @param transactionIds the source of the ids of the transactions written by transfers, or null for time ordered ids.
+     */
+    public ControllerImpl(final DataStore store, final int transferThreads, final int queueDepth, final ThreadFactory threadFactory,
+            final File snapshotFile, final TransactionIdGenerator transactionIds) {
+        this.snapshotFile = snapshotFile;
+        this.transactionIds = transactionIds == null ? new TimeOrderedIdGenerator() : transactionIds;
+        dataStore = new TimedDataStore(store, metrics);
+        accountCache = store instanceof CachingDataStore ? (CachingDataStore) store : null;
+        transferExecutor = new ThreadPoolExecutor(transferThreads, transferThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueDepth), threadFactory == null ? new TransferThreadFactory() : threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
     }
 
     @Override
     public Status getStatus() {
-        status.updateCount();
+        status.updateCount("getStatus");
+        status.setLockContentions(accountLocks.getContentions());
+        status.setSqlStatements(dataStore.getStatementCount());
+        if (accountCache != null) {
+            status.setAccountCache(new CacheCounts(accountCache.getHits(), accountCache.getMisses(), accountCache.getEvictions()));
+        }
         return status;
     }
 
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public void activate() {
         status.setStatus("active");
@@ -43,26 +137,148 @@ public class ControllerImpl implements Controller {
         if (!StringUtils.equals("active", status.getStatus())) {
             return null;
         }
-        status.updateCount();
+        status.updateCount("getAccount");
         return dataStore.getAccount(accountId);
     }
 
+    @Override
+    public int visitTransactions(final String accountId, final TransactionKey after, final int limit,
+            final TransactionHandler handler) throws IOException {
+        if (!StringUtils.equals("active", status.getStatus())) {
+            return 0;
+        }
+        return dataStore.visitTransactions(accountId, after, limit, handler);
+    }
+
     @Override
     public Client getClient(final String clientId) {
         if (!StringUtils.equals("active", status.getStatus())) {
             return null;
         }
-        status.updateCount();
+        status.updateCount("getClient");
         return dataStore.getClient(clientId);
     }
 
+    @Override
+    public ClientSummary getClientSummary(final String clientId, final int recent) {
+        if (!StringUtils.equals("active", status.getStatus())) {
+            return null;
+        }
+        status.updateCount("getClientSummary");
+        return dataStore.getClientSummary(clientId, recent);
+    }
+
     @Override
     public TransferResult doTransfer(final TransferRequest request) {
         if (!StringUtils.equals("active", status.getStatus())) {
-            return UNAVAILABLE;
+            return counted(UNAVAILABLE);
+        }
+        TransferProcessor processor = new TransferProcessor(request, dataStore, accountLocks, null, transactionIds);
+        status.updateCount("doTransfer");
+        return counted(processor.execute());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A retry is normally answered from an in-memory index of recent results. Otherwise the store is asked whether it has
+     * recorded a transfer with the key, so a retry after a restart or an eviction is still not applied twice.
+     */
+    @Override
+    public TransferResult doTransfer(final TransferRequest request, final String idempotencyKey) {
+        if (StringUtils.isEmpty(idempotencyKey)) {
+            return doTransfer(request);
+        }
+        if (!StringUtils.equals("active", status.getStatus())) {
+            return counted(UNAVAILABLE);
+        }
+        status.updateCount("doTransfer");
+
+        TransferResult result = idempotencyCache.claim(idempotencyKey);
+        if (result != null) {
+            return counted(result);
+        }
+        try {
+            String txId = dataStore.findTransfer(idempotencyKey);
+            result = txId != null ? TransferProcessor.replayed(txId)
+                    : new TransferProcessor(request, dataStore, accountLocks, idempotencyKey, transactionIds).execute();
+            return counted(result);
+        } finally {
+            idempotencyCache.complete(idempotencyKey, result);
+        }
+    }
+
+    @Override
+    public List<TransferResult> doTransfers(final List<TransferRequest> requests) {
+        List<TransferResult> results;
+        if (!StringUtils.equals("active", status.getStatus())) {
+            results = Collections.nCopies(requests == null ? 0 : requests.size(), UNAVAILABLE);
+        } else {
+            BatchTransferProcessor processor = new BatchTransferProcessor(requests, dataStore, accountLocks, transactionIds);
+            status.updateCount("doTransfers");
+            results = processor.execute();
+        }
+        for (TransferResult result : results) {
+            counted(result);
+        }
+        return results;
+    }
+
+    @Override
+    public boolean queueTransfer(final TransferRequest request, final TransferCallback callback) {
+        return queueTransfer(request, null, callback);
+    }
+
+    @Override
+    public boolean queueTransfer(final TransferRequest request, final String idempotencyKey, final TransferCallback callback) {
+        try {
+            transferExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.completed(doTransfer(request, idempotencyKey));
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException ex) {
+            metrics.recordResult(BUSY.getResultCode());
+            return false;
+        }
+    }
+
+    @Override
+    public long writeSnapshot() throws IOException {
+        if (snapshotFile == null) {
+            return -1L;
+        }
+        status.updateCount("writeSnapshot");
+        return dataStore.writeSnapshot(snapshotFile);
+    }
+
+    /**
+     * count a transfer result in the metrics.
+     * 
+     * @param result the result, assumed non-null.
+     * @return the result.
+     */
+    private TransferResult counted(final TransferResult result) {
+        metrics.recordResult(result.getResultCode());
+        return result;
+    }
+
+    /**
+     * thread factory naming the transfer threads, and making them daemons so they do not hold up shutdown.
+     */
+    private static final class TransferThreadFactory implements ThreadFactory {
+        /**
+         * counter used to number the threads.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "transfer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
-        TransferProcessor processor = new TransferProcessor(request, dataStore);
-        status.updateCount();
-        return processor.execute();
     }
 }
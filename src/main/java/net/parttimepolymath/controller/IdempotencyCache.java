@@ -0,0 +1,166 @@
+package net.parttimepolymath.controller;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.api.TransferResult;
+
+/**
+ * bounded, time-evicting index of the results of transfers made with an idempotency key, so that a client retrying a
+ * transfer is answered from memory. Before a transfer with a key is attempted the key is claimed, and while it is claimed
+ * any other request with the same key is told the transfer is in progress rather than attempting it a second time.
+ * <p>
+ * This is only an index: the store records the key with each transfer it makes, and is the authority once an entry has
+ * expired or been evicted. Results reporting a failure of the service itself are not remembered, so those requests can be
+ * retried.
+ *
+ * @author robert
+ */
+@ThreadSafe
+final class IdempotencyCache {
+    /**
+     * the largest number of entries to hold.
+     */
+    private final int maximumSize;
+    /**
+     * how long a result is remembered, in nanoseconds.
+     */
+    private final long timeToLive;
+    /**
+     * the claimed keys and remembered results, by key.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * count of requests answered from the index.
+     */
+    private final LongAdder replays = new LongAdder();
+
+    /**
+     * primary constructor.
+     *
+     * @param size the largest number of results to remember, must be positive.
+     * @param ttl how long a result is remembered.
+     * @param unit the unit of the ttl.
+     */
+    IdempotencyCache(final int size, final long ttl, final TimeUnit unit) {
+        maximumSize = size;
+        timeToLive = unit.toNanos(ttl);
+    }
+
+    /**
+     * claim a key for a transfer about to be attempted.
+     *
+     * @param key the idempotency key, assumed non-null.
+     * @return null if the key was claimed and the caller must attempt the transfer and then call
+     *         {@link #complete(String, TransferResult)}, otherwise the result to return without attempting it.
+     */
+    TransferResult claim(final String key) {
+        Entry claimed = new Entry(null, 0L);
+        while (true) {
+            Entry existing = entries.get(key);
+            if (existing == null) {
+                makeRoom();
+                if (entries.putIfAbsent(key, claimed) == null) {
+                    return null;
+                }
+            } else if (existing.result == null) {
+                return Controller.IN_PROGRESS;
+            } else if (!existing.isExpired(System.nanoTime())) {
+                replays.increment();
+                return existing.result;
+            } else {
+                entries.remove(key, existing);
+            }
+        }
+    }
+
+    /**
+     * release a claimed key, remembering the result of the transfer.
+     *
+     * @param key the claimed key.
+     * @param result the result of the transfer, or null if it could not be attempted.
+     */
+    void complete(final String key, final TransferResult result) {
+        if (result == null || result.getResultCode() >= 500) {
+            entries.remove(key);
+        } else {
+            entries.put(key, new Entry(result, System.nanoTime() + timeToLive));
+        }
+    }
+
+    /**
+     * @return the number of keys currently claimed or remembered.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of requests answered from the index.
+     */
+    long getReplays() {
+        return replays.sum();
+    }
+
+    /**
+     * make sure there is room for one more entry. When the index is full, expired results are dropped first, then whatever
+     * results come to hand until a sixteenth of the index is free. Claimed keys are never dropped.
+     */
+    private void makeRoom() {
+        if (entries.size() < maximumSize) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.result != null && entry.isExpired(now)) {
+                it.remove();
+            }
+        }
+        int target = maximumSize - 1 - maximumSize / 16;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && entries.size() > target;) {
+            if (it.next().result != null) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * a claimed key or a remembered result.
+     */
+    @Immutable
+    private static final class Entry {
+        /**
+         * the result of the transfer, or null while the key is claimed.
+         */
+        private final TransferResult result;
+        /**
+         * the System.nanoTime() after which the result should be forgotten.
+         */
+        private final long expires;
+
+        /**
+         * primary constructor.
+         *
+         * @param result the result of the transfer, or null for a claimed key.
+         * @param expires the System.nanoTime() after which the result should be forgotten.
+         */
+        Entry(final TransferResult result, final long expires) {
+            this.result = result;
+            this.expires = expires;
+        }
+
+        /**
+         * @param now the current System.nanoTime().
+         * @return true if the result should be forgotten.
+         */
+        boolean isExpired(final long now) {
+            return now - expires > 0;
+        }
+    }
+}
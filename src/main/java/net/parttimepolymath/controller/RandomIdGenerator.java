@@ -0,0 +1,20 @@
+package net.parttimepolymath.controller;
+
+import java.util.UUID;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * makes transaction ids that are random UUIDs, as transfers always used to. Every id costs a draw from the shared SecureRandom,
+ * and consecutive ids land anywhere in the primary key index of the transaction table.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+public final class RandomIdGenerator implements TransactionIdGenerator {
+
+    @Override
+    public String nextId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -1,12 +1,13 @@
 package net.parttimepolymath.controller;
 
-import java.util.concurrent.atomic.AtomicLong;
+import net.parttimepolymath.metrics.RequestCounter;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -22,10 +23,28 @@ public final class Status {
     private String status;
 
     /**
-     * number of requests received since start up.
+     * requests received since start up, in total and by endpoint.
      */
     @JsonIgnore
-    private final AtomicLong requestCount;
+    private final RequestCounter requestCount;
+
+    /**
+     * number of transfers that had to wait for another transfer on the same accounts, as last reported.
+     */
+    @JsonIgnore
+    private volatile long lockContentions;
+
+    /**
+     * number of SQL statements the data store has sent to its database, as last reported.
+     */
+    @JsonIgnore
+    private volatile long sqlStatements;
+
+    /**
+     * account cache hits, misses and evictions as last reported, or null if there is no account cache.
+     */
+    @JsonIgnore
+    private volatile CacheCounts accountCache;
 
     /**
      * default constructor.
@@ -51,20 +70,102 @@ public final class Status {
      */
     @JsonCreator
     public Status(@JsonProperty("status") String aStatus, @JsonProperty("requestCount") long count) {
+        this(aStatus, new RequestCounter(count));
+    }
+
+    /**
+     * construct with a status, counting requests into an existing counter.
+     * 
+     * @param aStatus the status to use.
+     * @param counter the counter to count requests into.
+     */
+    public Status(final String aStatus, final RequestCounter counter) {
         status = aStatus;
-        requestCount = new AtomicLong(count);
+        requestCount = counter;
     }
 
     /**
      * update the transaction count.
      */
     public void updateCount() {
-        requestCount.incrementAndGet();
+        requestCount.increment();
+    }
+
+    /**
+     * update the transaction count, attributing the request to an endpoint.
+     * 
+     * @param endpoint the name of the endpoint, which should be one of a fixed set.
+     */
+    public void updateCount(final String endpoint) {
+        requestCount.increment(endpoint);
     }
 
     @JsonProperty("requestCount")
     public long getCount() {
-        return requestCount.get();
+        return requestCount.getCount();
+    }
+
+    /**
+     * @return the request counter, with the counts by endpoint and the recent request rates.
+     */
+    @JsonIgnore
+    public RequestCounter getRequests() {
+        return requestCount;
+    }
+
+    /**
+     * @return the number of transfers that had to wait for another transfer on the same accounts.
+     */
+    @JsonProperty("lockContentions")
+    public long getLockContentions() {
+        return lockContentions;
+    }
+
+    /**
+     * mutator, record the number of transfers that had to wait for another transfer on the same accounts.
+     * 
+     * @param count the count to store.
+     */
+    @JsonProperty("lockContentions")
+    public void setLockContentions(final long count) {
+        lockContentions = count;
+    }
+
+    /**
+     * @return the number of SQL statements the data store has sent to its database.
+     */
+    @JsonProperty("sqlStatements")
+    public long getSqlStatements() {
+        return sqlStatements;
+    }
+
+    /**
+     * mutator, record the number of SQL statements the data store has sent to its database.
+     * 
+     * @param count the count to store.
+     */
+    @JsonProperty("sqlStatements")
+    public void setSqlStatements(final long count) {
+        sqlStatements = count;
+    }
+
+    /**
+     * @return the account cache counters, or null if there is no account cache.
+     */
+    @JsonProperty("accountCache")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public CacheCounts getAccountCache() {
+        return accountCache;
+    }
+
+    /**
+     * mutator, record the account cache counters.
+     * 
+     * @param counts the counters to store, may be null.
+     */
+    @JsonProperty("accountCache")
+    public void setAccountCache(final CacheCounts counts) {
+        accountCache = counts;
     }
 
     /**
@@ -86,6 +187,7 @@ public final class Status {
     @Override
     public String toString() {
         return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("status", status).append("requestCount", getCount())
-                .toString();
+                .append("lockContentions", lockContentions).append("sqlStatements", sqlStatements)
+                .append("accountCache", accountCache).toString();
     }
 }
@@ -0,0 +1,16 @@
+package net.parttimepolymath.controller;
+
+/**
+ * source of the ids given to the transactions a transfer writes. Every id must be unique, and fit the 36 characters of the
+ * tx_id column. Implementations are shared by every thread making transfers, so must be thread safe.
+ * 
+ * @author robert
+ */
+public interface TransactionIdGenerator {
+    /**
+     * make a new transaction id.
+     * 
+     * @return a new id, guaranteed non-null and at most 36 characters long.
+     */
+    String nextId();
+}
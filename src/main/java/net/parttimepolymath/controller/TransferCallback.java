@@ -0,0 +1,17 @@
+package net.parttimepolymath.controller;
+
+import net.parttimepolymath.api.TransferResult;
+
+/**
+ * receives the result of a transfer that was queued for asynchronous processing.
+ * 
+ * @author robert
+ */
+public interface TransferCallback {
+    /**
+     * called once the transfer has been performed. This is called on the thread that performed the transfer.
+     * 
+     * @param result the result of the transfer, guaranteed non-null.
+     */
+    void completed(TransferResult result);
+}
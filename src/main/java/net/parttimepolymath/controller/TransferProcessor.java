@@ -1,15 +1,18 @@
 package net.parttimepolymath.controller;
 
-import java.math.BigDecimal;
-import java.util.UUID;
-
+import net.jcip.annotations.Immutable;
 import net.jcip.annotations.ThreadSafe;
 import net.parttimepolymath.api.TransferRequest;
 import net.parttimepolymath.api.TransferResult;
 import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.AccountNotOpenException;
 import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.DuplicateTransferException;
+import net.parttimepolymath.model.InsufficientFundsException;
+import net.parttimepolymath.model.Money;
 import net.parttimepolymath.model.Transaction;
 import net.parttimepolymath.model.TransactionPK;
+import net.parttimepolymath.model.TransactionPair;
 
 import org.apache.commons.lang3.Validate;
 import org.joda.time.DateTime;
@@ -27,6 +30,27 @@ public class TransferProcessor {
      * result to return for malformed requests.
      */
     public static final TransferResult BAD_RESULT = new TransferResult(400, "Request is not well-formed", "");
+    /**
+     * result to return when the source account does not hold enough funds.
+     */
+    public static final TransferResult INSUFFICIENT_FUNDS = new TransferResult(520, "Insufficient funds", "");
+    /**
+     * result to return when the data layer finds an account missing or closed.
+     */
+    public static final TransferResult NOT_OPEN = new TransferResult(404, "Account not open", "");
+    /**
+     * result to return when the data layer fails.
+     */
+    public static final TransferResult INTERNAL_ERROR = new TransferResult(503, "Internal Error", "");
+
+    /**
+     * account locks used by processors that are not given their own.
+     */
+    static final AccountLocks SHARED_LOCKS = new AccountLocks();
+    /**
+     * transaction id generator used by processors that are not given their own.
+     */
+    static final TransactionIdGenerator SHARED_IDS = new TimeOrderedIdGenerator();
 
     /**
      * the request being processed by this instance.
@@ -36,16 +60,47 @@ public class TransferProcessor {
      * the injected datastore.
      */
     private final DataStore dataStore;
+    /**
+     * the locks serialising transfers on the same accounts.
+     */
+    private final AccountLocks locks;
+    /**
+     * the idempotency key the client gave the request, or null.
+     */
+    private final String idempotencyKey;
+    /**
+     * the source of the ids of the transactions written.
+     */
+    private final TransactionIdGenerator ids;
 
     /**
-     * primary constructor.
+     * construct for a request without an idempotency key, using the account locks and transaction id generator shared by all
+     * processors constructed this way.
      * 
      * @param rqst the request to process.
      * @param store the datastore to read and write to.
      */
     public TransferProcessor(final TransferRequest rqst, final DataStore store) {
+        this(rqst, store, null, null, null);
+    }
+
+    /**
+     * primary constructor.
+     * 
+     * @param rqst the request to process.
+     * @param store the datastore to read and write to.
+     * @param accountLocks the locks serialising transfers on the same accounts, or null for the shared locks.
+     * @param key the idempotency key the client gave the request, or null. The key is recorded with the transfer, and if a
+     *            transfer has already been made with it the result of that transfer is returned instead.
+     * @param transactionIds the source of the ids of the transactions written, or null for the shared generator.
+     */
+    public TransferProcessor(final TransferRequest rqst, final DataStore store, final AccountLocks accountLocks, final String key,
+            final TransactionIdGenerator transactionIds) {
         request = rqst;
         dataStore = store;
+        locks = accountLocks == null ? SHARED_LOCKS : accountLocks;
+        idempotencyKey = key;
+        ids = transactionIds == null ? SHARED_IDS : transactionIds;
     }
 
     /**
@@ -58,78 +113,156 @@ public class TransferProcessor {
             return BAD_RESULT;
         }
 
+        // hold both accounts while we check and write, so another transfer through these locks cannot spend the balance
+        // between the two.
+        locks.lock(request.getFromAccount(), request.getToAccount());
+        try {
+            Checked checked = check();
+            if (checked.getRejection() != null) {
+                return checked.getRejection();
+            }
+
+            // persist the two transactions, allowing the data layer to take care of adjusting the balance.
+            // the data layer still re-checks the balance as it writes, in case it was spent by a writer outside these locks.
+            TransactionPair pair = makeTransactions(checked.getAmount());
+            try {
+                if (idempotencyKey == null) {
+                    dataStore.addTransactions(pair.getFromTransaction(), pair.getToTransaction());
+                } else {
+                    dataStore.addTransactions(pair.getFromTransaction(), pair.getToTransaction(), idempotencyKey);
+                }
+                return succeeded(pair);
+            } catch (DuplicateTransferException ex) {
+                return replayed(ex.getTransactionId());
+            } catch (Exception ex) {
+                return failed(ex);
+            }
+        } finally {
+            locks.unlock(request.getFromAccount(), request.getToAccount());
+        }
+    }
+
+    /**
+     * check that a well-formed request can be attempted, by examining the accounts involved. This should only be called once
+     * invalidRequest() has passed.
+     * 
+     * @return the outcome of the check, guaranteed non-null.
+     */
+    Checked check() {
         Account fromAccount = dataStore.getAccount(request.getFromAccount());
         if (fromAccount == null) {
-            return new TransferResult(404, "From Account not found", "");
+            return new Checked(new TransferResult(404, "From Account not found", ""));
         }
         if (!fromAccount.isOpen()) {
-            return new TransferResult(404, "From Account not open", "");
+            return new Checked(new TransferResult(404, "From Account not open", ""));
         }
 
         Account toAccount = dataStore.getAccount(request.getToAccount());
         if (toAccount == null) {
-            return new TransferResult(404, "To Account not found", "");
+            return new Checked(new TransferResult(404, "To Account not found", ""));
         }
         if (!toAccount.isOpen()) {
-            return new TransferResult(404, "To Account not open", "");
+            return new Checked(new TransferResult(404, "To Account not open", ""));
         }
 
-        BigDecimal amount = convert(request.getAmount());
+        long amount;
+        try {
+            amount = convert(request.getAmount(), fromAccount.getCurrency());
+        } catch (ArithmeticException ex) {
+            return new Checked(BAD_RESULT);
+        }
 
         // if the amount in the account is less than what we are requesting, fail out.
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
-            return new TransferResult(520, "Insufficient funds", "");
+        if (fromAccount.getBalanceUnits() < amount) {
+            return new Checked(INSUFFICIENT_FUNDS);
         }
+        return new Checked(amount);
+    }
 
-        // create two new transactions and store them. We allow the persistence layer to take care of adjusting the balance
+    /**
+     * create the two new transactions for the request. This should only be called once check() has passed.
+     * 
+     * @param amount the amount to transfer in thousandths of the currency unit, as worked out by check().
+     * @return a new pair of transactions.
+     */
+    TransactionPair makeTransactions(final long amount) {
         Transaction fromTransaction = new Transaction();
-        fromTransaction.setAmount(amount.negate());
+        fromTransaction.setAmountUnits(-amount);
         fromTransaction.setDate(DateTime.now(DateTimeZone.UTC));
-        fromTransaction.setReference(toAccount.getAccountId());
+        fromTransaction.setReference(request.getToAccount());
         TransactionPK fromKey = new TransactionPK();
-        fromKey.setAccountId(fromAccount.getAccountId());
-        fromKey.setTxId(UUID.randomUUID().toString());
+        fromKey.setAccountId(request.getFromAccount());
+        fromKey.setTxId(ids.nextId());
         fromTransaction.setId(fromKey);
 
         Transaction toTransaction = new Transaction();
-        toTransaction.setAmount(amount);
+        toTransaction.setAmountUnits(amount);
         toTransaction.setDate(fromTransaction.getDate());
         toTransaction.setReference(fromTransaction.getId().getTxId());
         TransactionPK toKey = new TransactionPK();
-        toKey.setAccountId(toAccount.getAccountId());
-        toKey.setTxId(UUID.randomUUID().toString());
+        toKey.setAccountId(request.getToAccount());
+        toKey.setTxId(ids.nextId());
         toTransaction.setId(toKey);
 
-        // persist the two transactions, allowing the data layer to take care of adjusting the balance.
-        // note that after this call the local references to fromAccount and toAccount will be out of date.
-        // if needed they can be fetched from the fromTransaction and toTransaction
-        try {
-            dataStore.addTransactions(fromTransaction, toTransaction);
-            return new TransferResult(200, "OK", fromTransaction.getId().getTxId());
-        } catch (Exception ex) {
-            return new TransferResult(503, "Internal Error", "");
+        return new TransactionPair(fromTransaction, toTransaction);
+    }
+
+    /**
+     * the result to report for a transfer the data layer accepted.
+     * 
+     * @param pair the transactions that were stored.
+     * @return a new result.
+     */
+    static TransferResult succeeded(final TransactionPair pair) {
+        return replayed(pair.getFromTransaction().getId().getTxId());
+    }
+
+    /**
+     * the result to report for a transfer that has already been made, so that a retried request gets the same answer as the
+     * original.
+     * 
+     * @param txId the id of the source transaction of the transfer.
+     * @return a new result.
+     */
+    static TransferResult replayed(final String txId) {
+        return new TransferResult(200, "OK", txId);
+    }
+
+    /**
+     * the result to report for a transfer the data layer refused.
+     * 
+     * @param ex the reason given by the data layer.
+     * @return the result.
+     */
+    static TransferResult failed(final Exception ex) {
+        if (ex instanceof InsufficientFundsException) {
+            return INSUFFICIENT_FUNDS;
         }
+        if (ex instanceof AccountNotOpenException) {
+            return NOT_OPEN;
+        }
+        return INTERNAL_ERROR;
     }
 
     /**
-     * convert the amount to a BigDecimal. This is only a partial implementation - we should be examining the source
-     * accounts currency to verify how many decimal places the value should have. Here we are hard-wiring it to 2.
+     * convert the requested amount, which is in the minor unit of the source account's currency, to thousandths of the currency
+     * unit. A request for 1000 is 10.00 from a USD account, but 1000 from a JPY account.
      * 
-     * @param amount the amount to convert.
-     * @return a new BigDecimal
+     * @param requested the amount to convert.
+     * @param currency the currency of the source account.
+     * @return the amount in thousandths.
+     * @throws ArithmeticException if the amount is too large to hold.
      */
-    private BigDecimal convert(final long amount) {
-        // TODO: this should be based on the currency we are transferring.
-        return BigDecimal.valueOf(amount, 2);
+    private static long convert(final long requested, final String currency) {
+        return Money.fromMinorUnits(requested, currency);
     }
 
     /**
      * is the supplied request well formed?
      * 
-     * @param request the request to validate.
      * @return true if the request is not well formed.
      */
-    private boolean invalidRequest() {
+    boolean invalidRequest() {
         try {
             Validate.notNull(request);
             Validate.notBlank(request.getFromAccount());
@@ -141,4 +274,52 @@ public class TransferProcessor {
         }
     }
 
+    /**
+     * the outcome of checking a request: either the result to return without attempting the transfer, or the amount to transfer.
+     */
+    @Immutable
+    static final class Checked {
+        /**
+         * the result to return, or null if the transfer should be attempted.
+         */
+        private final TransferResult rejection;
+        /**
+         * the amount to transfer in thousandths of the currency unit, or 0 if the request was rejected.
+         */
+        private final long amount;
+
+        /**
+         * construct for a request that was rejected.
+         * 
+         * @param result the result to return, assumed non-null.
+         */
+        Checked(final TransferResult result) {
+            rejection = result;
+            amount = 0L;
+        }
+
+        /**
+         * construct for a request that should be attempted.
+         * 
+         * @param units the amount to transfer in thousandths of the currency unit.
+         */
+        Checked(final long units) {
+            rejection = null;
+            amount = units;
+        }
+
+        /**
+         * @return the result to return, or null if the transfer should be attempted.
+         */
+        TransferResult getRejection() {
+            return rejection;
+        }
+
+        /**
+         * @return the amount to transfer in thousandths of the currency unit.
+         */
+        long getAmount() {
+            return amount;
+        }
+    }
 }
@@ -0,0 +1,191 @@
+package net.parttimepolymath.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * histogram of latencies in nanoseconds, with a fixed set of buckets laid out in the same way as an HdrHistogram: each power
+ * of two is split into {@value #SUB_BUCKETS} equal buckets, so a recorded value is only ever reported as up to one
+ * sixteenth higher than it was. Latencies up to about half an hour are told apart, and longer ones are counted in the top
+ * bucket.
+ * <p>
+ * Every bucket is a LongAdder, so threads recording at the same time do not contend on one counter, and recording a value
+ * never allocates. Reading the histogram is not atomic with respect to recording, which is fine for monitoring.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+    /**
+     * number of bits of a value used to choose a bucket within its power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+    /**
+     * number of buckets each power of two is split into.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * the highest power of two told apart.
+     */
+    private static final int MAX_EXPONENT = 40;
+    /**
+     * the number of buckets.
+     */
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    /**
+     * operator keeping the larger of two values.
+     */
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(final long left, final long right) {
+            return Math.max(left, right);
+        }
+    };
+
+    /**
+     * the count of values in each bucket.
+     */
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    /**
+     * the number of values recorded.
+     */
+    private final LongAdder count = new LongAdder();
+    /**
+     * the sum of the values recorded.
+     */
+    private final LongAdder total = new LongAdder();
+    /**
+     * the largest value recorded.
+     */
+    private final LongAccumulator maximum = new LongAccumulator(MAX, 0L);
+
+    /**
+     * default constructor.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * record a latency.
+     *
+     * @param nanos the latency in nanoseconds. Negative values are counted as zero.
+     */
+    public void record(final long nanos) {
+        long value = Math.max(nanos, 0L);
+        buckets[indexOf(value)].increment();
+        count.increment();
+        total.add(value);
+        maximum.accumulate(value);
+    }
+
+    /**
+     * record the time elapsed since an earlier reading of System.nanoTime().
+     *
+     * @param startNanos the value of System.nanoTime() when the timed work started.
+     */
+    public void recordSince(final long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the number of values recorded.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * take a summary of the latencies recorded so far.
+     *
+     * @return a new summary, with latencies in microseconds.
+     */
+    public LatencySummary summarise() {
+        long[] counts = new long[BUCKETS];
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            seen += counts[i];
+        }
+        long max = maximum.get();
+        long sum = total.sum();
+        return new LatencySummary(seen, toMicros(sum), toMicros(percentile(counts, seen, 0.50, max)),
+                toMicros(percentile(counts, seen, 0.90, max)), toMicros(percentile(counts, seen, 0.99, max)),
+                toMicros(percentile(counts, seen, 0.999, max)), toMicros(max));
+    }
+
+    /**
+     * find the value at or below which a fraction of the recorded values lie.
+     *
+     * @param counts the count in each bucket.
+     * @param seen the sum of the counts.
+     * @param fraction the fraction, between 0 and 1.
+     * @param max the largest value recorded.
+     * @return the highest value in the bucket the fraction falls in, but no more than the largest value recorded.
+     */
+    private static long percentile(final long[] counts, final long seen, final double fraction, final long max) {
+        if (seen == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(fraction * seen));
+        long sum = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            sum += counts[i];
+            if (sum >= rank) {
+                return Math.min(highestValueIn(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * find the bucket a value belongs in.
+     *
+     * @param value the value, which is not negative.
+     * @return the index of the bucket.
+     */
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * find the highest value that belongs in a bucket.
+     *
+     * @param index the index of the bucket.
+     * @return the highest value in the bucket.
+     */
+    static long highestValueIn(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        if (index == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lowest = (1L << exponent) + (index % SUB_BUCKETS) * width;
+        return lowest + width - 1;
+    }
+
+    /**
+     * @param nanos a time in nanoseconds.
+     * @return the time in microseconds.
+     */
+    private static double toMicros(final double nanos) {
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}
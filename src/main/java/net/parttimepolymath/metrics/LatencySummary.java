@@ -0,0 +1,143 @@
+package net.parttimepolymath.metrics;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * simple bean summarising the latencies recorded by a histogram. All latencies are in microseconds, and each percentile is
+ * reported as up to one sixteenth higher than the true value.
+ *
+ * @author robert
+ */
+@Immutable
+public final class LatencySummary {
+    /**
+     * number of latencies recorded.
+     */
+    @JsonProperty("count")
+    private final long count;
+    /**
+     * the sum of the latencies recorded.
+     */
+    @JsonProperty("totalMicros")
+    private final double total;
+    /**
+     * the median latency.
+     */
+    @JsonProperty("p50Micros")
+    private final double p50;
+    /**
+     * the 90th percentile latency.
+     */
+    @JsonProperty("p90Micros")
+    private final double p90;
+    /**
+     * the 99th percentile latency.
+     */
+    @JsonProperty("p99Micros")
+    private final double p99;
+    /**
+     * the 99.9th percentile latency.
+     */
+    @JsonProperty("p999Micros")
+    private final double p999;
+    /**
+     * the largest latency recorded.
+     */
+    @JsonProperty("maxMicros")
+    private final double max;
+
+    /**
+     * primary constructor.
+     *
+     * @param count number of latencies recorded.
+     * @param total the sum of the latencies recorded.
+     * @param p50 the median latency.
+     * @param p90 the 90th percentile latency.
+     * @param p99 the 99th percentile latency.
+     * @param p999 the 99.9th percentile latency.
+     * @param max the largest latency recorded.
+     */
+    @JsonCreator
+    public LatencySummary(@JsonProperty("count") final long count, @JsonProperty("totalMicros") final double total,
+            @JsonProperty("p50Micros") final double p50, @JsonProperty("p90Micros") final double p90,
+            @JsonProperty("p99Micros") final double p99, @JsonProperty("p999Micros") final double p999,
+            @JsonProperty("maxMicros") final double max) {
+        this.count = count;
+        this.total = total;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * @return the number of latencies recorded.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the latencies recorded.
+     */
+    public double getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the mean latency, or zero if none have been recorded.
+     */
+    @JsonIgnore
+    public double getMean() {
+        return count == 0 ? 0.0 : total / count;
+    }
+
+    /**
+     * @return the median latency.
+     */
+    public double getP50() {
+        return p50;
+    }
+
+    /**
+     * @return the 90th percentile latency.
+     */
+    public double getP90() {
+        return p90;
+    }
+
+    /**
+     * @return the 99th percentile latency.
+     */
+    public double getP99() {
+        return p99;
+    }
+
+    /**
+     * @return the 99.9th percentile latency.
+     */
+    public double getP999() {
+        return p999;
+    }
+
+    /**
+     * @return the largest latency recorded.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("count", count).append("total", total)
+                .append("p50", p50).append("p90", p90).append("p99", p99).append("p999", p999).append("max", max).toString();
+    }
+}
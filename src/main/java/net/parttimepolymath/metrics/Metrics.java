@@ -0,0 +1,157 @@
+package net.parttimepolymath.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * the latency histograms, request counts and result counters of the service, and the metrics of the database connection pool
+ * if there is one. A histogram is created the first time it is asked for by name, and callers on a hot path are expected to
+ * look it up once and keep it, so that recording is a matter of updating striped counters and never allocates.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class Metrics {
+    /**
+     * the highest result code counted. Codes outside 0 to this are counted against it.
+     */
+    private static final int MAX_CODE = 599;
+
+    /**
+     * latencies of the API endpoints, by name.
+     */
+    private final ConcurrentMap<String, LatencyHistogram> endpoints = new ConcurrentHashMap<>();
+    /**
+     * latencies of the data store operations, by name.
+     */
+    private final ConcurrentMap<String, LatencyHistogram> operations = new ConcurrentHashMap<>();
+    /**
+     * count of transfer results, by result code.
+     */
+    private final LongAdder[] results = new LongAdder[MAX_CODE + 1];
+    /**
+     * count of requests, by endpoint.
+     */
+    private final RequestCounter requests = new RequestCounter();
+    /**
+     * the metrics of the database connection pool, or null if there is none.
+     */
+    private volatile PoolMetrics connectionPool;
+
+    /**
+     * default constructor.
+     */
+    public Metrics() {
+        for (int i = 0; i <= MAX_CODE; i++) {
+            results[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * get the histogram for an API endpoint, creating it if need be.
+     *
+     * @param name the name of the endpoint.
+     * @return the histogram.
+     */
+    public LatencyHistogram endpoint(final String name) {
+        return histogram(endpoints, name);
+    }
+
+    /**
+     * get the histogram for a data store operation, creating it if need be.
+     *
+     * @param name the name of the operation.
+     * @return the histogram.
+     */
+    public LatencyHistogram operation(final String name) {
+        return histogram(operations, name);
+    }
+
+    /**
+     * @return the request counter, which is reported along with the latencies.
+     */
+    public RequestCounter getRequests() {
+        return requests;
+    }
+
+    /**
+     * @param pool the metrics of the database connection pool to report, or null if there is none.
+     */
+    public void setConnectionPool(final PoolMetrics pool) {
+        connectionPool = pool;
+    }
+
+    /**
+     * count a transfer result.
+     *
+     * @param resultCode the result code of the transfer.
+     */
+    public void recordResult(final int resultCode) {
+        results[resultCode < 0 || resultCode > MAX_CODE ? MAX_CODE : resultCode].increment();
+    }
+
+    /**
+     * @param resultCode a result code.
+     * @return the number of transfer results counted with the code.
+     */
+    public long getResultCount(final int resultCode) {
+        return resultCode < 0 || resultCode > MAX_CODE ? 0L : results[resultCode].sum();
+    }
+
+    /**
+     * take a report of everything recorded so far.
+     *
+     * @return a new report.
+     */
+    public MetricsReport report() {
+        SortedMap<Integer, Long> counts = new TreeMap<>();
+        for (int i = 0; i <= MAX_CODE; i++) {
+            long count = results[i].sum();
+            if (count > 0) {
+                counts.put(i, count);
+            }
+        }
+        PoolMetrics pool = connectionPool;
+        return new MetricsReport(summarise(endpoints), summarise(operations), counts, requests.getEndpointCounts(),
+                requests.getRates(), pool == null ? null : pool.report());
+    }
+
+    /**
+     * get or create a histogram.
+     *
+     * @param histograms the histograms to look in.
+     * @param name the name of the histogram.
+     * @return the histogram.
+     */
+    private static LatencyHistogram histogram(final ConcurrentMap<String, LatencyHistogram> histograms, final String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * summarise a set of histograms.
+     *
+     * @param histograms the histograms, by name.
+     * @return the summaries, by name.
+     */
+    private static SortedMap<String, LatencySummary> summarise(final Map<String, LatencyHistogram> histograms) {
+        SortedMap<String, LatencySummary> summaries = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            summaries.put(entry.getKey(), entry.getValue().summarise());
+        }
+        return summaries;
+    }
+}
@@ -0,0 +1,223 @@
+package net.parttimepolymath.metrics;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * simple bean holding a report of the service metrics, which can be given as JSON or in the Prometheus text format.
+ *
+ * @author robert
+ */
+@Immutable
+public final class MetricsReport {
+    /**
+     * the quantiles reported in the Prometheus format.
+     */
+    private static final String[] QUANTILES = { "0.5", "0.9", "0.99", "0.999" };
+
+    /**
+     * summaries of the latencies of the API endpoints, by name.
+     */
+    @JsonProperty("endpoints")
+    private final SortedMap<String, LatencySummary> endpoints;
+    /**
+     * summaries of the latencies of the data store operations, by name.
+     */
+    @JsonProperty("operations")
+    private final SortedMap<String, LatencySummary> operations;
+    /**
+     * number of transfer results, by result code. Codes that have not been seen are left out.
+     */
+    @JsonProperty("results")
+    private final SortedMap<Integer, Long> results;
+    /**
+     * number of requests, by endpoint of the controller.
+     */
+    @JsonProperty("requests")
+    private final SortedMap<String, Long> requests;
+    /**
+     * requests per second over recent windows, by window such as "10s".
+     */
+    @JsonProperty("requestRates")
+    private final SortedMap<String, Double> requestRates;
+    /**
+     * the state of the database connection pool, or null if the data store has none.
+     */
+    @JsonProperty("connectionPool")
+    private final PoolReport connectionPool;
+
+    /**
+     * primary constructor.
+     *
+     * @param endpoints summaries of the latencies of the API endpoints, by name.
+     * @param operations summaries of the latencies of the data store operations, by name.
+     * @param results number of transfer results, by result code.
+     * @param requests number of requests, by endpoint of the controller.
+     * @param requestRates requests per second over recent windows, by window.
+     * @param connectionPool the state of the database connection pool, or null if the data store has none.
+     */
+    @JsonCreator
+    public MetricsReport(@JsonProperty("endpoints") final Map<String, LatencySummary> endpoints,
+            @JsonProperty("operations") final Map<String, LatencySummary> operations,
+            @JsonProperty("results") final Map<Integer, Long> results, @JsonProperty("requests") final Map<String, Long> requests,
+            @JsonProperty("requestRates") final Map<String, Double> requestRates,
+            @JsonProperty("connectionPool") final PoolReport connectionPool) {
+        this.endpoints = Collections.unmodifiableSortedMap(new TreeMap<>(endpoints));
+        this.operations = Collections.unmodifiableSortedMap(new TreeMap<>(operations));
+        this.results = Collections.unmodifiableSortedMap(new TreeMap<>(results));
+        this.requests = Collections.unmodifiableSortedMap(new TreeMap<>(requests));
+        this.requestRates = Collections.unmodifiableSortedMap(new TreeMap<>(requestRates));
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * @return summaries of the latencies of the API endpoints, by name.
+     */
+    public SortedMap<String, LatencySummary> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return summaries of the latencies of the data store operations, by name.
+     */
+    public SortedMap<String, LatencySummary> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return number of transfer results, by result code.
+     */
+    public SortedMap<Integer, Long> getResults() {
+        return results;
+    }
+
+    /**
+     * @return number of requests, by endpoint of the controller.
+     */
+    public SortedMap<String, Long> getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return requests per second over recent windows, by window.
+     */
+    public SortedMap<String, Double> getRequestRates() {
+        return requestRates;
+    }
+
+    /**
+     * @return the state of the database connection pool, or null if the data store has none.
+     */
+    public PoolReport getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * write the report in the Prometheus text exposition format. Latencies are given as summaries in seconds, results and
+     * requests as counters labelled with the result code or endpoint, and request rates as a gauge labelled with the window.
+     * Any connection pool is given as a gauge of connections labelled with their state, a summary of the time taken to get a
+     * connection and a counter of timeouts.
+     *
+     * @return the report as text.
+     */
+    public String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        appendSummaries(text, "transfer_endpoint_latency_seconds", "Latency of each API endpoint.", "endpoint", endpoints);
+        appendSummaries(text, "transfer_store_latency_seconds", "Latency of each data store operation.", "operation", operations);
+        text.append("# HELP transfer_results_total Transfer results by result code.\n");
+        text.append("# TYPE transfer_results_total counter\n");
+        for (Map.Entry<Integer, Long> entry : results.entrySet()) {
+            text.append("transfer_results_total{code=\"").append(entry.getKey()).append("\"} ").append(entry.getValue()).append('\n');
+        }
+        text.append("# HELP transfer_requests_total Requests by endpoint.\n");
+        text.append("# TYPE transfer_requests_total counter\n");
+        for (Map.Entry<String, Long> entry : requests.entrySet()) {
+            text.append("transfer_requests_total{endpoint=\"").append(entry.getKey()).append("\"} ").append(entry.getValue())
+                    .append('\n');
+        }
+        text.append("# HELP transfer_request_rate Requests per second over a recent window.\n");
+        text.append("# TYPE transfer_request_rate gauge\n");
+        for (Map.Entry<String, Double> entry : requestRates.entrySet()) {
+            appendSample(text, "transfer_request_rate", "window=\"" + entry.getKey() + "\"", entry.getValue());
+        }
+        if (connectionPool != null) {
+            text.append("# HELP transfer_pool_connections Database connections by state.\n");
+            text.append("# TYPE transfer_pool_connections gauge\n");
+            text.append("transfer_pool_connections{state=\"active\"} ").append(connectionPool.getActive()).append('\n');
+            text.append("transfer_pool_connections{state=\"idle\"} ").append(connectionPool.getIdle()).append('\n');
+            text.append("transfer_pool_connections{state=\"max\"} ").append(connectionPool.getMax()).append('\n');
+            text.append("# HELP transfer_pool_pending Threads waiting for a database connection.\n");
+            text.append("# TYPE transfer_pool_pending gauge\n");
+            text.append("transfer_pool_pending ").append(connectionPool.getPending()).append('\n');
+            appendSummaries(text, "transfer_pool_acquire_seconds", "Time taken to get a database connection.", "pool",
+                    Collections.singletonMap("database", connectionPool.getAcquire()));
+            text.append("# HELP transfer_pool_timeouts_total Requests for a database connection that timed out.\n");
+            text.append("# TYPE transfer_pool_timeouts_total counter\n");
+            text.append("transfer_pool_timeouts_total ").append(connectionPool.getTimeouts()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * append a family of latency summaries in the Prometheus format.
+     *
+     * @param text the text to append to.
+     * @param metric the name of the metric.
+     * @param help the description of the metric.
+     * @param label the name of the label distinguishing the summaries.
+     * @param summaries the summaries, by label value.
+     */
+    private static void appendSummaries(final StringBuilder text, final String metric, final String help, final String label,
+            final Map<String, LatencySummary> summaries) {
+        text.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(metric).append(" summary\n");
+        for (Map.Entry<String, LatencySummary> entry : summaries.entrySet()) {
+            LatencySummary summary = entry.getValue();
+            double[] values = { summary.getP50(), summary.getP90(), summary.getP99(), summary.getP999() };
+            String labels = label + "=\"" + entry.getKey() + "\"";
+            for (int i = 0; i < QUANTILES.length; i++) {
+                appendSample(text, metric, labels + ",quantile=\"" + QUANTILES[i] + "\"", toSeconds(values[i]));
+            }
+            appendSample(text, metric + "_sum", labels, toSeconds(summary.getTotal()));
+            text.append(metric).append("_count{").append(labels).append("} ").append(summary.getCount()).append('\n');
+        }
+    }
+
+    /**
+     * append a single sample in the Prometheus format.
+     *
+     * @param text the text to append to.
+     * @param metric the name of the metric.
+     * @param labels the labels of the sample.
+     * @param value the value of the sample.
+     */
+    private static void appendSample(final StringBuilder text, final String metric, final String labels, final double value) {
+        text.append(metric).append('{').append(labels).append("} ").append(String.format(Locale.ROOT, "%.9f", value)).append('\n');
+    }
+
+    /**
+     * @param micros a time in microseconds.
+     * @return the time in seconds.
+     */
+    private static double toSeconds(final double micros) {
+        return micros / 1000000.0;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("endpoints", endpoints)
+                .append("operations", operations).append("results", results).append("requests", requests)
+                .append("requestRates", requestRates).append("connectionPool", connectionPool).toString();
+    }
+}
@@ -0,0 +1,91 @@
+package net.parttimepolymath.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * collects the metrics of a database connection pool. Whatever hands out the pool's connections brackets every request for
+ * one with {@link #startAcquire()} and {@link #endAcquire(long, boolean)}, and reports the requests that time out. Connection
+ * counts are read from the pool itself when a report is taken.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class PoolMetrics {
+    /**
+     * the pool being measured.
+     */
+    private final BasicDataSource pool;
+    /**
+     * time taken to get a connection from the pool.
+     */
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    /**
+     * number of requests for a connection that timed out.
+     */
+    private final LongAdder timeouts = new LongAdder();
+    /**
+     * number of threads waiting for a connection.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * primary constructor.
+     *
+     * @param pool the pool being measured, assumed non-null.
+     */
+    public PoolMetrics(final BasicDataSource pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * note that a thread has started waiting for a connection.
+     *
+     * @return the time the wait started, to be passed to {@link #endAcquire(long, boolean)}.
+     */
+    public long startAcquire() {
+        pending.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * note that a thread has stopped waiting for a connection.
+     *
+     * @param start the time the wait started, as returned by {@link #startAcquire()}.
+     * @param acquired true if the thread got a connection, in which case the wait is recorded.
+     */
+    public void endAcquire(final long start, final boolean acquired) {
+        if (acquired) {
+            acquire.record(System.nanoTime() - start);
+        }
+        pending.decrementAndGet();
+    }
+
+    /**
+     * count a request for a connection that timed out.
+     */
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * @return the number of requests for a connection that timed out.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * take a report of the pool.
+     *
+     * @return a new report.
+     */
+    public PoolReport report() {
+        return new PoolReport(pool.getNumActive(), pool.getNumIdle(), pending.get(), pool.getMaxTotal(), timeouts.sum(),
+                acquire.summarise());
+    }
+}
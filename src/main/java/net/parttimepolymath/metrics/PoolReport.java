@@ -0,0 +1,119 @@
+package net.parttimepolymath.metrics;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * simple bean reporting the state of the database connection pool: how many connections are in use and idle, how many
+ * threads are waiting for one, how long threads have waited, and how often they gave up waiting.
+ *
+ * @author robert
+ */
+@Immutable
+public final class PoolReport {
+    /**
+     * number of connections handed out.
+     */
+    @JsonProperty("active")
+    private final int active;
+    /**
+     * number of connections open and waiting to be handed out.
+     */
+    @JsonProperty("idle")
+    private final int idle;
+    /**
+     * number of threads waiting for a connection.
+     */
+    @JsonProperty("pending")
+    private final int pending;
+    /**
+     * the largest number of connections the pool will open.
+     */
+    @JsonProperty("max")
+    private final int max;
+    /**
+     * number of times a thread gave up waiting for a connection.
+     */
+    @JsonProperty("timeouts")
+    private final long timeouts;
+    /**
+     * summary of the time taken to get a connection from the pool.
+     */
+    @JsonProperty("acquire")
+    private final LatencySummary acquire;
+
+    /**
+     * primary constructor.
+     *
+     * @param active number of connections handed out.
+     * @param idle number of connections open and waiting to be handed out.
+     * @param pending number of threads waiting for a connection.
+     * @param max the largest number of connections the pool will open.
+     * @param timeouts number of times a thread gave up waiting for a connection.
+     * @param acquire summary of the time taken to get a connection from the pool.
+     */
+    @JsonCreator
+    public PoolReport(@JsonProperty("active") final int active, @JsonProperty("idle") final int idle,
+            @JsonProperty("pending") final int pending, @JsonProperty("max") final int max,
+            @JsonProperty("timeouts") final long timeouts, @JsonProperty("acquire") final LatencySummary acquire) {
+        this.active = active;
+        this.idle = idle;
+        this.pending = pending;
+        this.max = max;
+        this.timeouts = timeouts;
+        this.acquire = acquire;
+    }
+
+    /**
+     * @return the number of connections handed out.
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * @return the number of connections open and waiting to be handed out.
+     */
+    public int getIdle() {
+        return idle;
+    }
+
+    /**
+     * @return the number of threads waiting for a connection.
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * @return the largest number of connections the pool will open.
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return the number of times a thread gave up waiting for a connection.
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return a summary of the time taken to get a connection from the pool.
+     */
+    public LatencySummary getAcquire() {
+        return acquire;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("active", active).append("idle", idle)
+                .append("pending", pending).append("max", max).append("timeouts", timeouts).append("acquire", acquire).toString();
+    }
+}
@@ -0,0 +1,186 @@
+package net.parttimepolymath.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * counts requests, in total and by endpoint, and reports the recent request rate. Every count is a LongAdder, so threads
+ * counting at the same time update separate cells rather than all contending on one cache line.
+ * <p>
+ * For the rates, the total is sampled by the first request counted in each second, into a ring holding the last
+ * {@value #HISTORY} seconds. The rate over a window is the growth of the total since the sample at the start of the window,
+ * divided by the time since the start of that second, so the window may stretch up to a second further back than asked.
+ * A second in which no request arrives leaves no sample, and the next sample is used instead, which holds the same total.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class RequestCounter {
+    /**
+     * the number of seconds of samples held. Must be more than the longest window reported.
+     */
+    private static final int HISTORY = 64;
+    /**
+     * the windows the rate is reported over, in seconds.
+     */
+    private static final int[] WINDOWS = { 1, 10, 60 };
+
+    /**
+     * count of all requests.
+     */
+    private final LongAdder total = new LongAdder();
+    /**
+     * count of requests by endpoint.
+     */
+    private final ConcurrentMap<String, LongAdder> endpoints = new ConcurrentHashMap<>();
+    /**
+     * System.nanoTime() when this was created, from which seconds are numbered.
+     */
+    private final long origin = System.nanoTime();
+    /**
+     * the number of the second each sample was taken in, by slot. A slot holds -1 until it is first used.
+     */
+    private final AtomicLongArray sampleSeconds = new AtomicLongArray(HISTORY);
+    /**
+     * the total at the start of the second recorded in the same slot of sampleSeconds.
+     */
+    private final AtomicLongArray samples = new AtomicLongArray(HISTORY);
+    /**
+     * the count given when this was created, which is not included in the rates.
+     */
+    private final long initial;
+
+    /**
+     * default constructor.
+     */
+    public RequestCounter() {
+        this(0L);
+    }
+
+    /**
+     * construct with an initial total, for instance as read from a report.
+     *
+     * @param count the initial total.
+     */
+    public RequestCounter(final long count) {
+        initial = count;
+        total.add(count);
+        for (int i = 0; i < HISTORY; i++) {
+            sampleSeconds.set(i, -1L);
+        }
+    }
+
+    /**
+     * count a request that is not attributed to an endpoint.
+     */
+    public void increment() {
+        sample(System.nanoTime());
+        total.increment();
+    }
+
+    /**
+     * count a request to an endpoint. Callers should pass one of a fixed set of names, so that after the first request the
+     * endpoint's counter is found without allocating.
+     *
+     * @param endpoint the name of the endpoint.
+     */
+    public void increment(final String endpoint) {
+        increment();
+        LongAdder count = endpoints.get(endpoint);
+        if (count == null) {
+            LongAdder created = new LongAdder();
+            count = endpoints.putIfAbsent(endpoint, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.increment();
+    }
+
+    /**
+     * @return the total number of requests.
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * @return the number of requests to each endpoint.
+     */
+    public SortedMap<String, Long> getEndpointCounts() {
+        SortedMap<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : endpoints.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * get the recent request rate.
+     *
+     * @param window the number of seconds to average over, between 1 and 60.
+     * @return the number of requests per second over the window.
+     */
+    public double getRate(final int window) {
+        long now = System.nanoTime();
+        long count = total.sum() - initial;
+        long first = secondOf(now) - window;
+        if (first < 0) {
+            double elapsed = (double) (now - origin) / TimeUnit.SECONDS.toNanos(1);
+            return elapsed <= 0.0 ? 0.0 : count / elapsed;
+        }
+        // a second with no sample had no requests, so the total at the start of the window is the first sample after it.
+        long start = count;
+        for (long second = first; second <= first + window; second++) {
+            int slot = (int) (second % HISTORY);
+            if (sampleSeconds.get(slot) == second) {
+                start = samples.get(slot);
+                break;
+            }
+        }
+        double elapsed = (double) (now - origin - TimeUnit.SECONDS.toNanos(first)) / TimeUnit.SECONDS.toNanos(1);
+        return (count - start) / elapsed;
+    }
+
+    /**
+     * @return the request rate over each of the standard windows, keyed by the window such as "10s".
+     */
+    public SortedMap<String, Double> getRates() {
+        SortedMap<String, Double> rates = new TreeMap<>();
+        for (int window : WINDOWS) {
+            rates.put(window + "s", getRate(window));
+        }
+        return rates;
+    }
+
+    /**
+     * take the sample for the current second if nobody has yet.
+     *
+     * @param now the current System.nanoTime().
+     */
+    private void sample(final long now) {
+        long second = secondOf(now);
+        int slot = (int) (second % HISTORY);
+        long previous = sampleSeconds.get(slot);
+        if (previous != second) {
+            samples.set(slot, total.sum() - initial);
+            sampleSeconds.compareAndSet(slot, previous, second);
+        }
+    }
+
+    /**
+     * @param nanos a System.nanoTime() reading.
+     * @return the number of whole seconds from the creation of this counter to the reading.
+     */
+    private long secondOf(final long nanos) {
+        return (nanos - origin) / TimeUnit.SECONDS.toNanos(1);
+    }
+}
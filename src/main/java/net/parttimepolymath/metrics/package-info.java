@@ -0,0 +1,7 @@
+/**
+ * latency histograms and counters for the hot paths of the service, and their reporting.
+ *
+ * @author robert
+ */
+package net.parttimepolymath.metrics;
+
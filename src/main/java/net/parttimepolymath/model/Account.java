@@ -4,8 +4,6 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -24,11 +22,12 @@ import net.jcip.annotations.NotThreadSafe;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.eclipse.persistence.annotations.Convert;
+import org.eclipse.persistence.annotations.Converter;
 
 import com.fasterxml.jackson.annotation.JsonAnySetter;
-import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 
 /**
  * The persistent class for the account database table. Because this is mutable, it should not be shared between threads.
@@ -37,7 +36,6 @@ import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 @Entity
 @Table(name = "account")
 @NamedQuery(name = "Account.findAll", query = "SELECT a FROM Account a")
-@JsonIdentityInfo(generator = ObjectIdGenerators.IntSequenceGenerator.class, property = "@id")
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Account implements Serializable {
 
@@ -56,11 +54,12 @@ public final class Account implements Serializable {
     private String accountId;
 
     /**
-     * the account balance. Note that this class does not maintain
+     * the account balance in thousandths of the currency unit. Note that this class does not maintain
      */
     @Column(name = "balance", nullable = false, precision = 10, scale = 3)
-    @NotNull
-    private BigDecimal balance;
+    @Converter(name = "moneyConverter", converterClass = net.parttimepolymath.util.MoneyConverter.class)
+    @Convert("moneyConverter")
+    private long balance;
 
     /**
      * the ISO3 currency code the account transacts in.
@@ -91,12 +90,6 @@ public final class Account implements Serializable {
     @OneToMany(mappedBy = "account", fetch = FetchType.LAZY)
     private List<Transaction> transactions;
 
-    /**
-     * lock used for synchronisation.
-     */
-    @Transient
-    private final Lock lock = new ReentrantLock();
-
     /**
      * default constructor.
      */
@@ -127,15 +120,36 @@ public final class Account implements Serializable {
      * @return the account balance.
      */
     public BigDecimal getBalance() {
-        return balance;
+        return Money.toDecimal(balance);
     }
 
     /**
      * mutator - set the account balance.
      * 
-     * @param value the balance to store.
+     * @param value the balance to store, assumed non-null.
+     * @throws ArithmeticException if the balance has more than three decimal places.
      */
     public void setBalance(final BigDecimal value) {
+        balance = Money.toUnits(value);
+    }
+
+    /**
+     * accessor - retrieve the account balance in thousandths of the currency unit.
+     * 
+     * @return the account balance.
+     */
+    @JsonIgnore
+    public long getBalanceUnits() {
+        return balance;
+    }
+
+    /**
+     * mutator - set the account balance in thousandths of the currency unit.
+     * 
+     * @param value the balance to store.
+     */
+    @JsonIgnore
+    public void setBalanceUnits(final long value) {
         balance = value;
     }
 
@@ -184,6 +198,7 @@ public final class Account implements Serializable {
      * 
      * @return the client who owns this account.
      */
+    @JsonIgnore
     public Client getClient() {
         return client;
     }
@@ -204,21 +219,14 @@ public final class Account implements Serializable {
     }
 
     /**
-     * get the set of associated transactions. note that this uses a mechanism for lazy instantiation
-     * that is thread safe but not robust enough for production use.
+     * get the set of associated transactions. Accounts are not shared between threads, so the lazy instantiation here does
+     * not need to be guarded; transfers are serialised by account id in the controller instead.
      * 
      * @return a non-null set of transactions.
      */
     public List<Transaction> getTransactions() {
         if (transactions == null) {
-            try {
-                lock.lock();
-                if (transactions == null) {
-                    transactions = new ArrayList<>();
-                }
-            } finally {
-                lock.unlock();
-            }
+            transactions = new ArrayList<>();
         }
         return transactions;
     }
@@ -260,7 +268,7 @@ public final class Account implements Serializable {
 
     @Override
     public String toString() {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("accountId", accountId).append("balance", balance)
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("accountId", accountId).append("balance", getBalance())
                 .append("client", client.getClientId()).append("currency", currency).append("open", isOpen()).toString();
     }
 
@@ -1,14 +1,12 @@
 package net.parttimepolymath.model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Join;
-import javax.persistence.criteria.Root;
+import javax.persistence.NoResultException;
 
 /**
  * access class for working with account table.
@@ -39,7 +37,7 @@ public final class AccountDAO extends GenericDaoImpl<Account, String> {
     @Override
     public void copyAttributes(final Account lhs, final Account rhs) {
         lhs.setAccountId(rhs.getAccountId());
-        lhs.setBalance(rhs.getBalance());
+        lhs.setBalanceUnits(rhs.getBalanceUnits());
         lhs.setClient(rhs.getClient());
         lhs.setCurrency(rhs.getCurrency());
         lhs.setOpen(rhs.isOpen());
@@ -48,8 +46,11 @@ public final class AccountDAO extends GenericDaoImpl<Account, String> {
 
     @Override
     public Account getEntityByPrimaryKey(final Map<String, Object> parameters) {
-        return findFirstWithCriteria(simpleWhere("accountId", String.class, "account_id"), parameters);
-
+        Account account = read((String) parameters.get("account_id"));
+        if (account == null) {
+            throw new NoResultException();
+        }
+        return account;
     }
 
     @Override
@@ -66,18 +67,16 @@ public final class AccountDAO extends GenericDaoImpl<Account, String> {
      * @return the set of matching accounts, if available.
      */
     public List<Account> getAccounts(final String clientId) {
-        CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
-        CriteriaQuery<Account> cq = cb.createQuery(Account.class);
-        Root<Account> account = cq.from(Account.class);
-
-        Join<Account, Client> client = account.join(Account_.client);
-
-        cq.where(cb.equal(client.get(Client_.clientId), cb.parameter(String.class, "client_id")));
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("client_id", clientId);
-        return findWithCriteria(cq, parameters);
+        return findWhere(Collections.<String, Object> singletonMap("client.clientId", clientId));
     }
 
+    /**
+     * get an account by its id. This goes straight to the entity manager, so it can be answered from the identity cache.
+     * 
+     * @param accountId the account id to match.
+     * @return the account.
+     * @throws NoResultException if there is no such account.
+     */
     public Account getAccount(final String accountId) {
         Account template = new Account();
         template.setAccountId(accountId);
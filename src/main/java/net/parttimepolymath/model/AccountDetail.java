@@ -0,0 +1,145 @@
+package net.parttimepolymath.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * immutable, detached view of an account and the transactions it was read with, as returned by the API. Unlike an
+ * {@link Account} it names its client by id rather than holding it, so it is a plain tree that can be written without
+ * tracking which objects have already been seen.
+ *
+ * @author robert
+ */
+@Immutable
+public final class AccountDetail {
+    /**
+     * the account id.
+     */
+    @JsonProperty("accountId")
+    private final String accountId;
+    /**
+     * the id of the client owning the account.
+     */
+    @JsonProperty("clientId")
+    private final String clientId;
+    /**
+     * the ISO currency code.
+     */
+    @JsonProperty("currency")
+    private final String currency;
+    /**
+     * the account balance.
+     */
+    @JsonProperty("balance")
+    private final BigDecimal balance;
+    /**
+     * is the account open?
+     */
+    @JsonProperty("open")
+    private final boolean open;
+    /**
+     * the transactions the account was read with.
+     */
+    @JsonProperty("transactions")
+    private final List<TransactionSummary> transactions;
+
+    /**
+     * primary constructor.
+     *
+     * @param accountId the account id.
+     * @param clientId the id of the client owning the account.
+     * @param currency the ISO currency code.
+     * @param balance the account balance.
+     * @param open is the account open?
+     * @param transactions the transactions of the account. This is not copied, so should not be modified afterwards.
+     */
+    @JsonCreator
+    public AccountDetail(@JsonProperty("accountId") final String accountId, @JsonProperty("clientId") final String clientId,
+            @JsonProperty("currency") final String currency, @JsonProperty("balance") final BigDecimal balance,
+            @JsonProperty("open") final boolean open, @JsonProperty("transactions") final List<TransactionSummary> transactions) {
+        this.accountId = accountId;
+        this.clientId = clientId;
+        this.currency = currency;
+        this.balance = balance;
+        this.open = open;
+        this.transactions = transactions == null ? Collections.<TransactionSummary> emptyList() : Collections
+                .unmodifiableList(transactions);
+    }
+
+    /**
+     * make the view of an account, with whichever of its transactions have been read.
+     *
+     * @param account the account, or null.
+     * @return the view, or null if the account is null.
+     */
+    public static AccountDetail of(final Account account) {
+        if (account == null) {
+            return null;
+        }
+        List<TransactionSummary> transactions = new ArrayList<>(account.getTransactions().size());
+        for (Transaction transaction : account.getTransactions()) {
+            transactions.add(new TransactionSummary(transaction.getId().getTxId(), transaction.getAmount(), transaction.getDate(),
+                    transaction.getReference()));
+        }
+        return new AccountDetail(account.getAccountId(), account.getClient() == null ? null : account.getClient().getClientId(),
+                account.getCurrency(), account.getBalance(), account.isOpen(), transactions);
+    }
+
+    /**
+     * @return the account id.
+     */
+    public String getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return the id of the client owning the account.
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return the ISO currency code.
+     */
+    public String getCurrency() {
+        return currency;
+    }
+
+    /**
+     * @return the account balance.
+     */
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    /**
+     * @return true if the account is open.
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * @return the transactions the account was read with.
+     */
+    public List<TransactionSummary> getTransactions() {
+        return transactions;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("accountId", accountId).append("clientId", clientId)
+                .append("currency", currency).append("balance", balance).append("open", open).toString();
+    }
+}
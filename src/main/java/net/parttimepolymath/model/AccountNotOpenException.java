@@ -0,0 +1,24 @@
+package net.parttimepolymath.model;
+
+/**
+ * thrown by a DataStore when a transfer is rejected at the point of writing because one of its accounts does not exist or is
+ * not open. Transfers are checked against the accounts beforehand, so this is only seen when the data layer is called
+ * directly.
+ *
+ * @author robert
+ */
+public final class AccountNotOpenException extends Exception {
+    /**
+     * serial id.
+     */
+    private static final long serialVersionUID = -2261349207613598712L;
+
+    /**
+     * construct for a given account.
+     *
+     * @param accountId the account that could not be written to.
+     */
+    public AccountNotOpenException(final String accountId) {
+        super("account not found or not open " + accountId);
+    }
+}
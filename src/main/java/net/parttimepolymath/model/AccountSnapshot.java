@@ -0,0 +1,100 @@
+package net.parttimepolymath.model;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * immutable copy of the header of an account, as held by the account cache. This deliberately leaves out the transaction
+ * history, so that the size of an entry does not grow with the age of the account.
+ *
+ * @author robert
+ */
+@Immutable
+final class AccountSnapshot {
+    /**
+     * the account id.
+     */
+    private final String accountId;
+    /**
+     * the balance in thousandths when the snapshot was taken.
+     */
+    private final long balance;
+    /**
+     * the ISO3 currency code.
+     */
+    private final String currency;
+    /**
+     * is the account open?
+     */
+    private final boolean open;
+    /**
+     * the owning client id, or null if the account was loaded without a client.
+     */
+    private final String clientId;
+    /**
+     * the owning client name, or null if the account was loaded without a client.
+     */
+    private final String clientName;
+    /**
+     * the System.nanoTime() after which this snapshot should no longer be used.
+     */
+    private final long expires;
+    /**
+     * the cache generation the account was loaded in.
+     */
+    private final long generation;
+
+    /**
+     * construct from an account.
+     *
+     * @param account the account to copy, assumed non-null.
+     * @param expires the System.nanoTime() after which this snapshot should no longer be used.
+     * @param generation the cache generation the account was loaded in.
+     */
+    AccountSnapshot(final Account account, final long expires, final long generation) {
+        accountId = account.getAccountId();
+        balance = account.getBalanceUnits();
+        currency = account.getCurrency();
+        open = account.isOpen();
+        clientId = account.getClient() == null ? null : account.getClient().getClientId();
+        clientName = account.getClient() == null ? null : account.getClient().getName();
+        this.expires = expires;
+        this.generation = generation;
+    }
+
+    /**
+     * @return the cache generation the account was loaded in.
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * has this snapshot expired?
+     *
+     * @param now the current System.nanoTime().
+     * @return true if the snapshot should no longer be used.
+     */
+    boolean isExpired(final long now) {
+        return now - expires > 0;
+    }
+
+    /**
+     * build a new account from this snapshot, with its client but without any transactions.
+     *
+     * @return a new Account that the caller is free to modify.
+     */
+    Account toAccount() {
+        Account account = new Account();
+        account.setAccountId(accountId);
+        account.setBalanceUnits(balance);
+        account.setCurrency(currency);
+        account.setOpen(open);
+        if (clientId != null) {
+            Client client = new Client();
+            client.setClientId(clientId);
+            client.setName(clientName);
+            client.addAccount(account);
+        }
+        return account;
+    }
+}
@@ -0,0 +1,108 @@
+package net.parttimepolymath.model;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * immutable view of an account as listed in a client summary, holding its balance and only its most recent transactions.
+ *
+ * @author robert
+ */
+@Immutable
+public final class AccountSummary {
+    /**
+     * the account id.
+     */
+    @JsonProperty("accountId")
+    private final String accountId;
+    /**
+     * the ISO3 currency code.
+     */
+    @JsonProperty("currency")
+    private final String currency;
+    /**
+     * the current balance.
+     */
+    @JsonProperty("balance")
+    private final BigDecimal balance;
+    /**
+     * is the account open?
+     */
+    @JsonProperty("open")
+    private final boolean open;
+    /**
+     * the most recent transactions, newest first.
+     */
+    @JsonProperty("recentTransactions")
+    private final List<TransactionSummary> recentTransactions;
+
+    /**
+     * primary constructor.
+     *
+     * @param accountId the account id.
+     * @param currency the ISO3 currency code.
+     * @param balance the current balance.
+     * @param open is the account open?
+     * @param recent the most recent transactions, newest first. This is not copied, so should not be modified afterwards.
+     */
+    @JsonCreator
+    public AccountSummary(@JsonProperty("accountId") final String accountId, @JsonProperty("currency") final String currency,
+            @JsonProperty("balance") final BigDecimal balance, @JsonProperty("open") final boolean open,
+            @JsonProperty("recentTransactions") final List<TransactionSummary> recent) {
+        this.accountId = accountId;
+        this.currency = currency;
+        this.balance = balance;
+        this.open = open;
+        recentTransactions = recent == null ? Collections.<TransactionSummary> emptyList() : Collections.unmodifiableList(recent);
+    }
+
+    /**
+     * @return the account id.
+     */
+    public String getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return the ISO3 currency code.
+     */
+    public String getCurrency() {
+        return currency;
+    }
+
+    /**
+     * @return the current balance.
+     */
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    /**
+     * @return true if the account is open.
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * @return the most recent transactions, newest first.
+     */
+    public List<TransactionSummary> getRecentTransactions() {
+        return recentTransactions;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("accountId", accountId)
+                .append("currency", currency).append("balance", balance).append("open", open).toString();
+    }
+}
@@ -1,6 +1,5 @@
 package net.parttimepolymath.model;
 
-import java.math.BigDecimal;
 import javax.annotation.Generated;
 import javax.persistence.metamodel.ListAttribute;
 import javax.persistence.metamodel.SingularAttribute;
@@ -10,7 +9,7 @@ import javax.persistence.metamodel.StaticMetamodel;
 @StaticMetamodel(Account.class)
 public class Account_ {
 	public static volatile SingularAttribute<Account, String> accountId;
-	public static volatile SingularAttribute<Account, BigDecimal> balance;
+	public static volatile SingularAttribute<Account, Long> balance;
 	public static volatile SingularAttribute<Account, String> currency;
 	public static volatile SingularAttribute<Account, Byte> open;
 	public static volatile SingularAttribute<Account, Client> client;
@@ -0,0 +1,277 @@
+package net.parttimepolymath.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * read-through cache of account headers in front of another DataStore. Accounts returned from {@link #getAccount(String)}
+ * carry their client, but not their transaction history, which is available through {@link #getTransactions(String)} and
+ * {@link #visitTransactions(String, TransactionKey, int, TransactionHandler)}. Everything else is passed straight through to
+ * the underlying store.
+ * <p>
+ * Entries expire after a fixed time, and the cache holds at most a fixed number of entries, evicting expired entries first
+ * and then arbitrary ones when it is full. Every transfer made through this store invalidates the entries for the accounts
+ * it touched once the underlying store has committed it, so a balance read after a transfer has returned is never older than
+ * that transfer. Each entry records the generation of its stripe of account ids when it was loaded, and is only served while
+ * that generation is current, so a load that raced with an invalidation is never served.
+ * <p>
+ * Writes made to the underlying store by anything other than this instance are only seen once the entry expires.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class CachingDataStore implements DataStore {
+    /**
+     * number of generation stripes. Must be a power of two.
+     */
+    private static final int GENERATION_STRIPES = 256;
+
+    /**
+     * the store being cached.
+     */
+    private final DataStore delegate;
+    /**
+     * the largest number of entries to hold.
+     */
+    private final int maximumSize;
+    /**
+     * how long an entry lives, in nanoseconds.
+     */
+    private final long timeToLive;
+    /**
+     * the cached entries, by account id.
+     */
+    private final Map<String, AccountSnapshot> entries = new ConcurrentHashMap<>();
+    /**
+     * invalidation counts, by stripe of account id. A load is only kept if its stripe was not invalidated while it ran.
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    /**
+     * count of lookups answered from the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * count of lookups passed to the underlying store.
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * count of entries dropped because they expired or the cache was full.
+     */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * primary constructor.
+     *
+     * @param store the store to cache, assumed non-null.
+     * @param size the largest number of accounts to hold, must be positive.
+     * @param ttl how long an account may be held.
+     * @param unit the unit of the ttl.
+     */
+    public CachingDataStore(final DataStore store, final int size, final long ttl, final TimeUnit unit) {
+        delegate = store;
+        maximumSize = size;
+        timeToLive = unit.toNanos(ttl);
+    }
+
+    @Override
+    public List<Client> getClients() {
+        return delegate.getClients();
+    }
+
+    @Override
+    public Client getClient(final String clientId) {
+        return delegate.getClient(clientId);
+    }
+
+    @Override
+    public ClientSummary getClientSummary(final String clientId, final int recent) {
+        return delegate.getClientSummary(clientId, recent);
+    }
+
+    @Override
+    public List<Account> getAccounts(final String clientId) {
+        return delegate.getAccounts(clientId);
+    }
+
+    @Override
+    public Account getAccount(final String accountId) {
+        if (StringUtils.isBlank(accountId)) {
+            return null;
+        }
+
+        long now = System.nanoTime();
+        int stripe = stripe(accountId);
+        long generation = generations.get(stripe);
+        AccountSnapshot snapshot = entries.get(accountId);
+        if (snapshot != null) {
+            if (snapshot.getGeneration() == generation && !snapshot.isExpired(now)) {
+                hits.increment();
+                return snapshot.toAccount();
+            }
+            if (entries.remove(accountId, snapshot) && snapshot.getGeneration() == generation) {
+                evictions.increment();
+            }
+        }
+
+        misses.increment();
+        Account account = delegate.getAccount(accountId);
+        if (account == null) {
+            return null;
+        }
+
+        // if the account is invalidated while we are loading it, what we loaded may predate the write. The generation
+        // will have moved on, so the entry is never served and is replaced by the next load.
+        AccountSnapshot loaded = new AccountSnapshot(account, now + timeToLive, generation);
+        makeRoom();
+        entries.put(accountId, loaded);
+        return loaded.toAccount();
+    }
+
+    @Override
+    public List<Transaction> getTransactions(final String accountId) {
+        return delegate.getTransactions(accountId);
+    }
+
+    @Override
+    public int visitTransactions(final String accountId, final TransactionKey after, final int limit,
+            final TransactionHandler handler) throws IOException {
+        return delegate.visitTransactions(accountId, after, limit, handler);
+    }
+
+    @Override
+    public void addTransactions(final Transaction fromTransaction, final Transaction toTransaction) throws Exception {
+        try {
+            delegate.addTransactions(fromTransaction, toTransaction);
+        } finally {
+            invalidate(fromTransaction.getId().getAccountId());
+            invalidate(toTransaction.getId().getAccountId());
+        }
+    }
+
+    @Override
+    public void addTransactions(final Transaction fromTransaction, final Transaction toTransaction, final String idempotencyKey)
+            throws Exception {
+        try {
+            delegate.addTransactions(fromTransaction, toTransaction, idempotencyKey);
+        } finally {
+            invalidate(fromTransaction.getId().getAccountId());
+            invalidate(toTransaction.getId().getAccountId());
+        }
+    }
+
+    @Override
+    public String findTransfer(final String idempotencyKey) {
+        return delegate.findTransfer(idempotencyKey);
+    }
+
+    @Override
+    public long getStatementCount() {
+        return delegate.getStatementCount();
+    }
+
+    @Override
+    public long writeSnapshot(final File file) throws IOException {
+        return delegate.writeSnapshot(file);
+    }
+
+    @Override
+    public long writeSnapshot(final File file, final long journalGeneration) throws IOException {
+        return delegate.writeSnapshot(file, journalGeneration);
+    }
+
+    @Override
+    public List<Exception> addTransactions(final List<TransactionPair> pairs) {
+        try {
+            return delegate.addTransactions(pairs);
+        } finally {
+            for (TransactionPair pair : pairs) {
+                invalidate(pair.getFromTransaction().getId().getAccountId());
+                invalidate(pair.getToTransaction().getId().getAccountId());
+            }
+        }
+    }
+
+    /**
+     * drop any entry for an account, and stop any load of it that is in progress from being kept.
+     *
+     * @param accountId the account to invalidate.
+     */
+    public void invalidate(final String accountId) {
+        generations.incrementAndGet(stripe(accountId));
+        entries.remove(accountId);
+    }
+
+    /**
+     * @return the number of entries currently held.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of lookups answered from the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups passed to the underlying store.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries dropped because they expired or the cache was full.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * make sure there is room for one more entry. When the cache is full, expired entries are dropped first, then whatever
+     * comes to hand until a sixteenth of the cache is free, so the cost of the sweep is spread over the following loads. This
+     * is approximate when several threads add at once, but keeps the cache close to its bound without any global lock.
+     */
+    private void makeRoom() {
+        if (entries.size() < maximumSize) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<String, AccountSnapshot>> it = entries.entrySet().iterator(); it.hasNext();) {
+            if (it.next().getValue().isExpired(now)) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+        int target = maximumSize - 1 - maximumSize / 16;
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext() && entries.size() > target;) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * map an account id onto a generation stripe.
+     *
+     * @param accountId the account id.
+     * @return the stripe index.
+     */
+    private static int stripe(final String accountId) {
+        int hash = accountId.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+}
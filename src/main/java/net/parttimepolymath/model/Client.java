@@ -27,9 +27,7 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.eclipse.persistence.annotations.Cache;
 import org.eclipse.persistence.annotations.CacheType;
 
-import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 
 /**
  * The persistent class for the client database table. Note that some operations against this are not
@@ -42,7 +40,6 @@ import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 @Cache(type = CacheType.SOFT, size = 256, expiry = 60000)
 @Table(name = "client")
 @NamedQuery(name = "Client.findAll", query = "SELECT c FROM Client c")
-@JsonIdentityInfo(generator = ObjectIdGenerators.IntSequenceGenerator.class, property = "@id")
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Client implements Serializable {
     /**
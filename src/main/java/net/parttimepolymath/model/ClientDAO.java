@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.NoResultException;
 
 /**
  * access class for working with client table.
@@ -41,7 +42,11 @@ public final class ClientDAO extends GenericDaoImpl<Client, String> {
 
     @Override
     public Client getEntityByPrimaryKey(final Map<String, Object> parameters) {
-        return findFirstWithCriteria(simpleWhere("clientId", String.class, "client_id"), parameters);
+        Client client = read((String) parameters.get("client_id"));
+        if (client == null) {
+            throw new NoResultException();
+        }
+        return client;
     }
 
     @Override
@@ -51,6 +56,13 @@ public final class ClientDAO extends GenericDaoImpl<Client, String> {
         return parameters;
     }
 
+    /**
+     * get a client by its id. This goes straight to the entity manager, so it can be answered from the identity cache.
+     * 
+     * @param clientId the client id to match.
+     * @return the client.
+     * @throws NoResultException if there is no such client.
+     */
     public Client getClient(final String clientId) {
         Client template = new Client();
         template.setClientId(clientId);
@@ -0,0 +1,97 @@
+package net.parttimepolymath.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * immutable, detached view of a client with every account and its full history, as returned by the API when a client is
+ * expanded. Like {@link AccountDetail} it is a plain tree.
+ *
+ * @author robert
+ */
+@Immutable
+public final class ClientDetail {
+    /**
+     * the client id.
+     */
+    @JsonProperty("clientId")
+    private final String clientId;
+    /**
+     * the client name.
+     */
+    @JsonProperty("name")
+    private final String name;
+    /**
+     * the client's accounts.
+     */
+    @JsonProperty("accounts")
+    private final List<AccountDetail> accounts;
+
+    /**
+     * primary constructor.
+     *
+     * @param clientId the client id.
+     * @param name the client name.
+     * @param accounts the client's accounts. This is not copied, so should not be modified afterwards.
+     */
+    @JsonCreator
+    public ClientDetail(@JsonProperty("clientId") final String clientId, @JsonProperty("name") final String name,
+            @JsonProperty("accounts") final List<AccountDetail> accounts) {
+        this.clientId = clientId;
+        this.name = name;
+        this.accounts = accounts == null ? Collections.<AccountDetail> emptyList() : Collections.unmodifiableList(accounts);
+    }
+
+    /**
+     * make the view of a client and its accounts.
+     *
+     * @param client the client, or null.
+     * @return the view, or null if the client is null.
+     */
+    public static ClientDetail of(final Client client) {
+        if (client == null) {
+            return null;
+        }
+        List<AccountDetail> accounts = new ArrayList<>(client.getAccounts().size());
+        for (Account account : client.getAccounts()) {
+            accounts.add(AccountDetail.of(account));
+        }
+        return new ClientDetail(client.getClientId(), client.getName(), accounts);
+    }
+
+    /**
+     * @return the client id.
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return the client name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the client's accounts.
+     */
+    public List<AccountDetail> getAccounts() {
+        return accounts;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("clientId", clientId).append("name", name)
+                .append("accounts", accounts.size()).toString();
+    }
+}
@@ -0,0 +1,79 @@
+package net.parttimepolymath.model;
+
+import java.util.Collections;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * immutable summary of a client, its accounts and their balances, and the most recent transactions on each account. Unlike
+ * a {@link Client}, the size of a summary depends only on the number of accounts, not on how long their histories are.
+ *
+ * @author robert
+ */
+@Immutable
+public final class ClientSummary {
+    /**
+     * the client id.
+     */
+    @JsonProperty("clientId")
+    private final String clientId;
+    /**
+     * the client name.
+     */
+    @JsonProperty("name")
+    private final String name;
+    /**
+     * the client's accounts.
+     */
+    @JsonProperty("accounts")
+    private final List<AccountSummary> accounts;
+
+    /**
+     * primary constructor.
+     *
+     * @param clientId the client id.
+     * @param name the client name.
+     * @param accounts the client's accounts. This is not copied, so should not be modified afterwards.
+     */
+    @JsonCreator
+    public ClientSummary(@JsonProperty("clientId") final String clientId, @JsonProperty("name") final String name,
+            @JsonProperty("accounts") final List<AccountSummary> accounts) {
+        this.clientId = clientId;
+        this.name = name;
+        this.accounts = accounts == null ? Collections.<AccountSummary> emptyList() : Collections.unmodifiableList(accounts);
+    }
+
+    /**
+     * @return the client id.
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return the client name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the client's accounts.
+     */
+    public List<AccountSummary> getAccounts() {
+        return accounts;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("clientId", clientId).append("name", name)
+                .append("accounts", accounts.size()).toString();
+    }
+}
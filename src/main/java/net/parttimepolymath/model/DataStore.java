@@ -1,9 +1,16 @@
 package net.parttimepolymath.model;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 /**
  * this represents a facility for getting the model entities into and out of a persistent store.
+ * <p>
+ * Stores check balances as they write, so a transfer never overdraws an account whoever calls them. They do not serialise the
+ * reads a caller makes before a transfer, though. A caller that attaches accounts to the transactions it writes, so that a
+ * store can bring their balances up to date, must hold the account locks of both accounts from reading them until the transfer
+ * returns, as the controller's processors do. Otherwise a lean store may leave an attached account with a stale balance.
  * 
  * @author robert
  */
@@ -23,6 +30,16 @@ public interface DataStore {
      */
     Client getClient(String clientId);
 
+    /**
+     * get a summary of a client, with the balance and most recent transactions of each of its accounts. The summary is read
+     * in a fixed number of steps however many accounts and transactions the client has.
+     * 
+     * @param clientId the client identifier.
+     * @param recent the number of recent transactions to include for each account.
+     * @return the summary if the client can be found, null otherwise.
+     */
+    ClientSummary getClientSummary(String clientId, int recent);
+
     /**
      * get all accounts for a client.
      * 
@@ -47,12 +64,88 @@ public interface DataStore {
      */
     List<Transaction> getTransactions(String accountId);
 
+    /**
+     * pass one page of the transactions for an account to a handler, ordered by date then transaction id. Transactions are
+     * read as they are handed on, so the cost in memory does not depend on the size of the page or of the history.
+     *
+     * @param accountId the account identifier.
+     * @param after the key of the last transaction on the previous page, or null to start with the first transaction.
+     * @param limit the largest number of transactions to pass on.
+     * @param handler the handler to pass each transaction to, assumed non-null.
+     * @return the number of transactions passed to the handler.
+     * @throws IOException if the handler fails.
+     */
+    int visitTransactions(String accountId, TransactionKey after, int limit, TransactionHandler handler) throws IOException;
+
     /**
      * add two new transactions to the system and cause balances to be updated.
      * 
      * @param fromTransaction the transaction taking from the source account. assumed non-null.
      * @param toTransaction the transaction adding to the source account. assumed non-null.
-     * @throws Exception if there is a failure performing the update.
+     * @throws InsufficientFundsException if the source account does not hold enough funds, in which case nothing is written.
+     * @throws AccountNotOpenException if either account is missing or closed, in which case nothing is written.
+     * @throws Exception if there is any other failure performing the update.
      */
     void addTransactions(Transaction fromTransaction, Transaction toTransaction) throws Exception;
+
+    /**
+     * add two new transactions as for {@link #addTransactions(Transaction, Transaction)}, recording the idempotency key of the
+     * transfer in the same unit of work. A key can therefore only ever be used by one transfer that was made.
+     * 
+     * @param fromTransaction the transaction taking from the source account. assumed non-null.
+     * @param toTransaction the transaction adding to the source account. assumed non-null.
+     * @param idempotencyKey the key the client gave the transfer, or null if it gave none.
+     * @throws DuplicateTransferException if a transfer has already been made with the key, in which case nothing is written.
+     * @throws Exception if there is any other failure performing the update.
+     */
+    void addTransactions(Transaction fromTransaction, Transaction toTransaction, String idempotencyKey) throws Exception;
+
+    /**
+     * find the transfer that was made with an idempotency key.
+     * 
+     * @param idempotencyKey the key the client gave the transfer.
+     * @return the id of the source transaction of the transfer, or null if no transfer has been made with the key.
+     */
+    String findTransfer(String idempotencyKey);
+
+    /**
+     * get the number of SQL statements the store has sent to its database, counting each JDBC batch as one.
+     * 
+     * @return the count since the store was created, which is 0 for a store that does not use a database after loading.
+     */
+    long getStatementCount();
+
+    /**
+     * add a batch of transfers to the system in as few units of work as the store allows. Each transfer succeeds or fails on
+     * its own, so a transfer that cannot be made does not prevent the rest of the batch being applied. Transfers are applied
+     * in the order given.
+     * 
+     * @param pairs the transfers to make, assumed non-null.
+     * @return a list the same size as the batch, holding null for each transfer that was made, or the reason it was not.
+     */
+    List<Exception> addTransactions(List<TransactionPair> pairs);
+
+    /**
+     * write a consistent {@link Snapshot} of everything in the store, replacing the file only once the snapshot is complete.
+     * Transfers may be held up while the snapshot is taken.
+     * 
+     * @param file the snapshot file to write.
+     * @return the number of rows written, over all tables.
+     * @throws IOException if the snapshot cannot be taken or written.
+     */
+    long writeSnapshot(File file) throws IOException;
+
+    /**
+     * write a consistent {@link Snapshot} of everything in the store, as {@link #writeSnapshot(File)}, recording in it the
+     * generation of the {@link TransferJournal} that will hold the transfers made after it. This is for a store that journals
+     * the transfers made through another, which must make sure no transfer is made between the snapshot and the start of that
+     * generation.
+     * 
+     * @param file the snapshot file to write.
+     * @param journalGeneration the journal generation to record, or {@link Snapshot#NO_JOURNAL}.
+     * @return the number of rows written, over all tables.
+     * @throws IOException if the snapshot cannot be taken or written.
+     * @throws UnsupportedOperationException if the store keeps a journal of its own.
+     */
+    long writeSnapshot(File file, long journalGeneration) throws IOException;
 }
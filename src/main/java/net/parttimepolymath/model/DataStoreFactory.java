@@ -1,15 +1,26 @@
 package net.parttimepolymath.model;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 
+import net.parttimepolymath.metrics.PoolMetrics;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.io.IOUtils;
 import org.eclipse.persistence.config.PersistenceUnitProperties;
 import org.hsqldb.cmdline.SqlFile;
 import org.slf4j.Logger;
@@ -18,6 +29,15 @@ import org.slf4j.LoggerFactory;
 /**
  * helper class for constructing a DataStore. This is broken out so that we can reuse the same launch and populate
  * of hsqldb in both test and live run.
+ * <p>
+ * Each method has a form taking a {@link DatabaseConfig}, and a form using the in-memory database. The creation script is
+ * only run if the database does not already hold the schema, so a disk-backed database is opened as it was left. Where a
+ * {@link Snapshot} is given and exists, an empty database is loaded from it instead of from the script.
+ * <p>
+ * The JPA layer is given its connections by a DBCP pool over the database, sized from the {@link DatabaseConfig}. The pool
+ * rather than EclipseLink caches prepared statements, because EclipseLink drops its cache whenever it returns a connection to
+ * an external pool. There is one pool for each database URL, opened with the first JPA layer over the database and closed when
+ * the database is shut down, so a later JPA layer over the same database shares the pool and its configuration.
  * 
  * @author robert
  */
@@ -35,6 +55,24 @@ public final class DataStoreFactory {
      * name of our database.
      */
     public static final String DB_URL = "jdbc:hsqldb:mem:TRANSFER";
+    /**
+     * a table created by the creation script, whose presence shows that the script has already been run.
+     */
+    private static final String SCHEMA_TABLE = "ACCOUNT";
+    /**
+     * resource holding the tables of the creation script without their data, created before a snapshot is loaded.
+     */
+    private static final String SCHEMA_SCRIPT = "/schema.sql";
+    /**
+     * the connection pools opened by the JPA layer, by database URL.
+     */
+    private static final ConcurrentMap<String, MeteredDataSource> POOLS = new ConcurrentHashMap<String, MeteredDataSource>();
+
+    /**
+     * hidden constructor.
+     */
+    private DataStoreFactory() {
+    }
 
     /**
      * construct a DataStore.
@@ -43,42 +81,382 @@ public final class DataStoreFactory {
      * @return the data store
      */
     public static DataStore makeDataStore(final String createScript) {
+        return makeDataStore(createScript, DatabaseConfig.IN_MEMORY);
+    }
+
+    /**
+     * construct a DataStore over a given database.
+     * 
+     * @param createScript - the db creation script, run if the database does not yet hold the schema.
+     * @param config - where the database is and how to connect to it.
+     * @return the data store
+     */
+    public static DataStore makeDataStore(final String createScript, final DatabaseConfig config) {
+        return makeDataStore(createScript, config, (File) null);
+    }
+
+    /**
+     * construct a DataStore over a given database, loading an empty database from a snapshot if there is one.
+     * 
+     * @param createScript - the db creation script, run if the database does not yet hold the schema and there is no snapshot.
+     * @param config - where the database is and how to connect to it.
+     * @param snapshot - the snapshot to load if the database does not yet hold the schema, possibly null or missing.
+     * @return the data store
+     */
+    public static DataStore makeDataStore(final String createScript, final DatabaseConfig config, final File snapshot) {
+        return new JPADataStore(makeEntityManagerFactory(createScript, config, snapshot));
+    }
+
+    /**
+     * construct a DataStore over the in-memory database, made durable by a journal. The database is built from the script, and
+     * every transfer in the journal is then replayed onto it before the store is returned. A disk-backed database needs no
+     * journal, and replaying onto one would repeat transfers it already holds, so it is refused.
+     * 
+     * @param createScript - the db creation script.
+     * @param config - where the database is and how to connect to it, which must be in memory.
+     * @param journal - the journal to replay and then write transfers to.
+     * @return the data store
+     * @throws IllegalArgumentException if the database is disk-backed.
+     */
+    public static DataStore makeDataStore(final String createScript, final DatabaseConfig config, final TransferJournal journal) {
+        return makeDataStore(createScript, config, null, journal);
+    }
+
+    /**
+     * construct a DataStore over the in-memory database, built from a snapshot if there is one and made durable by a journal.
+     * The transfers in the journal made after the snapshot was taken are replayed onto it before the store is returned, and
+     * snapshots taken of the store roll the journal on, so a restart replays only the transfers made since the last snapshot.
+     * 
+     * @param createScript - the db creation script, run if there is no snapshot.
+     * @param config - where the database is and how to connect to it, which must be in memory.
+     * @param snapshot - the snapshot to load, possibly null or missing.
+     * @param journal - the journal to replay and then write transfers to.
+     * @return the data store
+     * @throws IllegalArgumentException if the database is disk-backed.
+     * @throws IllegalStateException if the journal holds transfers made after a snapshot that is missing.
+     */
+    public static DataStore makeDataStore(final String createScript, final DatabaseConfig config, final File snapshot,
+            final TransferJournal journal) {
+        if (config.isFileBacked()) {
+            throw new IllegalArgumentException("a disk-backed database cannot be journalled");
+        }
+        return journal(makeDataStore(createScript, config, snapshot), journal, snapshot);
+    }
+
+    /**
+     * create the database and the JPA layer over it, without wrapping it in a DataStore. This is mainly useful for measuring
+     * the JPA layer directly.
+     * 
+     * @param createScript - the db creation script.
+     * @return the entity manager factory.
+     */
+    public static EntityManagerFactory makeEntityManagerFactory(final String createScript) {
+        return makeEntityManagerFactory(createScript, DatabaseConfig.IN_MEMORY);
+    }
+
+    /**
+     * open a given database, creating it if need be, and the JPA layer over it. The caller should close the factory before
+     * shutting the database down if the same database is to be opened again in this JVM.
+     * 
+     * @param createScript - the db creation script, run if the database does not yet hold the schema.
+     * @param config - where the database is and how to connect to it.
+     * @return the entity manager factory.
+     */
+    public static EntityManagerFactory makeEntityManagerFactory(final String createScript, final DatabaseConfig config) {
+        return makeEntityManagerFactory(createScript, config, null);
+    }
 
+    /**
+     * open a given database, creating it from a snapshot or script if need be, and the JPA layer over it.
+     * 
+     * @param createScript - the db creation script, run if the database does not yet hold the schema and there is no snapshot.
+     * @param config - where the database is and how to connect to it.
+     * @param snapshot - the snapshot to load if the database does not yet hold the schema, possibly null or missing.
+     * @return the entity manager factory.
+     */
+    public static EntityManagerFactory makeEntityManagerFactory(final String createScript, final DatabaseConfig config,
+            final File snapshot) {
         Connection jdbcConnection = null;
+        MeteredDataSource pool;
         try {
-            LOGGER.info("Creating test database for in-memory database context (url=" + DB_URL + ")");
-            Class.forName(DRIVER_CLASS);
-            jdbcConnection = DriverManager.getConnection(DB_URL);
-
-            SqlFile sqlFile = new SqlFile(new StringReader(createScript), "createTestDBReader", System.out, null, false, null);
-            sqlFile.setConnection(jdbcConnection);
-            sqlFile.execute();
-            LOGGER.info("script executed ok");
+            jdbcConnection = createDatabase(createScript, config, snapshot);
+            pool = openPool(config);
         } catch (Exception ex) {
             ex.printStackTrace();
             throw new RuntimeException("createTestDatabase failed", ex);
         } finally {
-            if (jdbcConnection != null) {
-                try {
-                    jdbcConnection.close();
-                } catch (Exception ex) {
-                    LOGGER.warn("failed to close connection: " + ex.getMessage());
+            close(jdbcConnection);
+        }
+
+        return Persistence.createEntityManagerFactory("transferServer", emfProperties(pool));
+    }
+
+    /**
+     * find the metrics of the connection pool over a database.
+     * 
+     * @param config - where the database is and how to connect to it.
+     * @return the metrics, or null if no JPA layer has been opened over the database since it was last shut down.
+     */
+    public static PoolMetrics getPoolMetrics(final DatabaseConfig config) {
+        MeteredDataSource pool = POOLS.get(config.getUrl());
+        return pool == null ? null : pool.getMetrics();
+    }
+
+    /**
+     * get the connection pool over a database, opening it with its minimum number of connections if there is not one already.
+     * 
+     * @param config - where the database is and how to connect to it.
+     * @return the pool.
+     * @throws SQLException if the pool cannot open its connections.
+     */
+    private static MeteredDataSource openPool(final DatabaseConfig config) throws SQLException {
+        MeteredDataSource pool = POOLS.get(config.getUrl());
+        if (pool == null) {
+            BasicDataSource dbcp = new BasicDataSource();
+            dbcp.setDriverClassName(DRIVER_CLASS);
+            dbcp.setUrl(config.getUrl());
+            dbcp.setUsername(config.getUser());
+            dbcp.setPassword(config.getPassword());
+            dbcp.setInitialSize(config.getPoolMin());
+            dbcp.setMinIdle(config.getPoolMin());
+            // connections returned when more than the minimum are idle are kept, rather than closed and opened again.
+            dbcp.setMaxIdle(config.getPoolMax());
+            dbcp.setMaxTotal(config.getPoolMax());
+            dbcp.setMaxWaitMillis(config.getAcquireTimeout());
+            if (config.getStatementCache() > 0) {
+                dbcp.setPoolPreparedStatements(true);
+                dbcp.setMaxOpenPreparedStatements(config.getStatementCache());
+            }
+            dbcp.start();
+            MeteredDataSource created = new MeteredDataSource(dbcp);
+            pool = POOLS.putIfAbsent(config.getUrl(), created);
+            if (pool == null) {
+                pool = created;
+            } else {
+                created.close();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * construct an in-memory DataStore. The script is run against HSQLDB exactly as for {@link #makeDataStore(String)}, and the
+     * resulting model is then loaded into the ledger. After this the database is no longer used by the DataStore.
+     * 
+     * @param createScript - the db creation script.
+     * @return the data store
+     */
+    public static DataStore makeMemoryDataStore(final String createScript) {
+        return makeMemoryDataStore(createScript, DatabaseConfig.IN_MEMORY);
+    }
+
+    /**
+     * construct an in-memory DataStore loaded from a given database. Transfers made through the DataStore are not written back
+     * to the database, so they are lost on restart even if the database is kept on disk.
+     * 
+     * @param createScript - the db creation script, run if the database does not yet hold the schema.
+     * @param config - where the database is and how to connect to it.
+     * @return the data store
+     */
+    public static DataStore makeMemoryDataStore(final String createScript, final DatabaseConfig config) {
+        return makeMemoryDataStore(createScript, config, (File) null);
+    }
+
+    /**
+     * construct an in-memory DataStore loaded from a given database, loading an empty database from a snapshot first if there
+     * is one. The ledger writes its snapshots itself, so a snapshot taken from it holds the transfers made through it.
+     * 
+     * @param createScript - the db creation script, run if the database does not yet hold the schema and there is no snapshot.
+     * @param config - where the database is and how to connect to it.
+     * @param snapshot - the snapshot to load if the database does not yet hold the schema, possibly null or missing.
+     * @return the data store
+     */
+    public static DataStore makeMemoryDataStore(final String createScript, final DatabaseConfig config, final File snapshot) {
+        Connection jdbcConnection = null;
+        try {
+            jdbcConnection = createDatabase(createScript, config, snapshot);
+            DataStore dataStore = new MemoryDataStore(jdbcConnection);
+            LOGGER.info("in-memory ledger loaded ok");
+            return dataStore;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            throw new RuntimeException("createMemoryDataStore failed", ex);
+        } finally {
+            close(jdbcConnection);
+        }
+    }
+
+    /**
+     * construct an in-memory DataStore loaded from a given database, made durable by a journal. Every transfer in the journal is
+     * replayed onto the ledger before it is returned. The ledger never writes to the database, so this is sound whether or not
+     * the database is disk-backed, as long as the database is not changed by anything else between runs.
+     * 
+     * @param createScript - the db creation script, run if the database does not yet hold the schema.
+     * @param config - where the database is and how to connect to it.
+     * @param journal - the journal to replay and then write transfers to.
+     * @return the data store
+     */
+    public static DataStore makeMemoryDataStore(final String createScript, final DatabaseConfig config, final TransferJournal journal) {
+        return journal(makeMemoryDataStore(createScript, config), journal, null);
+    }
+
+    /**
+     * construct an in-memory DataStore loaded from a snapshot if there is one, made durable by a journal. The transfers in the
+     * journal made after the snapshot was taken are replayed onto the ledger before it is returned, and snapshots taken of the
+     * ledger roll the journal on. A disk-backed database is only loaded from the snapshot the first time, and would be loaded
+     * without the transfers the journal was rolled past after that, so it is refused.
+     * 
+     * @param createScript - the db creation script, run if there is no snapshot.
+     * @param config - where the database is and how to connect to it, which must be in memory.
+     * @param snapshot - the snapshot to load, possibly null or missing.
+     * @param journal - the journal to replay and then write transfers to.
+     * @return the data store
+     * @throws IllegalArgumentException if the database is disk-backed.
+     * @throws IllegalStateException if the journal holds transfers made after a snapshot that is missing.
+     */
+    public static DataStore makeMemoryDataStore(final String createScript, final DatabaseConfig config, final File snapshot,
+            final TransferJournal journal) {
+        if (config.isFileBacked()) {
+            throw new IllegalArgumentException("a disk-backed database cannot be loaded from a snapshot with a journal");
+        }
+        return journal(makeMemoryDataStore(createScript, config, snapshot), journal, snapshot);
+    }
+
+    /**
+     * replay a journal onto a freshly loaded store, and wrap the store so that further transfers are journalled. A snapshot
+     * records the journal generation that follows it. If the journal has not reached that generation, the snapshot was taken
+     * but the journal not rolled, so the snapshot already holds everything in the journal, which is rolled on rather than
+     * replayed.
+     * 
+     * @param store - the store, as loaded from the snapshot, creation script or database.
+     * @param journal - the journal.
+     * @param snapshot - the snapshot the store was loaded from, possibly null or missing.
+     * @return the wrapped store.
+     * @throws IllegalStateException if the journal holds transfers made after a snapshot that is missing.
+     */
+    private static DataStore journal(final DataStore store, final TransferJournal journal, final File snapshot) {
+        try {
+            long mark = snapshot != null && snapshot.isFile() ? Snapshot.readJournalGeneration(snapshot) : Snapshot.NO_JOURNAL;
+            long generation = journal.getGeneration();
+            if (mark > generation) {
+                LOGGER.info("snapshot is ahead of the journal, rolling the journal on to generation " + mark);
+                journal.roll(mark);
+            } else if (mark == generation || mark == Snapshot.NO_JOURNAL && generation == TransferJournal.FIRST_GENERATION) {
+                journal.replay(store);
+            } else {
+                throw new IllegalStateException("journal generation " + generation + " follows a snapshot that is missing");
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("journal replay failed", ex);
+        }
+        return new JournalingDataStore(store, journal);
+    }
+
+    /**
+     * open the database, and if it does not yet hold the schema either load it from the snapshot or execute the creation
+     * script against it. A disk-backed database is set to create CACHED tables before the script runs, and to sync commits
+     * as configured.
+     * 
+     * @param createScript - the db creation script.
+     * @param config - where the database is and how to connect to it.
+     * @param snapshot - the snapshot to load in preference to the script, possibly null or missing.
+     * @return the open connection the script was executed on.
+     * @throws Exception if the database cannot be created.
+     */
+    private static Connection createDatabase(final String createScript, final DatabaseConfig config, final File snapshot)
+            throws Exception {
+        LOGGER.info("Opening database (url=" + config.getUrl() + ")");
+        Class.forName(DRIVER_CLASS);
+        Connection jdbcConnection = DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
+        try {
+            if (config.isFileBacked()) {
+                try (Statement statement = jdbcConnection.createStatement()) {
+                    statement.execute("SET DATABASE DEFAULT TABLE TYPE CACHED");
+                    statement.execute(config.isSyncCommits() ? "SET FILES WRITE DELAY FALSE" : "SET FILES WRITE DELAY TRUE");
                 }
             }
+            if (hasSchema(jdbcConnection)) {
+                LOGGER.info("schema already present, script not executed");
+                return jdbcConnection;
+            }
+            if (snapshot != null && snapshot.isFile()) {
+                long start = System.nanoTime();
+                executeScript(IOUtils.toString(DataStoreFactory.class.getResourceAsStream(SCHEMA_SCRIPT), "UTF-8"), jdbcConnection);
+                long rows = Snapshot.load(snapshot, jdbcConnection);
+                LOGGER.info("snapshot loaded ok ({} rows in {} ms)", rows, (System.nanoTime() - start) / 1000000L);
+                return jdbcConnection;
+            }
+            executeScript(createScript, jdbcConnection);
+            LOGGER.info("script executed ok");
+            return jdbcConnection;
+        } catch (Exception ex) {
+            close(jdbcConnection);
+            throw ex;
         }
+    }
 
-        EntityManagerFactory emf = Persistence.createEntityManagerFactory("transferServer", emfProperties());
-        return new JPADataStore(emf);
+    /**
+     * execute a script against the database.
+     * 
+     * @param script - the script.
+     * @param jdbcConnection - an open connection.
+     * @throws Exception if the script fails.
+     */
+    private static void executeScript(final String script, final Connection jdbcConnection) throws Exception {
+        SqlFile sqlFile = new SqlFile(new StringReader(script), "createTestDBReader", System.out, null, false, null);
+        sqlFile.setConnection(jdbcConnection);
+        sqlFile.execute();
+    }
+
+    /**
+     * @param jdbcConnection an open connection.
+     * @return true if the database holds the tables made by the creation script.
+     * @throws SQLException if the database cannot be examined.
+     */
+    private static boolean hasSchema(final Connection jdbcConnection) throws SQLException {
+        try (ResultSet tables = jdbcConnection.getMetaData().getTables(null, null, SCHEMA_TABLE, new String[] { "TABLE" })) {
+            return tables.next();
+        }
+    }
+
+    /**
+     * quietly close a possibly null connection.
+     * 
+     * @param jdbcConnection the connection to close.
+     */
+    private static void close(final Connection jdbcConnection) {
+        if (jdbcConnection != null) {
+            try {
+                jdbcConnection.close();
+            } catch (Exception ex) {
+                LOGGER.warn("failed to close connection: " + ex.getMessage());
+            }
+        }
     }
 
     /**
      * assuming a HSQLDB instance is running, shut it down.
      */
     public static void shutdownDatabase() {
+        shutdownDatabase(DatabaseConfig.IN_MEMORY);
+    }
+
+    /**
+     * assuming a given HSQLDB instance is running, shut it down. A disk-backed database is left in a state that opens
+     * without replaying its log, and an in-memory database is discarded.
+     * 
+     * @param config - where the database is and how to connect to it.
+     */
+    public static void shutdownDatabase(final DatabaseConfig config) {
+        // the pool goes first, so that none of its connections outlive the database and the next JPA layer gets a fresh pool.
+        MeteredDataSource pool = POOLS.remove(config.getUrl());
         Connection jdbcConnection = null;
         try {
+            if (pool != null) {
+                pool.close();
+            }
             Class.forName(DRIVER_CLASS);
-            jdbcConnection = DriverManager.getConnection(DB_URL);
+            jdbcConnection = DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
             try (PreparedStatement ps = jdbcConnection.prepareStatement("shutdown;")) {
                 ps.execute();
             }
@@ -100,25 +478,16 @@ public final class DataStoreFactory {
     /**
      * build a set of properties to pass to the JPA layer.
      * 
+     * @param pool - the pool the JPA layer takes its connections from.
      * @return a set of key/value pairs.
      */
-    private static Map<String, String> emfProperties() {
-        Map<String, String> props = new HashMap<String, String>();
-        props.put(PersistenceUnitProperties.JDBC_URL, DB_URL);
-        props.put(PersistenceUnitProperties.JDBC_DRIVER, DRIVER_CLASS);
-        props.put(PersistenceUnitProperties.JDBC_USER, "SA");
-        props.put(PersistenceUnitProperties.JDBC_PASSWORD, "");
-
-        props.put(PersistenceUnitProperties.CACHE_STATEMENTS, "true");
+    private static Map<String, Object> emfProperties(final MeteredDataSource pool) {
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(PersistenceUnitProperties.NON_JTA_DATASOURCE, pool);
+        props.put(PersistenceUnitProperties.TARGET_DATABASE, "HSQL");
+        props.put(PersistenceUnitProperties.CACHE_STATEMENTS, "false");
+        props.put(PersistenceUnitProperties.SESSION_CUSTOMIZER, PooledSessionCustomizer.class.getName());
         props.put(PersistenceUnitProperties.BATCH_WRITING, "JDBC");
-
-        props.put(PersistenceUnitProperties.CONNECTION_POOL_INITIAL, "4");
-        props.put(PersistenceUnitProperties.CONNECTION_POOL_MIN, "4");
-        props.put(PersistenceUnitProperties.CONNECTION_POOL_MAX, "16");
-
-        props.put("eclipselink.jdbc.connections.initial", "4");
-        props.put("eclipselink.jdbc.connections.min", "4");
-        props.put("eclipselink.jdbc.connections.max", "16");
         return props;
     }
 }
@@ -0,0 +1,222 @@
+package net.parttimepolymath.model;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * where the database lives and how the JPA layer connects to it. The default is the in-memory HSQLDB database the server has
+ * always used, which is lost when the JVM stops. A {@code jdbc:hsqldb:file:} URL gives a database kept on disk, created with
+ * CACHED tables so that only part of it need be held in memory, and opened again as it was left on the next start.
+ * <p>
+ * The JPA layer gets its connections from a pool, which keeps at least the minimum number of connections idle and opens up
+ * to the maximum under load. A request for a connection that cannot be met within the acquire timeout fails. Each connection
+ * keeps up to the statement cache size of its prepared statements open for reuse.
+ *
+ * @author robert
+ */
+@Immutable
+public final class DatabaseConfig {
+    /**
+     * prefix of the URL of a disk-backed HSQLDB database.
+     */
+    public static final String FILE_PREFIX = "jdbc:hsqldb:file:";
+    /**
+     * default number of connections kept open to the database.
+     */
+    public static final int DEFAULT_POOL_MIN = 4;
+    /**
+     * default largest number of connections opened to the database.
+     */
+    public static final int DEFAULT_POOL_MAX = 16;
+    /**
+     * default number of milliseconds to wait for a connection from the pool.
+     */
+    public static final int DEFAULT_ACQUIRE_TIMEOUT = 5000;
+    /**
+     * default number of prepared statements cached for each connection.
+     */
+    public static final int DEFAULT_STATEMENT_CACHE = 64;
+    /**
+     * the in-memory database.
+     */
+    public static final DatabaseConfig IN_MEMORY = new DatabaseConfig(DataStoreFactory.DB_URL);
+
+    /**
+     * the JDBC URL of the database.
+     */
+    private final String url;
+    /**
+     * the user to connect as.
+     */
+    private final String user;
+    /**
+     * the password of the user.
+     */
+    private final String password;
+    /**
+     * the number of connections kept idle.
+     */
+    private final int poolMin;
+    /**
+     * the largest number of connections opened.
+     */
+    private final int poolMax;
+    /**
+     * the number of milliseconds to wait for a connection from the pool.
+     */
+    private final int acquireTimeout;
+    /**
+     * the number of prepared statements cached for each connection, 0 for none.
+     */
+    private final int statementCache;
+    /**
+     * true if a disk-backed database should sync its log to disk on every commit, rather than every half second.
+     */
+    private final boolean syncCommits;
+
+    /**
+     * construct with the default user, pool and syncing of commits.
+     *
+     * @param url the JDBC URL of the database, assumed non-null.
+     */
+    public DatabaseConfig(final String url) {
+        this(url, "SA", "", DEFAULT_POOL_MIN, DEFAULT_POOL_MAX, true);
+    }
+
+    /**
+     * construct with the default acquire timeout and statement cache.
+     *
+     * @param url the JDBC URL of the database, assumed non-null.
+     * @param user the user to connect as.
+     * @param password the password of the user.
+     * @param poolMin the number of connections kept idle, at least 1.
+     * @param poolMax the largest number of connections opened, at least poolMin.
+     * @param syncCommits true if a disk-backed database should sync its log to disk on every commit. If false, a commit may
+     *            be lost if the machine fails within half a second of it, but commits are much cheaper. Ignored for the
+     *            in-memory database.
+     * @throws IllegalArgumentException if the pool sizes are out of range.
+     */
+    public DatabaseConfig(final String url, final String user, final String password, final int poolMin, final int poolMax,
+            final boolean syncCommits) {
+        this(url, user, password, poolMin, poolMax, DEFAULT_ACQUIRE_TIMEOUT, DEFAULT_STATEMENT_CACHE, syncCommits);
+    }
+
+    /**
+     * primary constructor.
+     *
+     * @param url the JDBC URL of the database, assumed non-null.
+     * @param user the user to connect as.
+     * @param password the password of the user.
+     * @param poolMin the number of connections kept idle, at least 1.
+     * @param poolMax the largest number of connections opened, at least poolMin.
+     * @param acquireTimeout the number of milliseconds to wait for a connection, at least 1.
+     * @param statementCache the number of prepared statements cached for each connection, 0 for none.
+     * @param syncCommits true if a disk-backed database should sync its log to disk on every commit. If false, a commit may
+     *            be lost if the machine fails within half a second of it, but commits are much cheaper. Ignored for the
+     *            in-memory database.
+     * @throws IllegalArgumentException if the pool sizes, timeout or statement cache are out of range.
+     */
+    public DatabaseConfig(final String url, final String user, final String password, final int poolMin, final int poolMax,
+            final int acquireTimeout, final int statementCache, final boolean syncCommits) {
+        if (poolMin < 1 || poolMax < poolMin) {
+            throw new IllegalArgumentException("pool must have at least 1 connection and no more than its maximum");
+        }
+        if (acquireTimeout < 1) {
+            throw new IllegalArgumentException("acquire timeout must be at least 1ms");
+        }
+        if (statementCache < 0) {
+            throw new IllegalArgumentException("statement cache must not be negative");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.poolMin = poolMin;
+        this.poolMax = poolMax;
+        this.acquireTimeout = acquireTimeout;
+        this.statementCache = statementCache;
+        this.syncCommits = syncCommits;
+    }
+
+    /**
+     * construct the configuration of a disk-backed database with the default user, pool and syncing of commits.
+     *
+     * @param path the path to the database files, without extension, for instance data/transfer.
+     * @return a new configuration.
+     */
+    public static DatabaseConfig file(final String path) {
+        return new DatabaseConfig(FILE_PREFIX + path);
+    }
+
+    /**
+     * @return the JDBC URL of the database.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the user to connect as.
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * @return the password of the user.
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * @return the number of connections kept idle.
+     */
+    public int getPoolMin() {
+        return poolMin;
+    }
+
+    /**
+     * @return the largest number of connections opened.
+     */
+    public int getPoolMax() {
+        return poolMax;
+    }
+
+    /**
+     * @return the number of milliseconds to wait for a connection from the pool.
+     */
+    public int getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * @return the number of prepared statements cached for each connection, 0 for none.
+     */
+    public int getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * @return true if a disk-backed database should sync its log to disk on every commit.
+     */
+    public boolean isSyncCommits() {
+        return syncCommits;
+    }
+
+    /**
+     * @return true if the database is kept on disk.
+     */
+    public boolean isFileBacked() {
+        return StringUtils.startsWithIgnoreCase(url, FILE_PREFIX);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("url", url).append("user", user)
+                .append("poolMin", poolMin).append("poolMax", poolMax).append("acquireTimeout", acquireTimeout)
+                .append("statementCache", statementCache).append("syncCommits", syncCommits).toString();
+    }
+}
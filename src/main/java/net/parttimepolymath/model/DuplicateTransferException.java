@@ -0,0 +1,37 @@
+package net.parttimepolymath.model;
+
+/**
+ * thrown by a DataStore when a transfer is refused because a transfer has already been made with the same idempotency key.
+ * Nothing is written, and the exception carries the id of the source transaction of the transfer that was made.
+ *
+ * @author robert
+ */
+public final class DuplicateTransferException extends Exception {
+    /**
+     * serial id.
+     */
+    private static final long serialVersionUID = -6140392458021944733L;
+
+    /**
+     * the id of the source transaction of the earlier transfer.
+     */
+    private final String transactionId;
+
+    /**
+     * construct for a given key.
+     *
+     * @param idempotencyKey the key that has already been used.
+     * @param txId the id of the source transaction of the transfer made with the key.
+     */
+    public DuplicateTransferException(final String idempotencyKey, final String txId) {
+        super("transfer already made with key " + idempotencyKey);
+        transactionId = txId;
+    }
+
+    /**
+     * @return the id of the source transaction of the earlier transfer.
+     */
+    public String getTransactionId() {
+        return transactionId;
+    }
+}
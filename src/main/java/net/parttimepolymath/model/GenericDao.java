@@ -116,6 +116,24 @@ public interface GenericDao<T, PK extends Serializable> {
      */
     T findFirstWithCriteria(CriteriaQuery<T> criterion, Map<String, Object> parameters);
 
+    /**
+     * get the set of T whose attributes equal the given values. The query for each distinct set of attribute names is built
+     * once, registered as a named query, and reused from then on, so repeated lookups skip query construction and SQL generation.
+     * 
+     * @param equalities map of attribute path (for instance "client.clientId") to the value it must equal. May be empty.
+     * @return a non-null but possibly empty list of T.
+     */
+    List<T> findWhere(Map<String, Object> equalities);
+
+    /**
+     * get a limited set of T whose attributes equal the given values, as for {@link #findWhere(Map)}.
+     * 
+     * @param equalities map of attribute path to the value it must equal. May be empty.
+     * @param resultLimit the maximum number of T to retrieve, or 0 for no limit.
+     * @return a non-null but possibly empty list of T.
+     */
+    List<T> findWhere(Map<String, Object> equalities, int resultLimit);
+
     /**
      * find a T, or create it if it is not present.
      * 
@@ -3,11 +3,17 @@ package net.parttimepolymath.model;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.NoResultException;
 import javax.persistence.TypedQuery;
@@ -25,6 +31,12 @@ import javax.persistence.criteria.Root;
  * @param <PK> the type of the primary key of the entity.
  */
 public abstract class GenericDaoImpl<T, PK extends Serializable> implements GenericDao<T, PK>, AutoCloseable {
+    /**
+     * the names of the queries findWhere has registered with each EntityManagerFactory. A factory forgets nothing once a
+     * query is registered, so this only has to be remembered for as long as the factory is alive.
+     */
+    private static final Map<EntityManagerFactory, Set<String>> REGISTERED_QUERIES = Collections
+            .synchronizedMap(new WeakHashMap<EntityManagerFactory, Set<String>>());
 
     /**
      * the apparent class of T.
@@ -133,14 +145,28 @@ public abstract class GenericDaoImpl<T, PK extends Serializable> implements Gene
     }
 
     @Override
-    public final List<T> findAll() {
-        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<T> cq = cb.createQuery(entityClass);
-        Root<T> root = cq.from(entityClass);
-        CriteriaQuery<T> all = cq.select(root);
-        TypedQuery<T> allQuery = entityManager.createQuery(all);
+    public final List<T> findWhere(final Map<String, Object> equalities) {
+        return findWhere(equalities, 0);
+    }
+
+    @Override
+    public final List<T> findWhere(final Map<String, Object> equalities, final int resultLimit) {
+        List<String> attributes = new ArrayList<>(equalities.keySet());
+        Collections.sort(attributes);
+
+        TypedQuery<T> query = entityManager.createNamedQuery(registerWhere(attributes), entityClass);
+        if (resultLimit > 0) {
+            query.setMaxResults(resultLimit);
+        }
+        for (int i = 0; i < attributes.size(); i++) {
+            query.setParameter("p" + i, equalities.get(attributes.get(i)));
+        }
+        return query.getResultList();
+    }
 
-        return allQuery.getResultList();
+    @Override
+    public final List<T> findAll() {
+        return findWhere(Collections.<String, Object> emptyMap());
     }
 
     @Override
@@ -204,6 +230,38 @@ public abstract class GenericDaoImpl<T, PK extends Serializable> implements Gene
         }
     }
 
+    /**
+     * make sure there is a named query selecting T by equality on the given attributes, registering it with the factory on
+     * first use. The factory parses the query once, and hands out ready-made copies of it from then on.
+     * 
+     * @param attributes the attribute paths to match, in the order their parameters are numbered.
+     * @return the name of the query.
+     */
+    private String registerWhere(final List<String> attributes) {
+        StringBuilder name = new StringBuilder(entityClass.getSimpleName()).append(".where");
+        StringBuilder jpql = new StringBuilder("SELECT e FROM ").append(entityClass.getSimpleName()).append(" e");
+        for (int i = 0; i < attributes.size(); i++) {
+            name.append(i == 0 ? ":" : ",").append(attributes.get(i));
+            jpql.append(i == 0 ? " WHERE " : " AND ").append("e.").append(attributes.get(i)).append(" = :p").append(i);
+        }
+        String queryName = name.toString();
+
+        EntityManagerFactory emf = entityManager.getEntityManagerFactory();
+        Set<String> registered;
+        synchronized (REGISTERED_QUERIES) {
+            registered = REGISTERED_QUERIES.get(emf);
+            if (registered == null) {
+                registered = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                REGISTERED_QUERIES.put(emf, registered);
+            }
+        }
+        if (!registered.contains(queryName)) {
+            emf.addNamedQuery(queryName, entityManager.createQuery(jpql.toString(), entityClass));
+            registered.add(queryName);
+        }
+        return queryName;
+    }
+
     @Override
     public final void close() throws IOException {
         entityManager.close();
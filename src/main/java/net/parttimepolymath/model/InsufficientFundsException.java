@@ -0,0 +1,23 @@
+package net.parttimepolymath.model;
+
+/**
+ * thrown by a DataStore when a transfer is rejected at the point of writing because the source account no longer holds
+ * enough funds. This can happen even when the balance was checked beforehand, if another transfer got there first.
+ *
+ * @author robert
+ */
+public final class InsufficientFundsException extends Exception {
+    /**
+     * serial id.
+     */
+    private static final long serialVersionUID = 4409871532217733263L;
+
+    /**
+     * construct for a given account.
+     *
+     * @param accountId the account that could not be debited.
+     */
+    public InsufficientFundsException(final String accountId) {
+        super("insufficient funds in account " + accountId);
+    }
+}
@@ -1,9 +1,19 @@
 package net.parttimepolymath.model;
 
+import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -13,6 +23,11 @@ import javax.persistence.NoResultException;
 import net.jcip.annotations.ThreadSafe;
 
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.SessionProfiler;
+import org.eclipse.persistence.sessions.server.Server;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,16 +42,111 @@ public final class JPADataStore implements DataStore {
      * local copy of the Factory to be used by the JPA layer.
      */
     private final EntityManagerFactory emf;
+    /**
+     * if true, balances of accounts attached to a transfer are worked out rather than read back from the database.
+     */
+    private final boolean leanCommit;
+    /**
+     * count of the statements sent to the database, shared with any other store on the same factory.
+     */
+    private final StatementCounter statements;
     /**
      * Class logger.
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(JPADataStore.class);
+    /**
+     * adjust both balances in one statement. Only open accounts match, and the debit row only if it holds enough funds.
+     */
+    private static final String TRANSFER_SQL = "UPDATE account SET balance = balance"
+            + " + CASE WHEN account_id = ? THEN CAST(? AS DECIMAL(10,3)) ELSE CAST(? AS DECIMAL(10,3)) END"
+            + " WHERE ((account_id = ? AND balance >= ?) OR account_id = ?) AND open = 1";
+    /**
+     * count the open accounts among the two of a refused transfer.
+     */
+    private static final String OPEN_SQL = "SELECT account_id FROM account WHERE account_id IN (?, ?) AND open = 1";
+    /**
+     * insert a single transaction row.
+     */
+    private static final String INSERT_SQL = "INSERT INTO transaction (tx_id, account_id, amount, date, reference)"
+            + " VALUES (?, ?, ?, ?, ?)";
+    /**
+     * read back a single balance.
+     */
+    private static final String BALANCE_SQL = "SELECT balance FROM account WHERE account_id = ?";
+    /**
+     * read a client, its accounts and the most recent transactions of each in one pass, newest first within each account.
+     */
+    private static final String SUMMARY_SQL = "SELECT c.name, a.account_id, a.currency, a.balance, a.open,"
+            + " t.tx_id, t.amount, t.date, t.reference FROM client c LEFT JOIN account a ON a.client_id = c.client_id"
+            + " LEFT JOIN LATERAL (SELECT x.tx_id, x.amount, x.date, x.reference FROM transaction x"
+            + " WHERE x.account_id = a.account_id ORDER BY x.date DESC, x.tx_id DESC LIMIT ?) t ON TRUE"
+            + " WHERE c.client_id = ? ORDER BY a.account_id, t.date DESC, t.tx_id DESC";
+    /**
+     * read a client and its accounts without any transactions.
+     */
+    private static final String SUMMARY_NO_TX_SQL = "SELECT c.name, a.account_id, a.currency, a.balance, a.open,"
+            + " NULL, NULL, NULL, NULL FROM client c LEFT JOIN account a ON a.client_id = c.client_id"
+            + " WHERE c.client_id = ? ORDER BY a.account_id";
+    /**
+     * claim an idempotency key for a transfer. The primary key on the table stops a key being claimed twice.
+     */
+    private static final String CLAIM_KEY_SQL = "INSERT INTO transfer_key (idem_key, tx_id, created) VALUES (?, ?, ?)";
+    /**
+     * find the transfer made with an idempotency key.
+     */
+    private static final String FIND_KEY_SQL = "SELECT tx_id FROM transfer_key WHERE idem_key = ?";
+    /**
+     * SQL state class for integrity constraint violations.
+     */
+    private static final String INTEGRITY_VIOLATION = "23";
+    /**
+     * read the first page of an account's history.
+     */
+    private static final String FIRST_PAGE_SQL = "SELECT tx_id, amount, date, reference FROM transaction WHERE account_id = ?"
+            + " ORDER BY date, tx_id LIMIT ?";
+    /**
+     * read the page of an account's history that follows a given date and transaction id.
+     */
+    private static final String NEXT_PAGE_SQL = "SELECT tx_id, amount, date, reference FROM transaction WHERE account_id = ?"
+            + " AND (date > ? OR (date = ? AND tx_id > ?)) ORDER BY date, tx_id LIMIT ?";
+    /**
+     * number of rows to fetch from the database at a time when reading a history.
+     */
+    private static final int FETCH_SIZE = 100;
 
     /**
-     * primary constructor.
+     * construct a store that commits transfers in lean mode.
+     * 
+     * @param factory the factory for the JPA layer.
      */
     public JPADataStore(final EntityManagerFactory factory) {
+        this(factory, true);
+    }
+
+    /**
+     * primary constructor. The store counts statements with a profiler on the JPA session. If the session has no profiler one is
+     * installed, and if another store has already installed one it is shared, so the count covers every store on the factory.
+     * Any other profiler is left in place, in which case only the statements the store executes over JDBC are counted.
+     * 
+     * @param factory the factory for the JPA layer.
+     * @param lean if true, a transfer with accounts attached works out their new balances from the amounts transferred. If false
+     *            it reads them back from the database, which costs a statement per account.
+     */
+    public JPADataStore(final EntityManagerFactory factory, final boolean lean) {
         emf = factory;
+        leanCommit = lean;
+        Server session = JpaHelper.getServerSession(factory);
+        SessionProfiler profiler = session.getProfiler();
+        if (profiler instanceof StatementCounter) {
+            statements = (StatementCounter) profiler;
+        } else {
+            statements = new StatementCounter();
+            if (profiler == null) {
+                session.setProfiler(statements);
+            } else {
+                LOGGER.warn("leaving profiler {} in place, statements executed through JPA will not be counted", profiler);
+            }
+        }
     }
 
     @Override
@@ -65,6 +175,46 @@ public final class JPADataStore implements DataStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The summary is read with a single query, joining each account to a lateral subquery that picks its most recent
+     * transactions, so no entities are built and nothing is loaded lazily afterwards.
+     */
+    @Override
+    public ClientSummary getClientSummary(final String clientId, final int recent) {
+        if (StringUtils.isBlank(clientId)) {
+            return null;
+        }
+
+        EntityManager entityManager = emf.createEntityManager();
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            Connection connection = entityManager.unwrap(Connection.class);
+            try (PreparedStatement select = connection.prepareStatement(recent > 0 ? SUMMARY_SQL : SUMMARY_NO_TX_SQL)) {
+                if (recent > 0) {
+                    select.setInt(1, recent);
+                    select.setString(2, clientId);
+                } else {
+                    select.setString(1, clientId);
+                }
+                statements.increment();
+                try (ResultSet rs = select.executeQuery()) {
+                    return readSummary(clientId, rs);
+                }
+            }
+        } catch (SQLException ex) {
+            LOGGER.error("serious failure {}", ex.getMessage());
+            return null;
+        } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            entityManager.close();
+        }
+    }
+
     @Override
     public List<Account> getAccounts(final String clientId) {
         if (StringUtils.isBlank(clientId)) {
@@ -108,47 +258,483 @@ public final class JPADataStore implements DataStore {
         }
     }
 
-    // note that this could be improved by adding or moving the balance update into the database itself.
-    // additionally we could improve concurrency by using the before balances in the update.
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The page is read with a single keyset query over a forward-only JDBC cursor, so no entities are built and only one fetch
+     * of rows is held at a time. The cost of a page does not depend on how far into the history it starts.
+     */
     @Override
-    public void addTransactions(Transaction fromTransaction, Transaction toTransaction) throws Exception {
+    public int visitTransactions(final String accountId, final TransactionKey after, final int limit,
+            final TransactionHandler handler) throws IOException {
+        if (StringUtils.isBlank(accountId) || limit <= 0) {
+            return 0;
+        }
+
+        int count = 0;
         EntityManager entityManager = emf.createEntityManager();
         EntityTransaction tx = entityManager.getTransaction();
-        tx.begin();
         try {
-            Account toAccount = entityManager.find(Account.class, toTransaction.getId().getAccountId());
-            Account fromAccount = entityManager.find(Account.class, fromTransaction.getId().getAccountId());
+            tx.begin();
+            Connection connection = entityManager.unwrap(Connection.class);
+            try (PreparedStatement select = connection.prepareStatement(after == null ? FIRST_PAGE_SQL : NEXT_PAGE_SQL)) {
+                int param = 1;
+                select.setString(param++, accountId);
+                if (after != null) {
+                    Timestamp date = new Timestamp(after.getDate());
+                    select.setTimestamp(param++, date);
+                    select.setTimestamp(param++, date);
+                    select.setString(param++, after.getTxId());
+                }
+                select.setInt(param, limit);
+                select.setFetchSize(Math.min(limit, FETCH_SIZE));
+                statements.increment();
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        handler.handle(toTransaction(accountId, rs));
+                        count++;
+                    }
+                }
+            }
+            tx.commit();
+        } catch (SQLException ex) {
+            LOGGER.error("serious failure {}", ex.getMessage());
+        } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            entityManager.close();
+        }
+        return count;
+    }
 
-            toTransaction.setAccount(toAccount);
-            fromTransaction.setAccount(fromAccount);
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Both balances are adjusted by a single UPDATE, in which the debit only applies if the source account still holds enough
+     * funds. The check and the write are therefore one atomic step in the database, and there is no window in which a concurrent
+     * transfer could spend the same money. Both transaction rows are then inserted as a single JDBC batch on the same connection.
+     * No entities are read or refreshed. If the supplied transactions have accounts attached, their balances are brought up to
+     * date after the commit: in lean mode by adding the amount of each transaction, which is right as long as transfers on an
+     * account are serialised while its balance is read and the transfer made, as the controller does, and otherwise by reading
+     * them back from the database.
+     * 
+     * @throws InsufficientFundsException if the source account does not hold enough funds.
+     * @throws AccountNotOpenException if either account is missing or closed.
+     */
+    @Override
+    public void addTransactions(final Transaction fromTransaction, final Transaction toTransaction) throws Exception {
+        addTransactions(fromTransaction, toTransaction, null);
+    }
 
-            entityManager.persist(fromTransaction);
-            entityManager.persist(toTransaction);
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The key is inserted into the transfer_key table before the balances are touched, so a second transfer with the same key
+     * fails on the primary key of that table, or waits for the first to commit or roll back, and never reaches the accounts.
+     * 
+     * @throws InsufficientFundsException if the source account does not hold enough funds.
+     * @throws AccountNotOpenException if either account is missing or closed.
+     */
+    @Override
+    public void addTransactions(final Transaction fromTransaction, final Transaction toTransaction, final String idempotencyKey)
+            throws Exception {
+        String fromId = fromTransaction.getId().getAccountId();
+        String toId = toTransaction.getId().getAccountId();
 
-            BigDecimal toBalance = toAccount.getBalance().add(toTransaction.getAmount());
-            BigDecimal fromBalance = fromAccount.getBalance().add(fromTransaction.getAmount());
+        EntityManager entityManager = emf.createEntityManager();
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            Connection connection = entityManager.unwrap(Connection.class);
 
-            toAccount.setBalance(toBalance);
-            fromAccount.setBalance(fromBalance);
+            if (idempotencyKey != null) {
+                claimKey(connection, idempotencyKey, fromTransaction);
+            }
 
-            toAccount.addTransaction(toTransaction);
-            fromAccount.addTransaction(fromTransaction);
+            try (PreparedStatement update = connection.prepareStatement(TRANSFER_SQL)) {
+                transfer(update, fromTransaction, toTransaction);
+            }
 
-            entityManager.merge(toAccount);
-            entityManager.merge(fromAccount);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                addInsert(insert, fromTransaction);
+                addInsert(insert, toTransaction);
+                statements.increment();
+                insert.executeBatch();
+            }
 
-            entityManager.flush();
+            if (!leanCommit && (fromTransaction.getAccount() != null || toTransaction.getAccount() != null)) {
+                readBalances(connection, fromTransaction.getAccount(), toTransaction.getAccount());
+            }
 
-            entityManager.refresh(toTransaction);
-            entityManager.refresh(fromTransaction);
-            entityManager.refresh(toAccount);
-            entityManager.refresh(fromAccount);
+            tx.commit();
 
+            if (leanCommit) {
+                applyAmount(fromTransaction);
+                applyAmount(toTransaction);
+            }
         } catch (Exception ex) {
-            tx.rollback();
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw ex;
+        } finally {
+            entityManager.close();
+        }
+
+        // the shared cache knows nothing about the update, so make sure nobody is handed the old balances.
+        emf.getCache().evict(Account.class, fromId);
+        emf.getCache().evict(Account.class, toId);
+    }
+
+    @Override
+    public long getStatementCount() {
+        return statements.getCount();
+    }
+
+    @Override
+    public long writeSnapshot(final File file) throws IOException {
+        return writeSnapshot(file, Snapshot.NO_JOURNAL);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The tables are read in a single serializable transaction, so the snapshot is consistent, and transfers wait for it to be
+     * written.
+     */
+    @Override
+    public long writeSnapshot(final File file, final long journalGeneration) throws IOException {
+        EntityManager entityManager = emf.createEntityManager();
+        EntityTransaction tx = entityManager.getTransaction();
+        Connection connection = null;
+        int isolation = Connection.TRANSACTION_READ_COMMITTED;
+        try (SnapshotWriter writer = new SnapshotWriter(file, journalGeneration)) {
+            tx.begin();
+            connection = entityManager.unwrap(Connection.class);
+            isolation = connection.getTransactionIsolation();
+            connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            statements.increment();
+            Snapshot.export(connection, writer);
+            writer.finish();
+            return writer.getRows();
+        } catch (SQLException ex) {
+            throw new IOException("snapshot failed", ex);
+        } finally {
+            // the isolation set applies from the next transaction, so the pooled connection is put back before it is released.
+            if (connection != null) {
+                try {
+                    connection.setTransactionIsolation(isolation);
+                } catch (SQLException ex) {
+                    LOGGER.warn("failed to restore isolation {}", ex.getMessage());
+                }
+            }
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    @Override
+    public String findTransfer(final String idempotencyKey) {
+        if (StringUtils.isBlank(idempotencyKey)) {
+            return null;
+        }
+
+        EntityManager entityManager = emf.createEntityManager();
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            return findKey(entityManager.unwrap(Connection.class), idempotencyKey);
+        } catch (SQLException ex) {
+            LOGGER.error("serious failure {}", ex.getMessage());
+            return null;
         } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole batch is written in one database transaction. Each transfer is applied with the same conditional UPDATE as a
+     * single transfer, inside its own savepoint, so a refused transfer is rolled back on its own and does not disturb the
+     * others. The transaction rows for every successful transfer are inserted as a single JDBC batch before the commit.
+     */
+    @Override
+    public List<Exception> addTransactions(final List<TransactionPair> pairs) {
+        List<Exception> failures = new ArrayList<>(Collections.nCopies(pairs.size(), (Exception) null));
+        Set<String> touched = new HashSet<>();
+
+        EntityManager entityManager = emf.createEntityManager();
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            Connection connection = entityManager.unwrap(Connection.class);
+
+            try (PreparedStatement update = connection.prepareStatement(TRANSFER_SQL);
+                    PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                for (int i = 0; i < pairs.size(); i++) {
+                    TransactionPair pair = pairs.get(i);
+                    Savepoint savepoint = connection.setSavepoint();
+                    try {
+                        transfer(update, pair.getFromTransaction(), pair.getToTransaction());
+                        connection.releaseSavepoint(savepoint);
+                    } catch (InsufficientFundsException | AccountNotOpenException | SQLException ex) {
+                        connection.rollback(savepoint);
+                        failures.set(i, ex);
+                        continue;
+                    }
+                    // queued once the savepoint is released, as a half-queued pair cannot be taken back out of the JDBC batch. A
+                    // failure here fails the whole batch.
+                    addInsert(insert, pair.getFromTransaction());
+                    addInsert(insert, pair.getToTransaction());
+                    touched.add(pair.getFromTransaction().getId().getAccountId());
+                    touched.add(pair.getToTransaction().getId().getAccountId());
+                }
+                statements.increment();
+                insert.executeBatch();
+            }
+
             tx.commit();
+        } catch (Exception ex) {
+            LOGGER.error("batch transfer failed {}", ex.getMessage());
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            // nothing was committed, so everything that had not already failed has now failed.
+            for (int i = 0; i < failures.size(); i++) {
+                if (failures.get(i) == null) {
+                    failures.set(i, ex);
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+
+        for (String accountId : touched) {
+            emf.getCache().evict(Account.class, accountId);
+        }
+        return failures;
+    }
+
+    /**
+     * execute the conditional balance update for a single transfer.
+     * 
+     * @param update the prepared transfer statement.
+     * @param fromTransaction the transaction taking from the source account.
+     * @param toTransaction the transaction adding to the destination account.
+     * @throws InsufficientFundsException if the source account does not hold enough funds.
+     * @throws AccountNotOpenException if either account is missing or closed.
+     * @throws SQLException if the update fails.
+     */
+    private void transfer(final PreparedStatement update, final Transaction fromTransaction, final Transaction toTransaction)
+            throws InsufficientFundsException, AccountNotOpenException, SQLException {
+        String fromId = fromTransaction.getId().getAccountId();
+        update.setString(1, fromId);
+        long fromAmount = fromTransaction.getAmountUnits();
+        update.setBigDecimal(2, Money.toDecimal(fromAmount));
+        update.setBigDecimal(3, Money.toDecimal(toTransaction.getAmountUnits()));
+        update.setString(4, fromId);
+        update.setBigDecimal(5, Money.toDecimal(-fromAmount));
+        String toId = toTransaction.getId().getAccountId();
+        update.setString(6, toId);
+        statements.increment();
+        if (update.executeUpdate() != 2) {
+            // nothing is changed unless both rows match, so read the accounts again to find out which condition refused it.
+            checkOpen(update.getConnection(), fromId, toId);
+            throw new InsufficientFundsException(fromId);
+        }
+    }
+
+    /**
+     * check that both accounts of a refused transfer exist and are open.
+     * 
+     * @param connection the connection the transfer is being made on.
+     * @param fromId the source account id.
+     * @param toId the destination account id.
+     * @throws AccountNotOpenException if either account is missing or closed.
+     * @throws SQLException if the accounts cannot be read.
+     */
+    private void checkOpen(final Connection connection, final String fromId, final String toId)
+            throws AccountNotOpenException, SQLException {
+        Set<String> open = new HashSet<>();
+        try (PreparedStatement select = connection.prepareStatement(OPEN_SQL)) {
+            select.setString(1, fromId);
+            select.setString(2, toId);
+            statements.increment();
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    open.add(rs.getString(1));
+                }
+            }
+        }
+        if (!open.contains(fromId)) {
+            throw new AccountNotOpenException(fromId);
+        }
+        if (!open.contains(toId)) {
+            throw new AccountNotOpenException(toId);
+        }
+    }
+
+    /**
+     * record the idempotency key of a transfer.
+     * 
+     * @param connection the connection the transfer is being made on.
+     * @param idempotencyKey the key to record.
+     * @param fromTransaction the transaction taking from the source account.
+     * @throws DuplicateTransferException if a transfer has already been made with the key.
+     * @throws SQLException if the key cannot be recorded for any other reason.
+     */
+    private void claimKey(final Connection connection, final String idempotencyKey, final Transaction fromTransaction)
+            throws DuplicateTransferException, SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(CLAIM_KEY_SQL)) {
+            insert.setString(1, idempotencyKey);
+            insert.setString(2, fromTransaction.getId().getTxId());
+            insert.setTimestamp(3, new Timestamp(fromTransaction.getDate().getMillis()));
+            statements.increment();
+            insert.executeUpdate();
+        } catch (SQLException ex) {
+            if (!StringUtils.startsWith(ex.getSQLState(), INTEGRITY_VIOLATION)) {
+                throw ex;
+            }
+            throw new DuplicateTransferException(idempotencyKey, findKey(connection, idempotencyKey));
+        }
+    }
+
+    /**
+     * look up the transfer made with an idempotency key.
+     * 
+     * @param connection an open connection.
+     * @param idempotencyKey the key to look for.
+     * @return the id of the source transaction of the transfer, or null if there is none.
+     * @throws SQLException if the lookup fails.
+     */
+    private String findKey(final Connection connection, final String idempotencyKey) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(FIND_KEY_SQL)) {
+            select.setString(1, idempotencyKey);
+            statements.increment();
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
         }
     }
 
+    /**
+     * add a transaction to an insert batch.
+     * 
+     * @param insert the prepared insert statement.
+     * @param transaction the transaction to insert.
+     * @throws SQLException if the batch cannot be added to.
+     */
+    private static void addInsert(final PreparedStatement insert, final Transaction transaction) throws SQLException {
+        insert.setString(1, transaction.getId().getTxId());
+        insert.setString(2, transaction.getId().getAccountId());
+        insert.setBigDecimal(3, Money.toDecimal(transaction.getAmountUnits()));
+        insert.setTimestamp(4, new Timestamp(transaction.getDate().getMillis()));
+        insert.setString(5, transaction.getReference());
+        insert.addBatch();
+    }
+
+    /**
+     * assemble a client summary from the rows of a summary query, which are grouped by account.
+     * 
+     * @param clientId the client the summary is for.
+     * @param rs the unread result set.
+     * @return the summary, or null if there were no rows because the client does not exist.
+     * @throws SQLException if the rows cannot be read.
+     */
+    private static ClientSummary readSummary(final String clientId, final ResultSet rs) throws SQLException {
+        String name = null;
+        List<AccountSummary> accounts = new ArrayList<>();
+        String accountId = null;
+        String currency = null;
+        BigDecimal balance = null;
+        boolean open = false;
+        List<TransactionSummary> recent = null;
+        while (rs.next()) {
+            name = rs.getString(1);
+            String rowAccount = rs.getString(2);
+            if (rowAccount == null) {
+                continue;
+            }
+            if (!rowAccount.equals(accountId)) {
+                if (accountId != null) {
+                    accounts.add(new AccountSummary(accountId, currency, balance, open, recent));
+                }
+                accountId = rowAccount;
+                currency = rs.getString(3);
+                balance = rs.getBigDecimal(4);
+                open = rs.getInt(5) != 0;
+                recent = new ArrayList<>();
+            }
+            if (rs.getString(6) != null) {
+                recent.add(new TransactionSummary(rs.getString(6), rs.getBigDecimal(7), new DateTime(rs.getTimestamp(8).getTime(),
+                        DateTimeZone.UTC), rs.getString(9)));
+            }
+        }
+        if (accountId != null) {
+            accounts.add(new AccountSummary(accountId, currency, balance, open, recent));
+        }
+        return name == null ? null : new ClientSummary(clientId, name, accounts);
+    }
+
+    /**
+     * build a detached transaction from the current row of a history query.
+     * 
+     * @param accountId the account the history belongs to.
+     * @param rs the result set, positioned on a row.
+     * @return a new Transaction.
+     * @throws SQLException if the row cannot be read.
+     */
+    private static Transaction toTransaction(final String accountId, final ResultSet rs) throws SQLException {
+        Transaction transaction = new Transaction();
+        TransactionPK key = new TransactionPK();
+        key.setAccountId(accountId);
+        key.setTxId(rs.getString(1));
+        transaction.setId(key);
+        transaction.setAmountUnits(Money.toUnits(rs.getBigDecimal(2)));
+        transaction.setDate(new DateTime(rs.getTimestamp(3).getTime(), DateTimeZone.UTC));
+        transaction.setReference(rs.getString(4));
+        return transaction;
+    }
+
+    /**
+     * add the amount of a transaction to the balance of the account attached to it, if there is one.
+     * 
+     * @param transaction the transaction that has been committed.
+     */
+    private static void applyAmount(final Transaction transaction) {
+        Account account = transaction.getAccount();
+        if (account != null) {
+            account.setBalanceUnits(account.getBalanceUnits() + transaction.getAmountUnits());
+        }
+    }
+
+    /**
+     * read the current balances for a pair of possibly null accounts back into them.
+     * 
+     * @param connection the connection the transfer was made on.
+     * @param accounts the accounts to update, any of which may be null.
+     * @throws SQLException if the balances cannot be read.
+     */
+    private void readBalances(final Connection connection, final Account... accounts) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(BALANCE_SQL)) {
+            for (Account account : accounts) {
+                if (account != null) {
+                    select.setString(1, account.getAccountId());
+                    statements.increment();
+                    try (ResultSet rs = select.executeQuery()) {
+                        if (rs.next()) {
+                            account.setBalanceUnits(Money.toUnits(rs.getBigDecimal(1)));
+                        }
+                    }
+                }
+            }
+        }
+    }
 }
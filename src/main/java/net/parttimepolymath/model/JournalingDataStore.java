@@ -0,0 +1,271 @@
+package net.parttimepolymath.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * makes the transfers through another DataStore durable by writing them to a {@link TransferJournal}, so that a store that
+ * keeps its data in memory can be rebuilt after a crash by replaying the journal onto its seed data. Reads are passed straight
+ * through.
+ * <p>
+ * The journal is written ahead: a transfer is journalled and the record forced to disk before the underlying store is asked to
+ * make it, so a transfer that was made is never missing after a restart, and if the journal cannot be written the store is
+ * not touched. Transfers the store then refuses for want of funds, a closed account or a used idempotency key are in the
+ * journal too, and are refused again on replay. That only holds if transfers on the same account are journalled in the order
+ * they are made, so callers must hold the account locks of both accounts across this call, as the single and batch processors
+ * do. A transfer the store fails to make for any other reason, such as a database error, might succeed on replay although the
+ * client was told it failed, so it is aborted in the journal before the failure is passed on.
+ * <p>
+ * If forcing fails after a record was appended the caller is told the transfer failed, but the record may have reached the
+ * disk and be replayed after a restart, as with any request that times out. The journal refuses everything after such a
+ * failure, so the transfer cannot be made a second time before the restart.
+ * <p>
+ * A snapshot holds back transfers until every transfer already journalled has been made or refused, writes the snapshot
+ * marked with the next generation of the journal and then rolls the journal on to that generation, so that a restart loads
+ * the snapshot and replays only the transfers made after it. If the roll does not happen, the snapshot's mark is ahead of the
+ * journal, which shows that the snapshot already holds everything in it.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class JournalingDataStore implements DataStore {
+    /**
+     * the store being journalled.
+     */
+    private final DataStore delegate;
+    /**
+     * the journal written to.
+     */
+    private final TransferJournal journal;
+    /**
+     * shared by transfers from the moment they are journalled until they are made, and held exclusively while a snapshot is
+     * taken and the journal rolled.
+     */
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    /**
+     * primary constructor. Any replay should already have been done.
+     *
+     * @param store the store to journal, assumed non-null.
+     * @param journal the journal to write to, assumed non-null.
+     */
+    public JournalingDataStore(final DataStore store, final TransferJournal journal) {
+        delegate = store;
+        this.journal = journal;
+    }
+
+    @Override
+    public List<Client> getClients() {
+        return delegate.getClients();
+    }
+
+    @Override
+    public Client getClient(final String clientId) {
+        return delegate.getClient(clientId);
+    }
+
+    @Override
+    public ClientSummary getClientSummary(final String clientId, final int recent) {
+        return delegate.getClientSummary(clientId, recent);
+    }
+
+    @Override
+    public List<Account> getAccounts(final String clientId) {
+        return delegate.getAccounts(clientId);
+    }
+
+    @Override
+    public Account getAccount(final String accountId) {
+        return delegate.getAccount(accountId);
+    }
+
+    @Override
+    public List<Transaction> getTransactions(final String accountId) {
+        return delegate.getTransactions(accountId);
+    }
+
+    @Override
+    public int visitTransactions(final String accountId, final TransactionKey after, final int limit,
+            final TransactionHandler handler) throws IOException {
+        return delegate.visitTransactions(accountId, after, limit, handler);
+    }
+
+    @Override
+    public void addTransactions(final Transaction fromTransaction, final Transaction toTransaction) throws Exception {
+        snapshotLock.readLock().lock();
+        try {
+            journal.awaitSync(journal.append(fromTransaction, toTransaction, null));
+            try {
+                delegate.addTransactions(fromTransaction, toTransaction);
+            } catch (Exception ex) {
+                abort(fromTransaction, ex);
+                throw ex;
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addTransactions(final Transaction fromTransaction, final Transaction toTransaction, final String idempotencyKey)
+            throws Exception {
+        snapshotLock.readLock().lock();
+        try {
+            journal.awaitSync(journal.append(fromTransaction, toTransaction, idempotencyKey));
+            try {
+                delegate.addTransactions(fromTransaction, toTransaction, idempotencyKey);
+            } catch (Exception ex) {
+                abort(fromTransaction, ex);
+                throw ex;
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String findTransfer(final String idempotencyKey) {
+        return delegate.findTransfer(idempotencyKey);
+    }
+
+    @Override
+    public long getStatementCount() {
+        return delegate.getStatementCount();
+    }
+
+    /**
+     * {@inheritDoc} The snapshot is marked with the next generation of the journal, which is then rolled on to it, so the
+     * transfers already journalled are not replayed on top of the snapshot.
+     */
+    @Override
+    public long writeSnapshot(final File file) throws IOException {
+        snapshotLock.writeLock().lock();
+        try {
+            long next = journal.getGeneration() + 1;
+            long rows = delegate.writeSnapshot(file, next);
+            journal.roll(next);
+            return rows;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc} This store records the generation of its own journal in its snapshots.
+     * 
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public long writeSnapshot(final File file, final long journalGeneration) {
+        throw new UnsupportedOperationException("a journalled store records its own journal generation");
+    }
+
+    /**
+     * {@inheritDoc} The transfers are journalled together and wait for a single sync before any of them is made. If the journal
+     * fails part way through, the transfers it took are still made and the rest fail.
+     */
+    @Override
+    public List<Exception> addTransactions(final List<TransactionPair> pairs) {
+        snapshotLock.readLock().lock();
+        try {
+            return journalTransactions(pairs);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * journal a batch of transfers and make those that were journalled, holding the snapshot lock.
+     *
+     * @param pairs the transfers to make.
+     * @return a list the same size as the batch, holding null for each transfer that was made, or the reason it was not.
+     */
+    private List<Exception> journalTransactions(final List<TransactionPair> pairs) {
+        List<Exception> results = new ArrayList<>(Collections.nCopies(pairs.size(), (Exception) null));
+        int journalled = 0;
+        long end = -1;
+        try {
+            for (TransactionPair pair : pairs) {
+                end = journal.append(pair.getFromTransaction(), pair.getToTransaction(), null);
+                journalled++;
+            }
+        } catch (IOException ex) {
+            fail(results, journalled, pairs.size(), ex);
+        }
+        if (journalled == 0) {
+            return results;
+        }
+
+        try {
+            journal.awaitSync(end);
+        } catch (IOException ex) {
+            fail(results, 0, journalled, ex);
+            return results;
+        }
+
+        List<Exception> made = delegate.addTransactions(journalled == pairs.size() ? pairs : pairs.subList(0, journalled));
+        long aborted = -1;
+        for (int i = 0; i < journalled; i++) {
+            Exception failure = made.get(i);
+            results.set(i, failure);
+            if (failure != null && !TransferJournal.isRefusal(failure)) {
+                try {
+                    aborted = journal.abort(pairs.get(i).getFromTransaction());
+                } catch (IOException ex) {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (aborted >= 0) {
+            try {
+                journal.awaitSync(aborted);
+            } catch (IOException ex) {
+                for (Exception failure : made) {
+                    if (failure != null && !TransferJournal.isRefusal(failure)) {
+                        failure.addSuppressed(ex);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * abort a journalled transfer the store failed to make, unless the store refused it, and wait for the abort to reach the
+     * disk. If the abort cannot be journalled, the transfer may be replayed after a restart, as with a failed sync.
+     *
+     * @param fromTransaction the source transaction of the transfer.
+     * @param failure why the store failed, to which any failure to abort is added.
+     */
+    private void abort(final Transaction fromTransaction, final Exception failure) {
+        if (TransferJournal.isRefusal(failure)) {
+            return;
+        }
+        try {
+            journal.awaitSync(journal.abort(fromTransaction));
+        } catch (IOException ex) {
+            failure.addSuppressed(ex);
+        }
+    }
+
+    /**
+     * mark a range of a batch as failed.
+     *
+     * @param results the results of the batch.
+     * @param from the first position to mark.
+     * @param to the position after the last to mark.
+     * @param ex the reason.
+     */
+    private static void fail(final List<Exception> results, final int from, final int to, final Exception ex) {
+        for (int i = from; i < to; i++) {
+            results.set(i, ex);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package net.parttimepolymath.model;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * a single immutable entry in the in-memory ledger journal. Entries for an account are held in a concurrent sorted map by
+ * their transaction key, so that readers can walk the history in order, from any point, without taking any locks.
+ *
+ * @author robert
+ */
+@Immutable
+final class LedgerEntry {
+    /**
+     * the transaction id.
+     */
+    private final String txId;
+    /**
+     * the amount, expressed in thousandths to match the scale of the database columns.
+     */
+    private final long amount;
+    /**
+     * the time of the transaction in milliseconds since the epoch.
+     */
+    private final long date;
+    /**
+     * the possibly null transaction reference.
+     */
+    private final String reference;
+
+    /**
+     * primary constructor.
+     *
+     * @param txId the transaction id.
+     * @param amount the amount in thousandths.
+     * @param date the transaction time in milliseconds.
+     * @param reference the transaction reference.
+     */
+    LedgerEntry(final String txId, final long amount, final long date, final String reference) {
+        this.txId = txId;
+        this.amount = amount;
+        this.date = date;
+        this.reference = reference;
+    }
+
+    /**
+     * @return the transaction id.
+     */
+    String getTxId() {
+        return txId;
+    }
+
+    /**
+     * @return the amount in thousandths.
+     */
+    long getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return the transaction time in milliseconds since the epoch.
+     */
+    long getDate() {
+        return date;
+    }
+
+    /**
+     * @return the possibly null reference.
+     */
+    String getReference() {
+        return reference;
+    }
+
+    /**
+     * @return the key this entry is held under in the journal.
+     */
+    TransactionKey getKey() {
+        return new TransactionKey(date, txId);
+    }
+}
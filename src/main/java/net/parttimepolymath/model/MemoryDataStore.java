@@ -0,0 +1,635 @@
+package net.parttimepolymath.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * in-memory implementation of our database facade. The set of clients and accounts is loaded once at construction and
+ * never changes, so each account is addressed by a primitive index. Balances are held as thousandths in an atomic array
+ * so they can be read without locking, and are only ever written while holding the lock stripes for both accounts in a
+ * transfer. Transactions are kept in a journal per account, sorted by date and transaction id, so a page of history can be
+ * read from any point without walking what comes before it.
+ * <p>
+ * Entities handed back from this store are fresh snapshots, so callers are free to modify them without affecting the ledger.
+ * Accounts handed back by {@link #getAccount(String)} do not carry their transactions, so that looking up an account costs
+ * the same however long its history is.
+ * <p>
+ * Idempotency keys are remembered for {@link #DEFAULT_KEY_RETENTION} milliseconds after they are claimed, the same time the
+ * controller's index of results keeps them, so a store that runs indefinitely does not grow without bound. Expired keys are
+ * swept out every so often as new keys are claimed, and whenever a snapshot is written; a transfer retried with a key after it
+ * has expired is made again.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class MemoryDataStore implements DataStore {
+    /**
+     * default number of milliseconds an idempotency key is remembered for after it is claimed.
+     */
+    public static final long DEFAULT_KEY_RETENTION = TimeUnit.HOURS.toMillis(24);
+    /**
+     * the number of sweeps for expired keys made in each retention period.
+     */
+    private static final int KEY_SWEEPS = 24;
+
+    /**
+     * map of client id to client index. Never modified after construction.
+     */
+    private final Map<String, Integer> clientIndex = new HashMap<>();
+    /**
+     * client ids, by client index.
+     */
+    private final List<String> clientIds = new ArrayList<>();
+    /**
+     * client names, by client index.
+     */
+    private final List<String> clientNames = new ArrayList<>();
+    /**
+     * account indices owned by each client, by client index.
+     */
+    private final List<List<Integer>> clientAccounts = new ArrayList<>();
+
+    /**
+     * map of account id to account index. Never modified after construction.
+     */
+    private final Map<String, Integer> accountIndex = new HashMap<>();
+    /**
+     * account ids, by account index.
+     */
+    private final String[] accountIds;
+    /**
+     * the owning client index, by account index.
+     */
+    private final int[] accountClients;
+    /**
+     * the account currency, by account index.
+     */
+    private final String[] currencies;
+    /**
+     * is the account open, by account index.
+     */
+    private final boolean[] open;
+    /**
+     * account balances in thousandths, by account index.
+     */
+    private final AtomicLongArray balances;
+    /**
+     * each account's journal, by account index. The list is never modified after construction.
+     */
+    private final List<NavigableMap<TransactionKey, LedgerEntry>> journal;
+
+    /**
+     * the source transaction id and claim time of each transfer made with an idempotency key, by key.
+     */
+    private final Map<String, TransferKey> transferKeys = new ConcurrentHashMap<>();
+    /**
+     * the number of milliseconds an idempotency key is remembered for.
+     */
+    private final long keyRetention;
+    /**
+     * the time in milliseconds at or after which the next sweep for expired keys is due.
+     */
+    private final AtomicLong nextSweep;
+
+    /**
+     * the locks guarding updates to balances and journals. Accounts are mapped onto a stripe by their index.
+     */
+    private final ReentrantLock[] stripes;
+    /**
+     * mask used to map an account index onto a stripe.
+     */
+    private final int stripeMask;
+
+    /**
+     * construct with the default key retention. Loads the complete set of clients, accounts and transactions from the supplied
+     * connection.
+     *
+     * @param connection an open connection to a database containing the model tables, assumed non-null.
+     * @throws SQLException if the model cannot be read.
+     */
+    public MemoryDataStore(final Connection connection) throws SQLException {
+        this(connection, DEFAULT_KEY_RETENTION);
+    }
+
+    /**
+     * primary constructor. Loads the complete set of clients, accounts and transactions from the supplied connection, and the
+     * idempotency keys that have not yet expired.
+     *
+     * @param connection an open connection to a database containing the model tables, assumed non-null.
+     * @param retention the number of milliseconds an idempotency key is remembered for, must be positive.
+     * @throws SQLException if the model cannot be read.
+     */
+    MemoryDataStore(final Connection connection, final long retention) throws SQLException {
+        keyRetention = retention;
+        long now = System.currentTimeMillis();
+        nextSweep = new AtomicLong(now + Math.max(1L, retention / KEY_SWEEPS));
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT client_id, name FROM client")) {
+                while (rs.next()) {
+                    clientIndex.put(rs.getString(1), clientIds.size());
+                    clientIds.add(rs.getString(1));
+                    clientNames.add(rs.getString(2));
+                    clientAccounts.add(new ArrayList<Integer>());
+                }
+            }
+
+            List<Object[]> rows = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT account_id, client_id, currency, balance, open FROM account")) {
+                while (rs.next()) {
+                    rows.add(new Object[] { rs.getString(1), rs.getString(2), rs.getString(3), rs.getBigDecimal(4), rs.getInt(5) });
+                }
+            }
+
+            accountIds = new String[rows.size()];
+            accountClients = new int[rows.size()];
+            currencies = new String[rows.size()];
+            open = new boolean[rows.size()];
+            balances = new AtomicLongArray(rows.size());
+            journal = new ArrayList<>(rows.size());
+
+            for (int i = 0; i < rows.size(); i++) {
+                Object[] row = rows.get(i);
+                accountIds[i] = (String) row[0];
+                accountClients[i] = clientIndex.get(row[1]);
+                currencies[i] = (String) row[2];
+                balances.set(i, Money.toUnits((BigDecimal) row[3]));
+                open[i] = ((Integer) row[4]) != 0;
+                journal.add(new ConcurrentSkipListMap<TransactionKey, LedgerEntry>());
+                accountIndex.put(accountIds[i], i);
+                clientAccounts.get(accountClients[i]).add(i);
+            }
+
+            try (ResultSet rs = statement.executeQuery("SELECT tx_id, account_id, amount, date, reference FROM transaction")) {
+                while (rs.next()) {
+                    Timestamp date = rs.getTimestamp(4);
+                    record(accountIndex.get(rs.getString(2)),
+                            new LedgerEntry(rs.getString(1), Money.toUnits(rs.getBigDecimal(3)), date.getTime(), rs.getString(5)));
+                }
+            }
+
+            try (ResultSet rs = statement.executeQuery("SELECT idem_key, tx_id, created FROM transfer_key")) {
+                while (rs.next()) {
+                    TransferKey key = new TransferKey(rs.getString(2), rs.getTimestamp(3).getTime());
+                    if (!key.isExpired(now - keyRetention)) {
+                        transferKeys.put(rs.getString(1), key);
+                    }
+                }
+            }
+        }
+
+        int stripeCount = Integer.highestOneBit(Math.max(16, Runtime.getRuntime().availableProcessors() * 4) - 1) << 1;
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        stripeMask = stripeCount - 1;
+    }
+
+    @Override
+    public List<Client> getClients() {
+        List<Client> result = new ArrayList<>(clientIds.size());
+        for (int i = 0; i < clientIds.size(); i++) {
+            result.add(makeClient(i));
+        }
+        return result;
+    }
+
+    @Override
+    public Client getClient(final String clientId) {
+        if (StringUtils.isBlank(clientId)) {
+            return null;
+        }
+        Integer index = clientIndex.get(clientId);
+        return index == null ? null : makeClient(index);
+    }
+
+    @Override
+    public ClientSummary getClientSummary(final String clientId, final int recent) {
+        Integer index = StringUtils.isBlank(clientId) ? null : clientIndex.get(clientId);
+        if (index == null) {
+            return null;
+        }
+
+        List<AccountSummary> accounts = new ArrayList<>(clientAccounts.get(index).size());
+        for (Integer account : clientAccounts.get(index)) {
+            List<TransactionSummary> latest = new ArrayList<>(Math.max(0, recent));
+            for (LedgerEntry entry : journal.get(account).descendingMap().values()) {
+                if (latest.size() >= recent) {
+                    break;
+                }
+                latest.add(new TransactionSummary(entry.getTxId(), Money.toDecimal(entry.getAmount()),
+                        new DateTime(entry.getDate(), DateTimeZone.UTC), entry.getReference()));
+            }
+            accounts.add(new AccountSummary(accountIds[account], currencies[account], Money.toDecimal(balances.get(account)),
+                    open[account], latest));
+        }
+        return new ClientSummary(clientIds.get(index), clientNames.get(index), accounts);
+    }
+
+    @Override
+    public List<Account> getAccounts(final String clientId) {
+        if (StringUtils.isBlank(clientId)) {
+            return Collections.emptyList();
+        }
+        Client client = getClient(clientId);
+        return client == null ? Collections.<Account> emptyList() : client.getAccounts();
+    }
+
+    @Override
+    public Account getAccount(final String accountId) {
+        if (StringUtils.isBlank(accountId)) {
+            return null;
+        }
+        Integer index = accountIndex.get(accountId);
+        if (index == null) {
+            return null;
+        }
+        Client client = makeClientHeader(accountClients[index]);
+        return client.addAccount(makeAccountHeader(index));
+    }
+
+    @Override
+    public List<Transaction> getTransactions(final String accountId) {
+        if (StringUtils.isBlank(accountId)) {
+            return Collections.emptyList();
+        }
+        Integer index = accountIndex.get(accountId);
+        return index == null ? Collections.<Transaction> emptyList() : makeAccount(index).getTransactions();
+    }
+
+    @Override
+    public int visitTransactions(final String accountId, final TransactionKey after, final int limit,
+            final TransactionHandler handler) throws IOException {
+        Integer index = StringUtils.isBlank(accountId) ? null : accountIndex.get(accountId);
+        if (index == null || limit <= 0) {
+            return 0;
+        }
+
+        NavigableMap<TransactionKey, LedgerEntry> entries = journal.get(index);
+        int count = 0;
+        for (LedgerEntry entry : (after == null ? entries : entries.tailMap(after, false)).values()) {
+            if (count == limit) {
+                break;
+            }
+            handler.handle(toTransaction(index, entry));
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void addTransactions(final Transaction fromTransaction, final Transaction toTransaction) throws Exception {
+        addTransactions(fromTransaction, toTransaction, null);
+    }
+
+    @Override
+    public void addTransactions(final Transaction fromTransaction, final Transaction toTransaction, final String idempotencyKey)
+            throws Exception {
+        Integer from = accountIndex.get(fromTransaction.getId().getAccountId());
+        if (from == null || !open[from]) {
+            throw new AccountNotOpenException(fromTransaction.getId().getAccountId());
+        }
+        Integer to = accountIndex.get(toTransaction.getId().getAccountId());
+        if (to == null || !open[to]) {
+            throw new AccountNotOpenException(toTransaction.getId().getAccountId());
+        }
+
+        long fromAmount = fromTransaction.getAmountUnits();
+        long toAmount = toTransaction.getAmountUnits();
+
+        // order by stripe rather than by account, as two accounts in ascending order can map to stripes in descending order.
+        ReentrantLock first = stripes[Math.min(stripeOf(from), stripeOf(to))];
+        ReentrantLock second = stripes[Math.max(stripeOf(from), stripeOf(to))];
+        first.lock();
+        try {
+            second.lock();
+            try {
+                if (balances.get(from) + fromAmount < 0) {
+                    throw new InsufficientFundsException(accountIds[from]);
+                }
+                if (idempotencyKey != null) {
+                    claimKey(idempotencyKey, fromTransaction.getId().getTxId());
+                }
+                balances.addAndGet(from, fromAmount);
+                balances.addAndGet(to, toAmount);
+                record(from, toEntry(fromTransaction));
+                record(to, toEntry(toTransaction));
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+        if (idempotencyKey != null) {
+            // swept outside the stripe locks, so that transfers on the same stripes are not held up by it.
+            sweepKeysIfDue();
+        }
+
+        fromTransaction.setAccount(getAccount(accountIds[from]));
+        toTransaction.setAccount(getAccount(accountIds[to]));
+    }
+
+    @Override
+    public String findTransfer(final String idempotencyKey) {
+        TransferKey key = StringUtils.isBlank(idempotencyKey) ? null : transferKeys.get(idempotencyKey);
+        return key == null || key.isExpired(System.currentTimeMillis() - keyRetention) ? null : key.txId;
+    }
+
+    /**
+     * claim an idempotency key for a transfer, replacing the claim of an earlier transfer if it has expired.
+     *
+     * @param idempotencyKey the key.
+     * @param txId the id of the source transaction of the transfer.
+     * @throws DuplicateTransferException if a transfer has been made with the key, and the key has not expired.
+     */
+    private void claimKey(final String idempotencyKey, final String txId) throws DuplicateTransferException {
+        long now = System.currentTimeMillis();
+        TransferKey claimed = new TransferKey(txId, now);
+        while (true) {
+            TransferKey earlier = transferKeys.putIfAbsent(idempotencyKey, claimed);
+            if (earlier == null) {
+                break;
+            }
+            if (!earlier.isExpired(now - keyRetention)) {
+                throw new DuplicateTransferException(idempotencyKey, earlier.txId);
+            }
+            if (transferKeys.replace(idempotencyKey, earlier, claimed)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * sweep out the expired idempotency keys if a sweep is due, which is done by whichever caller first finds it due.
+     */
+    private void sweepKeysIfDue() {
+        long now = System.currentTimeMillis();
+        long due = nextSweep.get();
+        if (now >= due && nextSweep.compareAndSet(due, now + Math.max(1L, keyRetention / KEY_SWEEPS))) {
+            sweepKeys(now);
+        }
+    }
+
+    /**
+     * remove the idempotency keys that have expired. A key claimed again in the meantime is left in place.
+     *
+     * @param now the current time in milliseconds.
+     */
+    private void sweepKeys(final long now) {
+        long oldest = now - keyRetention;
+        for (Map.Entry<String, TransferKey> entry : transferKeys.entrySet()) {
+            if (entry.getValue().isExpired(oldest)) {
+                transferKeys.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the number of idempotency keys held, including any that have expired but not yet been swept out.
+     */
+    int getKeyCount() {
+        return transferKeys.size();
+    }
+
+    @Override
+    public long getStatementCount() {
+        return 0L;
+    }
+
+    @Override
+    public long writeSnapshot(final File file) throws IOException {
+        return writeSnapshot(file, Snapshot.NO_JOURNAL);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every lock stripe is held while the snapshot is written, so it is consistent and transfers wait for it. Expired
+     * idempotency keys are swept out first, and are not written.
+     */
+    @Override
+    public long writeSnapshot(final File file, final long journalGeneration) throws IOException {
+        sweepKeys(System.currentTimeMillis());
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+        try (SnapshotWriter writer = new SnapshotWriter(file, journalGeneration)) {
+            for (int i = 0; i < clientIds.size(); i++) {
+                writer.addClient(clientIds.get(i), clientNames.get(i));
+            }
+            for (int i = 0; i < accountIds.length; i++) {
+                writer.addAccount(accountIds[i], clientIds.get(accountClients[i]), currencies[i], balances.get(i), open[i]);
+            }
+            for (int i = 0; i < accountIds.length; i++) {
+                for (LedgerEntry entry : journal.get(i).values()) {
+                    writer.addTransaction(entry.getTxId(), accountIds[i], entry.getAmount(), entry.getDate(), entry.getReference());
+                }
+            }
+            for (Map.Entry<String, TransferKey> key : transferKeys.entrySet()) {
+                writer.addTransferKey(key.getKey(), key.getValue().txId, key.getValue().created);
+            }
+            writer.finish();
+            return writer.getRows();
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<Exception> addTransactions(final List<TransactionPair> pairs) {
+        List<Exception> failures = new ArrayList<>(pairs.size());
+        for (TransactionPair pair : pairs) {
+            try {
+                addTransactions(pair.getFromTransaction(), pair.getToTransaction());
+                failures.add(null);
+            } catch (Exception ex) {
+                failures.add(ex);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @param index an account index.
+     * @return the stripe guarding the account.
+     */
+    int stripeOf(final int index) {
+        return index & stripeMask;
+    }
+
+    /**
+     * @return the number of lock stripes.
+     */
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * @param index an account index.
+     * @return the id of the account.
+     */
+    String getAccountId(final int index) {
+        return accountIds[index];
+    }
+
+    /**
+     * build a client with its full set of accounts.
+     *
+     * @param index the client index.
+     * @return a new Client.
+     */
+    private Client makeClient(final int index) {
+        Client client = makeClientHeader(index);
+        for (Integer account : clientAccounts.get(index)) {
+            client.addAccount(makeAccount(account));
+        }
+        return client;
+    }
+
+    /**
+     * build a client without any accounts.
+     *
+     * @param index the client index.
+     * @return a new Client.
+     */
+    private Client makeClientHeader(final int index) {
+        Client client = new Client();
+        client.setClientId(clientIds.get(index));
+        client.setName(clientNames.get(index));
+        return client;
+    }
+
+    /**
+     * build an account and its transactions. The transactions are returned in order of date, then transaction id.
+     *
+     * @param index the account index.
+     * @return a new Account.
+     */
+    private Account makeAccount(final int index) {
+        Account account = makeAccountHeader(index);
+        List<Transaction> transactions = new ArrayList<>();
+        for (LedgerEntry entry : journal.get(index).values()) {
+            Transaction transaction = toTransaction(index, entry);
+            transaction.setAccount(account);
+            transactions.add(transaction);
+        }
+        account.setTransactions(transactions);
+        return account;
+    }
+
+    /**
+     * build an account without any transactions. This costs the same however long the history of the account is.
+     *
+     * @param index the account index.
+     * @return a new Account.
+     */
+    private Account makeAccountHeader(final int index) {
+        Account account = new Account();
+        account.setAccountId(accountIds[index]);
+        account.setCurrency(currencies[index]);
+        account.setOpen(open[index]);
+        account.setBalanceUnits(balances.get(index));
+        return account;
+    }
+
+    /**
+     * build a detached transaction from a journal entry.
+     *
+     * @param index the account index.
+     * @param entry the journal entry.
+     * @return a new Transaction, not attached to an account.
+     */
+    private Transaction toTransaction(final int index, final LedgerEntry entry) {
+        Transaction transaction = new Transaction();
+        TransactionPK key = new TransactionPK();
+        key.setAccountId(accountIds[index]);
+        key.setTxId(entry.getTxId());
+        transaction.setId(key);
+        transaction.setAmountUnits(entry.getAmount());
+        transaction.setDate(new DateTime(entry.getDate(), DateTimeZone.UTC));
+        transaction.setReference(entry.getReference());
+        return transaction;
+    }
+
+    /**
+     * add an entry to an account journal.
+     *
+     * @param index the account index.
+     * @param entry the entry to add.
+     */
+    private void record(final int index, final LedgerEntry entry) {
+        journal.get(index).put(entry.getKey(), entry);
+    }
+
+    /**
+     * make a new journal entry for a transaction.
+     *
+     * @param transaction the transaction to record.
+     * @return the new journal entry.
+     */
+    private static LedgerEntry toEntry(final Transaction transaction) {
+        return new LedgerEntry(transaction.getId().getTxId(), transaction.getAmountUnits(), transaction.getDate().getMillis(),
+                transaction.getReference());
+    }
+
+    /**
+     * the transfer made with an idempotency key, and when the key was claimed.
+     */
+    @Immutable
+    private static final class TransferKey {
+        /**
+         * the id of the source transaction of the transfer.
+         */
+        private final String txId;
+        /**
+         * the time in milliseconds at which the key was claimed.
+         */
+        private final long created;
+
+        /**
+         * primary constructor.
+         *
+         * @param txId the id of the source transaction of the transfer.
+         * @param created the time in milliseconds at which the key was claimed.
+         */
+        TransferKey(final String txId, final long created) {
+            this.txId = txId;
+            this.created = created;
+        }
+
+        /**
+         * @param oldest the time in milliseconds of the oldest claim still remembered.
+         * @return true if the key was claimed before then.
+         */
+        boolean isExpired(final long oldest) {
+            return created < oldest;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package net.parttimepolymath.model;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.NoSuchElementException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.metrics.PoolMetrics;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * the connection pool handed to the JPA layer, measuring how long each connection takes to get and how many requests for one
+ * time out.
+ *
+ * @author robert
+ */
+@ThreadSafe
+final class MeteredDataSource implements DataSource {
+    /**
+     * the pool handing out the connections.
+     */
+    private final BasicDataSource pool;
+    /**
+     * the metrics of the pool.
+     */
+    private final PoolMetrics metrics;
+
+    /**
+     * primary constructor.
+     *
+     * @param pool the pool handing out the connections, assumed non-null.
+     */
+    MeteredDataSource(final BasicDataSource pool) {
+        this.pool = pool;
+        this.metrics = new PoolMetrics(pool);
+    }
+
+    /**
+     * @return the metrics of the pool.
+     */
+    PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * close the pool, closing its idle connections and the rest as they are returned.
+     *
+     * @throws SQLException if the pool cannot be closed.
+     */
+    void close() throws SQLException {
+        pool.close();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = metrics.startAcquire();
+        Connection connection = null;
+        try {
+            connection = pool.getConnection();
+            return connection;
+        } catch (SQLException ex) {
+            // the pool reports that it gave up waiting by wrapping the exception from the underlying object pool.
+            if (ex.getCause() instanceof NoSuchElementException) {
+                metrics.recordTimeout();
+            }
+            throw ex;
+        } finally {
+            metrics.endAcquire(start, connection != null);
+        }
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return pool.getConnection(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return pool.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) throws SQLException {
+        pool.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLException {
+        pool.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return pool.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return pool.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : pool.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || pool.isWrapperFor(iface);
+    }
+}
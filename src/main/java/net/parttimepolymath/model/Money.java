@@ -0,0 +1,92 @@
+package net.parttimepolymath.model;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * helper for amounts of money held as a whole number of thousandths of the currency unit, matching the scale of the balance
+ * and amount columns of the database. Inside the server an amount is a plain long, so checking and adjusting a balance is
+ * integer arithmetic and allocates nothing. Amounts only become BigDecimal where they are handed to or read from JDBC, and
+ * where they are shown to a client.
+ * <p>
+ * Transfer requests give the amount in the minor unit of the currency: cents for USD, but whole yen for JPY, which has no
+ * minor unit. The number of decimal places is taken from the ISO 4217 data of the runtime, falling back to
+ * {@link #DEFAULT_FRACTION_DIGITS} for codes it does not know.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class Money {
+    /**
+     * the number of decimal places held, matching the database columns.
+     */
+    public static final int SCALE = 3;
+    /**
+     * the number of decimal places assumed for a currency without a known minor unit.
+     */
+    public static final int DEFAULT_FRACTION_DIGITS = 2;
+    /**
+     * powers of ten up to the scale, by exponent.
+     */
+    private static final long[] POWERS = { 1L, 10L, 100L, 1000L };
+
+    /**
+     * no instances.
+     */
+    private Money() {
+    }
+
+    /**
+     * @param currency an ISO 4217 currency code, possibly null.
+     * @return the number of decimal places of the minor unit of the currency.
+     */
+    public static int fractionDigits(final String currency) {
+        if (currency == null) {
+            return DEFAULT_FRACTION_DIGITS;
+        }
+        try {
+            int digits = Currency.getInstance(currency).getDefaultFractionDigits();
+            return digits < 0 ? DEFAULT_FRACTION_DIGITS : digits;
+        } catch (IllegalArgumentException ex) {
+            return DEFAULT_FRACTION_DIGITS;
+        }
+    }
+
+    /**
+     * convert an amount given in the minor unit of a currency to thousandths.
+     *
+     * @param amount the amount in the minor unit, for instance cents.
+     * @param currency the ISO 4217 currency code, possibly null.
+     * @return the amount in thousandths.
+     * @throws ArithmeticException if the amount is too large, or the currency has a minor unit finer than a thousandth and the
+     *             amount cannot be held exactly.
+     */
+    public static long fromMinorUnits(final long amount, final String currency) {
+        int digits = fractionDigits(currency);
+        if (digits <= SCALE) {
+            return Math.multiplyExact(amount, POWERS[SCALE - digits]);
+        }
+        return toUnits(BigDecimal.valueOf(amount, digits));
+    }
+
+    /**
+     * @param units an amount in thousandths.
+     * @return the amount as a decimal with the scale of the database columns.
+     */
+    public static BigDecimal toDecimal(final long units) {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    /**
+     * convert a decimal amount to thousandths.
+     *
+     * @param amount the amount to convert, assumed non-null.
+     * @return the amount in thousandths.
+     * @throws ArithmeticException if the amount has more precision than the ledger holds, or is too large.
+     */
+    public static long toUnits(final BigDecimal amount) {
+        return amount.movePointRight(SCALE).longValueExact();
+    }
+}
@@ -0,0 +1,18 @@
+package net.parttimepolymath.model;
+
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * adjusts the EclipseLink session to take its connections from the pool built by {@link DataStoreFactory}. EclipseLink
+ * normally retries a query up to three times when it cannot get a connection. That would make a caller wait for several
+ * pool timeouts in place of one, and hide from the pool metrics how long it waited, so the retries are turned off.
+ *
+ * @author robert
+ */
+public final class PooledSessionCustomizer implements SessionCustomizer {
+    @Override
+    public void customize(final Session session) {
+        session.getLogin().setQueryRetryAttemptCount(0);
+    }
+}
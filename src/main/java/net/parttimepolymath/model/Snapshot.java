@@ -0,0 +1,321 @@
+package net.parttimepolymath.model;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * a compact binary image of the database, which can be written from a running store and loaded into an empty database far
+ * faster than the creation script can be run.
+ * <p>
+ * The file starts with a magic number, the format version and the generation of {@link TransferJournal} that holds the
+ * transfers made after the snapshot was taken, or {@link #NO_JOURNAL}. These are followed by the client, account, transaction
+ * and transfer_key
+ * tables in that order. Each table is a run of blocks of up to {@value SnapshotWriter#BLOCK_ROWS} rows, ended by an empty
+ * block. A block is its row count followed by each of its columns in turn, each prefixed by its length in bytes. Strings are
+ * held as a length and UTF-8 bytes, amounts as thousandths in a long and times as milliseconds since the epoch. The file ends
+ * with the magic number again, so a truncated snapshot is detected rather than partly loaded.
+ * <p>
+ * Loading inserts each block as one JDBC batch, with referential integrity checks suspended and a single commit at the end,
+ * so the whole snapshot is loaded or none of it is.
+ *
+ * @author robert
+ */
+public final class Snapshot {
+    /**
+     * the magic number that starts and ends a snapshot.
+     */
+    static final int MAGIC = 0x54584E53;
+    /**
+     * the version of the snapshot format.
+     */
+    static final int VERSION = 2;
+    /**
+     * the version of the snapshot format written before the journal generation was recorded.
+     */
+    private static final int VERSION_1 = 1;
+    /**
+     * the journal generation of a snapshot taken without a journal.
+     */
+    public static final long NO_JOURNAL = 0L;
+
+    /**
+     * index of the client table.
+     */
+    static final int CLIENT = 0;
+    /**
+     * index of the account table.
+     */
+    static final int ACCOUNT = 1;
+    /**
+     * index of the transaction table.
+     */
+    static final int TRANSACTION = 2;
+    /**
+     * index of the transfer_key table.
+     */
+    static final int TRANSFER_KEY = 3;
+    /**
+     * the number of tables in a snapshot.
+     */
+    static final int TABLES = 4;
+
+    /**
+     * column type of a string, possibly null.
+     */
+    private static final int STRING = 0;
+    /**
+     * column type of an amount, held as thousandths.
+     */
+    private static final int AMOUNT = 1;
+    /**
+     * column type of a time, held as milliseconds since the epoch.
+     */
+    private static final int TIME = 2;
+    /**
+     * column type of a flag, held as a byte.
+     */
+    private static final int FLAG = 3;
+
+    /**
+     * the types of the columns of each table, by table index.
+     */
+    private static final int[][] COLUMNS = { { STRING, STRING }, { STRING, STRING, STRING, AMOUNT, FLAG },
+            { STRING, STRING, AMOUNT, TIME, STRING }, { STRING, STRING, TIME } };
+    /**
+     * the query reading each table, by table index.
+     */
+    private static final String[] SELECT_SQL = { "SELECT client_id, name FROM client",
+            "SELECT account_id, client_id, currency, balance, open FROM account",
+            "SELECT tx_id, account_id, amount, date, reference FROM transaction",
+            "SELECT idem_key, tx_id, created FROM transfer_key" };
+    /**
+     * the statement inserting a row into each table, by table index.
+     */
+    private static final String[] INSERT_SQL = { "INSERT INTO client (client_id, name) VALUES (?, ?)",
+            "INSERT INTO account (account_id, client_id, currency, balance, open) VALUES (?, ?, ?, ?, ?)",
+            "INSERT INTO transaction (tx_id, account_id, amount, date, reference) VALUES (?, ?, ?, ?, ?)",
+            "INSERT INTO transfer_key (idem_key, tx_id, created) VALUES (?, ?, ?)" };
+
+    /**
+     * hidden constructor.
+     */
+    private Snapshot() {
+    }
+
+    /**
+     * @param table a table index.
+     * @return the number of columns in the table.
+     */
+    static int columnCount(final int table) {
+        return COLUMNS[table].length;
+    }
+
+    /**
+     * copy every table of a database into a snapshot. The caller is responsible for the tables being read consistently, for
+     * instance by holding a serializable transaction open on the connection.
+     *
+     * @param connection an open connection to a database holding the model tables.
+     * @param writer the snapshot to add the rows to, which is not finished.
+     * @throws SQLException if the database cannot be read.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public static void export(final Connection connection, final SnapshotWriter writer) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(SELECT_SQL[CLIENT])) {
+                while (rs.next()) {
+                    writer.addClient(rs.getString(1), rs.getString(2));
+                }
+            }
+            try (ResultSet rs = statement.executeQuery(SELECT_SQL[ACCOUNT])) {
+                while (rs.next()) {
+                    writer.addAccount(rs.getString(1), rs.getString(2), rs.getString(3), Money.toUnits(rs.getBigDecimal(4)),
+                            rs.getInt(5) != 0);
+                }
+            }
+            try (ResultSet rs = statement.executeQuery(SELECT_SQL[TRANSACTION])) {
+                while (rs.next()) {
+                    writer.addTransaction(rs.getString(1), rs.getString(2), Money.toUnits(rs.getBigDecimal(3)),
+                            rs.getTimestamp(4).getTime(), rs.getString(5));
+                }
+            }
+            try (ResultSet rs = statement.executeQuery(SELECT_SQL[TRANSFER_KEY])) {
+                while (rs.next()) {
+                    writer.addTransferKey(rs.getString(1), rs.getString(2), rs.getTimestamp(3).getTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * read the generation of the journal that follows a snapshot, without loading it.
+     *
+     * @param file the snapshot file.
+     * @return the journal generation, or {@link #NO_JOURNAL} if the snapshot was taken without a journal.
+     * @throws IOException if the file cannot be read, or is not a snapshot.
+     */
+    public static long readJournalGeneration(final File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64))) {
+            return readHeader(in, file);
+        }
+    }
+
+    /**
+     * load a snapshot into a database whose tables exist and are empty. The load is made in a single transaction, which is
+     * rolled back if the snapshot cannot be read.
+     *
+     * @param file the snapshot file.
+     * @param connection an open connection to the database.
+     * @return the number of rows loaded, over all tables.
+     * @throws IOException if the file cannot be read, or is not a complete snapshot.
+     * @throws SQLException if the rows cannot be inserted.
+     */
+    public static long load(final File file, final Connection connection) throws IOException, SQLException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            readHeader(in, file);
+
+            boolean autoCommit = connection.getAutoCommit();
+            try (Statement statement = connection.createStatement()) {
+                // the snapshot was taken from a consistent database, so checking every foreign key again only slows the load.
+                statement.execute("SET DATABASE REFERENTIAL INTEGRITY FALSE");
+                connection.setAutoCommit(false);
+                try {
+                    long rows = 0;
+                    for (int table = 0; table < TABLES; table++) {
+                        rows += loadTable(in, connection, table);
+                    }
+                    if (in.readInt() != MAGIC) {
+                        throw new IOException("snapshot is not terminated: " + file);
+                    }
+                    connection.commit();
+                    return rows;
+                } catch (IOException | SQLException | RuntimeException ex) {
+                    connection.rollback();
+                    throw ex;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                    statement.execute("SET DATABASE REFERENTIAL INTEGRITY TRUE");
+                }
+            }
+        }
+    }
+
+    /**
+     * read the magic number, version and journal generation starting a snapshot.
+     *
+     * @param in the snapshot, positioned at its start.
+     * @param file the snapshot file, for the error message.
+     * @return the journal generation, or {@link #NO_JOURNAL} if the snapshot was taken without a journal.
+     * @throws IOException if the file cannot be read, or is not a snapshot of a version that can be loaded.
+     */
+    private static long readHeader(final DataInputStream in, final File file) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a snapshot: " + file);
+        }
+        int version = in.readInt();
+        if (version == VERSION_1) {
+            return NO_JOURNAL;
+        }
+        if (version != VERSION) {
+            throw new IOException("snapshot of another version: " + file);
+        }
+        return in.readLong();
+    }
+
+    /**
+     * load the blocks of one table.
+     *
+     * @param in the snapshot, positioned at the first block of the table.
+     * @param connection the connection to insert on.
+     * @param table the table index.
+     * @return the number of rows loaded.
+     * @throws IOException if the snapshot cannot be read, or a block is malformed.
+     * @throws SQLException if the rows cannot be inserted.
+     */
+    private static long loadTable(final DataInputStream in, final Connection connection, final int table)
+            throws IOException, SQLException {
+        int[] types = COLUMNS[table];
+        ByteBuffer[] columns = new ByteBuffer[types.length];
+        long loaded = 0;
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL[table])) {
+            int rows = in.readInt();
+            while (rows > 0) {
+                for (int i = 0; i < types.length; i++) {
+                    int length = in.readInt();
+                    if (length < 0) {
+                        throw new IOException("snapshot column has a negative length");
+                    }
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    columns[i] = ByteBuffer.wrap(bytes);
+                }
+                try {
+                    for (int row = 0; row < rows; row++) {
+                        for (int i = 0; i < types.length; i++) {
+                            bind(insert, i + 1, types[i], columns[i]);
+                        }
+                        insert.addBatch();
+                    }
+                } catch (BufferUnderflowException ex) {
+                    throw new IOException("snapshot block is shorter than its row count", ex);
+                }
+                insert.executeBatch();
+                loaded += rows;
+                rows = in.readInt();
+            }
+            if (rows < 0) {
+                throw new IOException("snapshot block has a negative row count");
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * read the next value of a column and bind it to an insert.
+     *
+     * @param insert the insert.
+     * @param index the parameter index.
+     * @param type the column type.
+     * @param column the column, positioned at the value.
+     * @throws SQLException if the value cannot be bound.
+     */
+    private static void bind(final PreparedStatement insert, final int index, final int type, final ByteBuffer column)
+            throws SQLException {
+        switch (type) {
+        case STRING:
+            int length = column.getShort();
+            if (length < 0) {
+                insert.setNull(index, Types.VARCHAR);
+            } else {
+                if (length > column.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                insert.setString(index, new String(column.array(), column.position(), length, StandardCharsets.UTF_8));
+                column.position(column.position() + length);
+            }
+            break;
+        case AMOUNT:
+            insert.setBigDecimal(index, Money.toDecimal(column.getLong()));
+            break;
+        case TIME:
+            insert.setTimestamp(index, new Timestamp(column.getLong()));
+            break;
+        default:
+            insert.setInt(index, column.get());
+            break;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package net.parttimepolymath.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * writes a {@link Snapshot} file. Rows are added table by table, in the order clients, accounts, transactions and then
+ * transfer keys, and each table may be empty. Amounts are given in thousandths and times in milliseconds since the epoch.
+ * <p>
+ * The file is written beside its final name and only renamed into place by {@link #finish()}, so an existing snapshot is
+ * never replaced by a partial one. Closing the writer without finishing it discards what was written.
+ *
+ * @author robert
+ */
+@NotThreadSafe
+public final class SnapshotWriter implements Closeable {
+    /**
+     * logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotWriter.class);
+    /**
+     * the most rows held in a block.
+     */
+    static final int BLOCK_ROWS = 4096;
+    /**
+     * the largest number of columns in any table.
+     */
+    private static final int MAX_COLUMNS = 5;
+
+    /**
+     * the snapshot file being written.
+     */
+    private final File file;
+    /**
+     * the file actually written to until the snapshot is finished.
+     */
+    private final File temp;
+    /**
+     * the stream onto the temporary file, kept so that it can be synced.
+     */
+    private final FileOutputStream fileOut;
+    /**
+     * the buffered stream onto the temporary file.
+     */
+    private final DataOutputStream out;
+    /**
+     * the block being built, one buffer per column.
+     */
+    private final ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[MAX_COLUMNS];
+    /**
+     * streams onto the column buffers.
+     */
+    private final DataOutputStream[] columns = new DataOutputStream[MAX_COLUMNS];
+    /**
+     * the table rows are being added to.
+     */
+    private int table = Snapshot.CLIENT;
+    /**
+     * the number of rows in the block being built.
+     */
+    private int blockRows;
+    /**
+     * the number of rows written, over all tables.
+     */
+    private long rows;
+    /**
+     * true once the snapshot has been renamed into place.
+     */
+    private boolean finished;
+
+    /**
+     * constructor for a snapshot taken without a journal, which starts the file.
+     *
+     * @param file the snapshot file to write. It is replaced when the snapshot is finished, if it already exists.
+     * @throws IOException if the file cannot be started.
+     */
+    public SnapshotWriter(final File file) throws IOException {
+        this(file, Snapshot.NO_JOURNAL);
+    }
+
+    /**
+     * primary constructor, which starts the file.
+     *
+     * @param file the snapshot file to write. It is replaced when the snapshot is finished, if it already exists.
+     * @param journalGeneration the generation of the journal holding the transfers made after the snapshot, or
+     *            {@link Snapshot#NO_JOURNAL}.
+     * @throws IOException if the file cannot be started.
+     */
+    public SnapshotWriter(final File file, final long journalGeneration) throws IOException {
+        this.file = file;
+        temp = new File(file.getPath() + ".tmp");
+        fileOut = new FileOutputStream(temp);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+        for (int i = 0; i < MAX_COLUMNS; i++) {
+            buffers[i] = new ByteArrayOutputStream();
+            columns[i] = new DataOutputStream(buffers[i]);
+        }
+        out.writeInt(Snapshot.MAGIC);
+        out.writeInt(Snapshot.VERSION);
+        out.writeLong(journalGeneration);
+    }
+
+    /**
+     * add a client.
+     *
+     * @param clientId the client id.
+     * @param name the client name.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void addClient(final String clientId, final String name) throws IOException {
+        startRow(Snapshot.CLIENT);
+        writeString(columns[0], clientId);
+        writeString(columns[1], name);
+        endRow();
+    }
+
+    /**
+     * add an account. All clients must have been added first.
+     *
+     * @param accountId the account id.
+     * @param clientId the id of the owning client.
+     * @param currency the account currency.
+     * @param balance the balance in thousandths.
+     * @param open true if the account is open.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void addAccount(final String accountId, final String clientId, final String currency, final long balance,
+            final boolean open) throws IOException {
+        startRow(Snapshot.ACCOUNT);
+        writeString(columns[0], accountId);
+        writeString(columns[1], clientId);
+        writeString(columns[2], currency);
+        columns[3].writeLong(balance);
+        columns[4].writeByte(open ? 1 : 0);
+        endRow();
+    }
+
+    /**
+     * add a transaction. All accounts must have been added first.
+     *
+     * @param txId the transaction id.
+     * @param accountId the id of the account the transaction is against.
+     * @param amount the amount in thousandths.
+     * @param date the time of the transaction.
+     * @param reference the reference, possibly null.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void addTransaction(final String txId, final String accountId, final long amount, final long date,
+            final String reference) throws IOException {
+        startRow(Snapshot.TRANSACTION);
+        writeString(columns[0], txId);
+        writeString(columns[1], accountId);
+        columns[2].writeLong(amount);
+        columns[3].writeLong(date);
+        writeString(columns[4], reference);
+        endRow();
+    }
+
+    /**
+     * add an idempotency key. All transactions must have been added first.
+     *
+     * @param idempotencyKey the key.
+     * @param txId the id of the source transaction of the transfer made with the key.
+     * @param created the time the key was claimed.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void addTransferKey(final String idempotencyKey, final String txId, final long created) throws IOException {
+        startRow(Snapshot.TRANSFER_KEY);
+        writeString(columns[0], idempotencyKey);
+        writeString(columns[1], txId);
+        columns[2].writeLong(created);
+        endRow();
+    }
+
+    /**
+     * @return the number of rows added so far, over all tables.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * end the last table, sync the file to disk and rename it into place. Nothing more may be added.
+     *
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void finish() throws IOException {
+        while (table < Snapshot.TABLES) {
+            endTable();
+        }
+        out.writeInt(Snapshot.MAGIC);
+        out.flush();
+        fileOut.getFD().sync();
+        out.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+    }
+
+    /**
+     * close the file, discarding it unless the snapshot has been finished. A failure to close is logged rather than thrown, as
+     * the file is discarded anyway and this usually runs while another failure is being thrown.
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                LOGGER.warn("snapshot " + temp + " could not be closed: " + ex.getMessage());
+            }
+            if (!temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * move on to the table a row is being added to, ending any tables before it.
+     *
+     * @param rowTable the table of the row.
+     * @throws IOException if the snapshot cannot be written.
+     * @throws IllegalStateException if a later table has already been started, or the snapshot is finished.
+     */
+    private void startRow(final int rowTable) throws IOException {
+        if (rowTable < table || table >= Snapshot.TABLES) {
+            throw new IllegalStateException("snapshot tables must be written in order");
+        }
+        while (table < rowTable) {
+            endTable();
+        }
+    }
+
+    /**
+     * count a row, and write out the block if it is full.
+     *
+     * @throws IOException if the snapshot cannot be written.
+     */
+    private void endRow() throws IOException {
+        rows++;
+        if (++blockRows == BLOCK_ROWS) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * write out any partial block of the current table, then the empty block marking its end.
+     *
+     * @throws IOException if the snapshot cannot be written.
+     */
+    private void endTable() throws IOException {
+        if (blockRows > 0) {
+            writeBlock();
+        }
+        out.writeInt(0);
+        table++;
+    }
+
+    /**
+     * write out the block being built: its row count, then each column of the table prefixed by its length in bytes.
+     *
+     * @throws IOException if the snapshot cannot be written.
+     */
+    private void writeBlock() throws IOException {
+        out.writeInt(blockRows);
+        for (int i = 0; i < Snapshot.columnCount(table); i++) {
+            out.writeInt(buffers[i].size());
+            buffers[i].writeTo(out);
+            buffers[i].reset();
+        }
+        blockRows = 0;
+    }
+
+    /**
+     * write a possibly null string as its length in UTF-8 bytes, -1 for null, then the bytes.
+     *
+     * @param column the column to write to.
+     * @param value the string.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    private static void writeString(final DataOutputStream column, final String value) throws IOException {
+        if (value == null) {
+            column.writeShort(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            column.writeShort(bytes.length);
+            column.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.parttimepolymath.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.SessionProfiler;
+import org.eclipse.persistence.sessions.SessionProfilerAdapter;
+
+/**
+ * counts the SQL statements sent to the database, so that the number of round trips an operation costs can be watched from
+ * the service status. Installed as the profiler of the JPA session it sees every statement the JPA layer executes, and
+ * statements executed directly over JDBC are added with {@link #increment()}. A JDBC batch counts as one statement, since it
+ * is sent in one round trip.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class StatementCounter extends SessionProfilerAdapter {
+    /**
+     * count of statements executed.
+     */
+    private final LongAdder statements = new LongAdder();
+
+    @Override
+    public void startOperationProfile(final String operationName, final DatabaseQuery query, final int weight) {
+        if (SessionProfiler.StatementExecute.equals(operationName)) {
+            statements.increment();
+        }
+    }
+
+    /**
+     * count a statement executed directly over JDBC.
+     */
+    public void increment() {
+        statements.increment();
+    }
+
+    /**
+     * @return the number of statements executed so far.
+     */
+    public long getCount() {
+        return statements.sum();
+    }
+}
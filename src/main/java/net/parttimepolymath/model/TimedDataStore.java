@@ -0,0 +1,212 @@
+package net.parttimepolymath.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.metrics.LatencyHistogram;
+import net.parttimepolymath.metrics.Metrics;
+
+/**
+ * records the latency of every operation on another DataStore, whether it succeeds or fails. Each operation has its own
+ * histogram, named after the method, except that both forms of single transfer are recorded as addTransactions and a batch
+ * as addTransactionBatch. The histograms are looked up once when this is built, so timing a call costs two readings of the
+ * clock and a few counter updates.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class TimedDataStore implements DataStore {
+    /**
+     * the store being timed.
+     */
+    private final DataStore delegate;
+    /**
+     * latency of getClients.
+     */
+    private final LatencyHistogram getClients;
+    /**
+     * latency of getClient.
+     */
+    private final LatencyHistogram getClient;
+    /**
+     * latency of getClientSummary.
+     */
+    private final LatencyHistogram getClientSummary;
+    /**
+     * latency of getAccounts.
+     */
+    private final LatencyHistogram getAccounts;
+    /**
+     * latency of getAccount.
+     */
+    private final LatencyHistogram getAccount;
+    /**
+     * latency of getTransactions.
+     */
+    private final LatencyHistogram getTransactions;
+    /**
+     * latency of visitTransactions, including the time taken by the handler.
+     */
+    private final LatencyHistogram visitTransactions;
+    /**
+     * latency of a single transfer.
+     */
+    private final LatencyHistogram addTransactions;
+    /**
+     * latency of findTransfer.
+     */
+    private final LatencyHistogram findTransfer;
+    /**
+     * latency of a batch of transfers.
+     */
+    private final LatencyHistogram addTransactionBatch;
+
+    /**
+     * primary constructor.
+     *
+     * @param store the store to time, assumed non-null.
+     * @param metrics the metrics to record into, assumed non-null.
+     */
+    public TimedDataStore(final DataStore store, final Metrics metrics) {
+        delegate = store;
+        getClients = metrics.operation("getClients");
+        getClient = metrics.operation("getClient");
+        getClientSummary = metrics.operation("getClientSummary");
+        getAccounts = metrics.operation("getAccounts");
+        getAccount = metrics.operation("getAccount");
+        getTransactions = metrics.operation("getTransactions");
+        visitTransactions = metrics.operation("visitTransactions");
+        addTransactions = metrics.operation("addTransactions");
+        findTransfer = metrics.operation("findTransfer");
+        addTransactionBatch = metrics.operation("addTransactionBatch");
+    }
+
+    @Override
+    public List<Client> getClients() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getClients();
+        } finally {
+            getClients.recordSince(start);
+        }
+    }
+
+    @Override
+    public Client getClient(final String clientId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getClient(clientId);
+        } finally {
+            getClient.recordSince(start);
+        }
+    }
+
+    @Override
+    public ClientSummary getClientSummary(final String clientId, final int recent) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getClientSummary(clientId, recent);
+        } finally {
+            getClientSummary.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Account> getAccounts(final String clientId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAccounts(clientId);
+        } finally {
+            getAccounts.recordSince(start);
+        }
+    }
+
+    @Override
+    public Account getAccount(final String accountId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAccount(accountId);
+        } finally {
+            getAccount.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<Transaction> getTransactions(final String accountId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTransactions(accountId);
+        } finally {
+            getTransactions.recordSince(start);
+        }
+    }
+
+    @Override
+    public int visitTransactions(final String accountId, final TransactionKey after, final int limit,
+            final TransactionHandler handler) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return delegate.visitTransactions(accountId, after, limit, handler);
+        } finally {
+            visitTransactions.recordSince(start);
+        }
+    }
+
+    @Override
+    public void addTransactions(final Transaction fromTransaction, final Transaction toTransaction) throws Exception {
+        long start = System.nanoTime();
+        try {
+            delegate.addTransactions(fromTransaction, toTransaction);
+        } finally {
+            addTransactions.recordSince(start);
+        }
+    }
+
+    @Override
+    public void addTransactions(final Transaction fromTransaction, final Transaction toTransaction, final String idempotencyKey)
+            throws Exception {
+        long start = System.nanoTime();
+        try {
+            delegate.addTransactions(fromTransaction, toTransaction, idempotencyKey);
+        } finally {
+            addTransactions.recordSince(start);
+        }
+    }
+
+    @Override
+    public String findTransfer(final String idempotencyKey) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findTransfer(idempotencyKey);
+        } finally {
+            findTransfer.recordSince(start);
+        }
+    }
+
+    @Override
+    public long getStatementCount() {
+        return delegate.getStatementCount();
+    }
+
+    @Override
+    public long writeSnapshot(final File file) throws IOException {
+        return delegate.writeSnapshot(file);
+    }
+
+    @Override
+    public long writeSnapshot(final File file, final long journalGeneration) throws IOException {
+        return delegate.writeSnapshot(file, journalGeneration);
+    }
+
+    @Override
+    public List<Exception> addTransactions(final List<TransactionPair> pairs) {
+        long start = System.nanoTime();
+        try {
+            return delegate.addTransactions(pairs);
+        } finally {
+            addTransactionBatch.recordSince(start);
+        }
+    }
+}
@@ -28,9 +28,8 @@ import org.eclipse.persistence.annotations.Converter;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 
-import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 /**
@@ -42,7 +41,6 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 @Entity
 @Table(name = "transaction")
 @NamedQuery(name = "Transaction.findAll", query = "SELECT t FROM Transaction t")
-@JsonIdentityInfo(generator = ObjectIdGenerators.IntSequenceGenerator.class, property = "@id")
 @JsonIgnoreProperties(ignoreUnknown = true)
 public final class Transaction implements Serializable {
     // TODO: ideally transaction should specify the currency we are transferring.
@@ -67,11 +65,11 @@ public final class Transaction implements Serializable {
     private TransactionPK id;
 
     /**
-     * the transaction amount.
+     * the transaction amount in thousandths of the currency unit.
      */
     @Column(name = "amount", nullable = false, precision = 10, scale = 3)
-    @NotNull
-    private BigDecimal amount;
+    @Convert("moneyConverter")
+    private long amount;
 
     /**
      * the time the transaction occurred.
@@ -129,15 +127,36 @@ public final class Transaction implements Serializable {
      * @return the amount.
      */
     public BigDecimal getAmount() {
-        return amount;
+        return Money.toDecimal(amount);
     }
 
     /**
      * mutator - set the transaction amount.
      * 
-     * @param value the amount to set.
+     * @param value the amount to set, assumed non-null.
+     * @throws ArithmeticException if the amount has more than three decimal places.
      */
     public void setAmount(final BigDecimal value) {
+        amount = Money.toUnits(value);
+    }
+
+    /**
+     * accessor - get the transaction amount in thousandths of the currency unit.
+     * 
+     * @return the amount.
+     */
+    @JsonIgnore
+    public long getAmountUnits() {
+        return amount;
+    }
+
+    /**
+     * mutator - set the transaction amount in thousandths of the currency unit.
+     * 
+     * @param value the amount to set.
+     */
+    @JsonIgnore
+    public void setAmountUnits(final long value) {
         amount = value;
     }
 
@@ -182,6 +201,7 @@ public final class Transaction implements Serializable {
      * 
      * @return the account.
      */
+    @JsonIgnore
     public Account getAccount() {
         return account;
     }
@@ -219,7 +239,7 @@ public final class Transaction implements Serializable {
 
     @Override
     public String toString() {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("account", account).append("amount", amount)
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("account", account).append("amount", getAmount())
                 .append("date", date).append("id", id).append("reference", reference).toString();
     }
 }
@@ -1,13 +1,12 @@
 package net.parttimepolymath.model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
+import javax.persistence.NoResultException;
 
 /**
  * helper class for accessing the transaction table.
@@ -38,7 +37,7 @@ public final class TransactionDAO extends GenericDaoImpl<Transaction, String> {
     @Override
     public void copyAttributes(final Transaction lhs, final Transaction rhs) {
         lhs.setAccount(rhs.getAccount());
-        lhs.setAmount(rhs.getAmount());
+        lhs.setAmountUnits(rhs.getAmountUnits());
         lhs.setDate(rhs.getDate());
         lhs.setId(rhs.getId());
         lhs.setReference(rhs.getReference());
@@ -46,7 +45,14 @@ public final class TransactionDAO extends GenericDaoImpl<Transaction, String> {
 
     @Override
     public Transaction getEntityByPrimaryKey(final Map<String, Object> parameters) {
-        return findFirstWithCriteria(simpleWhere("txId", String.class, "tx_id"), parameters);
+        Map<String, Object> equalities = new HashMap<>();
+        equalities.put("id.txId", parameters.get("tx_id"));
+        equalities.put("id.accountId", parameters.get("account_id"));
+        List<Transaction> results = findWhere(equalities, 1);
+        if (results.isEmpty()) {
+            throw new NoResultException();
+        }
+        return results.get(0);
     }
 
     @Override
@@ -64,14 +70,6 @@ public final class TransactionDAO extends GenericDaoImpl<Transaction, String> {
      * @return
      */
     public List<Transaction> getTransactions(final String accountId) {
-        CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
-        CriteriaQuery<Transaction> cq = cb.createQuery(Transaction.class);
-        Root<Transaction> transaction = cq.from(Transaction.class);
-
-        cq.where(cb.equal(transaction.get(Transaction_.id).get(TransactionPK_.accountId), cb.parameter(String.class, "account_id")));
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("account_id", accountId);
-        return findWithCriteria(cq, parameters);
-
+        return findWhere(Collections.<String, Object> singletonMap("id.accountId", accountId));
     }
 }
@@ -0,0 +1,19 @@
+package net.parttimepolymath.model;
+
+import java.io.IOException;
+
+/**
+ * receives the transactions of an account one at a time as a DataStore reads them, so that a history can be passed on
+ * without ever being held in memory as a whole.
+ *
+ * @author robert
+ */
+public interface TransactionHandler {
+    /**
+     * handle the next transaction.
+     *
+     * @param transaction the transaction, which is not attached to an account.
+     * @throws IOException if the transaction cannot be passed on. The store stops reading and rethrows this.
+     */
+    void handle(Transaction transaction) throws IOException;
+}
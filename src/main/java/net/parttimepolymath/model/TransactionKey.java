@@ -0,0 +1,121 @@
+package net.parttimepolymath.model;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * the position of a transaction in the history of its account. Histories are ordered by date, then by transaction id, which
+ * is unique within an account, so a key identifies exactly one place to resume reading a history from.
+ * <p>
+ * Keys are handed to API clients as an opaque token of the form {@code <millis>:<txId>}.
+ *
+ * @author robert
+ */
+@Immutable
+public final class TransactionKey implements Comparable<TransactionKey> {
+    /**
+     * separator between the date and the transaction id in a token.
+     */
+    private static final char SEPARATOR = ':';
+
+    /**
+     * the time of the transaction in milliseconds since the epoch.
+     */
+    private final long date;
+    /**
+     * the transaction id.
+     */
+    private final String txId;
+
+    /**
+     * primary constructor.
+     *
+     * @param date the time of the transaction in milliseconds since the epoch.
+     * @param txId the transaction id, assumed non-null.
+     */
+    public TransactionKey(final long date, final String txId) {
+        this.date = date;
+        this.txId = txId;
+    }
+
+    /**
+     * construct the key of an existing transaction.
+     *
+     * @param transaction the transaction, assumed non-null and to have an id and date.
+     * @return a new key.
+     */
+    public static TransactionKey of(final Transaction transaction) {
+        return new TransactionKey(transaction.getDate().getMillis(), transaction.getId().getTxId());
+    }
+
+    /**
+     * recover a key from a token produced by {@link #toToken()}.
+     *
+     * @param token the token to parse.
+     * @return the key.
+     * @throws IllegalArgumentException if the token is not one we produced.
+     */
+    public static TransactionKey parse(final String token) {
+        int split = StringUtils.indexOf(token, SEPARATOR);
+        if (split <= 0 || split == token.length() - 1) {
+            throw new IllegalArgumentException("malformed transaction key");
+        }
+        try {
+            return new TransactionKey(Long.parseLong(token.substring(0, split)), token.substring(split + 1));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("malformed transaction key", ex);
+        }
+    }
+
+    /**
+     * @return the time of the transaction in milliseconds since the epoch.
+     */
+    public long getDate() {
+        return date;
+    }
+
+    /**
+     * @return the transaction id.
+     */
+    public String getTxId() {
+        return txId;
+    }
+
+    /**
+     * @return this key as an opaque token that can be handed to clients.
+     */
+    public String toToken() {
+        return Long.toString(date) + SEPARATOR + txId;
+    }
+
+    @Override
+    public int compareTo(final TransactionKey other) {
+        int result = Long.compare(date, other.date);
+        return result != 0 ? result : txId.compareTo(other.txId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(date) + txId.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof TransactionKey)) {
+            return false;
+        }
+        TransactionKey other = (TransactionKey) obj;
+        return date == other.date && txId.equals(other.txId);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("date", date).append("txId", txId).toString();
+    }
+}
@@ -0,0 +1,55 @@
+package net.parttimepolymath.model;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * the two halves of a single transfer, as handed to a DataStore in a batch. The contained transactions are mutable, so
+ * this should not be shared between threads.
+ *
+ * @author robert
+ */
+@NotThreadSafe
+public final class TransactionPair {
+    /**
+     * the transaction taking from the source account.
+     */
+    private final Transaction fromTransaction;
+    /**
+     * the transaction adding to the destination account.
+     */
+    private final Transaction toTransaction;
+
+    /**
+     * primary constructor.
+     *
+     * @param from the transaction taking from the source account, assumed non-null.
+     * @param to the transaction adding to the destination account, assumed non-null.
+     */
+    public TransactionPair(final Transaction from, final Transaction to) {
+        fromTransaction = from;
+        toTransaction = to;
+    }
+
+    /**
+     * @return the transaction taking from the source account.
+     */
+    public Transaction getFromTransaction() {
+        return fromTransaction;
+    }
+
+    /**
+     * @return the transaction adding to the destination account.
+     */
+    public Transaction getToTransaction() {
+        return toTransaction;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("fromTransaction", fromTransaction.getId())
+                .append("toTransaction", toTransaction.getId()).toString();
+    }
+}
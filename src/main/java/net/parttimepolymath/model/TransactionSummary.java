@@ -0,0 +1,95 @@
+package net.parttimepolymath.model;
+
+import java.math.BigDecimal;
+
+import net.jcip.annotations.Immutable;
+import net.parttimepolymath.util.CustomDateSerializer;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.joda.time.DateTime;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * immutable, detached view of a single transaction, as listed in an account summary.
+ *
+ * @author robert
+ */
+@Immutable
+public final class TransactionSummary {
+    /**
+     * the transaction id.
+     */
+    @JsonProperty("txId")
+    private final String txId;
+    /**
+     * the transaction amount.
+     */
+    @JsonProperty("amount")
+    private final BigDecimal amount;
+    /**
+     * the time the transaction occurred.
+     */
+    @JsonProperty("date")
+    @JsonSerialize(using = CustomDateSerializer.class)
+    private final DateTime date;
+    /**
+     * the possibly null transaction reference.
+     */
+    @JsonProperty("reference")
+    private final String reference;
+
+    /**
+     * primary constructor.
+     *
+     * @param txId the transaction id.
+     * @param amount the transaction amount.
+     * @param date the time the transaction occurred.
+     * @param reference the possibly null transaction reference.
+     */
+    @JsonCreator
+    public TransactionSummary(@JsonProperty("txId") final String txId, @JsonProperty("amount") final BigDecimal amount,
+            @JsonProperty("date") final DateTime date, @JsonProperty("reference") final String reference) {
+        this.txId = txId;
+        this.amount = amount;
+        this.date = date;
+        this.reference = reference;
+    }
+
+    /**
+     * @return the transaction id.
+     */
+    public String getTxId() {
+        return txId;
+    }
+
+    /**
+     * @return the transaction amount.
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return the time the transaction occurred.
+     */
+    public DateTime getDate() {
+        return date;
+    }
+
+    /**
+     * @return the possibly null transaction reference.
+     */
+    public String getReference() {
+        return reference;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("txId", txId).append("amount", amount)
+                .append("date", date).append("reference", reference).toString();
+    }
+}
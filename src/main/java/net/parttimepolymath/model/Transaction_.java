@@ -1,6 +1,5 @@
 package net.parttimepolymath.model;
 
-import java.math.BigDecimal;
 import javax.annotation.Generated;
 import javax.persistence.metamodel.SingularAttribute;
 import javax.persistence.metamodel.StaticMetamodel;
@@ -10,7 +9,7 @@ import org.joda.time.DateTime;
 @StaticMetamodel(Transaction.class)
 public class Transaction_ {
 	public static volatile SingularAttribute<Transaction, TransactionPK> id;
-	public static volatile SingularAttribute<Transaction, BigDecimal> amount;
+	public static volatile SingularAttribute<Transaction, Long> amount;
 	public static volatile SingularAttribute<Transaction, DateTime> date;
 	public static volatile SingularAttribute<Transaction, String> reference;
 	public static volatile SingularAttribute<Transaction, Account> account;
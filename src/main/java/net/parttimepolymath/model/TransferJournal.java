@@ -0,0 +1,736 @@
+package net.parttimepolymath.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * append-only journal of transfers, kept in a memory-mapped file. Each transfer is appended as a record holding both of its
+ * transactions, and the idempotency key if it had one, and a caller that needs the transfer to be durable then waits in
+ * {@link #awaitSync(long)} until the record has been forced to disk.
+ * <p>
+ * Forcing is done by a single background thread. When there is something to force, it waits for the sync window so that
+ * other transfers can be appended in the meantime, then forces everything appended so far with one call, releasing every
+ * caller waiting on it at once. A window of a few milliseconds trades that much latency for many fewer syncs under load.
+ * <p>
+ * The file is mapped a chunk at a time, and records never cross a chunk boundary. Each record is its length, a CRC32 of its
+ * contents and the contents, so on reading, a zero length marks the end of the journal and a record that is cut short or
+ * does not match its CRC is taken to have been torn by a crash while it was written, and also ends the journal. As the
+ * caller of a torn record was never told the transfer was durable, nothing is lost by dropping it.
+ * <p>
+ * A transfer whose store failed for a reason other than refusing it, such as a database error, was reported to the client as
+ * failed and may be retried, so {@link #abort(Transaction)} appends a record cancelling it, and replay skips it.
+ * <p>
+ * The file starts with a header holding the generation of the journal, and every record holds the generation it was written
+ * in. {@link #roll(long)} starts a new generation at the front of the file once a snapshot holds everything journalled so
+ * far, so the records of the old generation left further on are ignored rather than replayed.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class TransferJournal implements Closeable {
+    /**
+     * Class logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransferJournal.class);
+    /**
+     * default size of each mapped chunk of the file.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    /**
+     * size of the length and CRC heading each record.
+     */
+    private static final int HEADER = 8;
+    /**
+     * size of the file header: a magic number, the format version and the generation.
+     */
+    static final int FILE_HEADER = 16;
+    /**
+     * the magic number starting a journal file.
+     */
+    private static final int MAGIC = 0x544A524E;
+    /**
+     * the version of the journal format.
+     */
+    private static final int VERSION = 2;
+    /**
+     * kind of a record holding a transfer.
+     */
+    private static final byte TRANSFER = 0;
+    /**
+     * kind of a record cancelling an earlier transfer.
+     */
+    private static final byte ABORT = 1;
+    /**
+     * the generation of a new journal file.
+     */
+    public static final long FIRST_GENERATION = 1L;
+    /**
+     * length written in place of a record to mark the rest of a chunk as unused.
+     */
+    private static final int END_OF_CHUNK = -1;
+
+    /**
+     * the journal file.
+     */
+    private final FileChannel channel;
+    /**
+     * the size of each mapped chunk.
+     */
+    private final int chunkSize;
+    /**
+     * how long to wait for more records before forcing, in nanoseconds.
+     */
+    private final long window;
+    /**
+     * guards the mapping and the positions.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * signalled when a record is appended or the journal is closed.
+     */
+    private final Condition appended = lock.newCondition();
+    /**
+     * signalled when records have been forced or forcing has failed.
+     */
+    private final Condition synced = lock.newCondition();
+    /**
+     * count of forces made.
+     */
+    private final LongAdder syncs = new LongAdder();
+    /**
+     * the thread forcing records to disk.
+     */
+    private final Thread syncer;
+    /**
+     * the chunk being appended to.
+     */
+    @GuardedBy("lock")
+    private MappedByteBuffer buffer;
+    /**
+     * the position in the file of the start of the chunk being appended to.
+     */
+    @GuardedBy("lock")
+    private long chunkStart;
+    /**
+     * the position in the file of the end of the last record appended.
+     */
+    @GuardedBy("lock")
+    private long writePosition;
+    /**
+     * the position in the file up to which records are known to be on disk.
+     */
+    @GuardedBy("lock")
+    private long syncPosition;
+    /**
+     * the generation records are written in.
+     */
+    @GuardedBy("lock")
+    private long generation;
+    /**
+     * the reason forcing failed, after which nothing more is durable.
+     */
+    @GuardedBy("lock")
+    private IOException failure;
+    /**
+     * true once the journal has been closed.
+     */
+    @GuardedBy("lock")
+    private boolean closed;
+
+    /**
+     * open a journal, creating the file if need be. Records already in the file are kept, and can be read back with
+     * {@link #replay(DataStore)}; new records are appended after them.
+     *
+     * @param file the journal file.
+     * @param window how long to wait for more records before forcing, 0 to force as soon as there is anything to force.
+     * @param unit the unit of the window.
+     * @throws IOException if the file cannot be opened, or is not a journal.
+     */
+    public TransferJournal(final File file, final long window, final TimeUnit unit) throws IOException {
+        this(file, window, unit, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * open a journal with a given chunk size. This is mainly useful for testing.
+     *
+     * @param file the journal file.
+     * @param window how long to wait for more records before forcing.
+     * @param unit the unit of the window.
+     * @param chunk the size of each mapped chunk, which bounds the size of a record.
+     * @throws IOException if the file cannot be opened, or is not a journal.
+     */
+    TransferJournal(final File file, final long window, final TimeUnit unit, final int chunk) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        chunkSize = chunk;
+        this.window = unit.toNanos(window);
+        long replayEnd;
+        try {
+            generation = readHeader();
+            replayEnd = scan(null);
+            chunkStart = replayEnd - replayEnd % chunkSize;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, chunkStart, chunkSize);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        writePosition = replayEnd;
+        syncPosition = replayEnd;
+        syncer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                syncLoop();
+            }
+        }, "journal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * apply every transfer found in the journal when it was opened to a store, in the order they were appended, skipping those
+     * that were aborted. This should be done before anything is appended, onto a store in the state it was in when the journal
+     * was started. Transfers are journalled before they are made, so a transfer the store refuses was refused when it was first
+     * made too, and is skipped.
+     *
+     * @param store the store to apply the transfers to.
+     * @return the number of transfers applied.
+     * @throws IOException if the journal cannot be read, or the store fails for a reason other than refusing a transfer.
+     */
+    public int replay(final DataStore store) throws IOException {
+        final Set<String> aborted = new HashSet<>();
+        scan(new RecordHandler() {
+            @Override
+            public void record(final byte[] contents) throws IOException {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+                if (in.readByte() == ABORT) {
+                    aborted.add(in.readUTF());
+                }
+            }
+        });
+
+        final int[] counts = new int[2];
+        scan(new RecordHandler() {
+            @Override
+            public void record(final byte[] contents) throws IOException {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+                if (in.readByte() != TRANSFER) {
+                    return;
+                }
+                Transaction from = readTransaction(in);
+                Transaction to = readTransaction(in);
+                String key = readString(in);
+                if (aborted.contains(from.getId().getTxId())) {
+                    counts[1]++;
+                    return;
+                }
+                try {
+                    if (key == null) {
+                        store.addTransactions(from, to);
+                    } else {
+                        store.addTransactions(from, to, key);
+                    }
+                    counts[0]++;
+                } catch (Exception ex) {
+                    if (!isRefusal(ex)) {
+                        throw new IOException("journalled transfer " + from.getId().getTxId() + " could not be replayed", ex);
+                    }
+                    counts[1]++;
+                    LOGGER.debug("journalled transfer " + from.getId().getTxId() + " refused again: " + ex.getMessage());
+                }
+            }
+        });
+        LOGGER.info("replayed " + counts[0] + " transfers from the journal, skipped " + counts[1]);
+        return counts[0];
+    }
+
+    /**
+     * append a transfer to the journal. The record is not durable until {@link #awaitSync(long)} returns for the position
+     * given back.
+     *
+     * @param fromTransaction the source transaction, assumed non-null and complete.
+     * @param toTransaction the destination transaction, assumed non-null and complete.
+     * @param idempotencyKey the key the client gave the transfer, or null.
+     * @return the position in the journal of the end of the record.
+     * @throws IOException if the record cannot be appended.
+     */
+    public long append(final Transaction fromTransaction, final Transaction toTransaction, final String idempotencyKey)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(0L);
+        out.writeByte(TRANSFER);
+        writeTransaction(out, fromTransaction);
+        writeTransaction(out, toTransaction);
+        writeString(out, idempotencyKey);
+        out.flush();
+        return appendRecord(bytes.toByteArray());
+    }
+
+    /**
+     * append a record cancelling a transfer appended earlier in this generation, so that it is not replayed. This is for a
+     * transfer the store failed to make for a reason other than refusing it, and which the caller was told had failed. As with
+     * a transfer, the record is not durable until {@link #awaitSync(long)} returns for the position given back.
+     *
+     * @param fromTransaction the source transaction of the transfer, whose id identifies it.
+     * @return the position in the journal of the end of the record.
+     * @throws IOException if the record cannot be appended.
+     */
+    public long abort(final Transaction fromTransaction) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(0L);
+        out.writeByte(ABORT);
+        out.writeUTF(fromTransaction.getId().getTxId());
+        out.flush();
+        return appendRecord(bytes.toByteArray());
+    }
+
+    /**
+     * @param ex a failure from a store asked to make a transfer.
+     * @return true if the store refused the transfer, and would refuse it again in the same state, rather than failing to make
+     *         it for some other reason.
+     */
+    public static boolean isRefusal(final Exception ex) {
+        return ex instanceof InsufficientFundsException || ex instanceof AccountNotOpenException
+                || ex instanceof DuplicateTransferException;
+    }
+
+    /**
+     * append a record, stamping it with the current generation.
+     *
+     * @param contents the contents of the record, starting with room for the generation.
+     * @return the position in the journal of the end of the record.
+     * @throws IOException if the record cannot be appended.
+     */
+    private long appendRecord(final byte[] contents) throws IOException {
+        if (FILE_HEADER + HEADER + contents.length > chunkSize) {
+            throw new IOException("transfer too large for the journal");
+        }
+
+        lock.lock();
+        try {
+            checkUsable();
+            ByteBuffer.wrap(contents).putLong(0, generation);
+            CRC32 crc = new CRC32();
+            crc.update(contents);
+            int offset = (int) (writePosition - chunkStart);
+            if (offset + HEADER + contents.length > chunkSize) {
+                nextChunk(offset);
+                offset = 0;
+            }
+            buffer.putInt(offset, contents.length);
+            buffer.putInt(offset + 4, (int) crc.getValue());
+            buffer.put(offset + HEADER, contents);
+            writePosition += HEADER + contents.length;
+            appended.signal();
+            return writePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * wait until everything up to a position in the journal is on disk.
+     *
+     * @param position a position returned by {@link #append(Transaction, Transaction, String)}.
+     * @throws IOException if forcing failed.
+     */
+    public void awaitSync(final long position) throws IOException {
+        lock.lock();
+        try {
+            // once closed, the background thread still forces everything appended before it stops, so only a failure ends the wait.
+            while (syncPosition < position) {
+                if (failure != null) {
+                    throw failure;
+                }
+                synced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the generation records are being written in.
+     */
+    public long getGeneration() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * start a new generation at the front of the file, discarding every record journalled so far. This is for when a snapshot
+     * holds everything journalled, so the caller must make sure that nothing is appended while it runs, and that every
+     * transfer appended has been made or refused.
+     *
+     * @param next the new generation, greater than the current one.
+     * @throws IOException if the new generation cannot be forced to disk, or the journal cannot be used.
+     * @throws IllegalArgumentException if the generation is not greater than the current one.
+     */
+    public void roll(final long next) throws IOException {
+        lock.lock();
+        try {
+            if (next <= generation) {
+                throw new IllegalArgumentException("journal generation " + next + " is not after " + generation);
+            }
+            checkUsable();
+            while (syncPosition < writePosition) {
+                if (failure != null) {
+                    throw failure;
+                }
+                synced.awaitUninterruptibly();
+            }
+            if (chunkStart != 0) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, chunkSize);
+                chunkStart = 0;
+            }
+            writeHeader(next);
+            try {
+                buffer.force();
+                syncs.increment();
+            } catch (RuntimeException ex) {
+                failure = new IOException("journal could not be forced to disk", ex);
+                synced.signalAll();
+                throw failure;
+            }
+            generation = next;
+            writePosition = FILE_HEADER;
+            syncPosition = FILE_HEADER;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of times records have been forced to disk.
+     */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    /**
+     * force everything appended so far, stop the background thread and close the file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            syncer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * the body of the background thread: wait for records, wait out the window, force, and release the waiting callers. Exits
+     * once the journal is closed and everything appended has been forced.
+     */
+    private void syncLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (!closed && failure == null && syncPosition >= writePosition) {
+                    appended.awaitUninterruptibly();
+                }
+                if (failure != null || (closed && syncPosition >= writePosition)) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // let other transfers join this sync, unless we are closing and only need to catch up.
+            if (window > 0 && !isClosed()) {
+                LockSupport.parkNanos(window);
+            }
+
+            MappedByteBuffer target;
+            long base;
+            long from;
+            long to;
+            lock.lock();
+            try {
+                target = buffer;
+                base = chunkStart;
+                from = Math.max(syncPosition, base) - base;
+                to = writePosition - base;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException failed = null;
+            try {
+                target.force((int) from, (int) (to - from));
+                syncs.increment();
+            } catch (RuntimeException ex) {
+                failed = new IOException("journal could not be forced to disk", ex);
+            }
+
+            lock.lock();
+            try {
+                if (failed != null) {
+                    LOGGER.error(failed.getMessage(), failed.getCause());
+                    failure = failed;
+                } else if (base + to > syncPosition) {
+                    syncPosition = base + to;
+                }
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return true once the journal has been closed.
+     */
+    private boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @throws IOException if forcing has failed or the journal is closed.
+     */
+    @GuardedBy("lock")
+    private void checkUsable() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (closed) {
+            throw new IOException("journal is closed");
+        }
+    }
+
+    /**
+     * mark the rest of the current chunk as unused, force it, and map the next one. Forcing here means that the background
+     * thread only ever has the current chunk to deal with.
+     *
+     * @param offset the offset in the current chunk of the end of the last record.
+     * @throws IOException if the next chunk cannot be mapped.
+     */
+    @GuardedBy("lock")
+    private void nextChunk(final int offset) throws IOException {
+        if (chunkSize - offset >= HEADER) {
+            buffer.putInt(offset, END_OF_CHUNK);
+        }
+        try {
+            buffer.force();
+            syncs.increment();
+        } catch (RuntimeException ex) {
+            failure = new IOException("journal could not be forced to disk", ex);
+            synced.signalAll();
+            throw failure;
+        }
+        syncPosition = writePosition;
+        synced.signalAll();
+        chunkStart += chunkSize;
+        writePosition = chunkStart;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, chunkStart, chunkSize);
+    }
+
+    /**
+     * read the generation from the file header, writing the header of the first generation if the file is new.
+     *
+     * @return the generation.
+     * @throws IOException if the file cannot be read, or is not a journal.
+     */
+    private long readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            continue;
+        }
+        header.flip();
+        if (!header.hasRemaining() || header.remaining() >= 4 && header.getInt(0) == 0) {
+            header = ByteBuffer.allocate(FILE_HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(FIRST_GENERATION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+            return FIRST_GENERATION;
+        }
+        if (header.remaining() < FILE_HEADER || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("not a transfer journal, or a journal of another version");
+        }
+        return header.getLong(8);
+    }
+
+    /**
+     * write the file header into the first chunk, which must be the one mapped.
+     *
+     * @param headerGeneration the generation to record.
+     */
+    @GuardedBy("lock")
+    private void writeHeader(final long headerGeneration) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, headerGeneration);
+    }
+
+    /**
+     * read the records of the current generation from the start of the file, stopping at the end of the journal, the first
+     * torn record or the first record of an earlier generation.
+     *
+     * @param handler given the contents of each record in turn, after its generation, or null just to find the end.
+     * @return the position in the file of the end of the last good record.
+     * @throws IOException if the file cannot be read, or the handler fails.
+     */
+    private long scan(final RecordHandler handler) throws IOException {
+        long size = channel.size();
+        long position = FILE_HEADER;
+        while (position < size) {
+            long start = position - position % chunkSize;
+            ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+            int offset = (int) (position - start);
+            while (true) {
+                if (chunk.limit() - offset < HEADER) {
+                    if (chunk.limit() < chunkSize) {
+                        return position;
+                    }
+                    break;
+                }
+                int length = chunk.getInt(offset);
+                if (length == END_OF_CHUNK) {
+                    break;
+                }
+                if (length <= 0 || length > chunk.limit() - offset - HEADER) {
+                    return position;
+                }
+                byte[] contents = new byte[length];
+                chunk.get(offset + HEADER, contents);
+                CRC32 crc = new CRC32();
+                crc.update(contents);
+                if ((int) crc.getValue() != chunk.getInt(offset + 4)) {
+                    return position;
+                }
+                if (length < 8 || ByteBuffer.wrap(contents).getLong(0) != generation) {
+                    return position;
+                }
+                if (handler != null) {
+                    handler.record(Arrays.copyOfRange(contents, 8, length));
+                }
+                offset += HEADER + length;
+                position = start + offset;
+            }
+            position = start + chunkSize;
+        }
+        return Math.min(position, size);
+    }
+
+    /**
+     * write a transaction into a record.
+     *
+     * @param out where to write.
+     * @param transaction the transaction.
+     * @throws IOException if the write fails.
+     */
+    private static void writeTransaction(final DataOutputStream out, final Transaction transaction) throws IOException {
+        out.writeUTF(transaction.getId().getAccountId());
+        out.writeUTF(transaction.getId().getTxId());
+        out.writeUTF(transaction.getAmount().toPlainString());
+        out.writeLong(transaction.getDate().getMillis());
+        writeString(out, transaction.getReference());
+    }
+
+    /**
+     * read a transaction written by {@link #writeTransaction(DataOutputStream, Transaction)}.
+     *
+     * @param in where to read.
+     * @return a new transaction, not attached to an account.
+     * @throws IOException if the read fails.
+     */
+    private static Transaction readTransaction(final DataInputStream in) throws IOException {
+        TransactionPK key = new TransactionPK();
+        key.setAccountId(in.readUTF());
+        key.setTxId(in.readUTF());
+        Transaction transaction = new Transaction();
+        transaction.setId(key);
+        transaction.setAmount(new BigDecimal(in.readUTF()));
+        transaction.setDate(new DateTime(in.readLong(), DateTimeZone.UTC));
+        transaction.setReference(readString(in));
+        return transaction;
+    }
+
+    /**
+     * write a possibly null string into a record.
+     *
+     * @param out where to write.
+     * @param value the string, or null.
+     * @throws IOException if the write fails.
+     */
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * read a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in where to read.
+     * @return the string, or null.
+     * @throws IOException if the read fails.
+     */
+    private static String readString(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * receives the contents of each record found by a scan.
+     */
+    private interface RecordHandler {
+        /**
+         * @param contents the contents of a record.
+         * @throws IOException if the record cannot be dealt with.
+         */
+        void record(byte[] contents) throws IOException;
+    }
+}
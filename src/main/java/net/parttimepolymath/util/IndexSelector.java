@@ -0,0 +1,138 @@
+package net.parttimepolymath.util;
+
+import java.util.Random;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * chooses indexes into a range of items, either uniformly or following a zipfian distribution in which a few items are chosen
+ * far more often than the rest. The zipfian draw is the one used by YCSB, after Gray et al, "Quickly Generating
+ * Billion-Record Synthetic Databases": the normalising sum is worked out once, and each draw then costs one random number
+ * and one power.
+ * <p>
+ * Left alone, the zipfian draw would make the first items of the range the most popular. The ranks are instead mapped onto
+ * the range through a permutation fixed by the seed, so the popular items are scattered and the same for every caller using
+ * the same seed. The selector holds no random state of its own, so it can be shared, with each caller passing its own
+ * source of random numbers.
+ *
+ * @author robert
+ */
+@Immutable
+public final class IndexSelector {
+    /**
+     * the skew usually used for a zipfian distribution, under which about a fifth of the items take most of the choices.
+     */
+    public static final double ZIPFIAN_THETA = 0.99;
+
+    /**
+     * the number of items.
+     */
+    private final int size;
+    /**
+     * the skew, or 0 for a uniform choice.
+     */
+    private final double theta;
+    /**
+     * the item of each rank, or null for a uniform choice.
+     */
+    private final int[] items;
+    /**
+     * the sum over all ranks of 1 / rank^theta.
+     */
+    private final double zetan;
+    /**
+     * 1 / (1 - theta).
+     */
+    private final double alpha;
+    /**
+     * the constant of the draw, derived from the size, skew and normalising sums.
+     */
+    private final double eta;
+
+    /**
+     * primary constructor.
+     *
+     * @param size the number of items, at least 1.
+     * @param theta the skew, 0 for a uniform choice, and otherwise between 0 and 1 exclusive.
+     * @param seed the seed of the permutation scattering the popular items.
+     * @throws IllegalArgumentException if the size or skew are out of range.
+     */
+    public IndexSelector(final int size, final double theta, final long seed) {
+        if (size < 1) {
+            throw new IllegalArgumentException("there must be at least one item to choose from");
+        }
+        if (theta < 0.0 || theta >= 1.0) {
+            throw new IllegalArgumentException("theta must be at least 0 and less than 1");
+        }
+        this.size = size;
+        this.theta = theta;
+        if (theta == 0.0) {
+            items = null;
+            zetan = 0.0;
+            alpha = 0.0;
+            eta = 0.0;
+        } else {
+            items = new int[size];
+            for (int i = 0; i < size; i++) {
+                items[i] = i;
+            }
+            Random random = new Random(seed);
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = items[i];
+                items[i] = items[j];
+                items[j] = swap;
+            }
+            double sum = 0.0;
+            for (int i = 1; i <= size; i++) {
+                sum += 1.0 / Math.pow(i, theta);
+            }
+            zetan = sum;
+            alpha = 1.0 / (1.0 - theta);
+            double zeta2 = 1.0 + 1.0 / Math.pow(2.0, theta);
+            eta = (1.0 - Math.pow(2.0 / size, 1.0 - theta)) / (1.0 - zeta2 / zetan);
+        }
+    }
+
+    /**
+     * @return the number of items.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return true if the choice is zipfian rather than uniform.
+     */
+    public boolean isZipfian() {
+        return items != null;
+    }
+
+    /**
+     * choose an item.
+     *
+     * @param random the source of random numbers, which is used by this thread alone.
+     * @return the index of the item, from 0 to one less than the size.
+     */
+    public int next(final Random random) {
+        if (items == null) {
+            return random.nextInt(size);
+        }
+        return items[rank(random.nextDouble())];
+    }
+
+    /**
+     * @param u a random number from 0 inclusive to 1 exclusive.
+     * @return the rank it falls on, 0 being the most popular.
+     */
+    private int rank(final double u) {
+        double uz = u * zetan;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return Math.min(1, size - 1);
+        }
+        return Math.min((int) (size * Math.pow(eta * u - eta + 1.0, alpha)), size - 1);
+    }
+}
@@ -0,0 +1,193 @@
+package net.parttimepolymath.util;
+
+import java.io.IOException;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.joda.time.DateTime;
+import org.joda.time.chrono.ISOChronology;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * writes timestamps in the form printed by {@link ISODateTimeFormat#dateTime()}, such as {@code 2015-06-08T09:14:00.000Z} or
+ * {@code 2015-06-08T10:14:00.000+01:00}, without going through a Joda formatter. The fields are worked out from the instant
+ * with integer arithmetic and written straight into a char array, so writing a timestamp to a generator makes no
+ * intermediate string. Dates outside the years 0 to 9999, in a chronology other than ISO, or in a zone whose offset is not
+ * a whole number of minutes, are left to Joda.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class IsoTimestamp {
+    /**
+     * the longest timestamp written here: yyyy-MM-ddTHH:mm:ss.SSS+HH:mm.
+     */
+    public static final int MAX_LENGTH = 29;
+
+    /**
+     * the formatter used for the dates this cannot write, and which this matches.
+     */
+    private static final DateTimeFormatter FORMATTER = ISODateTimeFormat.dateTime();
+    /**
+     * milliseconds in a day.
+     */
+    private static final long MILLIS_PER_DAY = 86400000L;
+    /**
+     * milliseconds in a minute.
+     */
+    private static final int MILLIS_PER_MINUTE = 60000;
+    /**
+     * days from 0000-03-01 to 1970-01-01, counting the proleptic Gregorian calendar.
+     */
+    private static final long DAYS_TO_EPOCH = 719468L;
+    /**
+     * days in a 400 year Gregorian cycle.
+     */
+    private static final long DAYS_PER_ERA = 146097L;
+    /**
+     * the largest year written here.
+     */
+    private static final int MAX_YEAR = 9999;
+
+    /**
+     * no instances.
+     */
+    private IsoTimestamp() {
+    }
+
+    /**
+     * @param value the timestamp, assumed non-null.
+     * @return the timestamp in its own zone.
+     */
+    public static String print(final DateTime value) {
+        char[] buffer = new char[MAX_LENGTH];
+        int length = print(value.getMillis(), offsetOf(value), buffer);
+        return length < 0 ? FORMATTER.print(value) : new String(buffer, 0, length);
+    }
+
+    /**
+     * write a timestamp, in its own zone, as a string value.
+     *
+     * @param gen where to write.
+     * @param value the timestamp, assumed non-null.
+     * @throws IOException if the generator cannot write.
+     */
+    public static void write(final JsonGenerator gen, final DateTime value) throws IOException {
+        char[] buffer = new char[MAX_LENGTH];
+        int length = print(value.getMillis(), offsetOf(value), buffer);
+        if (length < 0) {
+            gen.writeString(FORMATTER.print(value));
+        } else {
+            gen.writeString(buffer, 0, length);
+        }
+    }
+
+    /**
+     * write a timestamp, in UTC whatever its zone, as a string value.
+     *
+     * @param gen where to write.
+     * @param value the timestamp, assumed non-null.
+     * @throws IOException if the generator cannot write.
+     */
+    public static void writeUtc(final JsonGenerator gen, final DateTime value) throws IOException {
+        char[] buffer = new char[MAX_LENGTH];
+        int length = isIso(value) ? print(value.getMillis(), 0, buffer) : -1;
+        if (length < 0) {
+            gen.writeString(FORMATTER.withZoneUTC().print(value));
+        } else {
+            gen.writeString(buffer, 0, length);
+        }
+    }
+
+    /**
+     * @param value a timestamp.
+     * @return the offset of its zone from UTC at its instant, in milliseconds, or {@link Integer#MIN_VALUE} if it is not in
+     *         the ISO chronology.
+     */
+    private static int offsetOf(final DateTime value) {
+        return isIso(value) ? value.getZone().getOffset(value.getMillis()) : Integer.MIN_VALUE;
+    }
+
+    /**
+     * @param value a timestamp.
+     * @return true if its fields are those of the ISO calendar.
+     */
+    private static boolean isIso(final DateTime value) {
+        return value.getChronology().withUTC() == ISOChronology.getInstanceUTC();
+    }
+
+    /**
+     * print an instant at an offset. The date is found from the day number with the civil-from-days algorithm of Howard
+     * Hinnant, which counts years from March so that the leap day falls at the end.
+     *
+     * @param instant milliseconds since 1970-01-01T00:00:00Z.
+     * @param offset the offset from UTC in milliseconds, or {@link Integer#MIN_VALUE} to print nothing.
+     * @param buffer where to print, at least {@link #MAX_LENGTH} long.
+     * @return the number of chars printed, or -1 if the instant cannot be printed here.
+     */
+    static int print(final long instant, final int offset, final char[] buffer) {
+        if (offset == Integer.MIN_VALUE || offset % MILLIS_PER_MINUTE != 0) {
+            return -1;
+        }
+        long local = instant + offset;
+        long days = Math.floorDiv(local, MILLIS_PER_DAY);
+        int millisOfDay = (int) Math.floorMod(local, MILLIS_PER_DAY);
+
+        long shifted = days + DAYS_TO_EPOCH;
+        long era = Math.floorDiv(shifted, DAYS_PER_ERA);
+        int dayOfEra = (int) (shifted - era * DAYS_PER_ERA);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > MAX_YEAR) {
+            return -1;
+        }
+
+        int pos = digits(buffer, 0, (int) year, 4);
+        buffer[pos++] = '-';
+        pos = digits(buffer, pos, month, 2);
+        buffer[pos++] = '-';
+        pos = digits(buffer, pos, day, 2);
+        buffer[pos++] = 'T';
+        pos = digits(buffer, pos, millisOfDay / 3600000, 2);
+        buffer[pos++] = ':';
+        pos = digits(buffer, pos, millisOfDay / MILLIS_PER_MINUTE % 60, 2);
+        buffer[pos++] = ':';
+        pos = digits(buffer, pos, millisOfDay / 1000 % 60, 2);
+        buffer[pos++] = '.';
+        pos = digits(buffer, pos, millisOfDay % 1000, 3);
+        if (offset == 0) {
+            buffer[pos++] = 'Z';
+            return pos;
+        }
+        int minutes = Math.abs(offset) / MILLIS_PER_MINUTE;
+        buffer[pos++] = offset < 0 ? '-' : '+';
+        pos = digits(buffer, pos, minutes / 60, 2);
+        buffer[pos++] = ':';
+        return digits(buffer, pos, minutes % 60, 2);
+    }
+
+    /**
+     * print a number with leading zeros.
+     *
+     * @param buffer where to print.
+     * @param start the position to print at.
+     * @param value the number, not negative and with no more than the given number of digits.
+     * @param width the number of digits to print.
+     * @return the position after the number.
+     */
+    private static int digits(final char[] buffer, final int start, final int value, final int width) {
+        int rest = value;
+        for (int i = start + width - 1; i >= start; i--) {
+            buffer[i] = (char) ('0' + rest % 10);
+            rest /= 10;
+        }
+        return start + width;
+    }
+}
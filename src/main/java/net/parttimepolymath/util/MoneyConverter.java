@@ -0,0 +1,44 @@
+package net.parttimepolymath.util;
+
+import java.math.BigDecimal;
+
+import net.parttimepolymath.model.Money;
+
+import org.eclipse.persistence.mappings.DatabaseMapping;
+import org.eclipse.persistence.mappings.converters.Converter;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * helper class to convert the database decimal amount columns to and from a long number of thousandths, so that the JPA
+ * layer is the only place an entity's amount is a BigDecimal.
+ *
+ * @author robert
+ */
+public class MoneyConverter implements Converter {
+    /**
+     * generated uid.
+     */
+    private static final long serialVersionUID = 6519287345187370952L;
+
+    @Override
+    public Object convertDataValueToObjectValue(final Object dataValue, final Session session) {
+        if (dataValue == null) {
+            return null;
+        }
+        return Money.toUnits(dataValue instanceof BigDecimal ? (BigDecimal) dataValue : new BigDecimal(dataValue.toString()));
+    }
+
+    @Override
+    public Object convertObjectValueToDataValue(final Object objectValue, final Session session) {
+        return objectValue == null ? null : Money.toDecimal((Long) objectValue);
+    }
+
+    @Override
+    public void initialize(final DatabaseMapping mapping, final Session session) {
+    }
+
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+}
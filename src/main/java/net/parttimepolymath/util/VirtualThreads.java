@@ -0,0 +1,79 @@
+package net.parttimepolymath.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * helper for making virtual threads. The build targets Java 17, where virtual threads do not exist, so the Java 21 thread
+ * builder API is looked up reflectively. On an older runtime {@link #isAvailable()} is false and asking for a factory fails.
+ *
+ * @author robert
+ */
+@ThreadSafe
+public final class VirtualThreads {
+    /**
+     * the Thread.ofVirtual() method, or null if this runtime has no virtual threads.
+     */
+    private static final Method OF_VIRTUAL;
+    /**
+     * the Thread.Builder.name(String, long) method.
+     */
+    private static final Method NAME;
+    /**
+     * the Thread.Builder.factory() method.
+     */
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (ClassNotFoundException | NoSuchMethodException ex) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    /**
+     * no instances.
+     */
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if this runtime supports virtual threads.
+     */
+    public static boolean isAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * make a factory for virtual threads. Threads are named with the prefix followed by a sequence number starting at 1.
+     *
+     * @param prefix the prefix for thread names.
+     * @return a non-null ThreadFactory creating unstarted virtual threads.
+     * @throws UnsupportedOperationException if this runtime does not support virtual threads.
+     */
+    public static ThreadFactory factory(final String prefix) {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("virtual threads need Java 21 or later, running on "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException("unable to make a virtual thread factory", ex);
+        }
+    }
+}
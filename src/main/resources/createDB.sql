@@ -1,6 +1,7 @@
 -- currently this is an exact copy of what we use for unit tests. Obviously in the real solution we do not use this!
 -- I have two separate files because this allows me to have more interesting test cases for a running server
 -- without potentially breaking the unit tests.
+-- the tables are repeated without their data in schema.sql, which is used when loading a snapshot, so keep the two in step.
 
 CREATE TABLE client (
   client_id VARCHAR(36) NOT NULL,
@@ -44,6 +45,9 @@ CREATE TABLE IF NOT EXISTS transaction (
   FOREIGN KEY (account_id) REFERENCES account (account_id)
 );
 
+-- histories are read a page at a time in (date, tx_id) order, and the summary reads the latest few, so index them in that order.
+CREATE INDEX transaction_account_date ON transaction (account_id, date, tx_id);
+
 INSERT INTO transaction VALUES (
   ('eab5d57e-385f-11e5-a151-feff819cdc9f','46fd6528-385a-11e5-a151-feff819cdc9f', -100.0, '2015-06-07 03:14:00', ''),
   ('eab5d858-385f-11e5-a151-feff819cdc9f','46fd6528-385a-11e5-a151-feff819cdc9f', 100.0, '2015-06-08 9:14:00', 'eab5dde4-385f-11e5-a151-feff819cdc9f'),
@@ -56,4 +60,11 @@ INSERT INTO transaction VALUES (
   ('eab5e064-385f-11e5-a151-feff819cdc9f', '87a4d7aa-385a-11e5-a151-feff819cdc9f', -50.0, '2015-01-27 16:18:23', 'shoes'),
   ('eab5e316-385f-11e5-a151-feff819cdc9f', '87a4d7aa-385a-11e5-a151-feff819cdc9f', 300.0, '2015-08-08 17:23:00', ''),
   ('eab5e3f2-385f-11e5-a151-feff819cdc9f', '87a4d7aa-385a-11e5-a151-feff819cdc9f', 100.0, '2015-06-07 03:14:00', '')
-);
\ No newline at end of file
+);
+
+CREATE TABLE IF NOT EXISTS transfer_key (
+  idem_key VARCHAR(64) NOT NULL,
+  tx_id VARCHAR(36) NOT NULL,
+  created TIMESTAMP NOT NULL,
+  PRIMARY KEY (idem_key)
+);
@@ -0,0 +1,37 @@
+-- the tables of createDB.sql without any data, used when the database is loaded from a snapshot rather than the script.
+-- keep this in step with createDB.sql.
+
+CREATE TABLE client (
+  client_id VARCHAR(36) NOT NULL,
+  name VARCHAR(64) NOT NULL,
+  PRIMARY KEY (client_id)
+);
+
+CREATE TABLE account (
+  account_id VARCHAR(36) NOT NULL,
+  client_id VARCHAR(36) NOT NULL,
+  currency VARCHAR(3) NOT NULL,
+  balance DECIMAL(10,3) NOT NULL,
+  open TINYINT NOT NULL,
+  PRIMARY KEY (account_id),
+  FOREIGN KEY (client_id) REFERENCES client (client_id)
+);
+
+CREATE TABLE transaction (
+  tx_id VARCHAR(36) NOT NULL,
+  account_id VARCHAR(36) NOT NULL,
+  amount DECIMAL(10,3) NOT NULL,
+  date TIMESTAMP NOT NULL,
+  reference VARCHAR(36) NULL,
+  PRIMARY KEY (tx_id, account_id),
+  FOREIGN KEY (account_id) REFERENCES account (account_id)
+);
+
+CREATE INDEX transaction_account_date ON transaction (account_id, date, tx_id);
+
+CREATE TABLE transfer_key (
+  idem_key VARCHAR(64) NOT NULL,
+  tx_id VARCHAR(36) NOT NULL,
+  created TIMESTAMP NOT NULL,
+  PRIMARY KEY (idem_key)
+);
@@ -0,0 +1,71 @@
+package net.parttimepolymath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LoadProfileTest {
+
+    @Test
+    public void testParseMix() {
+        int[] mix = LoadProfile.parseMix(" 70, 20,5 ,5");
+        assertEquals(70, mix[LoadProfile.TRANSFER]);
+        assertEquals(20, mix[LoadProfile.ACCOUNT]);
+        assertEquals(5, mix[LoadProfile.CLIENT]);
+        assertEquals(5, mix[LoadProfile.STATUS]);
+
+        for (String bad : new String[] { "1,2,3", "1,2,3,4,5", "1,-2,3,4", "a,b,c,d", "" }) {
+            try {
+                LoadProfile.parseMix(bad);
+                fail("expected mix to be refused: " + bad);
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testChooseOperation() {
+        LoadProfile instance = new LoadProfile(1, 1, 0, new int[] { 2, 0, 1, 1 }, false, 0L);
+        assertEquals(4, instance.getTotalWeight());
+        assertEquals(LoadProfile.TRANSFER, instance.chooseOperation(0));
+        assertEquals(LoadProfile.TRANSFER, instance.chooseOperation(1));
+        assertEquals(LoadProfile.CLIENT, instance.chooseOperation(2));
+        assertEquals(LoadProfile.STATUS, instance.chooseOperation(3));
+    }
+
+    @Test
+    public void testOutOfRange() {
+        try {
+            new LoadProfile(1, 1, 0, new int[] { 0, 0, 0, 0 }, false, 0L);
+            fail("expected an empty mix to be refused");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            new LoadProfile(0, 1, 0, new int[] { 1, 0, 0, 0 }, false, 0L);
+            fail("expected no concurrency to be refused");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadAccounts() throws Exception {
+        String script = new String(Files.readAllBytes(Paths.get(LoadProfileTest.class.getResource("/createTest.sql").toURI())));
+        List<String[]> accounts = LoadGenerator.readAccounts(script);
+        assertEquals(10, accounts.size());
+        assertEquals("adfd560e-389e-11e5-a151-feff819cdc9f", accounts.get(accounts.size() - 1)[0]);
+
+        accounts = LoadGenerator.readAccounts("INSERT INTO account VALUES ('a-1', 'c-1', 'USD', 1000000.0, 1);\n"
+                + "INSERT INTO transaction VALUES ('t-1', 'a-1', 10.0, '2015-01-01 00:00:00', 'x');\n");
+        assertEquals(1, accounts.size());
+        assertEquals("c-1", accounts.get(0)[1]);
+        assertEquals("USD", accounts.get(0)[2]);
+    }
+}
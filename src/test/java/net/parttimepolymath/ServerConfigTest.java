@@ -0,0 +1,56 @@
+package net.parttimepolymath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ServerConfigTest {
+
+    @Test
+    public void testDefault() {
+        ServerConfig instance = ServerConfig.DEFAULT;
+        assertEquals(ServerConfig.JETTY_DEFAULT, instance.getAcceptors());
+        assertEquals(ServerConfig.JETTY_DEFAULT, instance.getSelectors());
+        assertEquals(ServerConfig.DEFAULT_IDLE_TIMEOUT, instance.getIdleTimeout());
+        assertEquals(ServerConfig.DEFAULT_HEADER_SIZE, instance.getHeaderSize());
+        assertEquals(ServerConfig.DEFAULT_THREADS_MIN, instance.getThreadsMin());
+        assertEquals(ServerConfig.DEFAULT_THREADS_MAX, instance.getThreadsMax());
+        assertFalse(instance.isH2c());
+        assertEquals(ServerConfig.DEFAULT_H2C_STREAMS, instance.getH2cStreams());
+        assertFalse(instance.isGzip());
+    }
+
+    @Test
+    public void testConstruct() {
+        ServerConfig instance = new ServerConfig(2, 4, 1000, 16384, 16, 512, true, 256, true, 0);
+        assertEquals(2, instance.getAcceptors());
+        assertEquals(4, instance.getSelectors());
+        assertEquals(1000, instance.getIdleTimeout());
+        assertEquals(16384, instance.getHeaderSize());
+        assertEquals(16, instance.getThreadsMin());
+        assertEquals(512, instance.getThreadsMax());
+        assertTrue(instance.isH2c());
+        assertEquals(256, instance.getH2cStreams());
+        assertTrue(instance.isGzip());
+        assertEquals(0, instance.getGzipMinSize());
+    }
+
+    @Test
+    public void testOutOfRange() {
+        int[][] bad = { { 0, -1, 1, 1024, 1, 1, 1, 0 }, { -1, -2, 1, 1024, 1, 1, 1, 0 }, { -1, -1, 0, 1024, 1, 1, 1, 0 },
+                { -1, -1, 1, 1023, 1, 1, 1, 0 }, { -1, -1, 1, 1024, 0, 1, 1, 0 }, { -1, -1, 1, 1024, 2, 1, 1, 0 },
+                { -1, -1, 1, 1024, 1, 1, 0, 0 }, { -1, -1, 1, 1024, 1, 1, 1, -1 } };
+        for (int[] values : bad) {
+            try {
+                new ServerConfig(values[0], values[1], values[2], values[3], values[4], values[5], false, values[6], false,
+                        values[7]);
+                fail("expected settings to be refused");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+}
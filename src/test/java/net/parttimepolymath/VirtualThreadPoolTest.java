@@ -0,0 +1,65 @@
+package net.parttimepolymath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class VirtualThreadPoolTest {
+
+    @Test(timeout = 30000)
+    public void testStopDrains() throws Exception {
+        VirtualThreadPool instance = new VirtualThreadPool(Executors.defaultThreadFactory());
+        instance.start();
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean finished = new AtomicBoolean();
+        instance.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                finished.set(true);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(1, instance.getThreads());
+
+        instance.stop();
+        assertTrue(finished.get());
+        assertEquals(0, instance.getThreads());
+    }
+
+    @Test(timeout = 30000)
+    public void testStopTimeout() throws Exception {
+        VirtualThreadPool instance = new VirtualThreadPool(Executors.defaultThreadFactory());
+        instance.setStopTimeout(100);
+        instance.start();
+
+        final CountDownLatch release = new CountDownLatch(1);
+        instance.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        instance.stop();
+        assertTrue(instance.isStopped());
+        assertEquals(1, instance.getThreads());
+        release.countDown();
+    }
+}
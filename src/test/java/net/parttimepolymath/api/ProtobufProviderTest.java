@@ -0,0 +1,71 @@
+package net.parttimepolymath.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+
+import org.junit.Test;
+
+public class ProtobufProviderTest {
+    private static final MediaType PROTOBUF = MediaType.valueOf(TransferService.APPLICATION_PROTOBUF);
+    private static final Annotation[] NONE = new Annotation[0];
+    private static final Type REQUESTS = new GenericType<List<TransferRequest>>() {
+    }.getType();
+    private static final Type RESULTS = new GenericType<List<TransferResult>>() {
+    }.getType();
+    private static final Type STRINGS = new GenericType<List<String>>() {
+    }.getType();
+
+    private final ProtobufProvider instance = new ProtobufProvider();
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object read(final Class type, final Type genericType, final byte[] data) throws IOException {
+        return instance.readFrom(type, genericType, NONE, PROTOBUF, new MultivaluedHashMap<String, String>(),
+                new ByteArrayInputStream(data));
+    }
+
+    @Test
+    public void testSupported() {
+        assertTrue(instance.isReadable(TransferRequest.class, TransferRequest.class, NONE, PROTOBUF));
+        assertTrue(instance.isReadable(List.class, REQUESTS, NONE, PROTOBUF));
+        assertTrue(instance.isWriteable(TransferResult.class, TransferResult.class, NONE, PROTOBUF));
+        assertTrue(instance.isWriteable(List.class, RESULTS, NONE, PROTOBUF));
+        assertFalse(instance.isReadable(String.class, String.class, NONE, PROTOBUF));
+        assertFalse(instance.isReadable(List.class, STRINGS, NONE, PROTOBUF));
+        assertFalse(instance.isWriteable(List.class, List.class, NONE, PROTOBUF));
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        TransferRequest request = new TransferRequest("a", "b", 10L);
+        assertEquals(request, read(TransferRequest.class, TransferRequest.class, TransferCodec.encode(request)));
+        List<TransferRequest> requests = Arrays.asList(request, new TransferRequest("c", "d", 20L));
+        assertEquals(requests, read(List.class, REQUESTS, TransferCodec.encodeRequests(requests)));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testReadMalformed() throws IOException {
+        read(TransferRequest.class, TransferRequest.class, new byte[] { 0x0a, 0x05 });
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        List<TransferResult> results = Arrays.asList(new TransferResult(200, "OK", "tx"), new TransferResult(404, "Not found", null));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        instance.writeTo(results, List.class, RESULTS, NONE, PROTOBUF, new MultivaluedHashMap<String, Object>(), out);
+        assertEquals(results, TransferCodec.decodeResults(out.toByteArray()));
+    }
+}
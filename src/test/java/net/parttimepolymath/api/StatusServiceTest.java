@@ -1,10 +1,15 @@
 package net.parttimepolymath.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
 import net.parttimepolymath.controller.Controller;
 import net.parttimepolymath.controller.ControllerHolder;
 import net.parttimepolymath.controller.Status;
+import net.parttimepolymath.metrics.Metrics;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -15,12 +20,15 @@ public class StatusServiceTest {
     @Mock
     private Controller controller;
 
+    private final Metrics metrics = new Metrics();
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
         ControllerHolder.reset();
         ControllerHolder.setController(controller);
         when(controller.getStatus()).thenReturn(new Status("testmode"));
+        when(controller.getMetrics()).thenReturn(metrics);
     }
 
     @Test
@@ -29,4 +37,23 @@ public class StatusServiceTest {
         assertEquals("testmode", instance.getStatus().getStatus());
     }
 
+    @Test
+    public void testGetMetrics() {
+        metrics.recordResult(200);
+        metrics.endpoint("TransferService.doTransfer").record(1000);
+        StatusService instance = new StatusService();
+        assertEquals(Long.valueOf(1), instance.getMetrics().getResults().get(200));
+        assertTrue(instance.getPrometheusMetrics().contains("transfer_results_total{code=\"200\"} 1\n"));
+    }
+
+    @Test
+    public void testWriteSnapshot() throws Exception {
+        StatusService instance = new StatusService();
+        when(controller.writeSnapshot()).thenReturn(-1L, 12L).thenThrow(new UnsupportedOperationException(),
+                new IOException("disk full"));
+        assertEquals(404, instance.writeSnapshot().getStatus());
+        assertEquals(200, instance.writeSnapshot().getStatus());
+        assertEquals(409, instance.writeSnapshot().getStatus());
+        assertEquals(500, instance.writeSnapshot().getStatus());
+    }
 }
@@ -0,0 +1,115 @@
+package net.parttimepolymath.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TransferCodecTest {
+
+    private static byte[] bytes(final int... values) {
+        byte[] out = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = (byte) values[i];
+        }
+        return out;
+    }
+
+    @Test
+    public void testEncodeRequest() {
+        assertArrayEquals(bytes(0x0a, 0x01, 'a', 0x12, 0x01, 'b', 0x18, 0x96, 0x01),
+                TransferCodec.encode(new TransferRequest("a", "b", 150L)));
+    }
+
+    @Test
+    public void testEncodeResult() {
+        assertArrayEquals(bytes(0x08, 0xc8, 0x01, 0x12, 0x02, 'O', 'K', 0x1a, 0x01, 'x'),
+                TransferCodec.encode(new TransferResult(200, "OK", "x")));
+    }
+
+    @Test
+    public void testRequestRoundTrip() {
+        TransferRequest request = new TransferRequest("0123456789", "9876543210", 123456789012L);
+        assertEquals(request, TransferCodec.decodeRequest(TransferCodec.encode(request)));
+
+        TransferRequest negative = new TransferRequest("0123456789", "9876543210", -1L);
+        byte[] data = TransferCodec.encode(negative);
+        assertEquals(2 + 10 + 2 + 10 + 1 + 10, data.length);
+        assertEquals(negative, TransferCodec.decodeRequest(data));
+
+        TransferRequest extreme = new TransferRequest("a", "b", Long.MIN_VALUE);
+        assertEquals(extreme, TransferCodec.decodeRequest(TransferCodec.encode(extreme)));
+    }
+
+    @Test
+    public void testResultRoundTrip() {
+        TransferResult result = new TransferResult(520, "Insufficient funds", null);
+        TransferResult decoded = TransferCodec.decodeResult(TransferCodec.encode(result));
+        assertEquals(result, decoded);
+        assertNull(decoded.getTransactionId());
+
+        TransferResult negative = new TransferResult(-1, "", "tx");
+        assertEquals(negative, TransferCodec.decodeResult(TransferCodec.encode(negative)));
+    }
+
+    @Test
+    public void testNonAscii() {
+        TransferResult result = new TransferResult(404, "Konto nicht gefunden: ü€😀", "tx");
+        assertEquals(result, TransferCodec.decodeResult(TransferCodec.encode(result)));
+    }
+
+    @Test
+    public void testMissingFields() {
+        TransferRequest request = TransferCodec.decodeRequest(new byte[0]);
+        assertNull(request.getFromAccount());
+        assertNull(request.getToAccount());
+        assertEquals(0L, request.getAmount());
+    }
+
+    @Test
+    public void testUnknownFields() {
+        byte[] known = TransferCodec.encode(new TransferRequest("a", "b", 7L));
+        // field 4 varint, field 5 fixed64, field 6 length-delimited, field 7 fixed32
+        byte[] unknown = bytes(0x20, 0xff, 0x01, 0x29, 1, 2, 3, 4, 5, 6, 7, 8, 0x32, 0x02, 'z', 'z', 0x3d, 1, 2, 3, 4);
+        byte[] data = new byte[unknown.length + known.length];
+        System.arraycopy(unknown, 0, data, 0, unknown.length);
+        System.arraycopy(known, 0, data, unknown.length, known.length);
+        assertEquals(new TransferRequest("a", "b", 7L), TransferCodec.decodeRequest(data));
+    }
+
+    @Test
+    public void testLists() {
+        List<TransferRequest> requests = Arrays.asList(new TransferRequest("a", "b", 1L), new TransferRequest("c", "d", 2L));
+        assertEquals(requests, TransferCodec.decodeRequests(TransferCodec.encodeRequests(requests)));
+
+        List<TransferResult> results = Arrays.asList(new TransferResult(200, "OK", "tx1"), new TransferResult(404, "Not found", null));
+        assertEquals(results, TransferCodec.decodeResults(TransferCodec.encodeResults(results)));
+
+        assertTrue(TransferCodec.decodeRequests(TransferCodec.encodeRequests(Collections.<TransferRequest> emptyList())).isEmpty());
+    }
+
+    @Test
+    public void testMalformed() {
+        byte[][] cases = { bytes(0x0a, 0x05, 'a'), bytes(0x18, 0x80), bytes(0x00, 0x01), bytes(0x0b),
+                bytes(0x18, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x01), bytes(0x29, 1, 2) };
+        for (byte[] data : cases) {
+            try {
+                TransferCodec.decodeRequest(data);
+                throw new AssertionError("decoded " + Arrays.toString(data));
+            } catch (IllegalArgumentException ex) {
+                assertTrue(ex.getMessage().startsWith("malformed message"));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedEntry() {
+        TransferCodec.decodeResults(bytes(0x0a, 0x03, 0x08, 0xc8));
+    }
+}
@@ -1,26 +1,67 @@
 package net.parttimepolymath.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
 import net.parttimepolymath.controller.Controller;
 import net.parttimepolymath.controller.ControllerHolder;
 import net.parttimepolymath.controller.Status;
+import net.parttimepolymath.controller.TransferCallback;
 import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.AccountDetail;
 import net.parttimepolymath.model.Client;
+import net.parttimepolymath.model.ClientDetail;
+import net.parttimepolymath.model.ClientSummary;
+import net.parttimepolymath.model.Transaction;
+import net.parttimepolymath.model.TransactionHandler;
+import net.parttimepolymath.model.TransactionKey;
+import net.parttimepolymath.model.TransactionPK;
 
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class TransferServiceTest {
     @Mock
     private Controller controller;
+    @Mock
+    private AsyncResponse asyncResponse;
     private Account testAccount;
     private Client testClient;
     private TransferResult testResult;
@@ -32,27 +73,256 @@ public class TransferServiceTest {
         ControllerHolder.reset();
         ControllerHolder.setController(controller);
         when(controller.getStatus()).thenReturn(new Status("testmode"));
-        testAccount = new Account();
         testClient = new Client();
+        testClient.setClientId("client");
+        testClient.setName("name");
+        testAccount = new Account();
+        testAccount.setAccountId("id");
+        testAccount.setCurrency("USD");
+        testAccount.setBalance(new BigDecimal("10.500"));
+        testAccount.setOpen(true);
+        testClient.addAccount(testAccount);
+        Transaction transaction = new Transaction();
+        TransactionPK key = new TransactionPK();
+        key.setAccountId("id");
+        key.setTxId("tx");
+        transaction.setId(key);
+        transaction.setAmount(new BigDecimal("-1.250"));
+        transaction.setDate(new DateTime(2015, 6, 8, 9, 14, DateTimeZone.UTC));
+        transaction.setReference("ref");
+        testAccount.addTransaction(transaction);
         testResult = new TransferResult(200, "OK", UUID.randomUUID().toString());
         when(controller.getAccount(anyString())).thenReturn(testAccount);
         when(controller.getClient(anyString())).thenReturn(testClient);
         when(controller.doTransfer(any(TransferRequest.class))).thenReturn(testResult);
+        when(controller.doTransfers(anyListOf(TransferRequest.class))).thenReturn(Arrays.asList(testResult, testResult));
         instance = new TransferService();
     }
 
     @Test
-    public void testGetAccount() {
-        assertEquals(testAccount, instance.getAccount("id"));
+    public void testGetAccount() throws Exception {
+        AccountDetail account = instance.getAccount("id");
+        assertEquals("id", account.getAccountId());
+        assertEquals("client", account.getClientId());
+        assertEquals("USD", account.getCurrency());
+        assertEquals(new BigDecimal("10.500"), account.getBalance());
+        assertTrue(account.isOpen());
+        assertEquals(1, account.getTransactions().size());
+        assertEquals("tx", account.getTransactions().get(0).getTxId());
+
+        String text = ObjectMapperProvider.MAPPER.writeValueAsString(account);
+        assertTrue(text.contains("\"balance\":10.500"));
+        JsonNode json = ObjectMapperProvider.MAPPER.readTree(text);
+        assertFalse(json.has("@id"));
+        assertEquals("client", json.get("clientId").asText());
+        assertEquals("2015-06-08T09:14:00.000Z", json.get("transactions").get(0).get("date").asText());
+    }
+
+    @Test
+    public void testGetAccountMissing() {
+        when(controller.getAccount("nowhere")).thenReturn(null);
+        assertNull(instance.getAccount("nowhere"));
+    }
+
+    @Test
+    public void testGetTransactions() throws Exception {
+        when(controller.visitTransactions(eq("id"), any(TransactionKey.class), eq(3), any(TransactionHandler.class))).thenAnswer(
+                new HistoryAnswer(3));
+
+        JsonNode page = readPage(instance.getTransactions("id", null, 2));
+        assertEquals("id", page.get("accountId").asText());
+        assertEquals(2, page.get("transactions").size());
+        assertEquals("tx1", page.get("transactions").get(1).get("txId").asText());
+        assertEquals(0, new BigDecimal("-1.5").compareTo(page.get("transactions").get(1).get("amount").decimalValue()));
+        assertEquals("1970-01-01T00:00:01.000Z", page.get("transactions").get(1).get("date").asText());
+        assertEquals("1000:tx1", page.get("next").asText());
+    }
+
+    @Test
+    public void testGetTransactionsLastPage() throws Exception {
+        when(controller.visitTransactions(eq("id"), eq(TransactionKey.parse("1000:tx1")), eq(3), any(TransactionHandler.class)))
+                .thenAnswer(new HistoryAnswer(1));
+
+        JsonNode page = readPage(instance.getTransactions("id", "1000:tx1", 2));
+        assertEquals(1, page.get("transactions").size());
+        assertTrue(page.get("next").isNull());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testGetTransactionsNotFound() {
+        when(controller.getAccount("nowhere")).thenReturn(null);
+        instance.getTransactions("nowhere", null, 10);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testGetTransactionsBadLimit() {
+        instance.getTransactions("id", null, TransferService.MAX_PAGE_SIZE + 1);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testGetTransactionsBadKey() {
+        instance.getTransactions("id", "yesterday", 10);
     }
 
     @Test
     public void testGetClient() {
-        assertEquals(testClient, instance.getClient("id"));
+        ClientDetail client = (ClientDetail) instance.getClient("id", "transactions", 5).getEntity();
+        assertEquals("client", client.getClientId());
+        assertEquals("name", client.getName());
+        assertEquals(1, client.getAccounts().size());
+        assertEquals("id", client.getAccounts().get(0).getAccountId());
+        assertEquals(new BigDecimal("-1.250"), client.getAccounts().get(0).getTransactions().get(0).getAmount());
+    }
+
+    @Test
+    public void testGetClientSummary() {
+        ClientSummary summary = new ClientSummary("id", "name", null);
+        when(controller.getClientSummary("id", 5)).thenReturn(summary);
+        assertEquals(summary, instance.getClient("id", null, 5).getEntity());
+    }
+
+    @Test
+    public void testGetClientMissing() {
+        assertEquals(204, instance.getClient("none", null, 5).getStatus());
+        assertNull(instance.getClient("none", null, 5).getEntity());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testGetClientBadExpand() {
+        instance.getClient("id", "accounts", 5);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testGetClientBadRecent() {
+        instance.getClient("id", null, TransferService.MAX_RECENT + 1);
     }
 
     @Test
     public void testDoTransfer() {
-        assertEquals(testResult, instance.doTransfer(new TransferRequest("id", "id", 10)));
+        assertEquals(testResult, instance.doTransfer(new TransferRequest("id", "id", 10), null));
+    }
+
+    @Test
+    public void testDoTransferIdempotent() {
+        TransferResult replayed = new TransferResult(200, "OK", "earlier tx");
+        when(controller.doTransfer(any(TransferRequest.class), eq("key"))).thenReturn(replayed);
+        assertEquals(replayed, instance.doTransfer(new TransferRequest("id", "id", 10), "key"));
+        assertEquals(testResult, instance.doTransfer(new TransferRequest("id", "id", 10), " "));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testDoTransferKeyTooLong() {
+        instance.doTransfer(new TransferRequest("id", "id", 10), StringUtils.repeat('k', TransferService.MAX_IDEMPOTENCY_KEY + 1));
+    }
+
+    @Test
+    public void testDoTransfers() {
+        List<TransferRequest> requests = Arrays.asList(new TransferRequest("a", "b", 10), new TransferRequest("b", "a", 10));
+        assertEquals(Arrays.asList(testResult, testResult), instance.doTransfers(requests));
+    }
+
+    @Test
+    public void testDoTransfersStream() {
+        String body = "{\"fromAccount\":\"a\",\"toAccount\":\"b\",\"amount\":10}\n"
+                + "{\"fromAccount\":\"b\",\"toAccount\":\"a\",\"amount\":20}\n";
+        List<TransferRequest> expected = Arrays.asList(new TransferRequest("a", "b", 10), new TransferRequest("b", "a", 20));
+        when(controller.doTransfers(eq(expected))).thenReturn(Arrays.asList(testResult));
+
+        assertEquals(Arrays.asList(testResult), instance.doTransfers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testDoTransfersMalformedStream() {
+        instance.doTransfers(new ByteArrayInputStream("{\"fromAccount\":".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testDoTransfersTooLarge() {
+        List<TransferRequest> requests = Collections.nCopies(TransferService.MAX_BATCH_SIZE + 1, new TransferRequest("a", "b", 10));
+        try {
+            instance.doTransfers(requests);
+            fail("expected the batch to be refused");
+        } catch (WebApplicationException ex) {
+            assertEquals(413, ex.getResponse().getStatus());
+        }
+
+        String line = "{\"fromAccount\":\"a\",\"toAccount\":\"b\",\"amount\":10}\n";
+        byte[] body = StringUtils.repeat(line, TransferService.MAX_BATCH_SIZE + 1).getBytes(StandardCharsets.UTF_8);
+        try {
+            instance.doTransfers(new ByteArrayInputStream(body));
+            fail("expected the stream to be refused");
+        } catch (WebApplicationException ex) {
+            assertEquals(413, ex.getResponse().getStatus());
+        }
+    }
+
+    @Test
+    public void testDoTransferAsync() {
+        ArgumentCaptor<TransferCallback> callback = ArgumentCaptor.forClass(TransferCallback.class);
+        when(controller.queueTransfer(any(TransferRequest.class), (String) isNull(), callback.capture())).thenReturn(true);
+
+        instance.doTransferAsync(new TransferRequest("id", "id", 10), " ", asyncResponse);
+        callback.getValue().completed(testResult);
+        verify(asyncResponse).resume(testResult);
+    }
+
+    @Test
+    public void testDoTransferAsyncIdempotent() {
+        when(controller.queueTransfer(any(TransferRequest.class), eq("key"), any(TransferCallback.class))).thenReturn(true);
+        instance.doTransferAsync(new TransferRequest("id", "id", 10), "key", asyncResponse);
+        verify(controller).queueTransfer(any(TransferRequest.class), eq("key"), any(TransferCallback.class));
+
+        try {
+            instance.doTransferAsync(new TransferRequest("id", "id", 10), StringUtils.repeat('k',
+                    TransferService.MAX_IDEMPOTENCY_KEY + 1), asyncResponse);
+            fail("expected the key to be refused");
+        } catch (BadRequestException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDoTransferAsyncBusy() {
+        when(controller.queueTransfer(any(TransferRequest.class), anyString(), any(TransferCallback.class))).thenReturn(false);
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+
+        instance.doTransferAsync(new TransferRequest("id", "id", 10), "key", asyncResponse);
+        verify(asyncResponse).resume(response.capture());
+        assertEquals(503, response.getValue().getStatus());
+        assertEquals(Controller.BUSY, response.getValue().getEntity());
+    }
+
+    private static JsonNode readPage(final Response response) throws Exception {
+        assertEquals(200, response.getStatus());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        return new ObjectMapper().readTree(output.toByteArray());
+    }
+
+    /**
+     * hands the given number of made up transactions to the handler passed to visitTransactions.
+     */
+    private static final class HistoryAnswer implements Answer<Integer> {
+        private final int count;
+
+        HistoryAnswer(final int count) {
+            this.count = count;
+        }
+
+        @Override
+        public Integer answer(final InvocationOnMock invocation) throws Throwable {
+            TransactionHandler handler = (TransactionHandler) invocation.getArguments()[3];
+            for (int i = 0; i < count; i++) {
+                Transaction transaction = new Transaction();
+                TransactionPK key = new TransactionPK();
+                key.setAccountId("id");
+                key.setTxId("tx" + i);
+                transaction.setId(key);
+                transaction.setAmount(new BigDecimal("-1.500"));
+                transaction.setDate(new DateTime(i * 1000L, DateTimeZone.UTC));
+                handler.handle(transaction);
+            }
+            return count;
+        }
     }
 }
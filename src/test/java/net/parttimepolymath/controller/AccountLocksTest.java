@@ -0,0 +1,113 @@
+package net.parttimepolymath.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AccountLocksTest {
+
+    @Test
+    public void testStripeCount() {
+        assertEquals(1, new AccountLocks(1).getStripeCount());
+        assertEquals(64, new AccountLocks(64).getStripeCount());
+        assertEquals(128, new AccountLocks(65).getStripeCount());
+        assertTrue(new AccountLocks().getStripeCount() >= 64);
+    }
+
+    @Test
+    public void testSameStripe() {
+        AccountLocks instance = new AccountLocks(1);
+        instance.lock("a", "b");
+        instance.unlock("a", "b");
+        instance.lock("b", "a");
+        instance.unlock("b", "a");
+        assertEquals(2, instance.getAcquisitions());
+        assertEquals(0, instance.getContentions());
+    }
+
+    @Test
+    public void testLockAll() {
+        AccountLocks instance = new AccountLocks();
+        List<String> accounts = Arrays.asList("a", "b", "c", "a");
+        instance.lockAll(accounts);
+        try {
+            for (String account : accounts) {
+                assertTrue(instance.isHeldByCurrentThread(account));
+            }
+            // a pair inside the set can still be taken by the thread holding the set.
+            instance.lock("a", "c");
+            instance.unlock("a", "c");
+        } finally {
+            instance.unlockAll(accounts);
+        }
+        for (String account : accounts) {
+            assertFalse(instance.isHeldByCurrentThread(account));
+        }
+        assertEquals(2, instance.getAcquisitions());
+    }
+
+    @Test(timeout = 30000)
+    public void testContention() throws Exception {
+        final AccountLocks instance = new AccountLocks();
+        instance.lock("a", "b");
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                instance.lock("b", "a");
+                instance.unlock("b", "a");
+            }
+        });
+        try {
+            waiter.start();
+            while (waiter.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        } finally {
+            instance.unlock("a", "b");
+        }
+        waiter.join();
+        assertEquals(2, instance.getAcquisitions());
+        assertEquals(1, instance.getContentions());
+    }
+
+    @Test(timeout = 30000)
+    public void testOppositeOrderDoesNotDeadlock() throws Exception {
+        final AccountLocks instance = new AccountLocks(2);
+        final int iterations = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> forward = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < iterations; i++) {
+                        instance.lock("left", "right");
+                        instance.unlock("left", "right");
+                    }
+                }
+            });
+            Future<?> backward = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < iterations; i++) {
+                        instance.lock("right", "left");
+                        instance.unlock("right", "left");
+                    }
+                }
+            });
+            forward.get();
+            backward.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2 * iterations, instance.getAcquisitions());
+    }
+}
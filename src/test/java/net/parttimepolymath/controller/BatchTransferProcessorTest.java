@@ -0,0 +1,99 @@
+package net.parttimepolymath.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.InsufficientFundsException;
+import net.parttimepolymath.model.TransactionPair;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class BatchTransferProcessorTest {
+    @Mock
+    private DataStore dataStore;
+
+    private Account testAccountFrom;
+    private Account testAccountTo;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        testAccountFrom = new Account();
+        testAccountFrom.setOpen(true);
+        testAccountFrom.setBalance(BigDecimal.valueOf(2000, 2));
+        testAccountTo = new Account();
+        testAccountTo.setOpen(true);
+        when(dataStore.getAccount("source id")).thenReturn(testAccountFrom);
+        when(dataStore.getAccount("dest id")).thenReturn(testAccountTo);
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(new BatchTransferProcessor(null, dataStore).execute().isEmpty());
+        assertTrue(new BatchTransferProcessor(Collections.<TransferRequest> emptyList(), dataStore).execute().isEmpty());
+        verify(dataStore, never()).addTransactions(anyListOf(TransactionPair.class));
+    }
+
+    @Test
+    public void testMixedResults() {
+        List<TransferRequest> requests = Arrays.asList(new TransferRequest("source id", "dest id", 1000), new TransferRequest(
+                "source id", "nowhere", 1000), null, new TransferRequest("source id", "dest id", 1000), new TransferRequest("source id",
+                "dest id", 1000));
+        when(dataStore.addTransactions(anyListOf(TransactionPair.class))).thenReturn(
+                Arrays.<Exception> asList(null, new InsufficientFundsException("source id"), new IllegalStateException()));
+
+        List<TransferResult> results = new BatchTransferProcessor(requests, dataStore).execute();
+        assertNotNull(results);
+        assertEquals(5, results.size());
+
+        assertEquals(200, results.get(0).getResultCode());
+        assertFalse(StringUtils.isBlank(results.get(0).getTransactionId()));
+        assertEquals(404, results.get(1).getResultCode());
+        assertEquals("To Account not found", results.get(1).getResultMessage());
+        assertEquals(TransferProcessor.BAD_RESULT, results.get(2));
+        assertEquals(TransferProcessor.INSUFFICIENT_FUNDS, results.get(3));
+        assertEquals(TransferProcessor.INTERNAL_ERROR, results.get(4));
+    }
+
+    @Test
+    public void testLocksHeld() {
+        final AccountLocks locks = new AccountLocks();
+        List<TransferRequest> requests = Arrays.asList(new TransferRequest("source id", "dest id", 1000), null);
+        when(dataStore.addTransactions(anyListOf(TransactionPair.class))).thenAnswer(new Answer<List<Exception>>() {
+            @Override
+            public List<Exception> answer(final InvocationOnMock invocation) {
+                assertTrue(locks.isHeldByCurrentThread("source id"));
+                assertTrue(locks.isHeldByCurrentThread("dest id"));
+                return Collections.<Exception> singletonList(null);
+            }
+        });
+
+        List<TransferResult> results = new BatchTransferProcessor(requests, dataStore, locks, TransferProcessor.SHARED_IDS).execute();
+        assertEquals(200, results.get(0).getResultCode());
+        assertEquals(TransferProcessor.BAD_RESULT, results.get(1));
+        assertFalse(locks.isHeldByCurrentThread("source id"));
+        assertFalse(locks.isHeldByCurrentThread("dest id"));
+        assertEquals(1, locks.getAcquisitions());
+    }
+}
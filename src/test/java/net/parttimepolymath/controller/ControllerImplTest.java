@@ -1,13 +1,36 @@
 package net.parttimepolymath.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.metrics.Metrics;
 import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.CachingDataStore;
 import net.parttimepolymath.model.Client;
+import net.parttimepolymath.model.ClientSummary;
 import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.TransactionHandler;
+import net.parttimepolymath.model.TransactionKey;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -53,12 +76,34 @@ public class ControllerImplTest {
         assertEquals(testClient, instance.getClient("id"));
     }
 
+    @Test
+    public void testGetClientSummary() {
+        ClientSummary summary = new ClientSummary("id", "name", null);
+        when(dataStore.getClientSummary("id", 3)).thenReturn(summary);
+        assertEquals(null, instance.getClientSummary("id", 3));
+        instance.activate();
+        assertEquals(summary, instance.getClientSummary("id", 3));
+    }
+
     @Test
     public void testGetAccount() {
         instance.activate();
         assertEquals(testAccount, instance.getAccount("id"));
     }
 
+    @Test
+    public void testVisitTransactions() throws Exception {
+        TransactionHandler handler = mock(TransactionHandler.class);
+        TransactionKey after = new TransactionKey(1000L, "tx");
+        when(dataStore.visitTransactions(eq("id"), eq(after), eq(10), eq(handler))).thenReturn(3);
+
+        assertEquals(0, instance.visitTransactions("id", after, 10, handler));
+        verify(dataStore, never()).visitTransactions(anyString(), any(TransactionKey.class), eq(10), any(TransactionHandler.class));
+
+        instance.activate();
+        assertEquals(3, instance.visitTransactions("id", after, 10, handler));
+    }
+
     @Test
     public void testNullRequest() {
         instance.activate();
@@ -78,4 +123,151 @@ public class ControllerImplTest {
         instance.getStatus().setStatus("inactive");
         assertEquals(Controller.UNAVAILABLE, instance.doTransfer(new TransferRequest("acct id", "other id", 0)));
     }
+
+    @Test
+    public void testBatchNotActive() {
+        instance.getStatus().setStatus("inactive");
+        List<TransferResult> results = instance.doTransfers(Arrays.asList(new TransferRequest("acct id", "other id", 0),
+                new TransferRequest("other id", "acct id", 0)));
+        assertEquals(Arrays.asList(Controller.UNAVAILABLE, Controller.UNAVAILABLE), results);
+    }
+
+    @Test
+    public void testQueueTransfer() throws Exception {
+        instance.activate();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<TransferResult> result = new AtomicReference<>();
+        assertTrue(instance.queueTransfer(null, new TransferCallback() {
+            @Override
+            public void completed(final TransferResult transferResult) {
+                result.set(transferResult);
+                done.countDown();
+            }
+        }));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(TransferProcessor.BAD_RESULT, result.get());
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        Controller bounded = new ControllerImpl(dataStore, 1, 1, null, null, null);
+        bounded.activate();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        TransferCallback blocking = new TransferCallback() {
+            @Override
+            public void completed(final TransferResult transferResult) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try {
+            assertTrue(bounded.queueTransfer(null, blocking));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(bounded.queueTransfer(null, blocking));
+            assertFalse(bounded.queueTransfer(null, blocking));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testQueueTransferThreadFactory() throws Exception {
+        Controller custom = new ControllerImpl(dataStore, 1, 1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(runnable, "custom-transfer");
+            }
+        }, null, null);
+        custom.activate();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<String> threadName = new AtomicReference<>();
+        assertTrue(custom.queueTransfer(null, new TransferCallback() {
+            @Override
+            public void completed(final TransferResult transferResult) {
+                threadName.set(Thread.currentThread().getName());
+                done.countDown();
+            }
+        }));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("custom-transfer", threadName.get());
+    }
+
+    @Test
+    public void testWriteSnapshot() throws Exception {
+        assertEquals(-1L, instance.writeSnapshot());
+        verify(dataStore, never()).writeSnapshot(any(File.class));
+
+        File file = new File("transfer.snap");
+        when(dataStore.writeSnapshot(file)).thenReturn(7L);
+        Controller snapshotting = new ControllerImpl(dataStore, 1, 1, null, file, null);
+        assertEquals(7L, snapshotting.writeSnapshot());
+    }
+
+    @Test
+    public void testStatusCacheCounts() {
+        assertEquals(null, instance.getStatus().getAccountCache());
+
+        testAccount.setAccountId("id");
+        Controller cached = new ControllerImpl(new CachingDataStore(dataStore, 10, 1, TimeUnit.MINUTES));
+        cached.activate();
+        cached.getAccount("id");
+        cached.getAccount("id");
+        CacheCounts counts = cached.getStatus().getAccountCache();
+        assertEquals(1, counts.getHits());
+        assertEquals(1, counts.getMisses());
+        assertEquals(0, counts.getEvictions());
+    }
+
+    @Test
+    public void testMetrics() {
+        instance.doTransfer(new TransferRequest("acct id", "other id", 0));
+        instance.activate();
+        instance.doTransfer(null);
+        instance.getAccount("id");
+        Metrics metrics = instance.getMetrics();
+        assertEquals(1, metrics.getResultCount(Controller.UNAVAILABLE.getResultCode()));
+        assertEquals(1, metrics.getResultCount(TransferProcessor.BAD_RESULT.getResultCode()));
+        assertEquals(1, metrics.operation("getAccount").getCount());
+        assertEquals(Long.valueOf(1), metrics.getRequests().getEndpointCounts().get("getAccount"));
+        assertEquals(Long.valueOf(1), metrics.report().getRequests().get("doTransfer"));
+        long counted = metrics.getRequests().getCount();
+        assertEquals(counted + 1, instance.getStatus().getCount());
+    }
+
+    @Test
+    public void testDoTransferIdempotent() {
+        when(dataStore.findTransfer("key")).thenReturn("earlier tx");
+        TransferRequest request = new TransferRequest("from", "to", 10);
+        assertEquals(Controller.UNAVAILABLE, instance.doTransfer(request, "key"));
+
+        instance.activate();
+        TransferResult result = instance.doTransfer(request, "key");
+        assertEquals(200, result.getResultCode());
+        assertEquals("earlier tx", result.getTransactionId());
+        assertEquals(result, instance.doTransfer(request, "key"));
+        verify(dataStore, times(1)).findTransfer("key");
+    }
+
+    @Test
+    public void testQueueTransferIdempotent() throws Exception {
+        when(dataStore.findTransfer("queued key")).thenReturn("earlier tx");
+        instance.activate();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<TransferResult> result = new AtomicReference<>();
+        assertTrue(instance.queueTransfer(new TransferRequest("from", "to", 10), "queued key", new TransferCallback() {
+            @Override
+            public void completed(final TransferResult transferResult) {
+                result.set(transferResult);
+                done.countDown();
+            }
+        }));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("earlier tx", result.get().getTransactionId());
+        assertEquals(result.get(), instance.doTransfer(new TransferRequest("from", "to", 10), "queued key"));
+    }
 }
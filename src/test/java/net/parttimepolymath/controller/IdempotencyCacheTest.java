@@ -0,0 +1,57 @@
+package net.parttimepolymath.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import net.parttimepolymath.api.TransferResult;
+
+import org.junit.Test;
+
+public class IdempotencyCacheTest {
+    private static final TransferResult OK = new TransferResult(200, "OK", "tx");
+
+    @Test
+    public void testClaimAndReplay() {
+        IdempotencyCache instance = new IdempotencyCache(100, 1, TimeUnit.MINUTES);
+        assertNull(instance.claim("key"));
+        assertEquals(Controller.IN_PROGRESS, instance.claim("key"));
+
+        instance.complete("key", OK);
+        assertEquals(OK, instance.claim("key"));
+        assertEquals(1, instance.getReplays());
+    }
+
+    @Test
+    public void testFailureNotRemembered() {
+        IdempotencyCache instance = new IdempotencyCache(100, 1, TimeUnit.MINUTES);
+        assertNull(instance.claim("key"));
+        instance.complete("key", TransferProcessor.INTERNAL_ERROR);
+        assertNull(instance.claim("key"));
+        instance.complete("key", null);
+        assertEquals(0, instance.size());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        IdempotencyCache instance = new IdempotencyCache(100, 1, TimeUnit.MILLISECONDS);
+        assertNull(instance.claim("key"));
+        instance.complete("key", OK);
+        Thread.sleep(10);
+        assertNull(instance.claim("key"));
+    }
+
+    @Test
+    public void testSizeBound() {
+        IdempotencyCache instance = new IdempotencyCache(16, 1, TimeUnit.MINUTES);
+        assertNull(instance.claim("claimed"));
+        for (int i = 0; i < 100; i++) {
+            assertNull(instance.claim("key " + i));
+            instance.complete("key " + i, OK);
+        }
+        assertTrue(instance.size() <= 16);
+        assertEquals(Controller.IN_PROGRESS, instance.claim("claimed"));
+    }
+}
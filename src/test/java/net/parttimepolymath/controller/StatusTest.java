@@ -4,6 +4,8 @@ import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 public class StatusTest {
 
     @Test
@@ -25,4 +27,40 @@ public class StatusTest {
         status.setStatus("bbq ribs");
         assertEquals("bbq ribs", status.getStatus());
     }
+
+    @Test
+    public void testLockContentions() {
+        Status status = new Status();
+        assertEquals(0, status.getLockContentions());
+        status.setLockContentions(12);
+        assertEquals(12, status.getLockContentions());
+    }
+
+    @Test
+    public void testSqlStatements() {
+        Status status = new Status();
+        assertEquals(0, status.getSqlStatements());
+        status.setSqlStatements(42);
+        assertEquals(42, status.getSqlStatements());
+    }
+
+    @Test
+    public void testUpdateCount() {
+        Status status = new Status("test", 5);
+        status.updateCount();
+        status.updateCount("getAccount");
+        status.updateCount("getAccount");
+        assertEquals(8, status.getCount());
+        assertEquals(Long.valueOf(2), status.getRequests().getEndpointCounts().get("getAccount"));
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        Status status = new Status("active", 0);
+        status.updateCount("getStatus");
+        ObjectMapper mapper = new ObjectMapper();
+        String json = mapper.writeValueAsString(status);
+        assertEquals("{\"status\":\"active\",\"requestCount\":1,\"lockContentions\":0,\"sqlStatements\":0}", json);
+        assertEquals(1, mapper.readValue(json, Status.class).getCount());
+    }
 }
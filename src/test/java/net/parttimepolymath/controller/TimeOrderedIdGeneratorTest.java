@@ -0,0 +1,97 @@
+package net.parttimepolymath.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+public class TimeOrderedIdGeneratorTest {
+
+    @Test
+    public void testLayout() {
+        long before = System.currentTimeMillis();
+        String id = new TimeOrderedIdGenerator(1234).nextId();
+        assertEquals(36, id.length());
+        UUID uuid = UUID.fromString(id);
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertEquals(1234, TimeOrderedIdGenerator.nodeOf(id));
+        assertTrue(TimeOrderedIdGenerator.timeOf(id) >= before);
+        assertTrue(TimeOrderedIdGenerator.timeOf(id) <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void testOrderedWithinMillisecond() {
+        TimeOrderedIdGenerator instance = new FixedClock(1439064797000L);
+        String previous = instance.nextId();
+        // more ids than the counter holds, so the last ones run into the next millisecond.
+        for (int i = 0; i < 5000; i++) {
+            String id = instance.nextId();
+            assertTrue(id.compareTo(previous) > 0);
+            previous = id;
+        }
+        assertEquals(1439064797001L, TimeOrderedIdGenerator.timeOf(previous));
+    }
+
+    @Test
+    public void testClockStepsBack() {
+        FixedClock instance = new FixedClock(1439064797000L);
+        String first = instance.nextId();
+        instance.now = 1439064790000L;
+        String second = instance.nextId();
+        assertTrue(second.compareTo(first) > 0);
+        assertEquals(1439064797000L, TimeOrderedIdGenerator.timeOf(second));
+    }
+
+    @Test
+    public void testUniqueAcrossThreads() throws InterruptedException {
+        final TimeOrderedIdGenerator instance = new TimeOrderedIdGenerator(1);
+        final Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        ids.add(instance.nextId());
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, ids.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadNode() {
+        new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE + 1);
+    }
+
+    /**
+     * generator with a clock the test sets.
+     */
+    private static final class FixedClock extends TimeOrderedIdGenerator {
+        private long now;
+
+        FixedClock(final long start) {
+            super(0);
+            now = start;
+        }
+
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package net.parttimepolymath.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import net.parttimepolymath.api.TransferRequest;
+import net.parttimepolymath.api.TransferResult;
+import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.DataStoreFactory;
+import net.parttimepolymath.model.DatabaseConfig;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * run transfers through the processor against a real in-memory store rather than a mock, so that the balances the store
+ * keeps are checked along with the results the processor reports.
+ */
+public class TransferProcessorStoreTest {
+    private static final String JANE_USD = "adfd52b2-389e-11e5-a151-feff819cdc9f";
+    private static final String ALEX_USD = "adfd560e-389e-11e5-a151-feff819cdc9f";
+    private static final String FRED_USD = "46fd58da-385a-11e5-a151-feff819cdc9f";
+    private static final String MARY_USD_CLOSED = "87a4d7aa-385a-11e5-a151-feff819cdc9f";
+
+    private static final DatabaseConfig CONFIG = new DatabaseConfig("jdbc:hsqldb:mem:PROCESSOR");
+
+    private static DataStore store;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        String script = new String(Files.readAllBytes(Paths.get(TransferProcessorStoreTest.class.getResource("/createTest.sql")
+                .toURI())));
+        store = DataStoreFactory.makeMemoryDataStore(script, CONFIG);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        DataStoreFactory.shutdownDatabase(CONFIG);
+    }
+
+    @Test
+    public void testSuccess() {
+        BigDecimal from = store.getAccount(JANE_USD).getBalance();
+        BigDecimal to = store.getAccount(ALEX_USD).getBalance();
+
+        TransferResult result = new TransferProcessor(new TransferRequest(JANE_USD, ALEX_USD, 1000), store).execute();
+        assertEquals(200, result.getResultCode());
+        assertFalse(StringUtils.isBlank(result.getTransactionId()));
+        assertEquals(0, from.subtract(BigDecimal.TEN).compareTo(store.getAccount(JANE_USD).getBalance()));
+        assertEquals(0, to.add(BigDecimal.TEN).compareTo(store.getAccount(ALEX_USD).getBalance()));
+    }
+
+    @Test
+    public void testInsufficientFunds() {
+        BigDecimal to = store.getAccount(JANE_USD).getBalance();
+
+        TransferResult result = new TransferProcessor(new TransferRequest(FRED_USD, JANE_USD, 1), store).execute();
+        assertEquals(520, result.getResultCode());
+        assertEquals(0, BigDecimal.ZERO.compareTo(store.getAccount(FRED_USD).getBalance()));
+        assertEquals(0, to.compareTo(store.getAccount(JANE_USD).getBalance()));
+    }
+
+    @Test
+    public void testClosedAccount() {
+        BigDecimal from = store.getAccount(JANE_USD).getBalance();
+
+        TransferResult result = new TransferProcessor(new TransferRequest(JANE_USD, MARY_USD_CLOSED, 1000), store).execute();
+        assertEquals(404, result.getResultCode());
+        assertEquals("To Account not open", result.getResultMessage());
+        assertEquals(0, from.compareTo(store.getAccount(JANE_USD).getBalance()));
+    }
+
+    @Test
+    public void testNoAccount() {
+        TransferResult result = new TransferProcessor(new TransferRequest("JOHN", JANE_USD, 1000), store).execute();
+        assertEquals(404, result.getResultCode());
+        assertEquals("From Account not found", result.getResultMessage());
+    }
+
+    @Test
+    public void testDuplicateKey() {
+        AccountLocks locks = new AccountLocks();
+        BigDecimal from = store.getAccount(ALEX_USD).getBalance();
+
+        TransferRequest request = new TransferRequest(ALEX_USD, JANE_USD, 250);
+        TransferResult first = new TransferProcessor(request, store, locks, "processor-key", null).execute();
+        TransferResult second = new TransferProcessor(request, store, locks, "processor-key", null).execute();
+        assertEquals(200, first.getResultCode());
+        assertEquals(200, second.getResultCode());
+        assertEquals(first.getTransactionId(), second.getTransactionId());
+        assertEquals(0, from.subtract(new BigDecimal("2.50")).compareTo(store.getAccount(ALEX_USD).getBalance()));
+    }
+}
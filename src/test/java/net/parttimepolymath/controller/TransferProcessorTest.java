@@ -3,8 +3,10 @@ package net.parttimepolymath.controller;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 
@@ -13,8 +15,12 @@ import java.math.BigDecimal;
 import net.parttimepolymath.api.TransferRequest;
 import net.parttimepolymath.api.TransferResult;
 import net.parttimepolymath.model.Account;
+import net.parttimepolymath.model.AccountNotOpenException;
 import net.parttimepolymath.model.DataStore;
+import net.parttimepolymath.model.DuplicateTransferException;
+import net.parttimepolymath.model.InsufficientFundsException;
 import net.parttimepolymath.model.Transaction;
+import net.parttimepolymath.model.TransactionPair;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
@@ -124,6 +130,35 @@ public class TransferProcessorTest {
         assertTrue(StringUtils.isBlank(result.getTransactionId()));
     }
 
+    @Test
+    public void testCurrencyScale() {
+        TransferProcessor instance = new TransferProcessor(new TransferRequest("source id", "dest id", 1000), dataStore);
+        testAccountFrom.setCurrency("JPY");
+        testAccountFrom.setBalance(BigDecimal.valueOf(999));
+        when(dataStore.getAccount("source id")).thenReturn(testAccountFrom);
+        when(dataStore.getAccount("dest id")).thenReturn(testAccountTo);
+
+        // 1000 is whole yen rather than hundredths, so 999 yen is not enough.
+        assertEquals(520, instance.execute().getResultCode());
+
+        testAccountFrom.setBalance(BigDecimal.valueOf(1000));
+        TransferProcessor.Checked checked = instance.check();
+        assertNull(checked.getRejection());
+        assertEquals(1000000L, checked.getAmount());
+        TransactionPair pair = instance.makeTransactions(checked.getAmount());
+        assertEquals(0, new BigDecimal("-1000").compareTo(pair.getFromTransaction().getAmount()));
+        assertEquals(0, new BigDecimal("1000").compareTo(pair.getToTransaction().getAmount()));
+    }
+
+    @Test
+    public void testTooLarge() {
+        TransferProcessor instance = new TransferProcessor(new TransferRequest("source id", "dest id", Long.MAX_VALUE), dataStore);
+        when(dataStore.getAccount("source id")).thenReturn(testAccountFrom);
+        when(dataStore.getAccount("dest id")).thenReturn(testAccountTo);
+
+        assertEquals(400, instance.execute().getResultCode());
+    }
+
     @Test
     public void testFailure() throws Exception {
         TransferProcessor instance = new TransferProcessor(new TransferRequest("source id", "dest id", 1000), dataStore);
@@ -139,6 +174,36 @@ public class TransferProcessorTest {
         assertTrue(StringUtils.isBlank(result.getTransactionId()));
     }
 
+    @Test
+    public void testLostRace() throws Exception {
+        TransferProcessor instance = new TransferProcessor(new TransferRequest("source id", "dest id", 1000), dataStore);
+        testAccountFrom.setBalance(BigDecimal.valueOf(2000, 2));
+        when(dataStore.getAccount("source id")).thenReturn(testAccountFrom);
+        when(dataStore.getAccount("dest id")).thenReturn(testAccountTo);
+        doThrow(new InsufficientFundsException("source id")).when(dataStore).addTransactions(any(Transaction.class),
+                any(Transaction.class));
+
+        TransferResult result = instance.execute();
+        assertNotNull(result);
+        assertEquals(520, result.getResultCode());
+        assertEquals("Insufficient funds", result.getResultMessage());
+        assertTrue(StringUtils.isBlank(result.getTransactionId()));
+    }
+
+    @Test
+    public void testClosedAtWrite() throws Exception {
+        TransferProcessor instance = new TransferProcessor(new TransferRequest("source id", "dest id", 1000), dataStore);
+        testAccountFrom.setBalance(BigDecimal.valueOf(2000, 2));
+        when(dataStore.getAccount("source id")).thenReturn(testAccountFrom);
+        when(dataStore.getAccount("dest id")).thenReturn(testAccountTo);
+        doThrow(new AccountNotOpenException("dest id")).when(dataStore).addTransactions(any(Transaction.class),
+                any(Transaction.class));
+
+        TransferResult result = instance.execute();
+        assertEquals(404, result.getResultCode());
+        assertEquals("Account not open", result.getResultMessage());
+    }
+
     @Test
     public void testSuccess() throws Exception {
         TransferProcessor instance = new TransferProcessor(new TransferRequest("source id", "dest id", 1000), dataStore);
@@ -153,4 +218,39 @@ public class TransferProcessorTest {
         assertFalse(StringUtils.isBlank(result.getTransactionId()));
     }
 
+    @Test
+    public void testTransactionIds() {
+        TransactionIdGenerator ids = new TransactionIdGenerator() {
+            private int next;
+
+            @Override
+            public String nextId() {
+                return "tx-" + next++;
+            }
+        };
+        TransferProcessor instance = new TransferProcessor(new TransferRequest("source id", "dest id", 1000), dataStore,
+                new AccountLocks(), null, ids);
+        testAccountFrom.setBalance(BigDecimal.valueOf(2000, 2));
+        when(dataStore.getAccount("source id")).thenReturn(testAccountFrom);
+        when(dataStore.getAccount("dest id")).thenReturn(testAccountTo);
+
+        TransferResult result = instance.execute();
+        assertEquals(200, result.getResultCode());
+        assertEquals("tx-0", result.getTransactionId());
+    }
+
+    @Test
+    public void testDuplicateKey() throws Exception {
+        TransferProcessor instance = new TransferProcessor(new TransferRequest("source id", "dest id", 1000), dataStore,
+                new AccountLocks(), "key", null);
+        testAccountFrom.setBalance(BigDecimal.valueOf(2000, 2));
+        when(dataStore.getAccount("source id")).thenReturn(testAccountFrom);
+        when(dataStore.getAccount("dest id")).thenReturn(testAccountTo);
+        doThrow(new DuplicateTransferException("key", "earlier tx")).when(dataStore).addTransactions(any(Transaction.class),
+                any(Transaction.class), eq("key"));
+
+        TransferResult result = instance.execute();
+        assertEquals(200, result.getResultCode());
+        assertEquals("earlier tx", result.getTransactionId());
+    }
 }
@@ -0,0 +1,50 @@
+package net.parttimepolymath.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value <= LatencyHistogram.highestValueIn(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highestValueIn(index - 1));
+            assertTrue(LatencyHistogram.highestValueIn(index) - value <= value / 16);
+        }
+        int top = LatencyHistogram.indexOf(Long.MAX_VALUE);
+        assertEquals(top, LatencyHistogram.indexOf(1L << 50));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueIn(top));
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencySummary summary = new LatencyHistogram().summarise();
+        assertEquals(0, summary.getCount());
+        assertEquals(0.0, summary.getP99(), 0.0);
+        assertEquals(0.0, summary.getMax(), 0.0);
+        assertEquals(0.0, summary.getMean(), 0.0);
+    }
+
+    @Test
+    public void testSummarise() {
+        LatencyHistogram instance = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            instance.record(micros * 1000);
+        }
+        instance.record(-5);
+        LatencySummary summary = instance.summarise();
+        assertEquals(1001, summary.getCount());
+        assertEquals(1001, instance.getCount());
+        assertEquals(500500.0, summary.getTotal(), 0.001);
+        assertEquals(500.0, summary.getMean(), 0.001);
+        assertEquals(1000.0, summary.getMax(), 0.0);
+        assertTrue(summary.getP50() >= 500.0 && summary.getP50() <= 500.0 * 17 / 16);
+        assertTrue(summary.getP90() >= 900.0 && summary.getP90() <= 900.0 * 17 / 16);
+        assertTrue(summary.getP99() >= 990.0 && summary.getP99() <= 1000.0);
+        assertEquals(1000.0, summary.getP999(), 0.0);
+    }
+}
@@ -0,0 +1,118 @@
+package net.parttimepolymath.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MetricsTest {
+
+    @Test
+    public void testHistograms() {
+        Metrics instance = new Metrics();
+        assertSame(instance.endpoint("a"), instance.endpoint("a"));
+        assertSame(instance.operation("a"), instance.operation("a"));
+        assertFalse(instance.endpoint("a") == instance.operation("a"));
+    }
+
+    @Test
+    public void testResults() {
+        Metrics instance = new Metrics();
+        instance.recordResult(200);
+        instance.recordResult(200);
+        instance.recordResult(520);
+        instance.recordResult(1000);
+        assertEquals(2, instance.getResultCount(200));
+        assertEquals(1, instance.getResultCount(520));
+        assertEquals(1, instance.getResultCount(599));
+        assertEquals(0, instance.getResultCount(404));
+        assertEquals(0, instance.getResultCount(1000));
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        Metrics instance = new Metrics();
+        instance.endpoint("TransferService.doTransfer").record(2000000);
+        instance.operation("getAccount").record(3000);
+        instance.recordResult(404);
+
+        MetricsReport report = instance.report();
+        assertEquals(1, report.getEndpoints().get("TransferService.doTransfer").getCount());
+        assertEquals(3.0, report.getOperations().get("getAccount").getMax(), 0.0);
+        assertEquals(1, report.getResults().size());
+        assertEquals(Long.valueOf(1), report.getResults().get(404));
+
+        ObjectMapper mapper = new ObjectMapper();
+        String json = mapper.writeValueAsString(report);
+        assertTrue(json.contains("\"p99Micros\":3.0"));
+        assertTrue(json.contains("\"results\":{\"404\":1}"));
+        MetricsReport read = mapper.readValue(json, MetricsReport.class);
+        assertEquals(2000.0, read.getEndpoints().get("TransferService.doTransfer").getTotal(), 0.0);
+        assertEquals(Long.valueOf(1), read.getResults().get(404));
+    }
+
+    @Test
+    public void testPrometheus() {
+        Metrics instance = new Metrics();
+        instance.endpoint("TransferService.doTransfer").record(2000000);
+        instance.recordResult(200);
+        instance.getRequests().increment("doTransfer");
+
+        String text = instance.report().toPrometheus();
+        assertTrue(text.contains("# TYPE transfer_endpoint_latency_seconds summary\n"));
+        assertTrue(text.contains(
+                "transfer_endpoint_latency_seconds{endpoint=\"TransferService.doTransfer\",quantile=\"0.99\"} 0.002000000\n"));
+        assertTrue(text.contains("transfer_endpoint_latency_seconds_sum{endpoint=\"TransferService.doTransfer\"} 0.002000000\n"));
+        assertTrue(text.contains("transfer_endpoint_latency_seconds_count{endpoint=\"TransferService.doTransfer\"} 1\n"));
+        assertTrue(text.contains("# TYPE transfer_store_latency_seconds summary\n"));
+        assertTrue(text.contains("transfer_results_total{code=\"200\"} 1\n"));
+        assertTrue(text.contains("transfer_requests_total{endpoint=\"doTransfer\"} 1\n"));
+        assertTrue(text.contains("# TYPE transfer_request_rate gauge\n"));
+        assertTrue(text.contains("transfer_request_rate{window=\"60s\"} "));
+    }
+
+    @Test
+    public void testConnectionPool() throws Exception {
+        Metrics instance = new Metrics();
+        assertNull(instance.report().getConnectionPool());
+        assertFalse(instance.report().toPrometheus().contains("transfer_pool"));
+
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setMaxTotal(4);
+        PoolMetrics pool = new PoolMetrics(dataSource);
+        instance.setConnectionPool(pool);
+        long first = pool.startAcquire();
+        long second = pool.startAcquire();
+        assertEquals(2, instance.report().getConnectionPool().getPending());
+        pool.endAcquire(first, true);
+        pool.endAcquire(second, false);
+        pool.recordTimeout();
+        assertEquals(1, pool.getTimeouts());
+
+        PoolReport report = instance.report().getConnectionPool();
+        assertEquals(0, report.getActive());
+        assertEquals(0, report.getIdle());
+        assertEquals(0, report.getPending());
+        assertEquals(4, report.getMax());
+        assertEquals(1, report.getTimeouts());
+        assertEquals(1, report.getAcquire().getCount());
+
+        ObjectMapper mapper = new ObjectMapper();
+        PoolReport read = mapper.readValue(mapper.writeValueAsString(instance.report()), MetricsReport.class).getConnectionPool();
+        assertEquals(4, read.getMax());
+        assertEquals(1, read.getAcquire().getCount());
+
+        String text = instance.report().toPrometheus();
+        assertTrue(text.contains("transfer_pool_connections{state=\"active\"} 0\n"));
+        assertTrue(text.contains("transfer_pool_connections{state=\"max\"} 4\n"));
+        assertTrue(text.contains("transfer_pool_pending 0\n"));
+        assertTrue(text.contains("transfer_pool_acquire_seconds_count{pool=\"database\"} 1\n"));
+        assertTrue(text.contains("transfer_pool_timeouts_total 1\n"));
+    }
+}
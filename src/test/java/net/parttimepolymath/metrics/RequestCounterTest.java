@@ -0,0 +1,45 @@
+package net.parttimepolymath.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+public class RequestCounterTest {
+
+    @Test
+    public void testCounts() {
+        RequestCounter instance = new RequestCounter(10);
+        instance.increment();
+        instance.increment("getAccount");
+        instance.increment("getAccount");
+        instance.increment("doTransfer");
+        assertEquals(14, instance.getCount());
+        SortedMap<String, Long> counts = instance.getEndpointCounts();
+        assertEquals(2, counts.size());
+        assertEquals(Long.valueOf(2), counts.get("getAccount"));
+        assertEquals(Long.valueOf(1), counts.get("doTransfer"));
+    }
+
+    @Test
+    public void testRates() throws Exception {
+        RequestCounter instance = new RequestCounter(1000);
+        assertEquals(0.0, instance.getRate(1), 0.0);
+        for (int i = 0; i < 100; i++) {
+            instance.increment("doTransfer");
+        }
+        // the initial count is not a request seen by this counter, so is not part of any rate.
+        for (double rate : instance.getRates().values()) {
+            assertTrue(rate > 0.0);
+        }
+        assertEquals(3, instance.getRates().size());
+        assertTrue(instance.getRates().containsKey("60s"));
+
+        Thread.sleep(2100);
+        assertEquals(0.0, instance.getRate(1), 0.0);
+        double rate = instance.getRate(10);
+        assertTrue(rate > 100.0 / 3 && rate < 100.0 / 2);
+    }
+}
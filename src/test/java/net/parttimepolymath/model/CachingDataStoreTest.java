@@ -0,0 +1,171 @@
+package net.parttimepolymath.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class CachingDataStoreTest {
+    @Mock
+    private DataStore dataStore;
+
+    private CachingDataStore instance;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        instance = new CachingDataStore(dataStore, 100, 1, TimeUnit.MINUTES);
+        when(dataStore.getAccount(anyString())).thenAnswer(new Answer<Account>() {
+            @Override
+            public Account answer(final InvocationOnMock invocation) {
+                return makeAccount((String) invocation.getArguments()[0], "10.000");
+            }
+        });
+        when(dataStore.getAccount("nowhere")).thenReturn(null);
+    }
+
+    @Test
+    public void testGetAccount() {
+        Account account = instance.getAccount("acct id");
+        assertNotNull(account);
+        assertEquals("acct id", account.getAccountId());
+        assertEquals(new BigDecimal("10.000"), account.getBalance());
+        assertEquals("GBP", account.getCurrency());
+        assertTrue(account.isOpen());
+        assertEquals("client id", account.getClient().getClientId());
+        assertTrue(account.getTransactions().isEmpty());
+        assertEquals(0, instance.getHits());
+        assertEquals(1, instance.getMisses());
+    }
+
+    @Test
+    public void testHit() {
+        Account first = instance.getAccount("acct id");
+        Account second = instance.getAccount("acct id");
+        assertEquals(first.getBalance(), second.getBalance());
+        assertTrue(first != second);
+        verify(dataStore, times(1)).getAccount("acct id");
+        assertEquals(1, instance.getHits());
+        assertEquals(1, instance.getMisses());
+    }
+
+    @Test
+    public void testNotFound() {
+        assertNull(instance.getAccount("nowhere"));
+        assertNull(instance.getAccount(""));
+        assertNull(instance.getAccount(null));
+        assertEquals(0, instance.size());
+    }
+
+    @Test
+    public void testTransferInvalidates() throws Exception {
+        instance.getAccount("from id");
+        instance.getAccount("to id");
+        instance.getAccount("other id");
+        instance.addTransactions(makeTransaction("from id"), makeTransaction("to id"));
+        assertEquals(1, instance.size());
+
+        instance.getAccount("from id");
+        instance.getAccount("to id");
+        instance.getAccount("other id");
+        verify(dataStore, times(2)).getAccount("from id");
+        verify(dataStore, times(2)).getAccount("to id");
+        verify(dataStore, times(1)).getAccount("other id");
+    }
+
+    @Test
+    public void testFailedTransferInvalidates() throws Exception {
+        doThrow(new InsufficientFundsException("from id")).when(dataStore).addTransactions(any(Transaction.class),
+                any(Transaction.class));
+        instance.getAccount("from id");
+        try {
+            instance.addTransactions(makeTransaction("from id"), makeTransaction("to id"));
+        } catch (InsufficientFundsException ex) {
+            instance.getAccount("from id");
+        }
+        verify(dataStore, times(2)).getAccount("from id");
+    }
+
+    @Test
+    public void testBatchInvalidates() {
+        instance.getAccount("from id");
+        instance.getAccount("to id");
+        instance.addTransactions(Arrays.asList(new TransactionPair(makeTransaction("from id"), makeTransaction("to id"))));
+        assertEquals(0, instance.size());
+    }
+
+    @Test
+    public void testLoadRacingInvalidation() {
+        when(dataStore.getAccount("raced id")).thenAnswer(new Answer<Account>() {
+            @Override
+            public Account answer(final InvocationOnMock invocation) {
+                Account stale = makeAccount("raced id", "10.000");
+                instance.invalidate("raced id");
+                return stale;
+            }
+        });
+        instance.getAccount("raced id");
+        instance.getAccount("raced id");
+        verify(dataStore, times(2)).getAccount("raced id");
+        assertEquals(0, instance.getHits());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        instance = new CachingDataStore(dataStore, 100, 1, TimeUnit.MILLISECONDS);
+        instance.getAccount("acct id");
+        Thread.sleep(10);
+        instance.getAccount("acct id");
+        verify(dataStore, times(2)).getAccount("acct id");
+        assertEquals(1, instance.getEvictions());
+    }
+
+    @Test
+    public void testSizeBound() {
+        instance = new CachingDataStore(dataStore, 16, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 100; i++) {
+            instance.getAccount("acct " + i);
+        }
+        assertTrue(instance.size() <= 16);
+        assertEquals(100 - instance.size(), instance.getEvictions());
+    }
+
+    private static Account makeAccount(final String accountId, final String balance) {
+        Account account = new Account();
+        account.setAccountId(accountId);
+        account.setBalance(new BigDecimal(balance));
+        account.setCurrency("GBP");
+        account.setOpen(true);
+        Client client = new Client();
+        client.setClientId("client id");
+        client.setName("client name");
+        client.addAccount(account);
+        return account;
+    }
+
+    private static Transaction makeTransaction(final String accountId) {
+        Transaction transaction = new Transaction();
+        TransactionPK key = new TransactionPK();
+        key.setAccountId(accountId);
+        key.setTxId(accountId + " tx");
+        transaction.setId(key);
+        return transaction;
+    }
+}
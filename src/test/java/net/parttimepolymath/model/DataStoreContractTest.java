@@ -0,0 +1,337 @@
+package net.parttimepolymath.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * the behaviour every DataStore must share, run against each implementation by a subclass that seeds a store from
+ * createTest.sql once for the class.
+ */
+public abstract class DataStoreContractTest {
+    protected DataStore instance;
+
+    /**
+     * @return the store under test, seeded from createTest.sql and shared by every test of the class.
+     */
+    protected abstract DataStore getStore();
+
+    protected static String readScript() throws Exception {
+        return new String(Files.readAllBytes(Paths.get(DataStoreContractTest.class.getResource("/createTest.sql").toURI())));
+    }
+
+    @Before
+    public void setUp() {
+        instance = getStore();
+    }
+
+    @Test
+    public void testGetClients() {
+        List<Client> result = instance.getClients();
+        assertNotNull(result);
+        assertEquals(5, result.size());
+    }
+
+    @Test
+    public void testGetClient() throws IOException {
+        Client result = instance.getClient("JOHN");
+        assertNull(result);
+
+        result = instance.getClient(null);
+        assertNull(result);
+
+        result = instance.getClient("046b6c7f-0b8a-43b9-b35d-6489e6daee91");
+        assertNotNull(result);
+        assertNotNull(result.getAccounts());
+        assertEquals(4, result.getAccounts().size());
+    }
+
+    @Test
+    public void testGetClientSummary() {
+        assertNull(instance.getClientSummary(null, 2));
+        assertNull(instance.getClientSummary("JOHN", 2));
+
+        ClientSummary result = instance.getClientSummary("146b6c7f-0b8a-43b9-b35d-6489e6daee92", 2);
+        assertNotNull(result);
+        assertEquals("MARY", result.getName());
+        assertEquals(3, result.getAccounts().size());
+        AccountSummary closed = null;
+        for (AccountSummary account : result.getAccounts()) {
+            assertTrue(account.getRecentTransactions().size() <= 2);
+            if (account.getAccountId().equals("87a4d7aa-385a-11e5-a151-feff819cdc9f")) {
+                closed = account;
+            }
+        }
+        assertNotNull(closed);
+        assertFalse(closed.isOpen());
+        assertEquals("USD", closed.getCurrency());
+        assertEquals(2, closed.getRecentTransactions().size());
+        assertEquals("eab5e316-385f-11e5-a151-feff819cdc9f", closed.getRecentTransactions().get(0).getTxId());
+        assertEquals("eab5dde4-385f-11e5-a151-feff819cdc9f", closed.getRecentTransactions().get(1).getTxId());
+
+        result = instance.getClientSummary("146b6c7f-0b8a-43b9-b35d-6489e6daee92", 0);
+        assertEquals(3, result.getAccounts().size());
+        assertTrue(result.getAccounts().get(0).getRecentTransactions().isEmpty());
+    }
+
+    @Test
+    public void testGetAccounts() {
+        List<Account> result = instance.getAccounts(null);
+        assertNotNull(result);
+        assertTrue(result.isEmpty());
+
+        result = instance.getAccounts("JANET");
+        assertNotNull(result);
+        assertTrue(result.isEmpty());
+
+        result = instance.getAccounts("046b6c7f-0b8a-43b9-b35d-6489e6daee91");
+        assertNotNull(result);
+        assertEquals(4, result.size());
+    }
+
+    @Test
+    public void testGetAccount() {
+        Account result = instance.getAccount(null);
+        assertNull(result);
+
+        result = instance.getAccount("show me da money");
+        assertNull(result);
+
+        result = instance.getAccount("87a4d7aa-385a-11e5-a151-feff819cdc9f");
+        assertNotNull(result);
+        assertEquals("USD", result.getCurrency());
+        assertFalse(result.isOpen());
+    }
+
+    @Test
+    public void testGetTransactions() {
+        List<Transaction> result = instance.getTransactions(null);
+        assertNotNull(result);
+        assertTrue(result.isEmpty());
+
+        result = instance.getTransactions("87a4d7aa-385a-11e5-a151-feff819cdc9f");
+        assertNotNull(result);
+        assertEquals(5, result.size());
+    }
+
+    @Test
+    public void testVisitTransactions() throws IOException {
+        final List<TransactionKey> keys = new ArrayList<>();
+        TransactionHandler handler = new TransactionHandler() {
+            @Override
+            public void handle(final Transaction transaction) {
+                keys.add(TransactionKey.of(transaction));
+            }
+        };
+
+        assertEquals(0, instance.visitTransactions(null, null, 2, handler));
+        assertEquals(0, instance.visitTransactions("show me da money", null, 2, handler));
+
+        String accountId = "87a4d7aa-385a-11e5-a151-feff819cdc9f";
+        assertEquals(2, instance.visitTransactions(accountId, null, 2, handler));
+        assertEquals(2, instance.visitTransactions(accountId, keys.get(1), 2, handler));
+        assertEquals(1, instance.visitTransactions(accountId, keys.get(3), 2, handler));
+        assertEquals(0, instance.visitTransactions(accountId, keys.get(4), 2, handler));
+
+        assertEquals(5, keys.size());
+        assertEquals("eab5df2e-385f-11e5-a151-feff819cdc9f", keys.get(0).getTxId());
+        assertEquals("eab5e316-385f-11e5-a151-feff819cdc9f", keys.get(4).getTxId());
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(keys.get(i - 1).compareTo(keys.get(i)) < 0);
+        }
+    }
+
+    /*
+     * slightly dodgy test to verify that we are getting the expected JSON date conversion happening.
+     */
+    @Test
+    public void testDateFormat() throws JsonProcessingException {
+        List<Transaction> result = instance.getTransactions("87a4dd04-11e5-a151-385a-feff819cdc9f");
+        assertNotNull(result);
+
+        ObjectWriter ow = new ObjectMapper().writer();
+        String json = ow.writeValueAsString(result.get(0));
+        assertTrue(StringUtils.contains(json, "\"date\":\"2015-08-08T20:13:17.000Z\""));
+    }
+
+    @Test
+    public void testAddTransactions() throws Exception {
+        Account fromAccount = instance.getAccount("adfd52b2-389e-11e5-a151-feff819cdc9f");
+        Account toAccount = instance.getAccount("adfd560e-389e-11e5-a151-feff819cdc9f");
+        assertTrue(toAccount.getBalance().compareTo(new BigDecimal("10000.00")) == 0);
+        assertTrue(fromAccount.getBalance().compareTo(new BigDecimal("10000.00")) == 0);
+
+        BigDecimal amount = new BigDecimal("100.00");
+
+        Transaction fromTransaction = new Transaction();
+        fromTransaction.setAccount(fromAccount);
+        fromTransaction.setAmount(amount.negate());
+        fromTransaction.setDate(DateTime.now(DateTimeZone.UTC));
+        fromTransaction.setReference(toAccount.getAccountId());
+        TransactionPK fromKey = new TransactionPK();
+        fromKey.setAccountId(fromAccount.getAccountId());
+        fromKey.setTxId(UUID.randomUUID().toString());
+        fromTransaction.setId(fromKey);
+
+        Transaction toTransaction = new Transaction();
+        toTransaction.setAccount(toAccount);
+        toTransaction.setAmount(amount);
+        toTransaction.setDate(fromTransaction.getDate());
+        toTransaction.setReference(fromTransaction.getId().getTxId());
+        TransactionPK toKey = new TransactionPK();
+        toKey.setAccountId(toAccount.getAccountId());
+        toKey.setTxId(UUID.randomUUID().toString());
+        toTransaction.setId(toKey);
+
+        instance.addTransactions(fromTransaction, toTransaction);
+
+        fromAccount = fromTransaction.getAccount();
+        toAccount = toTransaction.getAccount();
+
+        assertTrue(toAccount.getBalance().compareTo(new BigDecimal("10100.00")) == 0);
+        assertTrue(fromAccount.getBalance().compareTo(new BigDecimal("9900.00")) == 0);
+    }
+
+    @Test
+    public void testInsufficientFunds() throws Exception {
+        BigDecimal toBalance = instance.getAccount("87a4dd04-385a-11e5-a151-feff819cdc9f").getBalance();
+
+        Transaction fromTransaction = new Transaction();
+        fromTransaction.setAmount(new BigDecimal("-1000.00"));
+        fromTransaction.setDate(DateTime.now(DateTimeZone.UTC));
+        TransactionPK fromKey = new TransactionPK();
+        fromKey.setAccountId("87a4dd04-11e5-a151-385a-feff819cdc9f");
+        fromKey.setTxId(UUID.randomUUID().toString());
+        fromTransaction.setId(fromKey);
+
+        Transaction toTransaction = new Transaction();
+        toTransaction.setAmount(new BigDecimal("1000.00"));
+        toTransaction.setDate(fromTransaction.getDate());
+        TransactionPK toKey = new TransactionPK();
+        toKey.setAccountId("87a4dd04-385a-11e5-a151-feff819cdc9f");
+        toKey.setTxId(UUID.randomUUID().toString());
+        toTransaction.setId(toKey);
+
+        try {
+            instance.addTransactions(fromTransaction, toTransaction);
+            fail("expected the transfer to be refused");
+        } catch (InsufficientFundsException ex) {
+            // expected
+        }
+
+        assertTrue(instance.getAccount("87a4dd04-11e5-a151-385a-feff819cdc9f").getBalance().compareTo(new BigDecimal("300.00")) == 0);
+        assertTrue(instance.getAccount("87a4dd04-385a-11e5-a151-feff819cdc9f").getBalance().compareTo(toBalance) == 0);
+        assertEquals(1, instance.getTransactions("87a4dd04-11e5-a151-385a-feff819cdc9f").size());
+    }
+
+    @Test
+    public void testAccountNotOpen() throws Exception {
+        String open = "adfd52b2-389e-11e5-a151-feff819cdc9f";
+        String closed = "87a4d7aa-385a-11e5-a151-feff819cdc9f";
+        BigDecimal openBalance = instance.getAccount(open).getBalance();
+        BigDecimal closedBalance = instance.getAccount(closed).getBalance();
+
+        String[][] refused = { { open, closed }, { closed, open }, { "JOHN", open }, { open, "JOHN" } };
+        for (String[] accounts : refused) {
+            TransactionPair pair = makePair(accounts[0], accounts[1], BigDecimal.ONE);
+            try {
+                instance.addTransactions(pair.getFromTransaction(), pair.getToTransaction());
+                fail("expected the transfer to be refused");
+            } catch (AccountNotOpenException ex) {
+                // expected
+            }
+        }
+
+        assertEquals(0, openBalance.compareTo(instance.getAccount(open).getBalance()));
+        assertEquals(0, closedBalance.compareTo(instance.getAccount(closed).getBalance()));
+    }
+
+    @Test
+    public void testAddTransactionBatch() throws Exception {
+        String rich = "87a4dd04-385a-11e5-a151-feff819cdc9f";
+        String poor = "46fd5dee-385a-11e5-a151-feff819cdc9f";
+        String other = "46fd5b64-385a-11e5-a151-feff819cdc9f";
+        BigDecimal richBalance = instance.getAccount(rich).getBalance();
+        BigDecimal poorBalance = instance.getAccount(poor).getBalance();
+        BigDecimal otherBalance = instance.getAccount(other).getBalance();
+
+        List<TransactionPair> pairs = new ArrayList<>();
+        pairs.add(makePair(rich, other, new BigDecimal("100.00")));
+        pairs.add(makePair(poor, other, poorBalance.add(new BigDecimal("1000.00"))));
+        pairs.add(makePair(rich, poor, new BigDecimal("50.00")));
+
+        List<Exception> result = instance.addTransactions(pairs);
+        assertEquals(3, result.size());
+        assertNull(result.get(0));
+        assertTrue(result.get(1) instanceof InsufficientFundsException);
+        assertNull(result.get(2));
+
+        assertTrue(instance.getAccount(rich).getBalance().compareTo(richBalance.subtract(new BigDecimal("150.00"))) == 0);
+        assertTrue(instance.getAccount(poor).getBalance().compareTo(poorBalance.add(new BigDecimal("50.00"))) == 0);
+        assertTrue(instance.getAccount(other).getBalance().compareTo(otherBalance.add(new BigDecimal("100.00"))) == 0);
+    }
+
+    @Test
+    public void testIdempotentTransfer() throws Exception {
+        String rich = "87a4dd04-385a-11e5-a151-feff819cdc9f";
+        String other = "46fd5b64-385a-11e5-a151-feff819cdc9f";
+        BigDecimal richBalance = instance.getAccount(rich).getBalance();
+        assertNull(instance.findTransfer("retried key"));
+
+        TransactionPair first = makePair(rich, other, new BigDecimal("10.00"));
+        instance.addTransactions(first.getFromTransaction(), first.getToTransaction(), "retried key");
+        assertEquals(first.getFromTransaction().getId().getTxId(), instance.findTransfer("retried key"));
+
+        TransactionPair retry = makePair(rich, other, new BigDecimal("10.00"));
+        try {
+            instance.addTransactions(retry.getFromTransaction(), retry.getToTransaction(), "retried key");
+            fail("expected the retry to be refused");
+        } catch (DuplicateTransferException ex) {
+            assertEquals(first.getFromTransaction().getId().getTxId(), ex.getTransactionId());
+        }
+        assertTrue(instance.getAccount(rich).getBalance().compareTo(richBalance.subtract(new BigDecimal("10.00"))) == 0);
+    }
+
+    protected static TransactionPair makePair(final String from, final String to, final BigDecimal amount) {
+        Transaction fromTransaction = new Transaction();
+        fromTransaction.setAmount(amount.negate());
+        fromTransaction.setDate(DateTime.now(DateTimeZone.UTC));
+        fromTransaction.setReference(to);
+        TransactionPK fromKey = new TransactionPK();
+        fromKey.setAccountId(from);
+        fromKey.setTxId(UUID.randomUUID().toString());
+        fromTransaction.setId(fromKey);
+
+        Transaction toTransaction = new Transaction();
+        toTransaction.setAmount(amount);
+        toTransaction.setDate(fromTransaction.getDate());
+        toTransaction.setReference(fromKey.getTxId());
+        TransactionPK toKey = new TransactionPK();
+        toKey.setAccountId(to);
+        toKey.setTxId(UUID.randomUUID().toString());
+        toTransaction.setId(toKey);
+
+        return new TransactionPair(fromTransaction, toTransaction);
+    }
+}
@@ -1,36 +1,36 @@
 package net.parttimepolymath.model;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
-import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.List;
-import java.util.UUID;
+import java.sql.Connection;
 
-import org.apache.commons.lang3.StringUtils;
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import net.parttimepolymath.metrics.PoolMetrics;
+
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.SessionProfiler;
+import org.eclipse.persistence.sessions.SessionProfilerAdapter;
+import org.eclipse.persistence.sessions.server.Server;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-
-public class DataStoreTest {
-    private static DataStore instance;
+public class DataStoreTest extends DataStoreContractTest {
+    private static EntityManagerFactory emf;
+    private static DataStore store;
 
     @BeforeClass
     public static void setUpClass() throws Exception {
-        String script = new String(Files.readAllBytes(Paths.get(DataStoreTest.class.getResource("/createTest.sql").toURI())));
-        instance = DataStoreFactory.makeDataStore(script);
+        emf = DataStoreFactory.makeEntityManagerFactory(readScript());
+        store = new JPADataStore(emf);
     }
 
     @AfterClass
@@ -39,115 +39,92 @@ public class DataStoreTest {
         DataStoreFactory.shutdownDatabase();
     }
 
-    @Test
-    public void testGetClients() {
-        List<Client> result = instance.getClients();
-        assertNotNull(result);
-        assertEquals(5, result.size());
-    }
-
-    @Test
-    public void testGetClient() throws IOException {
-        Client result = instance.getClient("JOHN");
-        assertNull(result);
-
-        result = instance.getClient(null);
-        assertNull(result);
-
-        result = instance.getClient("046b6c7f-0b8a-43b9-b35d-6489e6daee91");
-        assertNotNull(result);
-        assertNotNull(result.getAccounts());
-        assertEquals(4, result.getAccounts().size());
-    }
-
-    @Test
-    public void testGetAccounts() {
-        List<Account> result = instance.getAccounts(null);
-        assertNotNull(result);
-        assertTrue(result.isEmpty());
-
-        result = instance.getAccounts("JANET");
-        assertNotNull(result);
-        assertTrue(result.isEmpty());
-
-        result = instance.getAccounts("046b6c7f-0b8a-43b9-b35d-6489e6daee91");
-        assertNotNull(result);
-        assertEquals(4, result.size());
+    @Override
+    protected DataStore getStore() {
+        return store;
     }
 
     @Test
-    public void testGetAccount() {
-        Account result = instance.getAccount(null);
-        assertNull(result);
-
-        result = instance.getAccount("show me da money");
-        assertNull(result);
-
-        result = instance.getAccount("87a4d7aa-385a-11e5-a151-feff819cdc9f");
-        assertNotNull(result);
-        assertEquals("USD", result.getCurrency());
-        assertFalse(result.isOpen());
+    public void testPoolMetrics() {
+        assertNotNull(instance.getAccount("adfd52b2-389e-11e5-a151-feff819cdc9f"));
+        PoolMetrics pool = DataStoreFactory.getPoolMetrics(DatabaseConfig.IN_MEMORY);
+        assertNotNull(pool);
+        assertTrue(pool.report().getAcquire().getCount() > 0);
+        assertEquals(DatabaseConfig.DEFAULT_POOL_MAX, pool.report().getMax());
+        assertEquals(0, pool.getTimeouts());
+        assertNull(DataStoreFactory.getPoolMetrics(new DatabaseConfig("jdbc:hsqldb:mem:NO_POOL")));
     }
 
     @Test
-    public void testGetTransactions() {
-        List<Transaction> result = instance.getTransactions(null);
-        assertNotNull(result);
-        assertTrue(result.isEmpty());
-
-        result = instance.getTransactions("87a4d7aa-385a-11e5-a151-feff819cdc9f");
-        assertNotNull(result);
-        assertEquals(5, result.size());
+    public void testPoolTimeout() throws Exception {
+        DatabaseConfig config = new DatabaseConfig("jdbc:hsqldb:mem:POOL_TIMEOUT", "SA", "", 1, 1, 50, 0, true);
+        EntityManagerFactory factory = DataStoreFactory.makeEntityManagerFactory("", config);
+        EntityManager holder = factory.createEntityManager();
+        EntityManager waiter = factory.createEntityManager();
+        try {
+            holder.getTransaction().begin();
+            assertNotNull(holder.unwrap(Connection.class));
+            waiter.getTransaction().begin();
+            try {
+                waiter.unwrap(Connection.class);
+                fail("expected the second connection to time out");
+            } catch (RuntimeException ex) {
+                // expected
+            }
+            PoolMetrics pool = DataStoreFactory.getPoolMetrics(config);
+            assertEquals(1, pool.getTimeouts());
+            assertEquals(1, pool.report().getActive());
+        } finally {
+            holder.close();
+            waiter.close();
+            factory.close();
+            DataStoreFactory.shutdownDatabase(config);
+        }
+        assertNull(DataStoreFactory.getPoolMetrics(config));
     }
 
-    /*
-     * slightly dodgy test to verify that we are getting the expected JSON date conversion happening.
-     */
     @Test
-    public void testDateFormat() throws JsonProcessingException {
-        List<Transaction> result = instance.getTransactions("87a4dd04-11e5-a151-385a-feff819cdc9f");
-        assertNotNull(result);
-
-        ObjectWriter ow = new ObjectMapper().writer();
-        String json = ow.writeValueAsString(result.get(0));
-        assertTrue(StringUtils.contains(json, "\"date\":\"2015-08-08T20:13:17.000Z\""));
+    public void testForeignProfiler() {
+        Server session = JpaHelper.getServerSession(emf);
+        SessionProfiler ours = session.getProfiler();
+        SessionProfiler other = new SessionProfilerAdapter() {
+        };
+        session.setProfiler(other);
+        try {
+            new JPADataStore(emf);
+            assertSame(other, session.getProfiler());
+        } finally {
+            session.setProfiler(ours);
+        }
     }
 
     @Test
-    public void testAddTransactions() throws Exception {
-        Account fromAccount = instance.getAccount("adfd52b2-389e-11e5-a151-feff819cdc9f");
-        Account toAccount = instance.getAccount("adfd560e-389e-11e5-a151-feff819cdc9f");
-        assertTrue(toAccount.getBalance().compareTo(new BigDecimal("10000.00")) == 0);
-        assertTrue(fromAccount.getBalance().compareTo(new BigDecimal("10000.00")) == 0);
-
-        BigDecimal amount = new BigDecimal("100.00");
-
-        Transaction fromTransaction = new Transaction();
-        fromTransaction.setAccount(fromAccount);
-        fromTransaction.setAmount(amount.negate());
-        fromTransaction.setDate(DateTime.now(DateTimeZone.UTC));
-        fromTransaction.setReference(toAccount.getAccountId());
-        TransactionPK fromKey = new TransactionPK();
-        fromKey.setAccountId(fromAccount.getAccountId());
-        fromKey.setTxId(UUID.randomUUID().toString());
-        fromTransaction.setId(fromKey);
-
-        Transaction toTransaction = new Transaction();
-        toTransaction.setAccount(toAccount);
-        toTransaction.setAmount(amount);
-        toTransaction.setDate(fromTransaction.getDate());
-        toTransaction.setReference(fromTransaction.getId().getTxId());
-        TransactionPK toKey = new TransactionPK();
-        toKey.setAccountId(toAccount.getAccountId());
-        toKey.setTxId(UUID.randomUUID().toString());
-        toTransaction.setId(toKey);
-
-        instance.addTransactions(fromTransaction, toTransaction);
-
-        fromAccount = fromTransaction.getAccount();
-        toAccount = toTransaction.getAccount();
-
-        assertTrue(toAccount.getBalance().compareTo(new BigDecimal("10100.00")) == 0);
-        assertTrue(fromAccount.getBalance().compareTo(new BigDecimal("9900.00")) == 0);
+    public void testStatementCount() throws Exception {
+        String rich = "87a4dd04-385a-11e5-a151-feff819cdc9f";
+        String other = "46fd5b64-385a-11e5-a151-feff819cdc9f";
+
+        TransactionPair pair = makePair(rich, other, new BigDecimal("1.00"));
+        Account richAccount = instance.getAccount(rich);
+        Account otherAccount = instance.getAccount(other);
+        BigDecimal richBalance = richAccount.getBalance();
+        pair.getFromTransaction().setAccount(richAccount);
+        pair.getToTransaction().setAccount(otherAccount);
+        long before = instance.getStatementCount();
+        instance.addTransactions(pair.getFromTransaction(), pair.getToTransaction());
+        assertEquals(2, instance.getStatementCount() - before);
+        assertTrue(richAccount.getBalance().compareTo(richBalance.subtract(new BigDecimal("1.00"))) == 0);
+
+        // the verified store reads the attached balances back, at the cost of a statement for each.
+        DataStore verified = new JPADataStore(emf, false);
+        pair = makePair(rich, other, new BigDecimal("1.00"));
+        richAccount = verified.getAccount(rich);
+        pair.getFromTransaction().setAccount(richAccount);
+        pair.getToTransaction().setAccount(verified.getAccount(other));
+        before = verified.getStatementCount();
+        verified.addTransactions(pair.getFromTransaction(), pair.getToTransaction());
+        assertEquals(4, verified.getStatementCount() - before);
+        assertTrue(richAccount.getBalance().compareTo(richBalance.subtract(new BigDecimal("2.00"))) == 0);
+        assertTrue(instance.getAccount(rich).getBalance().compareTo(richBalance.subtract(new BigDecimal("2.00"))) == 0);
+        assertEquals(instance.getStatementCount(), verified.getStatementCount());
     }
 }
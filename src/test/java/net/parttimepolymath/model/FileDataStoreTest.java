@@ -0,0 +1,95 @@
+package net.parttimepolymath.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileDataStoreTest {
+    private static final String FROM_ACCOUNT = "adfd52b2-389e-11e5-a151-feff819cdc9f";
+    private static final String TO_ACCOUNT = "adfd560e-389e-11e5-a151-feff819cdc9f";
+
+    private static String script;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        script = new String(Files.readAllBytes(Paths.get(FileDataStoreTest.class.getResource("/createTest.sql").toURI())));
+    }
+
+    @Test
+    public void testSurvivesRestart() throws Exception {
+        DatabaseConfig config = DatabaseConfig.file(new File(folder.getRoot(), "transfer").getPath());
+        assertTrue(config.isFileBacked());
+
+        EntityManagerFactory emf = DataStoreFactory.makeEntityManagerFactory(script, config);
+        try {
+            DataStore instance = new JPADataStore(emf);
+            assertEquals(0, new BigDecimal("10000.00").compareTo(instance.getAccount(FROM_ACCOUNT).getBalance()));
+            instance.addTransactions(makeTransaction(FROM_ACCOUNT, "-100.00"), makeTransaction(TO_ACCOUNT, "100.00"));
+        } finally {
+            emf.close();
+            DataStoreFactory.shutdownDatabase(config);
+        }
+
+        // the script must not run again, or the seeded balances would come back.
+        emf = DataStoreFactory.makeEntityManagerFactory(script, config);
+        try {
+            DataStore instance = new JPADataStore(emf);
+            assertEquals(0, new BigDecimal("9900.00").compareTo(instance.getAccount(FROM_ACCOUNT).getBalance()));
+            assertEquals(0, new BigDecimal("10100.00").compareTo(instance.getAccount(TO_ACCOUNT).getBalance()));
+            assertEquals(1, instance.getTransactions(FROM_ACCOUNT).size());
+        } finally {
+            emf.close();
+            DataStoreFactory.shutdownDatabase(config);
+        }
+    }
+
+    @Test
+    public void testConfig() {
+        assertEquals(DataStoreFactory.DB_URL, DatabaseConfig.IN_MEMORY.getUrl());
+        assertFalse(DatabaseConfig.IN_MEMORY.isFileBacked());
+        assertEquals(DatabaseConfig.DEFAULT_POOL_MAX, DatabaseConfig.IN_MEMORY.getPoolMax());
+
+        DatabaseConfig config = new DatabaseConfig("JDBC:HSQLDB:FILE:data/transfer", "SA", "", 2, 2, false);
+        assertTrue(config.isFileBacked());
+        assertEquals(2, config.getPoolMin());
+        assertFalse(config.isSyncCommits());
+
+        try {
+            new DatabaseConfig(DataStoreFactory.DB_URL, "SA", "", 4, 2, true);
+            fail("expected the pool to be refused");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private static Transaction makeTransaction(final String accountId, final String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setDate(DateTime.now(DateTimeZone.UTC));
+        transaction.setReference("");
+        TransactionPK key = new TransactionPK();
+        key.setAccountId(accountId);
+        key.setTxId(UUID.randomUUID().toString());
+        transaction.setId(key);
+        return transaction;
+    }
+}
@@ -0,0 +1,286 @@
+package net.parttimepolymath.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class JournalingDataStoreTest {
+    private static final String FROM_ACCOUNT = "adfd52b2-389e-11e5-a151-feff819cdc9f";
+    private static final String TO_ACCOUNT = "adfd560e-389e-11e5-a151-feff819cdc9f";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private DataStore dataStore;
+
+    private File file;
+
+    private TransferJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        file = new File(folder.getRoot(), "transfer.journal");
+        journal = new TransferJournal(file, 1, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journal.close();
+    }
+
+    @Test
+    public void testAddTransactions() throws Exception {
+        JournalingDataStore instance = new JournalingDataStore(dataStore, journal);
+        Transaction from = makeTransaction(FROM_ACCOUNT, "-1");
+        Transaction to = makeTransaction(TO_ACCOUNT, "1");
+        instance.addTransactions(from, to);
+        instance.addTransactions(from, to, "key");
+        verify(dataStore).addTransactions(from, to);
+        verify(dataStore).addTransactions(from, to, "key");
+
+        doThrow(new InsufficientFundsException("from")).when(dataStore).addTransactions(any(Transaction.class),
+                any(Transaction.class));
+        try {
+            instance.addTransactions(from, to);
+            fail("expected the failure to be passed on");
+        } catch (InsufficientFundsException ex) {
+            // expected
+        }
+
+        List<TransactionPair> pairs = Arrays.asList(new TransactionPair(from, to), new TransactionPair(from, to));
+        Exception refused = new InsufficientFundsException("from");
+        when(dataStore.addTransactions(pairs)).thenReturn(Arrays.<Exception> asList(null, refused));
+        List<Exception> results = instance.addTransactions(pairs);
+        assertNull(results.get(0));
+        assertEquals(refused, results.get(1));
+
+        // every transfer was journalled before the store was asked to make it, including those it refused.
+        journal.close();
+        journal = new TransferJournal(file, 1, TimeUnit.MILLISECONDS);
+        assertEquals(5, journal.replay(mock(DataStore.class)));
+    }
+
+    @Test
+    public void testTransientFailure() throws Exception {
+        JournalingDataStore instance = new JournalingDataStore(dataStore, journal);
+        Transaction from = makeTransaction(FROM_ACCOUNT, "-1");
+        Transaction to = makeTransaction(TO_ACCOUNT, "1");
+        doThrow(new IllegalStateException("no connection")).when(dataStore).addTransactions(from, to, "key");
+        try {
+            instance.addTransactions(from, to, "key");
+            fail("expected the failure to be passed on");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        TransactionPair failed = new TransactionPair(makeTransaction(FROM_ACCOUNT, "-2"), makeTransaction(TO_ACCOUNT, "2"));
+        TransactionPair made = new TransactionPair(makeTransaction(FROM_ACCOUNT, "-3"), makeTransaction(TO_ACCOUNT, "3"));
+        List<TransactionPair> pairs = Arrays.asList(failed, made);
+        Exception rolledBack = new IllegalStateException("batch rolled back");
+        when(dataStore.addTransactions(pairs)).thenReturn(Arrays.<Exception> asList(rolledBack, null));
+        List<Exception> results = instance.addTransactions(pairs);
+        assertEquals(rolledBack, results.get(0));
+        assertNull(results.get(1));
+
+        // the client was told the failed transfers failed, so only the one that was made is replayed.
+        journal.close();
+        journal = new TransferJournal(file, 1, TimeUnit.MILLISECONDS);
+        DataStore store = mock(DataStore.class);
+        assertEquals(1, journal.replay(store));
+        verify(store).addTransactions(any(Transaction.class), any(Transaction.class));
+        verify(store, never()).addTransactions(any(Transaction.class), any(Transaction.class), anyString());
+    }
+
+    @Test
+    public void testJournalFailure() throws Exception {
+        JournalingDataStore instance = new JournalingDataStore(dataStore, journal);
+        journal.close();
+
+        Transaction from = makeTransaction(FROM_ACCOUNT, "-1");
+        Transaction to = makeTransaction(TO_ACCOUNT, "1");
+        try {
+            instance.addTransactions(from, to, "key");
+            fail("expected the journal failure to be passed on");
+        } catch (IOException ex) {
+            // expected
+        }
+        List<Exception> results = instance.addTransactions(Arrays.asList(new TransactionPair(from, to)));
+        assertTrue(results.get(0) instanceof IOException);
+
+        // the store is never asked to make a transfer the journal did not take.
+        verify(dataStore, never()).addTransactions(any(Transaction.class), any(Transaction.class), anyString());
+        verify(dataStore, never()).addTransactions(anyListOf(TransactionPair.class));
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        String script = new String(Files.readAllBytes(Paths.get(JournalingDataStoreTest.class.getResource("/createTest.sql").toURI())));
+        try {
+            DataStore instance = DataStoreFactory.makeMemoryDataStore(script, DatabaseConfig.IN_MEMORY, journal);
+            instance.addTransactions(makeTransaction(FROM_ACCOUNT, "-100.00"), makeTransaction(TO_ACCOUNT, "100.00"));
+            instance.addTransactions(makeTransaction(TO_ACCOUNT, "-40.00"), makeTransaction(FROM_ACCOUNT, "40.00"));
+            try {
+                instance.addTransactions(makeTransaction(FROM_ACCOUNT, "-10000.00"), makeTransaction(TO_ACCOUNT, "10000.00"));
+                fail("expected the transfer to be refused");
+            } catch (InsufficientFundsException ex) {
+                // expected, and journalled.
+            }
+        } finally {
+            DataStoreFactory.shutdownDatabase();
+        }
+
+        journal.close();
+        journal = new TransferJournal(file, 1, TimeUnit.MILLISECONDS);
+        try {
+            DataStore instance = DataStoreFactory.makeMemoryDataStore(script, DatabaseConfig.IN_MEMORY, journal);
+            assertEquals(0, new BigDecimal("9940.00").compareTo(instance.getAccount(FROM_ACCOUNT).getBalance()));
+            assertEquals(0, new BigDecimal("10060.00").compareTo(instance.getAccount(TO_ACCOUNT).getBalance()));
+            assertEquals(2, instance.getTransactions(FROM_ACCOUNT).size());
+        } finally {
+            DataStoreFactory.shutdownDatabase();
+        }
+    }
+
+    @Test
+    public void testWriteSnapshot() throws Exception {
+        JournalingDataStore instance = new JournalingDataStore(dataStore, journal);
+        File snapshot = new File(folder.getRoot(), "transfer.snap");
+        when(dataStore.writeSnapshot(snapshot, 2)).thenReturn(12L);
+        assertEquals(12L, instance.writeSnapshot(snapshot));
+        assertEquals(2, journal.getGeneration());
+
+        // a snapshot that fails leaves the journal where it was.
+        when(dataStore.writeSnapshot(snapshot, 3)).thenThrow(new IOException("disk full"));
+        try {
+            instance.writeSnapshot(snapshot);
+            fail("expected the snapshot failure to be passed on");
+        } catch (IOException ex) {
+            // expected
+        }
+        assertEquals(2, journal.getGeneration());
+    }
+
+    @Test
+    public void testSnapshotRecovery() throws Exception {
+        String script = new String(Files.readAllBytes(Paths.get(JournalingDataStoreTest.class.getResource("/createTest.sql").toURI())));
+        File snapshot = new File(folder.getRoot(), "transfer.snap");
+        try {
+            DataStore instance = DataStoreFactory.makeMemoryDataStore(script, DatabaseConfig.IN_MEMORY, snapshot, journal);
+            instance.addTransactions(makeTransaction(FROM_ACCOUNT, "-100.00"), makeTransaction(TO_ACCOUNT, "100.00"));
+            instance.writeSnapshot(snapshot);
+            instance.addTransactions(makeTransaction(TO_ACCOUNT, "-40.00"), makeTransaction(FROM_ACCOUNT, "40.00"));
+        } finally {
+            DataStoreFactory.shutdownDatabase();
+        }
+
+        // the snapshot holds the first transfer, and only the second is replayed onto it.
+        journal.close();
+        journal = new TransferJournal(file, 1, TimeUnit.MILLISECONDS);
+        assertEquals(1, journal.replay(mock(DataStore.class)));
+        journal.close();
+        journal = new TransferJournal(file, 1, TimeUnit.MILLISECONDS);
+        try {
+            DataStore instance = DataStoreFactory.makeMemoryDataStore(script, DatabaseConfig.IN_MEMORY, snapshot, journal);
+            assertEquals(0, new BigDecimal("9940.00").compareTo(instance.getAccount(FROM_ACCOUNT).getBalance()));
+            assertEquals(0, new BigDecimal("10060.00").compareTo(instance.getAccount(TO_ACCOUNT).getBalance()));
+            assertEquals(2, instance.getTransactions(FROM_ACCOUNT).size());
+        } finally {
+            DataStoreFactory.shutdownDatabase();
+        }
+    }
+
+    @Test
+    public void testSnapshotWithoutRoll() throws Exception {
+        String script = new String(Files.readAllBytes(Paths.get(JournalingDataStoreTest.class.getResource("/createTest.sql").toURI())));
+        File snapshot = new File(folder.getRoot(), "transfer.snap");
+        try {
+            DataStore ledger = DataStoreFactory.makeMemoryDataStore(script, DatabaseConfig.IN_MEMORY);
+            DataStore instance = new JournalingDataStore(ledger, journal);
+            instance.addTransactions(makeTransaction(FROM_ACCOUNT, "-100.00"), makeTransaction(TO_ACCOUNT, "100.00"));
+            // the server dies after the snapshot is in place but before the journal is rolled.
+            ledger.writeSnapshot(snapshot, journal.getGeneration() + 1);
+        } finally {
+            DataStoreFactory.shutdownDatabase();
+        }
+
+        journal.close();
+        journal = new TransferJournal(file, 1, TimeUnit.MILLISECONDS);
+        try {
+            DataStore instance = DataStoreFactory.makeMemoryDataStore(script, DatabaseConfig.IN_MEMORY, snapshot, journal);
+            assertEquals(0, new BigDecimal("9900.00").compareTo(instance.getAccount(FROM_ACCOUNT).getBalance()));
+            assertEquals(1, instance.getTransactions(FROM_ACCOUNT).size());
+            assertEquals(2, journal.getGeneration());
+        } finally {
+            DataStoreFactory.shutdownDatabase();
+        }
+    }
+
+    @Test
+    public void testSnapshotMissing() throws Exception {
+        String script = new String(Files.readAllBytes(Paths.get(JournalingDataStoreTest.class.getResource("/createTest.sql").toURI())));
+        journal.roll(2);
+        try {
+            DataStoreFactory.makeMemoryDataStore(script, DatabaseConfig.IN_MEMORY, new File(folder.getRoot(), "missing.snap"),
+                    journal);
+            fail("expected a journal that follows a missing snapshot to be refused");
+        } catch (IllegalStateException ex) {
+            // expected
+        } finally {
+            DataStoreFactory.shutdownDatabase();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFileBackedSnapshotRefused() {
+        DataStoreFactory.makeMemoryDataStore("", DatabaseConfig.file(new File(folder.getRoot(), "transfer").getPath()),
+                new File(folder.getRoot(), "transfer.snap"), journal);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFileBackedRefused() {
+        DataStoreFactory.makeDataStore("", DatabaseConfig.file(new File(folder.getRoot(), "transfer").getPath()), journal);
+    }
+
+    private static Transaction makeTransaction(final String accountId, final String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setDate(DateTime.now(DateTimeZone.UTC));
+        transaction.setReference("");
+        TransactionPK key = new TransactionPK();
+        key.setAccountId(accountId);
+        key.setTxId(UUID.randomUUID().toString());
+        transaction.setId(key);
+        return transaction;
+    }
+}
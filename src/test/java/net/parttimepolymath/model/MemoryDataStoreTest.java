@@ -0,0 +1,187 @@
+package net.parttimepolymath.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MemoryDataStoreTest extends DataStoreContractTest {
+    private static DataStore store;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        store = DataStoreFactory.makeMemoryDataStore(readScript());
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        DataStoreFactory.shutdownDatabase();
+    }
+
+    @Override
+    protected DataStore getStore() {
+        return store;
+    }
+
+    @Test
+    public void testAccountWithoutTransactions() {
+        Account result = instance.getAccount("87a4d7aa-385a-11e5-a151-feff819cdc9f");
+        assertTrue(result.getTransactions().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentTransfers() throws Exception {
+        final String left = "46fd58da-385a-11e5-a151-feff819cdc9f";
+        final String right = "87a4db6a-385a-11e5-a151-feff819cdc9f";
+        BigDecimal total = instance.getAccount(left).getBalance().add(instance.getAccount(right).getBalance());
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final boolean forward = i % 2 == 0;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        try {
+                            String from = forward ? left : right;
+                            String to = forward ? right : left;
+                            instance.addTransactions(makeTransaction(from, new BigDecimal("-0.01")),
+                                    makeTransaction(to, new BigDecimal("0.01")));
+                        } catch (Exception ex) {
+                            // insufficient funds is expected from time to time.
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        BigDecimal leftBalance = instance.getAccount(left).getBalance();
+        BigDecimal rightBalance = instance.getAccount(right).getBalance();
+        assertTrue(leftBalance.signum() >= 0);
+        assertTrue(rightBalance.signum() >= 0);
+        assertTrue(total.compareTo(leftBalance.add(rightBalance)) == 0);
+    }
+
+    /*
+     * two threads move money in opposite directions between two pairs of accounts on the same two stripes, where the lower
+     * account index of each pair falls on a different stripe. Ordering the locks by account rather than by stripe would take
+     * the two stripes in opposite orders and deadlock.
+     */
+    @Test(timeout = 20000)
+    public void testOpposedStripes() throws Exception {
+        int accounts = 4 * Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+        StringBuilder script = new StringBuilder(IOUtils.toString(MemoryDataStoreTest.class.getResourceAsStream("/schema.sql"), "UTF-8"));
+        script.append("\nINSERT INTO client VALUES ('client', 'STRIPES');\n");
+        for (int i = 0; i < accounts; i++) {
+            script.append("INSERT INTO account VALUES ('account-").append(i).append("', 'client', 'USD', 1000000.0, 1);\n");
+        }
+        DatabaseConfig config = new DatabaseConfig("jdbc:hsqldb:mem:STRIPES");
+        try {
+            MemoryDataStore ledger = (MemoryDataStore) DataStoreFactory.makeMemoryDataStore(script.toString(), config);
+            int stripes = ledger.getStripeCount();
+            assertTrue(2 * stripes <= accounts);
+
+            // high account on a low stripe, and low account on a high stripe.
+            final String highLow = ledger.getAccountId(stripes);
+            final String lowHigh = ledger.getAccountId(stripes - 1);
+            final String lowLow = ledger.getAccountId(0);
+            final String highHigh = ledger.getAccountId(2 * stripes - 1);
+            assertEquals(ledger.stripeOf(stripes), ledger.stripeOf(0));
+            assertEquals(ledger.stripeOf(stripes - 1), ledger.stripeOf(2 * stripes - 1));
+
+            Thread forward = transferLoop(ledger, lowHigh, highLow);
+            Thread backward = transferLoop(ledger, lowLow, highHigh);
+            forward.start();
+            backward.start();
+            forward.join();
+            backward.join();
+
+            BigDecimal total = ledger.getAccount(lowHigh).getBalance().add(ledger.getAccount(highLow).getBalance());
+            assertEquals(0, new BigDecimal("2000000").compareTo(total));
+            assertEquals(0, new BigDecimal("999980").compareTo(ledger.getAccount(lowLow).getBalance()));
+        } finally {
+            DataStoreFactory.shutdownDatabase(config);
+        }
+    }
+
+    @Test
+    public void testKeyExpiry() throws Exception {
+        final String from = "adfd52b2-389e-11e5-a151-feff819cdc9f";
+        final String to = "adfd560e-389e-11e5-a151-feff819cdc9f";
+        DatabaseConfig config = new DatabaseConfig("jdbc:hsqldb:mem:KEYS");
+        try {
+            DataStoreFactory.makeMemoryDataStore(readScript(), config);
+            MemoryDataStore ledger;
+            try (Connection connection = DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword())) {
+                ledger = new MemoryDataStore(connection, 200);
+            }
+
+            Transaction first = makeTransaction(from, new BigDecimal("-1"));
+            ledger.addTransactions(first, makeTransaction(to, BigDecimal.ONE), "first");
+            assertEquals(first.getId().getTxId(), ledger.findTransfer("first"));
+            try {
+                ledger.addTransactions(makeTransaction(from, new BigDecimal("-1")), makeTransaction(to, BigDecimal.ONE), "first");
+                fail("expected the key to be remembered");
+            } catch (DuplicateTransferException ex) {
+                assertEquals(first.getId().getTxId(), ex.getTransactionId());
+            }
+            ledger.addTransactions(makeTransaction(from, new BigDecimal("-1")), makeTransaction(to, BigDecimal.ONE), "second");
+            assertEquals(2, ledger.getKeyCount());
+
+            // once expired, a key is forgotten, may be claimed again, and is swept out when the next key is claimed.
+            Thread.sleep(300);
+            assertNull(ledger.findTransfer("first"));
+            Transaction again = makeTransaction(from, new BigDecimal("-1"));
+            ledger.addTransactions(again, makeTransaction(to, BigDecimal.ONE), "first");
+            assertEquals(again.getId().getTxId(), ledger.findTransfer("first"));
+            assertEquals(1, ledger.getKeyCount());
+        } finally {
+            DataStoreFactory.shutdownDatabase(config);
+        }
+    }
+
+    private static Thread transferLoop(final DataStore ledger, final String from, final String to) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int j = 0; j < 20000; j++) {
+                    try {
+                        ledger.addTransactions(makeTransaction(from, new BigDecimal("-0.001")),
+                                makeTransaction(to, new BigDecimal("0.001")));
+                    } catch (Exception ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            }
+        });
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static Transaction makeTransaction(final String accountId, final BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(amount);
+        transaction.setDate(DateTime.now(DateTimeZone.UTC));
+        TransactionPK key = new TransactionPK();
+        key.setAccountId(accountId);
+        key.setTxId(UUID.randomUUID().toString());
+        transaction.setId(key);
+        return transaction;
+    }
+}
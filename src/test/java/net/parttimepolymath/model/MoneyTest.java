@@ -0,0 +1,45 @@
+package net.parttimepolymath.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class MoneyTest {
+
+    @Test
+    public void testFractionDigits() {
+        assertEquals(2, Money.fractionDigits("USD"));
+        assertEquals(0, Money.fractionDigits("JPY"));
+        assertEquals(3, Money.fractionDigits("BHD"));
+        assertEquals(Money.DEFAULT_FRACTION_DIGITS, Money.fractionDigits("XAU"));
+        assertEquals(Money.DEFAULT_FRACTION_DIGITS, Money.fractionDigits("ZZZ"));
+        assertEquals(Money.DEFAULT_FRACTION_DIGITS, Money.fractionDigits(null));
+    }
+
+    @Test
+    public void testFromMinorUnits() {
+        assertEquals(10000L, Money.fromMinorUnits(1000L, "USD"));
+        assertEquals(1000000L, Money.fromMinorUnits(1000L, "JPY"));
+        assertEquals(1000L, Money.fromMinorUnits(1000L, "BHD"));
+        assertEquals(-10000L, Money.fromMinorUnits(-1000L, null));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testFromMinorUnitsOverflow() {
+        Money.fromMinorUnits(Long.MAX_VALUE / 10, "JPY");
+    }
+
+    @Test
+    public void testDecimal() {
+        assertEquals(new BigDecimal("10.500"), Money.toDecimal(10500L));
+        assertEquals(10500L, Money.toUnits(new BigDecimal("10.5")));
+        assertEquals(-1L, Money.toUnits(new BigDecimal("-0.001")));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testTooPrecise() {
+        Money.toUnits(new BigDecimal("0.0001"));
+    }
+}
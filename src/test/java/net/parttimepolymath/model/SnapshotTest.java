@@ -0,0 +1,209 @@
+package net.parttimepolymath.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SnapshotTest {
+    private static final String FROM_ACCOUNT = "adfd52b2-389e-11e5-a151-feff819cdc9f";
+    private static final String TO_ACCOUNT = "adfd560e-389e-11e5-a151-feff819cdc9f";
+    private static final String FROM_CLIENT = "41f4ca3c-389e-11e5-a151-feff819cdc9f";
+
+    private static String script;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        script = new String(Files.readAllBytes(Paths.get(SnapshotTest.class.getResource("/createTest.sql").toURI())));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File file = folder.newFile("transfer.snap");
+        DatabaseConfig source = new DatabaseConfig("jdbc:hsqldb:mem:SNAPSHOT_SOURCE");
+        EntityManagerFactory emf = DataStoreFactory.makeEntityManagerFactory(script, source);
+        int clients;
+        int transactions;
+        try {
+            DataStore instance = new JPADataStore(emf);
+            instance.addTransactions(makeTransaction(FROM_ACCOUNT, "-100.25"), makeTransaction(TO_ACCOUNT, "100.25"), "key");
+            clients = instance.getClients().size();
+            transactions = instance.getTransactions(FROM_ACCOUNT).size();
+            assertTrue(instance.writeSnapshot(file) > clients);
+        } finally {
+            emf.close();
+            DataStoreFactory.shutdownDatabase(source);
+        }
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        assertLoaded(new DatabaseConfig("jdbc:hsqldb:mem:SNAPSHOT_TARGET"), file, clients, transactions, "9899.75");
+    }
+
+    @Test
+    public void testMemoryRoundTrip() throws Exception {
+        File file = folder.newFile("ledger.snap");
+        DatabaseConfig source = new DatabaseConfig("jdbc:hsqldb:mem:SNAPSHOT_LEDGER");
+        DataStore instance = DataStoreFactory.makeMemoryDataStore(script, source);
+        DataStoreFactory.shutdownDatabase(source);
+        instance.addTransactions(makeTransaction(FROM_ACCOUNT, "-0.5"), makeTransaction(TO_ACCOUNT, "0.5"), "key");
+        instance.writeSnapshot(file);
+
+        assertLoaded(new DatabaseConfig("jdbc:hsqldb:mem:SNAPSHOT_COPY"), file, instance.getClients().size(),
+                instance.getTransactions(FROM_ACCOUNT).size(), "9999.5");
+    }
+
+    @Test
+    public void testJournalGeneration() throws Exception {
+        File file = folder.newFile("journal.snap");
+        DatabaseConfig source = new DatabaseConfig("jdbc:hsqldb:mem:SNAPSHOT_GENERATION");
+        DataStore instance = DataStoreFactory.makeMemoryDataStore(script, source);
+        DataStoreFactory.shutdownDatabase(source);
+        instance.addTransactions(makeTransaction(FROM_ACCOUNT, "-1"), makeTransaction(TO_ACCOUNT, "1"), "key");
+        instance.writeSnapshot(file);
+        assertEquals(Snapshot.NO_JOURNAL, Snapshot.readJournalGeneration(file));
+        instance.writeSnapshot(file, 7);
+        assertEquals(7, Snapshot.readJournalGeneration(file));
+
+        assertLoaded(new DatabaseConfig("jdbc:hsqldb:mem:SNAPSHOT_GENERATION_COPY"), file, instance.getClients().size(),
+                instance.getTransactions(FROM_ACCOUNT).size(), "9999");
+    }
+
+    @Test
+    public void testVersion1() throws Exception {
+        File file = folder.newFile("version1.snap");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(Snapshot.MAGIC);
+            out.writeInt(1);
+            for (int table = 0; table < Snapshot.TABLES; table++) {
+                out.writeInt(0);
+            }
+            out.writeInt(Snapshot.MAGIC);
+        }
+        assertEquals(Snapshot.NO_JOURNAL, Snapshot.readJournalGeneration(file));
+
+        DatabaseConfig target = new DatabaseConfig("jdbc:hsqldb:mem:SNAPSHOT_VERSION1");
+        EntityManagerFactory emf = DataStoreFactory.makeEntityManagerFactory(script, target, file);
+        try {
+            assertTrue(new JPADataStore(emf).getClients().isEmpty());
+        } finally {
+            emf.close();
+            DataStoreFactory.shutdownDatabase(target);
+        }
+    }
+
+    @Test
+    public void testManyBlocks() throws Exception {
+        File file = folder.newFile("blocks.snap");
+        int rows = SnapshotWriter.BLOCK_ROWS * 2 + 1;
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            writer.addClient("client", "BIG");
+            for (int i = 0; i < rows; i++) {
+                writer.addAccount("account-" + i, "client", "GBP", i, i % 2 == 0);
+            }
+            writer.addTransaction("tx", "account-1", -1000L, 0L, null);
+            writer.finish();
+            assertEquals(rows + 2, writer.getRows());
+        }
+
+        DatabaseConfig config = new DatabaseConfig("jdbc:hsqldb:mem:SNAPSHOT_BLOCKS");
+        EntityManagerFactory emf = DataStoreFactory.makeEntityManagerFactory("", config, file);
+        try {
+            DataStore instance = new JPADataStore(emf);
+            assertEquals(rows, instance.getAccounts("client").size());
+            assertEquals(0, new BigDecimal("8.192").compareTo(instance.getAccount("account-" + (rows - 1)).getBalance()));
+            assertNull(instance.getTransactions("account-1").get(0).getReference());
+        } finally {
+            emf.close();
+            DataStoreFactory.shutdownDatabase(config);
+        }
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        File file = folder.newFile("truncated.snap");
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            writer.addClient("client", "SHORT");
+            writer.finish();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 2);
+        }
+
+        DatabaseConfig config = new DatabaseConfig("jdbc:hsqldb:mem:SNAPSHOT_TRUNCATED");
+        try {
+            DataStoreFactory.makeEntityManagerFactory("", config, file);
+            fail("expected the truncated snapshot to be refused");
+        } catch (RuntimeException ex) {
+            // expected
+        } finally {
+            DataStoreFactory.shutdownDatabase(config);
+        }
+    }
+
+    @Test
+    public void testWriterOrder() throws Exception {
+        File file = new File(folder.getRoot(), "unfinished.snap");
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            writer.addAccount("account", "client", "GBP", 0L, true);
+            try {
+                writer.addClient("client", "LATE");
+                fail("expected the client to be refused once accounts have started");
+            } catch (IllegalStateException ex) {
+                // expected
+            }
+        }
+        assertFalse(file.exists());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    private static void assertLoaded(final DatabaseConfig config, final File file, final int clients, final int transactions,
+            final String balance) {
+        // an empty script shows the data came from the snapshot.
+        EntityManagerFactory emf = DataStoreFactory.makeEntityManagerFactory("", config, file);
+        try {
+            DataStore instance = new JPADataStore(emf);
+            assertEquals(clients, instance.getClients().size());
+            assertEquals(transactions, instance.getTransactions(FROM_ACCOUNT).size());
+            assertEquals(0, new BigDecimal(balance).compareTo(instance.getAccount(FROM_ACCOUNT).getBalance()));
+            assertEquals(FROM_CLIENT, instance.getAccount(FROM_ACCOUNT).getClient().getClientId());
+            assertTrue(instance.findTransfer("key") != null);
+        } finally {
+            emf.close();
+            DataStoreFactory.shutdownDatabase(config);
+        }
+    }
+
+    private static Transaction makeTransaction(final String accountId, final String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setDate(DateTime.now(DateTimeZone.UTC));
+        transaction.setReference("");
+        TransactionPK key = new TransactionPK();
+        key.setAccountId(accountId);
+        key.setTxId(UUID.randomUUID().toString());
+        transaction.setId(key);
+        return transaction;
+    }
+}
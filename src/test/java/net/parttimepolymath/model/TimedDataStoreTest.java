@@ -0,0 +1,72 @@
+package net.parttimepolymath.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import net.parttimepolymath.metrics.Metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class TimedDataStoreTest {
+    @Mock
+    private DataStore dataStore;
+
+    private Metrics metrics;
+
+    private TimedDataStore instance;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        metrics = new Metrics();
+        instance = new TimedDataStore(dataStore, metrics);
+    }
+
+    @Test
+    public void testGetAccount() {
+        Account account = new Account();
+        when(dataStore.getAccount("id")).thenReturn(account);
+        assertEquals(account, instance.getAccount("id"));
+        assertEquals(null, instance.getAccount("other"));
+        assertEquals(2, metrics.operation("getAccount").getCount());
+        assertEquals(0, metrics.operation("getClient").getCount());
+    }
+
+    @Test
+    public void testAddTransactions() throws Exception {
+        Transaction from = new Transaction();
+        Transaction to = new Transaction();
+        instance.addTransactions(from, to);
+        instance.addTransactions(from, to, "key");
+        verify(dataStore).addTransactions(from, to);
+        verify(dataStore).addTransactions(from, to, "key");
+
+        doThrow(new InsufficientFundsException("from")).when(dataStore).addTransactions(any(Transaction.class),
+                any(Transaction.class));
+        try {
+            instance.addTransactions(from, to);
+            fail("expected the failure to be passed on");
+        } catch (InsufficientFundsException ex) {
+            // expected
+        }
+        assertEquals(3, metrics.operation("addTransactions").getCount());
+
+        instance.addTransactions(Collections.<TransactionPair> emptyList());
+        assertEquals(1, metrics.operation("addTransactionBatch").getCount());
+    }
+
+    @Test
+    public void testStatementCount() {
+        when(dataStore.getStatementCount()).thenReturn(7L);
+        assertEquals(7L, instance.getStatementCount());
+    }
+}
@@ -0,0 +1,39 @@
+package net.parttimepolymath.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TransactionKeyTest {
+
+    @Test
+    public void testToken() {
+        TransactionKey key = new TransactionKey(1439064797000L, "eab5e316-385f-11e5-a151-feff819cdc9f");
+        assertEquals("1439064797000:eab5e316-385f-11e5-a151-feff819cdc9f", key.toToken());
+        assertEquals(key, TransactionKey.parse(key.toToken()));
+    }
+
+    @Test
+    public void testCompare() {
+        TransactionKey key = new TransactionKey(1000L, "b");
+        assertTrue(key.compareTo(new TransactionKey(1000L, "a")) > 0);
+        assertTrue(key.compareTo(new TransactionKey(1001L, "a")) < 0);
+        assertEquals(0, key.compareTo(new TransactionKey(1000L, "b")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseNull() {
+        TransactionKey.parse(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseNoId() {
+        TransactionKey.parse("1000:");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseBadDate() {
+        TransactionKey.parse("yesterday:a");
+    }
+}
@@ -0,0 +1,241 @@
+package net.parttimepolymath.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+public class TransferJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(folder.getRoot(), "transfer.journal");
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        TransactionPair first = makePair("-10.5");
+        TransactionPair second = makePair("-20");
+        try (TransferJournal instance = new TransferJournal(file, 1, TimeUnit.MILLISECONDS)) {
+            instance.awaitSync(instance.append(first.getFromTransaction(), first.getToTransaction(), null));
+            instance.awaitSync(instance.append(second.getFromTransaction(), second.getToTransaction(), "key"));
+        }
+
+        DataStore store = mock(DataStore.class);
+        try (TransferJournal instance = new TransferJournal(file, 1, TimeUnit.MILLISECONDS)) {
+            assertEquals(2, instance.replay(store));
+        }
+
+        ArgumentCaptor<Transaction> from = ArgumentCaptor.forClass(Transaction.class);
+        ArgumentCaptor<Transaction> to = ArgumentCaptor.forClass(Transaction.class);
+        verify(store).addTransactions(from.capture(), to.capture());
+        assertSame(first.getFromTransaction(), from.getValue());
+        assertSame(first.getToTransaction(), to.getValue());
+        verify(store).addTransactions(from.capture(), to.capture(), eq("key"));
+        assertSame(second.getFromTransaction(), from.getValue());
+        assertSame(second.getToTransaction(), to.getValue());
+    }
+
+    @Test
+    public void testReplayFailure() throws Exception {
+        TransactionPair refused = makePair("-1");
+        TransactionPair failing = makePair("-2");
+        try (TransferJournal instance = new TransferJournal(file, 1, TimeUnit.MILLISECONDS)) {
+            instance.append(refused.getFromTransaction(), refused.getToTransaction(), null);
+            instance.awaitSync(instance.append(failing.getFromTransaction(), failing.getToTransaction(), null));
+        }
+
+        // a refusal is skipped, but any other failure would lose a durable transfer, so it ends the replay.
+        DataStore store = mock(DataStore.class);
+        doThrow(new InsufficientFundsException("from")).doThrow(new IllegalStateException("no connection")).when(store)
+                .addTransactions(any(Transaction.class), any(Transaction.class));
+        try (TransferJournal instance = new TransferJournal(file, 1, TimeUnit.MILLISECONDS)) {
+            instance.replay(store);
+            fail("expected the replay to fail");
+        } catch (IOException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testTornRecord() throws Exception {
+        long end;
+        try (TransferJournal instance = new TransferJournal(file, 0, TimeUnit.MILLISECONDS)) {
+            TransactionPair pair = makePair("-1");
+            instance.append(pair.getFromTransaction(), pair.getToTransaction(), null);
+            end = instance.append(pair.getFromTransaction(), pair.getToTransaction(), null);
+            instance.awaitSync(end);
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(end - 1);
+            int last = raw.read();
+            raw.seek(end - 1);
+            raw.write(last ^ 0xff);
+        }
+
+        try (TransferJournal instance = new TransferJournal(file, 0, TimeUnit.MILLISECONDS)) {
+            assertEquals(1, instance.replay(mock(DataStore.class)));
+            TransactionPair pair = makePair("-2");
+            instance.awaitSync(instance.append(pair.getFromTransaction(), pair.getToTransaction(), null));
+        }
+        try (TransferJournal instance = new TransferJournal(file, 0, TimeUnit.MILLISECONDS)) {
+            assertEquals(2, instance.replay(mock(DataStore.class)));
+        }
+    }
+
+    @Test
+    public void testChunks() throws Exception {
+        try (TransferJournal instance = new TransferJournal(file, 0, TimeUnit.MILLISECONDS, 1024)) {
+            for (int i = 0; i < 20; i++) {
+                TransactionPair pair = makePair("-" + i);
+                instance.awaitSync(instance.append(pair.getFromTransaction(), pair.getToTransaction(), null));
+            }
+        }
+        assertTrue(file.length() > 4 * 1024);
+
+        DataStore store = mock(DataStore.class);
+        try (TransferJournal instance = new TransferJournal(file, 0, TimeUnit.MILLISECONDS, 1024)) {
+            assertEquals(20, instance.replay(store));
+        }
+        verify(store, times(20)).addTransactions(any(Transaction.class), any(Transaction.class));
+    }
+
+    @Test
+    public void testRoll() throws Exception {
+        try (TransferJournal instance = new TransferJournal(file, 0, TimeUnit.MILLISECONDS, 1024)) {
+            assertEquals(TransferJournal.FIRST_GENERATION, instance.getGeneration());
+            for (int i = 0; i < 10; i++) {
+                TransactionPair pair = makePair("-" + i);
+                instance.append(pair.getFromTransaction(), pair.getToTransaction(), null);
+            }
+            instance.roll(2);
+            TransactionPair pair = makePair("-1");
+            instance.awaitSync(instance.append(pair.getFromTransaction(), pair.getToTransaction(), null));
+            try {
+                instance.roll(2);
+                fail("expected the generation to have to move on");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+
+        // the records of the first generation are still in the file beyond the new one, and are not replayed.
+        DataStore store = mock(DataStore.class);
+        try (TransferJournal instance = new TransferJournal(file, 0, TimeUnit.MILLISECONDS, 1024)) {
+            assertEquals(2, instance.getGeneration());
+            assertEquals(1, instance.replay(store));
+            TransactionPair pair = makePair("-2");
+            instance.awaitSync(instance.append(pair.getFromTransaction(), pair.getToTransaction(), null));
+        }
+        try (TransferJournal instance = new TransferJournal(file, 0, TimeUnit.MILLISECONDS, 1024)) {
+            assertEquals(2, instance.replay(store));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAJournal() throws Exception {
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.writeInt(42);
+        }
+        new TransferJournal(file, 0, TimeUnit.MILLISECONDS).close();
+    }
+
+    @Test
+    public void testGroupSync() throws Exception {
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (final TransferJournal instance = new TransferJournal(file, 200, TimeUnit.MILLISECONDS)) {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                futures[i] = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        TransactionPair pair = makePair("-1");
+                        instance.awaitSync(instance.append(pair.getFromTransaction(), pair.getToTransaction(), null));
+                        return null;
+                    }
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            assertTrue(instance.getSyncCount() < threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testClosed() throws Exception {
+        TransferJournal instance = new TransferJournal(file, 0, TimeUnit.MILLISECONDS);
+        instance.close();
+        TransactionPair pair = makePair("-1");
+        try {
+            instance.append(pair.getFromTransaction(), pair.getToTransaction(), null);
+            fail("expected a closed journal to refuse the transfer");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    private static void assertSame(final Transaction expected, final Transaction actual) {
+        assertEquals(expected.getId().getAccountId(), actual.getId().getAccountId());
+        assertEquals(expected.getId().getTxId(), actual.getId().getTxId());
+        assertEquals(0, expected.getAmount().compareTo(actual.getAmount()));
+        assertEquals(expected.getDate().getMillis(), actual.getDate().getMillis());
+        assertEquals(expected.getReference(), actual.getReference());
+    }
+
+    private static TransactionPair makePair(final String amount) {
+        Transaction from = new Transaction();
+        from.setAmount(new BigDecimal(amount));
+        from.setDate(DateTime.now(DateTimeZone.UTC));
+        from.setReference("46fd58da-385a-11e5-a151-feff819cdc9f");
+        TransactionPK fromKey = new TransactionPK();
+        fromKey.setAccountId("87a4dd04-385a-11e5-a151-feff819cdc9f");
+        fromKey.setTxId(UUID.randomUUID().toString());
+        from.setId(fromKey);
+
+        Transaction to = new Transaction();
+        to.setAmount(from.getAmount().negate());
+        to.setDate(from.getDate());
+        to.setReference(fromKey.getTxId());
+        TransactionPK toKey = new TransactionPK();
+        toKey.setAccountId("46fd58da-385a-11e5-a151-feff819cdc9f");
+        toKey.setTxId(UUID.randomUUID().toString());
+        to.setId(toKey);
+        return new TransactionPair(from, to);
+    }
+}
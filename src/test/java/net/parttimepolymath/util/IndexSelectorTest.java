@@ -0,0 +1,84 @@
+package net.parttimepolymath.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IndexSelectorTest {
+    private static final int SIZE = 1000;
+    private static final int DRAWS = 100000;
+
+    @Test
+    public void testUniform() {
+        IndexSelector instance = new IndexSelector(SIZE, 0.0, 1L);
+        assertFalse(instance.isZipfian());
+        int[] counts = draw(instance, new Random(7L));
+        for (int count : counts) {
+            assertTrue(count > 0);
+            assertTrue(count < DRAWS / SIZE * 3);
+        }
+    }
+
+    @Test
+    public void testZipfian() {
+        IndexSelector instance = new IndexSelector(SIZE, IndexSelector.ZIPFIAN_THETA, 1L);
+        assertTrue(instance.isZipfian());
+        int[] counts = draw(instance, new Random(7L));
+        Arrays.sort(counts);
+        int top = 0;
+        for (int i = SIZE - SIZE / 100; i < SIZE; i++) {
+            top += counts[i];
+        }
+        // under theta = 0.99 the most popular 1% of a thousand items take about 40% of the draws.
+        assertTrue(top > DRAWS / 4);
+        assertTrue(counts[SIZE - 1] > DRAWS / 20);
+    }
+
+    @Test
+    public void testRepeatable() {
+        IndexSelector first = new IndexSelector(SIZE, IndexSelector.ZIPFIAN_THETA, 3L);
+        IndexSelector second = new IndexSelector(SIZE, IndexSelector.ZIPFIAN_THETA, 3L);
+        assertTrue(Arrays.equals(draw(first, new Random(5L)), draw(second, new Random(5L))));
+        assertFalse(Arrays.equals(draw(first, new Random(5L)), draw(new IndexSelector(SIZE, IndexSelector.ZIPFIAN_THETA, 4L),
+                new Random(5L))));
+    }
+
+    @Test
+    public void testSingleItem() {
+        IndexSelector instance = new IndexSelector(1, IndexSelector.ZIPFIAN_THETA, 1L);
+        Random random = new Random(1L);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, instance.next(random));
+        }
+    }
+
+    @Test
+    public void testOutOfRange() {
+        try {
+            new IndexSelector(0, 0.0, 1L);
+            fail("expected an empty range to be refused");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            new IndexSelector(10, 1.0, 1L);
+            fail("expected theta of 1 to be refused");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private static int[] draw(final IndexSelector instance, final Random random) {
+        int[] counts = new int[instance.getSize()];
+        for (int i = 0; i < DRAWS; i++) {
+            counts[instance.next(random)]++;
+        }
+        return counts;
+    }
+}
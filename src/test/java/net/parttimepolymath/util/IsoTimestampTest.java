@@ -0,0 +1,75 @@
+package net.parttimepolymath.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.BuddhistChronology;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+public class IsoTimestampTest {
+    private static final DateTimeFormatter FORMATTER = ISODateTimeFormat.dateTime();
+    private static final DateTimeZone[] ZONES = { DateTimeZone.UTC, DateTimeZone.forID("Europe/London"),
+            DateTimeZone.forID("America/St_Johns"), DateTimeZone.forID("Asia/Kathmandu"), DateTimeZone.forOffsetHours(-12) };
+
+    private static String write(final DateTime value, final boolean utc) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator gen = new JsonFactory().createGenerator(out)) {
+            if (utc) {
+                IsoTimestamp.writeUtc(gen, value);
+            } else {
+                IsoTimestamp.write(gen, value);
+            }
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void testKnown() {
+        assertEquals("2015-06-08T09:14:00.000Z", IsoTimestamp.print(new DateTime(2015, 6, 8, 9, 14, DateTimeZone.UTC)));
+        assertEquals("1970-01-01T00:00:00.000Z", IsoTimestamp.print(new DateTime(0L, DateTimeZone.UTC)));
+        assertEquals("1969-12-31T23:59:59.999Z", IsoTimestamp.print(new DateTime(-1L, DateTimeZone.UTC)));
+        assertEquals("2000-02-29T12:00:00.000+05:45", IsoTimestamp.print(new DateTime(2000, 2, 29, 12, 0, ZONES[3])));
+        assertEquals("1900-03-01T00:00:00.000-12:00", IsoTimestamp.print(new DateTime(1900, 3, 1, 0, 0, ZONES[4])));
+    }
+
+    @Test
+    public void testMatchesJoda() {
+        Random random = new Random(11L);
+        long min = new DateTime(0, 1, 2, 0, 0, DateTimeZone.UTC).getMillis();
+        long max = new DateTime(9999, 12, 30, 0, 0, DateTimeZone.UTC).getMillis();
+        for (int i = 0; i < 100000; i++) {
+            long instant = min + (long) (random.nextDouble() * (max - min));
+            DateTime value = new DateTime(instant, ZONES[i % ZONES.length]);
+            assertEquals(FORMATTER.print(value), IsoTimestamp.print(value));
+        }
+    }
+
+    @Test
+    public void testOutOfRange() {
+        DateTime early = new DateTime(-5, 6, 1, 0, 0, DateTimeZone.UTC);
+        assertEquals(FORMATTER.print(early), IsoTimestamp.print(early));
+        DateTime late = new DateTime(12345, 6, 1, 0, 0, DateTimeZone.UTC);
+        assertEquals(FORMATTER.print(late), IsoTimestamp.print(late));
+        DateTime buddhist = new DateTime(2015, 6, 8, 9, 14, BuddhistChronology.getInstance(DateTimeZone.UTC));
+        assertEquals(FORMATTER.print(buddhist), IsoTimestamp.print(buddhist));
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        DateTime value = new DateTime(2015, 6, 8, 10, 14, DateTimeZone.forID("Europe/London"));
+        assertEquals("\"2015-06-08T10:14:00.000+01:00\"", write(value, false));
+        assertEquals("\"2015-06-08T09:14:00.000Z\"", write(value, true));
+        DateTime late = new DateTime(12345, 6, 1, 0, 0, DateTimeZone.forOffsetHours(1));
+        assertEquals("\"" + FORMATTER.withZoneUTC().print(late) + "\"", write(late, true));
+    }
+}